@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.benchmark.fs;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.io.fs.AbstractFileOutputOperator;
+import com.datatorrent.lib.io.fs.AbstractLineFileOutputOperator;
+
+import com.datatorrent.benchmark.util.BenchmarkMeasurement;
+
+/**
+ * Benchmark comparing the byte array per tuple serialization of {@link AbstractFileOutputOperator} with the
+ * serialization into a reused buffer of {@link AbstractLineFileOutputOperator}. Reports bytes/s and garbage
+ * collections/s of both paths.
+ * <p>
+ * The default run writes a few MB so that it can run with the other tests, run it with a larger
+ * -DFSOutputSerializationBenchmarkTest.tuplesPerWindow for meaningful numbers.
+ * </p>
+ */
+public class FSOutputSerializationBenchmarkTest
+{
+  private static final Logger LOG = LoggerFactory.getLogger(FSOutputSerializationBenchmarkTest.class);
+  private static final String OUTPUT_PATH = "target/FSOutputSerializationBenchmarkTest";
+  private static final int NUM_WINDOWS = 10;
+  private static final int TUPLES_PER_WINDOW = Integer.getInteger("FSOutputSerializationBenchmarkTest.tuplesPerWindow", 5000);
+
+  private static class ByteArrayLineOutputOperator extends AbstractFileOutputOperator<String>
+  {
+    @Override
+    protected String getFileName(String tuple)
+    {
+      return "byteArray";
+    }
+
+    @Override
+    protected byte[] getBytesForTuple(String tuple)
+    {
+      return (tuple + "\n").getBytes();
+    }
+  }
+
+  private static class BufferLineOutputOperator extends AbstractLineFileOutputOperator<String>
+  {
+    @Override
+    protected String getFileName(String tuple)
+    {
+      return "buffer";
+    }
+  }
+
+  @Test
+  public void testSerialization() throws Exception
+  {
+    FileUtils.deleteDirectory(new File(OUTPUT_PATH));
+    final String[] lines = new String[1024];
+    for (int i = 0; i < lines.length; i++) {
+      lines[i] = "2014-11-03 10:15:" + (i % 60) + " INFO request " + i + " served from /var/www/html in " + (i * 7 % 100) + "ms";
+    }
+
+    BenchmarkMeasurement.warmUpAndMeasure(new Boolean[] {false, true}, new BenchmarkMeasurement.Run<Boolean>()
+    {
+      @Override
+      public void run(Boolean buffer)
+      {
+        FSOutputSerializationBenchmarkTest.this.run(buffer ? new BufferLineOutputOperator() : new ByteArrayLineOutputOperator(), lines);
+      }
+    });
+    FileUtils.deleteDirectory(new File(OUTPUT_PATH));
+  }
+
+  private void run(AbstractFileOutputOperator<String> operator, String[] lines)
+  {
+    operator.setFilePath(OUTPUT_PATH);
+    operator.setup(new OperatorContextTestHelper.TestIdOperatorContext(0));
+
+    long bytes = 0;
+    BenchmarkMeasurement measurement = new BenchmarkMeasurement();
+    for (int window = 0; window < NUM_WINDOWS; window++) {
+      operator.beginWindow(window);
+      for (int i = 0; i < TUPLES_PER_WINDOW; i++) {
+        String line = lines[i & (lines.length - 1)];
+        operator.input.put(line);
+        bytes += line.length() + 1;
+      }
+      operator.endWindow();
+    }
+    measurement.stop();
+    operator.teardown();
+
+    measurement.log(LOG, operator.getClass().getSimpleName(), bytes / (1024.0 * 1024), "MB");
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.benchmark.kafka;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import kafka.message.Message;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.contrib.kafka.AbstractKafkaInputOperator;
+import com.datatorrent.contrib.kafka.KafkaConsumer;
+import com.datatorrent.contrib.kafka.KafkaPartition;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+
+import com.datatorrent.benchmark.util.BenchmarkMeasurement;
+
+/**
+ * Benchmark of {@link AbstractKafkaInputOperator#emitTuples()} fed by an in-process consumer, which puts messages of
+ * a few partitions in the holding buffer from its own threads like the Kafka consumers do. Reports messages/s and
+ * garbage collections/s with each {@link KafkaConsumer.HandoffStrategy}.
+ * <p>
+ * The default run emits a few hundred thousand messages so that it can run with the other tests, run it with larger
+ * -DKafkaInputOperatorEmitBenchmarkTest.numWindows and -DKafkaInputOperatorEmitBenchmarkTest.messagesPerWindow for
+ * meaningful numbers. A window which isn't filled within
+ * -DKafkaInputOperatorEmitBenchmarkTest.windowTimeoutMillis fails the benchmark.
+ * </p>
+ */
+public class KafkaInputOperatorEmitBenchmarkTest
+{
+  private static final Logger LOG = LoggerFactory.getLogger(KafkaInputOperatorEmitBenchmarkTest.class);
+  private static final int NUM_PARTITIONS = 4;
+  private static final int NUM_WINDOWS = Integer.getInteger("KafkaInputOperatorEmitBenchmarkTest.numWindows", 10);
+  private static final int MESSAGES_PER_WINDOW = Integer.getInteger("KafkaInputOperatorEmitBenchmarkTest.messagesPerWindow", 10000);
+  private static final long WINDOW_TIMEOUT_MILLIS = Long.getLong("KafkaInputOperatorEmitBenchmarkTest.windowTimeoutMillis", 30000);
+
+  /**
+   * A consumer which generates the messages of each partition in a thread.
+   */
+  private static class InProcessConsumer extends KafkaConsumer
+  {
+    private transient Thread[] threads;
+
+    InProcessConsumer()
+    {
+      super("benchmark");
+      setCacheSize(64 * 1024);
+    }
+
+    @Override
+    public void start()
+    {
+      super.start();
+      final Message message = new Message(new byte[100]);
+      threads = new Thread[NUM_PARTITIONS];
+      for (int i = 0; i < NUM_PARTITIONS; i++) {
+        final KafkaPartition partition = new KafkaPartition(topic, i);
+        threads[i] = new Thread("in-process-consumer-" + i)
+        {
+          @Override
+          public void run()
+          {
+            try {
+              for (long offset = 0; isAlive; offset++) {
+                putMessage(partition, message, offset);
+              }
+            }
+            catch (InterruptedException ex) {
+              //stopped
+            }
+          }
+        };
+        threads[i].start();
+      }
+    }
+
+    @Override
+    public void stop()
+    {
+      isAlive = false;
+      for (Thread thread : threads) {
+        thread.interrupt();
+      }
+      super.stop();
+    }
+
+    @Override
+    protected void commitOffset()
+    {
+    }
+
+    @Override
+    protected Map<KafkaPartition, Long> getCurrentOffsets()
+    {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    protected void resetPartitionsAndOffset(Set<KafkaPartition> partitionIds, Map<KafkaPartition, Long> startOffset)
+    {
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+    }
+  }
+
+  private static class CountingInputOperator extends AbstractKafkaInputOperator<InProcessConsumer>
+  {
+    long bytes;
+
+    @Override
+    protected void emitTuple(Message message)
+    {
+      bytes += message.payloadSize();
+    }
+  }
+
+  @Test
+  public void testEmitTuples() throws Exception
+  {
+    BenchmarkMeasurement.Run<KafkaConsumer.HandoffStrategy> run = new BenchmarkMeasurement.Run<KafkaConsumer.HandoffStrategy>()
+    {
+      @Override
+      public void run(KafkaConsumer.HandoffStrategy handoffStrategy)
+      {
+        KafkaInputOperatorEmitBenchmarkTest.this.run(handoffStrategy);
+      }
+    };
+    BenchmarkMeasurement.warmUpAndMeasure(KafkaConsumer.HandoffStrategy.values(), run);
+  }
+
+  private void run(KafkaConsumer.HandoffStrategy handoffStrategy)
+  {
+    CountingInputOperator operator = new CountingInputOperator();
+    InProcessConsumer consumer = new InProcessConsumer();
+    consumer.setHandoffStrategy(handoffStrategy);
+    operator.setConsumer(consumer);
+    operator.setMaxTuplesPerWindow(MESSAGES_PER_WINDOW);
+    OperatorContextTestHelper.TestIdOperatorContext context = new OperatorContextTestHelper.TestIdOperatorContext(0);
+    operator.setup(context);
+    operator.activate(context);
+
+    BenchmarkMeasurement measurement;
+    try {
+      measurement = new BenchmarkMeasurement();
+      for (int window = 0; window < NUM_WINDOWS; window++) {
+        long deadline = System.currentTimeMillis() + WINDOW_TIMEOUT_MILLIS;
+        operator.beginWindow(window);
+        while (operator.bytes < (long) (window + 1) * MESSAGES_PER_WINDOW * 100) {
+          if (System.currentTimeMillis() > deadline) {
+            Assert.fail(handoffStrategy + " window " + window + " not filled in " + WINDOW_TIMEOUT_MILLIS + " ms");
+          }
+          operator.emitTuples();
+        }
+        operator.endWindow();
+      }
+      measurement.stop();
+    }
+    finally {
+      operator.deactivate();
+      operator.teardown();
+    }
+
+    measurement.log(LOG, handoffStrategy.toString(), (double) NUM_WINDOWS * MESSAGES_PER_WINDOW, "messages");
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.benchmark.streamquery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.lib.streamquery.GroupByHavingOperator;
+import com.datatorrent.lib.streamquery.condition.BetweenCondition;
+import com.datatorrent.lib.streamquery.function.AverageFunction;
+import com.datatorrent.lib.streamquery.function.CountFunction;
+import com.datatorrent.lib.streamquery.function.SumFunction;
+import com.datatorrent.lib.streamquery.index.ColumnIndex;
+import com.datatorrent.lib.testbench.CountTestSink;
+
+import com.datatorrent.benchmark.util.BenchmarkMeasurement;
+
+/**
+ * Benchmark comparing the row mode of {@link GroupByHavingOperator} with its vectorized mode on the query
+ * <pre>
+ * SELECT region, SUM(amount), COUNT(quantity), AVG(quantity) FROM sales WHERE quantity BETWEEN 10 AND 50
+ * GROUP BY region
+ * </pre>
+ * Reports rows/s and garbage collections/s of both modes.
+ * <p>
+ * The default run processes a few million rows, run it with larger -DGroupByHavingOperatorBenchmarkTest.numWindows
+ * and -DGroupByHavingOperatorBenchmarkTest.rowsPerWindow for meaningful numbers.
+ * </p>
+ */
+public class GroupByHavingOperatorBenchmarkTest
+{
+  private static final Logger LOG = LoggerFactory.getLogger(GroupByHavingOperatorBenchmarkTest.class);
+  private static final int NUM_WINDOWS = Integer.getInteger("GroupByHavingOperatorBenchmarkTest.numWindows", 10);
+  private static final int ROWS_PER_WINDOW = Integer.getInteger("GroupByHavingOperatorBenchmarkTest.rowsPerWindow", 100000);
+  private static final int NUM_REGIONS = 16;
+
+  @Test
+  public void testGroupBy() throws Exception
+  {
+    final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(ROWS_PER_WINDOW);
+    final HashSet<Object> groups = new HashSet<Object>();
+    Random random = new Random(1);
+    for (int i = 0; i < ROWS_PER_WINDOW; i++) {
+      Map<String, Object> row = new HashMap<String, Object>();
+      row.put("id", (long) i);
+      row.put("region", "region" + random.nextInt(NUM_REGIONS));
+      row.put("quantity", (long) random.nextInt(100));
+      row.put("amount", random.nextDouble() * 100);
+      rows.add(row);
+      if ((Long) row.get("quantity") >= 10 && (Long) row.get("quantity") <= 50) {
+        groups.add(row.get("region"));
+      }
+    }
+
+    BenchmarkMeasurement.Run<Boolean> run = new BenchmarkMeasurement.Run<Boolean>()
+    {
+      @Override
+      public void run(Boolean vectorized) throws Exception
+      {
+        GroupByHavingOperatorBenchmarkTest.this.run(vectorized, rows, groups.size());
+      }
+    };
+    BenchmarkMeasurement.warmUpAndMeasure(new Boolean[] {false, true}, run);
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private void run(boolean vectorized, List<Map<String, Object>> rows, int groupCount) throws Exception
+  {
+    GroupByHavingOperator operator = new GroupByHavingOperator();
+    operator.addColumnGroupByIndex(new ColumnIndex("region", null));
+    operator.addAggregateIndex(new SumFunction("amount", "sum"));
+    operator.addAggregateIndex(new CountFunction("quantity", "count"));
+    operator.addAggregateIndex(new AverageFunction("quantity", "avg"));
+    operator.setCondition(new BetweenCondition("quantity", 10L, 50L));
+    operator.setVectorized(vectorized);
+    CountTestSink sink = new CountTestSink();
+    operator.outport.setSink(sink);
+    operator.setup(null);
+
+    BenchmarkMeasurement measurement = new BenchmarkMeasurement();
+    for (int window = 0; window < NUM_WINDOWS; window++) {
+      operator.beginWindow(window);
+      for (Map<String, Object> row : rows) {
+        operator.inport.process(row);
+      }
+      operator.endWindow();
+    }
+    measurement.stop();
+    operator.teardown();
+
+    Assert.assertEquals("groups", NUM_WINDOWS * groupCount, sink.getCount());
+    measurement.log(LOG, vectorized ? "vectorized" : "row", (double) NUM_WINDOWS * rows.size(), "rows");
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.benchmark.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import org.slf4j.Logger;
+
+/**
+ * Elapsed time and garbage collections of a benchmark run, shared by the benchmark tests which compare variants of an
+ * operator in the same JVM.
+ * <p>
+ * A measurement starts when it is created and ends with {@link #stop()}. {@link #warmUpAndMeasure(Object[], Run)}
+ * runs every variant once to warm up and once more to measure it.
+ * </p>
+ */
+public class BenchmarkMeasurement
+{
+  /**
+   * A benchmark run of a variant.
+   */
+  public interface Run<T>
+  {
+    void run(T variant) throws Exception;
+  }
+
+  private final long startNanos;
+  private final long startCollections;
+  private double seconds;
+  private long collections;
+
+  public BenchmarkMeasurement()
+  {
+    startCollections = getGarbageCollectionCount();
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * End the measurement.
+   *
+   * @return this measurement.
+   */
+  public BenchmarkMeasurement stop()
+  {
+    seconds = (System.nanoTime() - startNanos) / 1e9;
+    collections = getGarbageCollectionCount() - startCollections;
+    return this;
+  }
+
+  public double getSeconds()
+  {
+    return seconds;
+  }
+
+  public long getCollections()
+  {
+    return collections;
+  }
+
+  /**
+   * Log the rate of the processed units and the garbage collections per second.
+   *
+   * @param logger logger of the benchmark.
+   * @param name name of the variant.
+   * @param count number of units processed.
+   * @param unit name of the units, for example messages or MB.
+   */
+  public void log(Logger logger, String name, double count, String unit)
+  {
+    logger.info("{}: {} {}/s, {} collections/s", name, String.format("%.1f", count / seconds), unit,
+                String.format("%.2f", collections / seconds));
+  }
+
+  /**
+   * Run all the variants to warm up, then run them again to measure them.
+   */
+  public static <T> void warmUpAndMeasure(T[] variants, Run<T> run) throws Exception
+  {
+    for (T variant : variants) {
+      run.run(variant);
+    }
+    for (T variant : variants) {
+      run.run(variant);
+    }
+  }
+
+  /**
+   * @return number of garbage collections since the start of the JVM.
+   */
+  public static long getGarbageCollectionCount()
+  {
+    long count = 0;
+    for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gcBean.getCollectionCount());
+    }
+    return count;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.benchmark.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * Benchmark comparing a getter per field of {@link PojoUtils} with the bulk getters, which copy all the fields of a
+ * POJO in a single call. Reports the records/s of each.
+ */
+public class PojoUtilsBenchmarkTest
+{
+  private static final Logger LOG = LoggerFactory.getLogger(PojoUtilsBenchmarkTest.class);
+  private static final int NUM_RECORDS = 10000000;
+
+  public static class Record
+  {
+    private int id;
+    private long timestamp;
+    private double amount;
+    private String name;
+    private boolean valid;
+
+    public Record(int id)
+    {
+      this.id = id;
+      this.timestamp = 1414000000000L + id;
+      this.amount = id * 0.5;
+      this.name = "name" + (id & 0xff);
+      this.valid = (id & 1) == 0;
+    }
+
+    public int getId()
+    {
+      return id;
+    }
+
+    public long getTimestamp()
+    {
+      return timestamp;
+    }
+
+    public double getAmount()
+    {
+      return amount;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public boolean isValid()
+    {
+      return valid;
+    }
+  }
+
+  private static final List<String> EXPRESSIONS = Arrays.asList("id", "timestamp", "amount", "name", "valid");
+  private static final List<Class<?>> CLASSES = Arrays.<Class<?>>asList(int.class, long.class, double.class, String.class, boolean.class);
+
+  @Test
+  public void testGetters()
+  {
+    Record[] records = new Record[1024];
+    for (int i = 0; i < records.length; i++) {
+      records[i] = new Record(i);
+    }
+
+    //warm up before measuring
+    for (int i = 0; i < 2; i++) {
+      runPerFieldObjectArray(records);
+      runBulkObjectArray(records);
+      runPerFieldOutput(records);
+      runBulkOutput(records);
+    }
+  }
+
+  private void runPerFieldObjectArray(Record[] records)
+  {
+    PojoUtils.GetterInt<Object> id = PojoUtils.createGetterInt(Record.class, "id");
+    PojoUtils.GetterLong<Object> timestamp = PojoUtils.createGetterLong(Record.class, "timestamp");
+    PojoUtils.GetterDouble<Object> amount = PojoUtils.createGetterDouble(Record.class, "amount");
+    PojoUtils.Getter<Object, String> name = PojoUtils.createGetter(Record.class, "name", String.class);
+    PojoUtils.GetterBoolean<Object> valid = PojoUtils.createGetterBoolean(Record.class, "valid");
+    Object[] values = new Object[EXPRESSIONS.size()];
+
+    long start = System.nanoTime();
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      Record record = records[i & (records.length - 1)];
+      values[0] = id.get(record);
+      values[1] = timestamp.get(record);
+      values[2] = amount.get(record);
+      values[3] = name.get(record);
+      values[4] = valid.get(record);
+    }
+    report("per field getters to Object[]", start);
+  }
+
+  private void runBulkObjectArray(Record[] records)
+  {
+    PojoUtils.BulkGetterObjectArray<Object> getter = PojoUtils.createBulkGetterObjectArray(Record.class, EXPRESSIONS, CLASSES);
+    Object[] values = new Object[EXPRESSIONS.size()];
+
+    long start = System.nanoTime();
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      getter.get(records[i & (records.length - 1)], values);
+    }
+    report("bulk getter to Object[]", start);
+  }
+
+  private void runPerFieldOutput(Record[] records)
+  {
+    PojoUtils.GetterInt<Object> id = PojoUtils.createGetterInt(Record.class, "id");
+    PojoUtils.GetterLong<Object> timestamp = PojoUtils.createGetterLong(Record.class, "timestamp");
+    PojoUtils.GetterDouble<Object> amount = PojoUtils.createGetterDouble(Record.class, "amount");
+    PojoUtils.Getter<Object, String> name = PojoUtils.createGetter(Record.class, "name", String.class);
+    PojoUtils.GetterBoolean<Object> valid = PojoUtils.createGetterBoolean(Record.class, "valid");
+    Output output = new Output(4096);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      Record record = records[i & (records.length - 1)];
+      output.clear();
+      output.writeInt(id.get(record));
+      output.writeLong(timestamp.get(record));
+      output.writeDouble(amount.get(record));
+      output.writeString(name.get(record));
+      output.writeBoolean(valid.get(record));
+    }
+    report("per field getters to Output", start);
+  }
+
+  private void runBulkOutput(Record[] records)
+  {
+    PojoUtils.BulkGetterOutput<Object> getter = PojoUtils.createBulkGetterOutput(Record.class, EXPRESSIONS, CLASSES);
+    Kryo kryo = new Kryo();
+    Output output = new Output(4096);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      output.clear();
+      getter.get(records[i & (records.length - 1)], kryo, output);
+    }
+    report("bulk getter to Output", start);
+  }
+
+  private static void report(String name, long start)
+  {
+    double seconds = (System.nanoTime() - start) / 1e9;
+    LOG.info("{}: {} records/s", name, String.format("%.0f", NUM_RECORDS / seconds));
+  }
+}
@@ -19,6 +19,8 @@ import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 
+import com.datatorrent.common.util.Slice;
+
 /**
  * HDFSWalReader
  *
@@ -30,10 +32,27 @@ public class HDFSWalReader implements HDHT.WALReader
   private boolean eof = false;
   MutableKeyValue pair = null;
   String name;
+  private final boolean tagged;
+  private long tag;
+  private long position;
+  private long entryPosition;
 
   public HDFSWalReader(HDHTFileAccess bfs, long bucketKey, String name) throws IOException
+  {
+    this(bfs, bucketKey, name, false);
+  }
+
+  /**
+   * @param bfs
+   * @param bucketKey
+   * @param name
+   * @param tagged whether entries are tagged with the bucket key, see {@link HDFSWalWriter#append(long, Slice, byte[])}
+   * @throws IOException
+   */
+  public HDFSWalReader(HDHTFileAccess bfs, long bucketKey, String name, boolean tagged) throws IOException
   {
     this.name = name;
+    this.tagged = tagged;
     in = bfs.getInputStream(bucketKey, name);
   }
 
@@ -47,6 +66,7 @@ public class HDFSWalReader implements HDHT.WALReader
   @Override public void seek(long offset) throws IOException
   {
     in.skipBytes((int) offset);
+    position = offset;
   }
 
   @Override public boolean advance() throws IOException
@@ -55,6 +75,11 @@ public class HDFSWalReader implements HDHT.WALReader
       return false;
 
     try {
+      entryPosition = position;
+      if (tagged) {
+        tag = in.readLong();
+        position += 8;
+      }
       boolean isDelete = false;
       int keyLen = in.readInt();
       if (keyLen < 0) {
@@ -64,12 +89,14 @@ public class HDFSWalReader implements HDHT.WALReader
 
       byte[] key = new byte[keyLen];
       in.readFully(key);
+      position += 4 + keyLen;
 
       byte[] value;
       if (!isDelete) {
         int valLen = in.readInt();
         value = new byte[valLen];
         in.readFully(value);
+        position += 4 + valLen;
       } else {
         value = DELETED;
       }
@@ -87,4 +114,20 @@ public class HDFSWalReader implements HDHT.WALReader
     return pair;
   }
 
+  /**
+   * @return The bucket key of the current entry, for tagged entries.
+   */
+  public long getBucketKey()
+  {
+    return tag;
+  }
+
+  /**
+   * @return The file offset at which the current entry starts.
+   */
+  public long getEntryPosition()
+  {
+    return entryPosition;
+  }
+
 }
@@ -68,6 +68,19 @@ public class HDFSWalWriter implements HDHT.WALWriter
     }
   }
 
+  /**
+   * Append entry tagged with the bucket key, used when the WAL is shared by multiple buckets.
+   * @param bucketKey
+   * @param key
+   * @param value
+   * @throws IOException
+   */
+  public void append(long bucketKey, Slice key, byte[] value) throws IOException
+  {
+    out.writeLong(bucketKey);
+    append(key, value);
+  }
+
   @Override public void flush() throws IOException
   {
     out.flush();
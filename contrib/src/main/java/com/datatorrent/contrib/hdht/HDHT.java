@@ -30,6 +30,54 @@ public interface HDHT
   public interface Reader
   {
     byte[] get(long bucketKey, Slice key) throws IOException;
+
+    /**
+     * Lookup without copying the value out of the data file buffers.
+     * <p>
+     * The returned slice can reference a block buffer that is shared with other lookups and with the block cache (for
+     * example the {@link org.apache.hadoop.io.file.tfile.DTFile} blocks held by the
+     * {@link org.apache.hadoop.io.file.tfile.CacheManager}). The caller must not modify the referenced bytes. Block
+     * buffers are never reused for other data, so the slice stays valid for as long as the caller holds it, also after
+     * the block was evicted from the cache or the file was compacted. Holding on to the slice retains the entire block,
+     * values that are kept beyond the current window should be copied with {@link Slice#toByteArray()}.
+     *
+     * @param bucketKey
+     * @param key
+     * @return The value or null when the key does not exist.
+     * @throws IOException
+     */
+    Slice getSlice(long bucketKey, Slice key) throws IOException;
+
+    /**
+     * Iterate over the keys of a bucket in the range [startKey, endKey) in key order. Data files are read sequentially
+     * block by block and merged with changes that are not yet written to the data files.
+     * <p>
+     * Keys and values follow the same contract as {@link #getSlice(long, Slice)}. The scanner holds open file readers
+     * and has to be closed.
+     *
+     * @param bucketKey
+     * @param startKey inclusive lower bound, null to start at the first key
+     * @param endKey exclusive upper bound, null to scan till the last key
+     * @return The scanner.
+     * @throws IOException
+     */
+    Scanner scan(long bucketKey, Slice startKey, Slice endKey) throws IOException;
+  }
+
+  /**
+   * Range scan over a bucket.
+   */
+  public interface Scanner extends Closeable
+  {
+    /**
+     * Read the next key/value pair into the given slices.
+     *
+     * @param key Empty slice object
+     * @param value Empty slice object
+     * @return True if key/value were read, false at the end of the range
+     * @throws IOException
+     */
+    boolean next(Slice key, Slice value) throws IOException;
   }
 
   public interface Writer
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.hdht;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.datatorrent.common.util.Slice;
+
+/**
+ * Bloom filter over the keys of a single data file. Used by the reader to answer lookups for keys that are not in the
+ * file without seeking into the file.
+ * <p>
+ * Keys are hashed once into 64 bits, the probe positions are derived from the two 32 bit halves (double hashing).
+ */
+public class HDHTBloomFilter
+{
+  public static final String FILE_SUFFIX = ".bloom";
+
+  private final long[] bits;
+  private final long numBits;
+  private final int numHashes;
+
+  private HDHTBloomFilter(long[] bits, int numHashes)
+  {
+    this.bits = bits;
+    this.numBits = (long)bits.length * Long.SIZE;
+    this.numHashes = numHashes;
+  }
+
+  /**
+   * Create an empty filter sized for the given number of keys and false positive probability.
+   * @param expectedKeys
+   * @param falsePositiveRate
+   * @return The filter.
+   */
+  public static HDHTBloomFilter create(int expectedKeys, double falsePositiveRate)
+  {
+    int n = Math.max(1, expectedKeys);
+    long m = (long)Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    int words = (int)Math.max(1, (m + Long.SIZE - 1) / Long.SIZE);
+    int k = Math.max(1, (int)Math.round((double)words * Long.SIZE / n * Math.log(2)));
+    return new HDHTBloomFilter(new long[words], k);
+  }
+
+  public void add(long keyHash)
+  {
+    int h1 = (int)keyHash;
+    int h2 = (int)(keyHash >>> 32);
+    for (int i = 1; i <= numHashes; i++) {
+      long index = ((h1 + (long)i * h2) & Long.MAX_VALUE) % numBits;
+      bits[(int)(index >>> 6)] |= 1L << index;
+    }
+  }
+
+  /**
+   * @param keyHash hash computed with {@link #hash(Slice)}
+   * @return false if the key is definitely not in the filter.
+   */
+  public boolean mightContain(long keyHash)
+  {
+    int h1 = (int)keyHash;
+    int h2 = (int)(keyHash >>> 32);
+    for (int i = 1; i <= numHashes; i++) {
+      long index = ((h1 + (long)i * h2) & Long.MAX_VALUE) % numBits;
+      if ((bits[(int)(index >>> 6)] & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void write(DataOutputStream out) throws IOException
+  {
+    out.writeInt(numHashes);
+    out.writeInt(bits.length);
+    for (long word : bits) {
+      out.writeLong(word);
+    }
+  }
+
+  public static HDHTBloomFilter read(DataInputStream in) throws IOException
+  {
+    int numHashes = in.readInt();
+    long[] bits = new long[in.readInt()];
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = in.readLong();
+    }
+    return new HDHTBloomFilter(bits, numHashes);
+  }
+
+  /**
+   * 64 bit FNV-1a hash with murmur3 finalizer for better distribution of the upper bits.
+   * @param key
+   * @return The hash.
+   */
+  public static long hash(Slice key)
+  {
+    long h = 0xcbf29ce484222325L;
+    for (int i = key.offset; i < key.offset + key.length; i++) {
+      h ^= key.buffer[i];
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Collects key hashes while a data file is written, so that the filter can be sized to the actual number of keys
+   * when the file is rolled.
+   */
+  public static class Builder
+  {
+    private long[] hashes = new long[1024];
+    private int size;
+
+    public void add(Slice key)
+    {
+      if (size == hashes.length) {
+        hashes = Arrays.copyOf(hashes, size * 2);
+      }
+      hashes[size++] = hash(key);
+    }
+
+    public void clear()
+    {
+      size = 0;
+    }
+
+    public HDHTBloomFilter build(double falsePositiveRate)
+    {
+      HDHTBloomFilter filter = create(size, falsePositiveRate);
+      for (int i = 0; i < size; i++) {
+        filter.add(hashes[i]);
+      }
+      return filter;
+    }
+  }
+
+}
@@ -79,6 +79,9 @@ public interface HDHTFileAccess extends Closeable
      * Reads next available key/value pair starting from the current pointer position
      * into Slice objects and advances pointer to next key.  If pointer is at the end
      * of the file, false is returned, and Slice objects remains unmodified.
+     * <p>
+     * The slices may reference internal block buffers, which the caller must not modify. Implementations must not
+     * reuse these buffers for other data, so that slices remain valid after the reader is advanced or closed.
      *
      * @param key Empty slice object
      * @param value Empty slice object
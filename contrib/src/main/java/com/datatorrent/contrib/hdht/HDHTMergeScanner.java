@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.hdht;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+
+import org.apache.commons.io.IOUtils;
+
+import com.datatorrent.common.util.Slice;
+import com.datatorrent.contrib.hdht.HDHTFileAccess.HDSFileReader;
+
+/**
+ * Key ordered merge of sorted sources, used for range scans and compaction. For keys present in multiple sources the
+ * entry of the most recent source (highest rank) wins. Only the current entry of each source is held, file sources
+ * read block by block through the {@link HDSFileReader}.
+ * <p>
+ * The range is defined by an inclusive start key and an exclusive end key, null for an open bound.
+ */
+class HDHTMergeScanner implements HDHT.Scanner
+{
+  private final PriorityQueue<Source> queue;
+  private final List<Source> sources;
+  private final Comparator<Slice> cmp;
+  private final Slice endKey;
+  private final boolean includeDeleted;
+  private boolean deleted;
+  long keysRead;
+
+  /**
+   * @param sources sources, already positioned at the start key
+   * @param cmp key comparator
+   * @param endKey exclusive upper bound or null
+   * @param includeDeleted whether to return deleted entries, see {@link #isDeleted()}
+   * @throws IOException
+   */
+  HDHTMergeScanner(List<Source> sources, final Comparator<Slice> cmp, Slice endKey, boolean includeDeleted) throws IOException
+  {
+    this.sources = sources;
+    this.cmp = cmp;
+    this.endKey = endKey;
+    this.includeDeleted = includeDeleted;
+    this.queue = new PriorityQueue<Source>(Math.max(1, sources.size()), new Comparator<Source>()
+    {
+      @Override
+      public int compare(Source o1, Source o2)
+      {
+        int c = cmp.compare(o1.key, o2.key);
+        return c != 0 ? c : o2.rank - o1.rank;
+      }
+    });
+    try {
+      for (Source source : sources) {
+        if (source.advance()) {
+          queue.add(source);
+        }
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean next(Slice key, Slice value) throws IOException
+  {
+    while (!queue.isEmpty()) {
+      Source head = queue.poll();
+      if (endKey != null && cmp.compare(head.key, endKey) >= 0) {
+        // all remaining entries are out of range
+        queue.clear();
+        return false;
+      }
+      key.buffer = head.key.buffer;
+      key.offset = head.key.offset;
+      key.length = head.key.length;
+      value.buffer = head.value.buffer;
+      value.offset = head.value.offset;
+      value.length = head.value.length;
+      deleted = head.deleted;
+      keysRead++;
+      // skip older versions of the same key
+      while (!queue.isEmpty() && cmp.compare(queue.peek().key, key) == 0) {
+        Source older = queue.poll();
+        keysRead++;
+        if (older.advance()) {
+          queue.add(older);
+        }
+      }
+      if (head.advance()) {
+        queue.add(head);
+      }
+      if (!deleted || includeDeleted) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return whether the entry returned by the last call to {@link #next(Slice, Slice)} is a delete.
+   */
+  boolean isDeleted()
+  {
+    return deleted;
+  }
+
+  @Override
+  public void close()
+  {
+    for (Source source : sources) {
+      IOUtils.closeQuietly(source);
+    }
+    queue.clear();
+  }
+
+  /**
+   * Sorted input of the merge.
+   */
+  abstract static class Source implements Closeable
+  {
+    final int rank;
+    Slice key;
+    Slice value;
+    boolean deleted;
+
+    Source(int rank)
+    {
+      this.rank = rank;
+    }
+
+    /**
+     * Move to the next entry.
+     * @return false at the end of the source.
+     * @throws IOException
+     */
+    abstract boolean advance() throws IOException;
+  }
+
+  /**
+   * Data file source. The slices reference the reader buffers, which remain valid after the reader advanced.
+   */
+  static class FileSource extends Source
+  {
+    private final HDSFileReader reader;
+    private final boolean delta;
+    private Slice startKey;
+    private final Comparator<Slice> cmp;
+
+    /**
+     * @param reader file reader, closed with the source
+     * @param rank
+     * @param delta whether the values carry the level 0 marker byte
+     * @param startKey inclusive lower bound or null
+     * @param cmp key comparator
+     * @throws IOException
+     */
+    FileSource(HDSFileReader reader, int rank, boolean delta, Slice startKey, Comparator<Slice> cmp) throws IOException
+    {
+      super(rank);
+      this.reader = reader;
+      this.delta = delta;
+      this.startKey = startKey;
+      this.cmp = cmp;
+      if (startKey != null) {
+        // readers may position before the start key when there is no exact match
+        reader.seek(startKey);
+      } else {
+        reader.reset();
+      }
+    }
+
+    @Override
+    boolean advance() throws IOException
+    {
+      do {
+        Slice k = new Slice(null, 0, 0);
+        Slice v = new Slice(null, 0, 0);
+        if (!reader.next(k, v)) {
+          key = null;
+          value = null;
+          return false;
+        }
+        key = k;
+        value = v;
+      } while (startKey != null && cmp.compare(key, startKey) < 0);
+      startKey = null;
+      deleted = false;
+      if (delta) {
+        deleted = value.buffer[value.offset] == HDHTReader.DELTA_DELETE;
+        // skip marker
+        value.offset++;
+        value.length--;
+      }
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      reader.close();
+    }
+  }
+
+  /**
+   * In memory source over a sorted map. {@link HDHT.WALReader#DELETED} values mark deletes. The map is read in place,
+   * every entry is looked up after the key of the previous entry, so the map may change while the source is open.
+   */
+  static class NavigableMapSource extends Source
+  {
+    private final NavigableMap<Slice, byte[]> map;
+    private final Slice startKey;
+    private boolean started;
+
+    /**
+     * @param map sorted entries
+     * @param startKey inclusive lower bound or null
+     * @param rank
+     */
+    NavigableMapSource(NavigableMap<Slice, byte[]> map, Slice startKey, int rank)
+    {
+      super(rank);
+      this.map = map;
+      this.startKey = startKey;
+    }
+
+    @Override
+    boolean advance()
+    {
+      Map.Entry<Slice, byte[]> entry;
+      if (started) {
+        entry = key != null ? map.higherEntry(key) : null;
+      } else {
+        started = true;
+        entry = startKey != null ? map.ceilingEntry(startKey) : map.firstEntry();
+      }
+      if (entry == null) {
+        key = null;
+        value = null;
+        return false;
+      }
+      key = entry.getKey();
+      deleted = entry.getValue() == HDHT.WALReader.DELETED;
+      value = new Slice(entry.getValue(), 0, entry.getValue().length);
+      return true;
+    }
+
+    @Override
+    public void close()
+    {
+    }
+  }
+
+}
@@ -16,20 +16,28 @@
 package com.datatorrent.contrib.hdht;
 
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.apache.commons.io.IOUtils;
@@ -44,7 +52,10 @@ import com.datatorrent.common.util.Slice;
 import com.datatorrent.contrib.hdht.HDHTFileAccess.HDSFileReader;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -62,6 +73,16 @@ public class HDHTReader implements Operator, HDHT.Reader
 {
   public static final String FNAME_WAL = "_WAL";
   public static final String FNAME_META = "_META";
+  /**
+   * Version of the meta data format, written in front of the meta data. Meta data written before level 0 files were
+   * added has no version, it starts with the class name marker of Kryo.
+   */
+  protected static final int META_VERSION = 2;
+  /**
+   * Marker byte that precedes each value in level 0 (delta) files.
+   */
+  protected static final byte DELTA_PUT = 0;
+  protected static final byte DELTA_DELETE = 1;
 
   public static class HDSQuery
   {
@@ -86,6 +107,15 @@ public class HDHTReader implements Operator, HDHT.Reader
   private static final Logger LOG = LoggerFactory.getLogger(HDHTReader.class);
 
   protected final transient Kryo kryo = new Kryo();
+  /* meta data is loaded by the query threads, kryo instances are not thread safe */
+  private final transient ThreadLocal<Kryo> metaKryo = new ThreadLocal<Kryo>()
+  {
+    @Override
+    protected Kryo initialValue()
+    {
+      return new Kryo();
+    }
+  };
   @NotNull
   protected Comparator<Slice> keyComparator = new DefaultKeyComparator();
   @Valid
@@ -97,7 +127,7 @@ public class HDHTReader implements Operator, HDHT.Reader
     BucketMeta bucketMeta = null;
     try {
       InputStream is = store.getInputStream(bucketKey, FNAME_META);
-      bucketMeta = (BucketMeta)kryo.readClassAndObject(new Input(is));
+      bucketMeta = readBucketMeta(metaKryo.get(), new Input(is));
       is.close();
     } catch (IOException e) {
       bucketMeta = new BucketMeta(keyComparator);
@@ -105,15 +135,51 @@ public class HDHTReader implements Operator, HDHT.Reader
     return bucketMeta;
   }
 
+  static BucketMeta readBucketMeta(Kryo kryo, Input input)
+  {
+    if (input.readByte() != META_VERSION) {
+      // meta data without level 0 files, the first byte is part of the class name
+      input.setPosition(0);
+      kryo = newLegacyMetaKryo();
+    }
+    return (BucketMeta)kryo.readClassAndObject(input);
+  }
+
+  static void writeBucketMeta(Kryo kryo, Output output, BucketMeta bucketMeta)
+  {
+    output.writeByte(META_VERSION);
+    kryo.writeClassAndObject(output, bucketMeta);
+  }
+
+  /**
+   * Kryo instance that reads meta data written before level 0 files were added, the fields that were added since are
+   * not serialized.
+   */
+  private static Kryo newLegacyMetaKryo()
+  {
+    Kryo kryo = new Kryo();
+    FieldSerializer<BucketMeta> metaSerializer = new FieldSerializer<BucketMeta>(kryo, BucketMeta.class);
+    metaSerializer.removeField("deltaFiles");
+    kryo.register(BucketMeta.class, metaSerializer);
+    FieldSerializer<BucketFileMeta> fileSerializer = new FieldSerializer<BucketFileMeta>(kryo, BucketFileMeta.class);
+    fileSerializer.removeField("endKey");
+    kryo.register(BucketFileMeta.class, fileSerializer);
+    return kryo;
+  }
+
   /**
    * Map containing all current queries. Accessed by operator and reader threads.
    */
   protected final ConcurrentMap<Slice, HDSQuery> queries = Maps.newConcurrentMap();
-  private final transient Map<Long, BucketReader> buckets = Maps.newHashMap();
+  private final transient ConcurrentMap<Long, BucketReader> buckets = Maps.newConcurrentMap();
+  protected final transient ConcurrentMap<Long, BloomFilterStats> bloomFilterStats = Maps.newConcurrentMap();
+  private static final HDHTBloomFilter NO_FILTER = HDHTBloomFilter.create(1, 0.5);
 
   @VisibleForTesting
   protected transient ExecutorService queryExecutor;
   private volatile transient Exception executorError;
+  @Min(value = 1)
+  private int queryThreads = 1;
 
   public HDHTReader()
   {
@@ -135,6 +201,22 @@ public class HDHTReader implements Operator, HDHT.Reader
   }
 
 
+  /**
+   * Number of threads that process queries against the data files. Lookups are not serialized, each thread uses its
+   * own file readers.
+   *
+   * @return The number of query threads.
+   */
+  public int getQueryThreads()
+  {
+    return queryThreads;
+  }
+
+  public void setQueryThreads(int queryThreads)
+  {
+    this.queryThreads = queryThreads;
+  }
+
   public HDHTFileAccess getFileStore()
   {
     return store;
@@ -150,7 +232,7 @@ public class HDHTReader implements Operator, HDHT.Reader
   {
     this.store.init();
     if (queryExecutor == null) {
-      queryExecutor = Executors.newSingleThreadScheduledExecutor(new NameableThreadFactory(this.getClass().getSimpleName()+"-Reader"));
+      queryExecutor = Executors.newFixedThreadPool(queryThreads, new NameableThreadFactory(this.getClass().getSimpleName()+"-Reader"));
     }
   }
 
@@ -218,34 +300,68 @@ public class HDHTReader implements Operator, HDHT.Reader
   {
     BucketReader br = this.buckets.get(bucketKey);
     if (br == null) {
-      this.buckets.put(bucketKey, br = new BucketReader());
+      BucketReader existing = this.buckets.putIfAbsent(bucketKey, br = new BucketReader());
+      if (existing != null) {
+        br = existing;
+      }
     }
     // meta data can be invalidated on write without removing unaffected readers
     if (br.bucketMeta == null) {
-      LOG.debug("Reading {} {}", bucketKey, FNAME_META);
-      br.bucketMeta = loadBucketMeta(bucketKey);
+      synchronized (br) {
+        if (br.bucketMeta == null) {
+          LOG.debug("Reading {} {}", bucketKey, FNAME_META);
+          br.bucketMeta = loadBucketMeta(bucketKey);
+        }
+      }
     }
     return br;
   }
 
   protected void invalidateReader(long bucketKey, Set<String> fileNames)
+  {
+    invalidateReader(bucketKey, null, fileNames);
+  }
+
+  /**
+   * Switch readers to new meta data and close readers for files that are no longer referenced. Lookups in progress
+   * complete against the snapshot they started with.
+   *
+   * @param bucketKey
+   * @param bucketMeta new snapshot that won't be modified anymore, or null to reload from the store
+   * @param fileNames files removed from the bucket
+   */
+  protected void invalidateReader(long bucketKey, BucketMeta bucketMeta, Set<String> fileNames)
   {
     BucketReader bucket = this.buckets.get(bucketKey);
     if (bucket != null) {
-      bucket.bucketMeta = null; // force index reload
+      synchronized (bucket) {
+        bucket.bucketMeta = bucketMeta;
+      }
       for (String name : fileNames) {
         LOG.debug("Closing reader {}", name);
         IOUtils.closeQuietly(bucket.readers.remove(name));
+        bucket.filters.remove(name);
       }
     }
   }
 
-  private static Slice GET_KEY = new Slice(null, 0, 0);
+  @Override
+  public byte[] get(long bucketKey, Slice key) throws IOException
+  {
+    Slice value = getSlice(bucketKey, key);
+    if (value == null) {
+      return null;
+    }
+    if (value.offset == 0 && value.length == value.buffer.length) {
+      return value.buffer;
+    }
+    return Arrays.copyOfRange(value.buffer, value.offset, value.offset + value.length);
+  }
 
   @Override
-  public synchronized byte[] get(long bucketKey, Slice key) throws IOException
+  public Slice getSlice(long bucketKey, Slice key) throws IOException
   {
-    // this method is synchronized to support asynchronous reads outside operator thread
+    // concurrent lookups use separate file readers and a consistent meta data snapshot
     for (int i=0; i<10; i++) {
       BucketReader bucket = getReader(bucketKey);
       BucketMeta bucketMeta = bucket.bucketMeta;
@@ -254,46 +370,241 @@ public class HDHTReader implements Operator, HDHT.Reader
         continue;
       }
 
-      Map.Entry<Slice, BucketFileMeta> floorEntry = bucket.bucketMeta.files.floorEntry(key);
-      if (floorEntry == null) {
-        // no file for this key
-        return null;
-      }
-
+      BloomFilterStats filterStats = getBloomFilterStats(bucketKey);
+      long keyHash = HDHTBloomFilter.hash(key);
+      String fileName = null;
       try {
-        HDSFileReader reader = bucket.readers.get(floorEntry.getValue().name);
-        if (reader == null) {
-          LOG.debug("Opening file {} {}", bucketKey, floorEntry.getValue().name);
-          bucket.readers.put(floorEntry.getValue().name, reader = store.getReader(bucketKey, floorEntry.getValue().name));
+        // level 0 files can overlap, most recent file wins
+        for (int j = bucketMeta.deltaFiles.size(); j-- > 0;) {
+          BucketFileMeta deltaFile = bucketMeta.deltaFiles.get(j);
+          if (keyComparator.compare(key, deltaFile.startKey) < 0 || keyComparator.compare(key, deltaFile.endKey) > 0) {
+            // key not in the range of the file
+            continue;
+          }
+          fileName = deltaFile.name;
+          HDHTBloomFilter filter = getBloomFilter(bucket, bucketKey, fileName);
+          if (filter != null && !filter.mightContain(keyHash)) {
+            filterStats.skips.incrementAndGet();
+            continue;
+          }
+          Slice value = new Slice(null, 0, 0);
+          if (lookup(bucket, bucketKey, fileName, key, value)) {
+            if (filter != null) {
+              filterStats.hits.incrementAndGet();
+            }
+            if (value.buffer[value.offset] == DELTA_DELETE) {
+              return null;
+            }
+            // skip marker
+            value.offset++;
+            value.length--;
+            return value;
+          } else if (filter != null) {
+            filterStats.falsePositives.incrementAndGet();
+          }
         }
-        Slice value = new Slice(null, 0,0);
-        if (reader.seek(key)) {
-          reader.next(GET_KEY, value);
+
+        Map.Entry<Slice, BucketFileMeta> floorEntry = bucketMeta.files.floorEntry(key);
+        if (floorEntry == null) {
+          // no file for this key
+          return null;
+        }
+
+        fileName = floorEntry.getValue().name;
+        HDHTBloomFilter filter = getBloomFilter(bucket, bucketKey, fileName);
+        if (filter != null && !filter.mightContain(keyHash)) {
+          // answer miss without seek
+          filterStats.skips.incrementAndGet();
+          return null;
         }
-        if (value.offset == 0) {
-          return value.buffer;
-        } else {
-          // this is inefficient, should return Slice
-          return Arrays.copyOfRange(value.buffer, value.offset, value.offset + value.length);
+        Slice value = new Slice(null, 0, 0);
+        if (lookup(bucket, bucketKey, fileName, key, value)) {
+          if (filter != null) {
+            filterStats.hits.incrementAndGet();
+          }
+          return value;
+        } else if (filter != null) {
+          filterStats.falsePositives.incrementAndGet();
         }
+        return null;
       } catch (IOException e) {
         // check for meta file update
-        this.buckets.remove(bucketKey);
-        bucket.close();
-        bucket = getReader(bucketKey);
-        Map.Entry<Slice, BucketFileMeta> newEntry = bucket.bucketMeta.files.floorEntry(key);
-        if (newEntry != null && newEntry.getValue().name.compareTo(floorEntry.getValue().name) == 0) {
+        if (this.buckets.remove(bucketKey, bucket)) {
+          bucket.close();
+        }
+        BucketMeta newMeta = getReader(bucketKey).bucketMeta;
+        if (newMeta != null && newMeta.containsFile(fileName)) {
           // file still the same - error unrelated to rewrite
           throw e;
         }
         // retry
-        LOG.debug("Retry after meta data change bucket {} from {} to {}", bucketKey, floorEntry, newEntry);
+        LOG.debug("Retry after meta data change bucket {} file {}", bucketKey, fileName);
         continue;
       }
     }
     return null;
   }
 
+  /**
+   * Seek to the key using a reader that is not used by any other thread.
+   * @return true if the key was found and the value slice populated.
+   */
+  private boolean lookup(BucketReader bucket, long bucketKey, String fileName, Slice key, Slice value) throws IOException
+  {
+    ReaderPool pool = bucket.readers.get(fileName);
+    if (pool == null) {
+      ReaderPool existing = bucket.readers.putIfAbsent(fileName, pool = new ReaderPool());
+      if (existing != null) {
+        pool = existing;
+      }
+      else if (isRemoved(bucketKey, bucket, fileName)) {
+        // lookup against a replaced snapshot, the reader is closed when the lookup completes
+        bucket.readers.remove(fileName, pool);
+        pool.close();
+      }
+    }
+    HDSFileReader reader = pool.idle.poll();
+    if (reader == null) {
+      LOG.debug("Opening file {} {}", bucketKey, fileName);
+      reader = store.getReader(bucketKey, fileName);
+    }
+    boolean found = false;
+    try {
+      if (reader.seek(key)) {
+        found = reader.next(new Slice(null, 0, 0), value);
+      }
+    } catch (IOException e) {
+      IOUtils.closeQuietly(reader);
+      throw e;
+    }
+    pool.release(reader);
+    return found;
+  }
+
+  /**
+   * Load the Bloom filter of the data file on first access.
+   * @return The filter or null when the file was written without filter.
+   */
+  private HDHTBloomFilter getBloomFilter(BucketReader bucket, long bucketKey, String fileName) throws IOException
+  {
+    HDHTBloomFilter filter = bucket.filters.get(fileName);
+    if (filter == null) {
+      filter = NO_FILTER;
+      try {
+        DataInputStream is = store.getInputStream(bucketKey, fileName + HDHTBloomFilter.FILE_SUFFIX);
+        try {
+          filter = HDHTBloomFilter.read(is);
+        } finally {
+          is.close();
+        }
+        LOG.debug("Loaded bloom filter {} {}", bucketKey, fileName);
+      } catch (FileNotFoundException e) {
+        // written without filter
+      }
+      bucket.filters.put(fileName, filter);
+      if (isRemoved(bucketKey, bucket, fileName)) {
+        bucket.filters.remove(fileName);
+      }
+    }
+    return filter != NO_FILTER ? filter : null;
+  }
+
+  /**
+   * Whether the file is no longer referenced by the current meta data of the bucket. The meta data is replaced before
+   * the readers of removed files are closed, so state that was added for a file before this check returns false is
+   * released by {@link #invalidateReader(long, BucketMeta, Set)}.
+   */
+  private boolean isRemoved(long bucketKey, BucketReader bucket, String fileName)
+  {
+    BucketMeta bucketMeta = bucket.bucketMeta;
+    return this.buckets.get(bucketKey) != bucket || bucketMeta == null || !bucketMeta.containsFile(fileName);
+  }
+
+  protected BloomFilterStats getBloomFilterStats(long bucketKey)
+  {
+    BloomFilterStats stats = bloomFilterStats.get(bucketKey);
+    if (stats == null) {
+      BloomFilterStats existing = bloomFilterStats.putIfAbsent(bucketKey, stats = new BloomFilterStats());
+      if (existing != null) {
+        stats = existing;
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Effectiveness of the data file Bloom filters for lookups in a bucket.
+   */
+  protected static class BloomFilterStats
+  {
+    /* lookups where the filter matched and the key was found */
+    final AtomicLong hits = new AtomicLong();
+    /* lookups answered by the filter without seek */
+    final AtomicLong skips = new AtomicLong();
+    /* lookups where the filter matched but the key was not found */
+    final AtomicLong falsePositives = new AtomicLong();
+  }
+
+  @Override
+  public HDHT.Scanner scan(long bucketKey, Slice startKey, Slice endKey) throws IOException
+  {
+    List<HDHTMergeScanner.Source> sources = Lists.newArrayList();
+    addScanSources(bucketKey, startKey, endKey, sources);
+    return new HDHTMergeScanner(sources, keyComparator, endKey, false);
+  }
+
+  /**
+   * Add the data file sources for a range scan. Sources are ordered from oldest to most recent, entries of sources added
+   * later take precedence.
+   */
+  protected void addScanSources(long bucketKey, Slice startKey, Slice endKey, List<HDHTMergeScanner.Source> sources) throws IOException
+  {
+    BucketMeta bucketMeta = getReader(bucketKey).bucketMeta;
+    if (bucketMeta == null) {
+      bucketMeta = loadBucketMeta(bucketKey);
+    }
+    try {
+      NavigableMap<Slice, BucketFileMeta> files = bucketMeta.files;
+      if (startKey != null) {
+        Slice floorKey = files.floorKey(startKey);
+        files = files.tailMap(floorKey != null ? floorKey : startKey, true);
+      }
+      if (endKey != null) {
+        files = files.headMap(endKey, false);
+      }
+      // level 1 files are disjoint and share the lowest rank
+      for (BucketFileMeta fileMeta : files.values()) {
+        if (fileMeta.name != null) {
+          sources.add(newFileSource(bucketKey, fileMeta, 0, false, startKey));
+        }
+      }
+      for (BucketFileMeta fileMeta : bucketMeta.deltaFiles) {
+        if ((startKey == null || keyComparator.compare(fileMeta.endKey, startKey) >= 0) &&
+            (endKey == null || keyComparator.compare(fileMeta.startKey, endKey) < 0)) {
+          sources.add(newFileSource(bucketKey, fileMeta, sources.size() + 1, true, startKey));
+        }
+      }
+    } catch (IOException e) {
+      for (HDHTMergeScanner.Source source : sources) {
+        IOUtils.closeQuietly(source);
+      }
+      throw e;
+    }
+  }
+
+  private HDHTMergeScanner.Source newFileSource(long bucketKey, BucketFileMeta fileMeta, int rank, boolean delta, Slice startKey) throws IOException
+  {
+    HDSFileReader reader = store.getReader(bucketKey, fileMeta.name);
+    // no seek when the entire file is in range
+    Slice seekKey = startKey != null && keyComparator.compare(fileMeta.startKey, startKey) < 0 ? startKey : null;
+    try {
+      return new HDHTMergeScanner.FileSource(reader, rank, delta, seekKey, keyComparator);
+    } catch (IOException e) {
+      IOUtils.closeQuietly(reader);
+      throw e;
+    }
+  }
+
   protected void addQuery(HDSQuery query)
   {
     HDSQuery existingQuery = this.queries.get(query.key);
@@ -329,30 +640,65 @@ public class HDHTReader implements Operator, HDHT.Reader
      * Lower bound sequence key
      */
     public Slice startKey;
+    /**
+     * Upper bound sequence key, only maintained for level 0 files
+     */
+    public Slice endKey;
 
     @Override
     public String toString()
     {
-      return "BucketFileMeta [name=" + name + ", startKey=" + startKey + "]";
+      return "BucketFileMeta [name=" + name + ", startKey=" + startKey + ", endKey=" + endKey + "]";
     }
   }
 
   /**
    * Meta data about bucket, persisted in store
    * Flushed on compaction
+   * <p>
+   * Data files are organized in two levels. Level 1 files ({@link #files}) cover disjoint key ranges and are looked up
+   * by start key. Level 0 files ({@link #deltaFiles}) are written by tiered flushes, can overlap each other and the
+   * level 1 files and are ordered from oldest to most recent.
    */
   public static class BucketMeta
   {
     protected BucketMeta(Comparator<Slice> cmp)
     {
       files = new TreeMap<Slice, BucketFileMeta>(cmp);
+      deltaFiles = new ArrayList<BucketFileMeta>();
     }
 
     @SuppressWarnings("unused")
     private BucketMeta()
     {
-      // for serialization only
+      // for serialization only, meta data without level 0 files keeps the empty list
       files = null;
+      deltaFiles = new ArrayList<BucketFileMeta>();
+    }
+
+    protected BucketFileMeta addDeltaFile(long bucketKey, Slice startKey, Slice endKey)
+    {
+      BucketFileMeta bfm = new BucketFileMeta();
+      bfm.name = Long.toString(bucketKey) + '-' + this.fileSeq++;
+      bfm.startKey = new Slice(startKey.toByteArray());
+      bfm.endKey = new Slice(endKey.toByteArray());
+      deltaFiles.add(bfm);
+      return bfm;
+    }
+
+    protected boolean containsFile(String fileName)
+    {
+      for (BucketFileMeta bfm : files.values()) {
+        if (bfm.name != null && bfm.name.equals(fileName)) {
+          return true;
+        }
+      }
+      for (BucketFileMeta bfm : deltaFiles) {
+        if (bfm.name.equals(fileName)) {
+          return true;
+        }
+      }
+      return false;
     }
 
     protected BucketFileMeta addFile(long bucketKey, Slice startKey)
@@ -371,19 +717,51 @@ public class HDHTReader implements Operator, HDHT.Reader
     int fileSeq;
     long committedWid;
     final TreeMap<Slice, BucketFileMeta> files;
+    final ArrayList<BucketFileMeta> deltaFiles;
     HDHTWalManager.WalPosition recoveryStartWalPosition;
   }
 
   private static class BucketReader implements Closeable
   {
-    BucketMeta bucketMeta;
-    final ConcurrentMap<String, HDSFileReader> readers = Maps.newConcurrentMap();
+    /* immutable snapshot, replaced on write */
+    volatile BucketMeta bucketMeta;
+    final ConcurrentMap<String, ReaderPool> readers = Maps.newConcurrentMap();
+    final ConcurrentMap<String, HDHTBloomFilter> filters = Maps.newConcurrentMap();
 
     @Override
     public void close() throws IOException
     {
-      for (HDSFileReader reader : readers.values()) {
-        reader.close();
+      for (ReaderPool pool : readers.values()) {
+        pool.close();
+      }
+    }
+  }
+
+  /**
+   * Readers for a single data file. File readers are stateful, a reader is owned by one thread for the duration of a
+   * lookup and then returned to the pool. The pool grows to the number of threads that access the file concurrently.
+   */
+  private static class ReaderPool implements Closeable
+  {
+    final ConcurrentLinkedQueue<HDSFileReader> idle = new ConcurrentLinkedQueue<HDSFileReader>();
+    volatile boolean closed;
+
+    void release(HDSFileReader reader)
+    {
+      idle.offer(reader);
+      if (closed && idle.remove(reader)) {
+        // file was invalidated while the reader was in use
+        IOUtils.closeQuietly(reader);
+      }
+    }
+
+    @Override
+    public void close()
+    {
+      closed = true;
+      HDSFileReader reader;
+      while ((reader = idle.poll()) != null) {
+        IOUtils.closeQuietly(reader);
       }
     }
   }
@@ -28,7 +28,6 @@ import org.slf4j.LoggerFactory;
 
 import com.datatorrent.common.util.Slice;
 import com.datatorrent.contrib.hdht.HDHT.WALReader;
-import com.datatorrent.contrib.hdht.HDHT.WALWriter;
 
 /**
  * Manages WAL for a bucket.
@@ -59,6 +58,14 @@ import com.datatorrent.contrib.hdht.HDHT.WALWriter;
  *   This will not cause problem now, because file write is idempotent with
  *   duplicate tuples.
  *
+ * Shared WAL.
+ *
+ *   A single WAL can be used by all buckets of a writer, entries are then tagged
+ *   with the bucket key. This reduces the number of flushes at end of window to
+ *   one, independent of the number of buckets. Positions in the WAL refer to the
+ *   shared files, recovery restores the write caches of all buckets in a single
+ *   pass, see {@link #runRecovery(Map, Map, WalPosition)}.
+ *
  * @since 2.0.0 
  */
 public class HDHTWalManager implements Closeable
@@ -94,7 +101,7 @@ public class HDHTWalManager implements Closeable
   transient long maxWalFileSize = 128 * 1024 * 1024;
 
   /* The class responsible writing WAL entry to file */
-  transient WALWriter writer;
+  transient HDFSWalWriter writer;
 
   transient private long bucketKey;
 
@@ -183,13 +190,89 @@ public class HDHTWalManager implements Closeable
     bfs.rename(bucketKey, WAL_FILE_PREFIX + pos.fileId + "-truncate", WAL_FILE_PREFIX + pos.fileId);
   }
 
+  /**
+   * Run recovery for all buckets of a shared WAL. Entries are added to the write cache of their bucket, when they
+   * are located after the recovery start position of the bucket. Buckets without write cache are skipped.
+   *
+   * @param writeCaches write cache by bucket key
+   * @param startPositions recovery start position by bucket key
+   * @param end checkpointed WAL position
+   * @throws IOException
+   */
+  public void runRecovery(Map<Long, ? extends Map<Slice, byte[]>> writeCaches, Map<Long, WalPosition> startPositions, WalPosition end) throws IOException
+  {
+    if (end.fileId == 0 && end.offset == 0)
+      return;
+
+    truncateWal(end);
+
+    WalPosition start = end;
+    for (WalPosition pos : startPositions.values()) {
+      if (pos.compareTo(start) < 0) {
+        start = pos;
+      }
+    }
+    logger.info("Recovery of shared WAL, start {} till {} buckets {}", start, end, writeCaches.keySet());
+
+    for (long i = start.fileId; i <= end.fileId; i++) {
+      HDFSWalReader wReader;
+      try {
+        wReader = new HDFSWalReader(bfs, bucketKey, WAL_FILE_PREFIX + i, true);
+      } catch (FileNotFoundException e) {
+        // removed by cleanup, entries only of buckets that have no data to recover
+        continue;
+      }
+      if (i == start.fileId) {
+        wReader.seek(start.offset);
+      }
+      int count = 0;
+      while (wReader.advance()) {
+        Map<Slice, byte[]> writeCache = writeCaches.get(wReader.getBucketKey());
+        if (writeCache == null) {
+          continue;
+        }
+        WalPosition bucketStart = startPositions.get(wReader.getBucketKey());
+        if (bucketStart != null && (i < bucketStart.fileId || (i == bucketStart.fileId && wReader.getEntryPosition() < bucketStart.offset))) {
+          continue;
+        }
+        MutableKeyValue o = wReader.get();
+        writeCache.put(new Slice(o.getKey()), o.getValue());
+        count++;
+      }
+      wReader.close();
+      logger.info("Recovered {} tuples from wal {}", count, i);
+    }
+
+    walFileId++;
+  }
+
   public void append(Slice key, byte[] value) throws IOException
   {
     if (writer == null)
       writer = new HDFSWalWriter(bfs, bucketKey, WAL_FILE_PREFIX + walFileId);
 
     writer.append(key, value);
-    long bytes = key.length + value.length + 2 * 4;
+    appended(key.length + value.length + 2 * 4);
+  }
+
+  /**
+   * Append entry to shared WAL.
+   * @param bucketKey key of the bucket the entry belongs to
+   * @param key
+   * @param value
+   * @throws IOException
+   */
+  public void append(long bucketKey, Slice key, byte[] value) throws IOException
+  {
+    if (writer == null)
+      writer = new HDFSWalWriter(bfs, this.bucketKey, WAL_FILE_PREFIX + walFileId);
+
+    writer.append(bucketKey, key, value);
+    appended(key.length + value.length + 2 * 4 + 8);
+  }
+
+  private void appended(long bytes) throws IOException
+  {
     stats.totalBytes += bytes;
     stats.totalKeys ++;
     dirty = true;
@@ -323,7 +406,7 @@ public class HDHTWalManager implements Closeable
   private final WalStats stats = new WalStats();
 
   /* Location of the WAL */
-  public static class WalPosition {
+  public static class WalPosition implements Comparable<WalPosition> {
     long fileId;
     long offset;
 
@@ -339,6 +422,15 @@ public class HDHTWalManager implements Closeable
       return new WalPosition(fileId, offset);
     }
 
+    @Override
+    public int compareTo(WalPosition o)
+    {
+      if (fileId != o.fileId) {
+        return fileId < o.fileId ? -1 : 1;
+      }
+      return offset < o.offset ? -1 : (offset == o.offset ? 0 : 1);
+    }
+
     @Override public String toString()
     {
       return "WalPosition{" +
@@ -15,10 +15,12 @@
  */
 package com.datatorrent.contrib.hdht;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -38,8 +40,10 @@ import com.datatorrent.common.util.NameableThreadFactory;
 import com.datatorrent.common.util.Slice;
 import com.datatorrent.contrib.hdht.HDHTFileAccess.HDSFileReader;
 import com.datatorrent.contrib.hdht.HDHTFileAccess.HDSFileWriter;
+import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Output;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -62,20 +66,41 @@ import com.google.common.collect.Sets;
 public class HDHTWriter extends HDHTReader implements CheckpointListener, Operator, HDHT.Writer
 {
 
-  private final transient HashMap<Long, BucketMeta> metaCache = Maps.newHashMap();
+  private final transient ConcurrentMap<Long, BucketMeta> metaCache = Maps.newConcurrentMap();
   private long currentWindowId;
-  private transient long lastFlushWindowId;
   private final transient HashMap<Long, Bucket> buckets = Maps.newHashMap();
   @VisibleForTesting
   protected transient ExecutorService writeExecutor;
   private volatile transient Throwable writerError;
+  /* flushes run concurrently, kryo instances are not thread safe */
+  private final transient ThreadLocal<Kryo> flushKryo = new ThreadLocal<Kryo>()
+  {
+    @Override
+    protected Kryo initialValue()
+    {
+      return new Kryo();
+    }
+  };
+  private final transient Object frozenLock = new Object();
+  /* estimated size of the write caches that are being flushed */
+  private transient long frozenBytes;
 
   private int maxFileSize = 128 * 1024 * 1024; // 128m
   private int maxWalFileSize = 64 * 1024 * 1024;
   private int flushSize = 1000000;
   private int flushIntervalCount = 120;
+  private int maxDeltaFiles = 0;
+  private double bloomFilterFalsePositiveRate = 0;
+  private int flushThreads = 1;
+  private long maxFrozenBytes = 0;
+  private boolean sharedWal = false;
 
   private final HashMap<Long, WalMeta> walMeta = Maps.newHashMap();
+  /* checkpointed position of the shared WAL */
+  private final WalMeta sharedWalMeta = new WalMeta();
+  private transient HDHTWalManager wal;
+  private transient long walKey;
+  private transient long walCleanupFileId;
   private transient OperatorContext context;
 
   /**
@@ -142,23 +167,130 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
     this.flushIntervalCount = flushIntervalCount;
   }
 
+  /**
+   * Number of level 0 (delta) files that can accumulate in a bucket before they are compacted into the level 1 data
+   * files. When set, each flush writes the changes as a new sorted delta file instead of rewriting the data files that
+   * contain the affected keys. The compaction runs on the writer thread and merges the delta files with the overlapping
+   * data files, holding a single entry per file in memory. The default of 0 disables tiered compaction.
+   *
+   * @return The maximum number of delta files per bucket.
+   */
+  @Min(value = 0)
+  public int getMaxDeltaFiles()
+  {
+    return maxDeltaFiles;
+  }
+
+  public void setMaxDeltaFiles(int maxDeltaFiles)
+  {
+    this.maxDeltaFiles = maxDeltaFiles;
+  }
+
+  /**
+   * Number of threads that flush write caches to data files. Buckets are flushed independently, changes of a single
+   * bucket are always flushed in order.
+   *
+   * @return The number of flush threads.
+   */
+  @Min(value = 1)
+  public int getFlushThreads()
+  {
+    return flushThreads;
+  }
+
+  public void setFlushThreads(int flushThreads)
+  {
+    this.flushThreads = flushThreads;
+  }
+
+  /**
+   * Memory budget for write caches that are being flushed, across all buckets, based on the size of keys and values.
+   * When a bucket is ready to flush while the budget is exhausted, the operator thread waits for other flushes to
+   * complete. The time spent waiting is reported as {@link BucketIOStats#flushWaitTime}. The default of 0 does not
+   * limit the memory.
+   *
+   * @return The memory budget in bytes.
+   */
+  @Min(value = 0)
+  public long getMaxFrozenBytes()
+  {
+    return maxFrozenBytes;
+  }
+
+  public void setMaxFrozenBytes(long maxFrozenBytes)
+  {
+    this.maxFrozenBytes = maxFrozenBytes;
+  }
+
+  /**
+   * Write a single WAL for all buckets instead of one WAL per bucket. Entries are tagged with the bucket key and the
+   * WAL is flushed once at the end of each window, instead of once for each bucket that was modified. Files of the
+   * shared WAL are stored under a reserved bucket key derived from the operator id (-1 - id), which must not be used
+   * for data. The WAL statistics are reported for that key. The WAL mode cannot be changed when restoring from a
+   * checkpoint and a shared WAL does not support redistributing buckets between writer partitions.
+   *
+   * @return Whether the WAL is shared by all buckets.
+   */
+  public boolean isSharedWal()
+  {
+    return sharedWal;
+  }
+
+  public void setSharedWal(boolean sharedWal)
+  {
+    this.sharedWal = sharedWal;
+  }
+
+  /**
+   * Target false positive probability of the Bloom filters written for each data file. The filter is stored next to
+   * the data file and lets readers answer lookups for missing keys without seeking into the file. The default of 0
+   * disables the filters.
+   *
+   * @return The false positive probability.
+   */
+  public double getBloomFilterFalsePositiveRate()
+  {
+    return bloomFilterFalsePositiveRate;
+  }
+
+  public void setBloomFilterFalsePositiveRate(double bloomFilterFalsePositiveRate)
+  {
+    this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+  }
+
+  private void writeBloomFilter(long bucketKey, String fileName, HDHTBloomFilter.Builder keys) throws IOException
+  {
+    DataOutputStream os = store.getOutputStream(bucketKey, fileName + HDHTBloomFilter.FILE_SUFFIX);
+    keys.build(bloomFilterFalsePositiveRate).write(os);
+    os.close();
+  }
+
+  private void deleteDataFile(long bucketKey, String fileName) throws IOException
+  {
+    store.delete(bucketKey, fileName);
+    // filter may have been written with a previous configuration
+    store.delete(bucketKey, fileName + HDHTBloomFilter.FILE_SUFFIX);
+  }
+
   /**
    * Write data to size based rolling files
    *
    * @param bucket
    * @param bucketMeta
-   * @param data
+   * @param data sorted entries
    * @throws IOException
    */
-  private void writeFile(Bucket bucket, BucketMeta bucketMeta, TreeMap<Slice, byte[]> data) throws IOException
+  private void writeFile(Bucket bucket, BucketMeta bucketMeta, Iterator<Map.Entry<Slice, byte[]>> data) throws IOException
   {
     BucketIOStats ioStats = getOrCretaStats(bucket.bucketKey);
     long startTime = System.currentTimeMillis();
 
     HDSFileWriter fw = null;
     BucketFileMeta fileMeta = null;
+    HDHTBloomFilter.Builder filterKeys = bloomFilterFalsePositiveRate > 0 ? new HDHTBloomFilter.Builder() : null;
     int keysWritten = 0;
-    for (Map.Entry<Slice, byte[]> dataEntry : data.entrySet()) {
+    while (data.hasNext()) {
+      Map.Entry<Slice, byte[]> dataEntry = data.next();
       if (fw == null) {
         // next file
         fileMeta = bucketMeta.addFile(bucket.bucketKey, dataEntry.getKey());
@@ -172,6 +304,9 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
       }
 
       fw.append(dataEntry.getKey().toByteArray(), dataEntry.getValue());
+      if (filterKeys != null) {
+        filterKeys.add(dataEntry.getKey());
+      }
       keysWritten++;
       if (fw.getBytesWritten() > this.maxFileSize) {
         ioStats.dataFilesWritten++;
@@ -179,6 +314,10 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
         // roll file
         fw.close();
         ioStats.dataBytesWritten += fw.getBytesWritten();
+        if (filterKeys != null) {
+          writeBloomFilter(bucket.bucketKey, fileMeta.name, filterKeys);
+          filterKeys.clear();
+        }
         this.store.rename(bucket.bucketKey, fileMeta.name + ".tmp", fileMeta.name);
         LOG.debug("created data file {} {} with {} entries", bucket.bucketKey, fileMeta.name, keysWritten);
         fw = null;
@@ -191,6 +330,9 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
       ioStats.filesWroteInCurrentWriteCycle++;
       fw.close();
       ioStats.dataBytesWritten += fw.getBytesWritten();
+      if (filterKeys != null) {
+        writeBloomFilter(bucket.bucketKey, fileMeta.name, filterKeys);
+      }
       this.store.rename(bucket.bucketKey, fileMeta.name + ".tmp", fileMeta.name);
       LOG.debug("created data file {} {} with {} entries", bucket.bucketKey, fileMeta.name, keysWritten);
     }
@@ -203,12 +345,17 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
     Bucket bucket = this.buckets.get(bucketKey);
     if (bucket == null) {
       LOG.debug("Opening bucket {}", bucketKey);
-      bucket = new Bucket();
+      bucket = new Bucket(getKeyComparator());
       bucket.bucketKey = bucketKey;
       this.buckets.put(bucketKey, bucket);
 
-      BucketMeta bmeta = getMeta(bucketKey);
       WalMeta wmeta = getWalMeta(bucketKey);
+      if (sharedWal) {
+        // recovery of all buckets runs on setup
+        bucket.wal = wal;
+        return bucket;
+      }
+      BucketMeta bmeta = getMeta(bucketKey);
       bucket.wal = new HDHTWalManager(this.store, bucketKey, wmeta.cpWalPosition);
       bucket.wal.setMaxWalFileSize(maxWalFileSize);
       BucketIOStats ioStats = getOrCretaStats(bucketKey);
@@ -230,6 +377,53 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
     return bucket;
   }
 
+  /**
+   * Open the shared WAL and restore the write caches of all buckets that have changes which were not written to data
+   * files yet.
+   */
+  private void recoverSharedWal() throws IOException
+  {
+    wal = new HDHTWalManager(this.store, walKey, sharedWalMeta.cpWalPosition);
+    wal.setMaxWalFileSize(maxWalFileSize);
+    wal.restoreStats(getOrCretaStats(walKey));
+    if (sharedWalMeta.cpWalPosition == null) {
+      return;
+    }
+
+    Map<Long, Map<Slice, byte[]>> writeCaches = Maps.newHashMap();
+    Map<Long, HDHTWalManager.WalPosition> startPositions = Maps.newHashMap();
+    for (Map.Entry<Long, WalMeta> entry : Lists.newArrayList(walMeta.entrySet())) {
+      WalMeta wmeta = entry.getValue();
+      BucketMeta bmeta = getMeta(entry.getKey());
+      if (bmeta.committedWid < wmeta.windowId && wmeta.windowId != 0) {
+        Bucket bucket = getBucket(entry.getKey());
+        writeCaches.put(bucket.bucketKey, bucket.committedWriteCache);
+        startPositions.put(bucket.bucketKey, bmeta.recoveryStartWalPosition != null ? bmeta.recoveryStartWalPosition : new HDHTWalManager.WalPosition(0, 0));
+        bucket.walPositions.put(wmeta.windowId, wmeta.cpWalPosition);
+      }
+    }
+    wal.runRecovery(writeCaches, startPositions, sharedWalMeta.cpWalPosition);
+  }
+
+  /**
+   * Remove shared WAL files that are no longer needed for recovery of any bucket. Buckets that have no pending changes
+   * do not hold back the cleanup.
+   */
+  private void cleanupSharedWal()
+  {
+    long fileId = wal.getWalFileId();
+    for (Bucket bucket : buckets.values()) {
+      if (bucket.flushPending || !bucket.writeCache.isEmpty() || !bucket.checkpointedWriteCache.isEmpty() || !bucket.committedWriteCache.isEmpty()) {
+        HDHTWalManager.WalPosition start = getMeta(bucket.bucketKey).recoveryStartWalPosition;
+        fileId = Math.min(fileId, start == null ? 0 : start.fileId);
+      }
+    }
+    if (fileId > walCleanupFileId) {
+      wal.cleanup(fileId);
+      walCleanupFileId = fileId;
+    }
+  }
+
   /**
    * Lookup in write cache (data not flushed/committed to files).
    * @param bucketKey
@@ -245,7 +439,7 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
       if (v != null) {
         return v != HDHT.WALReader.DELETED ? v : null;
       }
-      for (Map.Entry<Long, HashMap<Slice, byte[]>> entry : bucket.checkpointedWriteCache.entrySet()) {
+      for (Map.Entry<Long, TreeMap<Slice, byte[]>> entry : bucket.checkpointedWriteCache.entrySet()) {
         byte[] v2 = entry.getValue().get(key);
         // find most recent entry
         if (v2 != null) {
@@ -285,7 +479,11 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
   public void put(long bucketKey, Slice key, byte[] value) throws IOException
   {
     Bucket bucket = getBucket(bucketKey);
-    bucket.wal.append(key, value);
+    if (sharedWal) {
+      bucket.wal.append(bucketKey, key, value);
+    } else {
+      bucket.wal.append(key, value);
+    }
     bucket.writeCache.put(key, value);
   }
 
@@ -302,16 +500,21 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
    */
   private void writeDataFiles(Bucket bucket) throws IOException
   {
+    if (!getMeta(bucket.bucketKey).deltaFiles.isEmpty()) {
+      // tiered compaction was disabled, level 0 files need to be merged before they can be superseded
+      compact(bucket);
+    }
     BucketIOStats ioStats = getOrCretaStats(bucket.bucketKey);
+    TreeMap<Slice, byte[]> frozenWriteCache = bucket.frozenWriteCache;
     LOG.debug("Writing data files in bucket {}", bucket.bucketKey);
     // copy meta data on write
-    BucketMeta bucketMetaCopy = kryo.copy(getMeta(bucket.bucketKey));
+    BucketMeta bucketMetaCopy = flushKryo.get().copy(getMeta(bucket.bucketKey));
 
     // bucket keys by file
     TreeMap<Slice, BucketFileMeta> bucketSeqStarts = bucketMetaCopy.files;
     Map<BucketFileMeta, Map<Slice, byte[]>> modifiedFiles = Maps.newHashMap();
 
-    for (Map.Entry<Slice, byte[]> entry : bucket.frozenWriteCache.entrySet()) {
+    for (Map.Entry<Slice, byte[]> entry : frozenWriteCache.entrySet()) {
       // find file for key
       Map.Entry<Slice, BucketFileMeta> floorEntry = bucketSeqStarts.floorEntry(entry.getKey());
       BucketFileMeta floorFile;
@@ -367,57 +570,297 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
       // apply updates
       fileData.putAll(fileEntry.getValue());
       // new file
-      writeFile(bucket, bucketMetaCopy, fileData);
+      writeFile(bucket, bucketMetaCopy, fileData.entrySet().iterator());
     }
 
     LOG.debug("Files written {} files read {}", ioStats.filesWroteInCurrentWriteCycle, ioStats.filesReadInCurrentWriteCycle);
     // flush meta data for new files
+    bucketMetaCopy.committedWid = bucket.committedLSN;
+    bucketMetaCopy.recoveryStartWalPosition = bucket.flushRecoveryStartWalPosition;
+    writeBucketMeta(bucket.bucketKey, bucketMetaCopy);
+
+    // switch to new version
+    this.metaCache.put(bucket.bucketKey, bucketMetaCopy);
+    // release pending changes, the frozen write cache may still be read by scans of the operator thread
+    ioStats.dataKeysWritten += frozenWriteCache.size();
+    bucket.frozenWriteCache = bucket.newWriteCache();
+
+    // delete old files
+    for (String fileName : filesToDelete) {
+      deleteDataFile(bucket.bucketKey, fileName);
+    }
+    invalidateReader(bucket.bucketKey, bucketMetaCopy, filesToDelete);
+
+    // cleanup WAL files which are not needed anymore, the shared WAL is cleaned up on committed
+    if (!sharedWal) {
+      bucket.wal.cleanup(bucketMetaCopy.recoveryStartWalPosition.fileId);
+    }
+
+    ioStats.filesReadInCurrentWriteCycle = 0;
+    ioStats.filesWroteInCurrentWriteCycle = 0;
+  }
+
+  private void writeBucketMeta(long bucketKey, BucketMeta bucketMeta)
+  {
     try {
-      LOG.debug("Writing {} with {} file entries", FNAME_META, bucketMetaCopy.files.size());
-      OutputStream os = store.getOutputStream(bucket.bucketKey, FNAME_META + ".new");
+      LOG.debug("Writing {} with {} file entries {} delta files", FNAME_META, bucketMeta.files.size(), bucketMeta.deltaFiles.size());
+      OutputStream os = store.getOutputStream(bucketKey, FNAME_META + ".new");
       Output output = new Output(os);
-      bucketMetaCopy.committedWid = bucket.committedLSN;
-      bucketMetaCopy.recoveryStartWalPosition = bucket.recoveryStartWalPosition;
-      kryo.writeClassAndObject(output, bucketMetaCopy);
+      HDHTReader.writeBucketMeta(flushKryo.get(), output, bucketMeta);
       output.close();
       os.close();
-      store.rename(bucket.bucketKey, FNAME_META + ".new", FNAME_META);
+      store.rename(bucketKey, FNAME_META + ".new", FNAME_META);
     } catch (IOException e) {
-      throw new RuntimeException("Failed to write bucket meta data " + bucket.bucketKey, e);
+      throw new RuntimeException("Failed to write bucket meta data " + bucketKey, e);
+    }
+  }
+
+  /**
+   * Flush changes from write cache to a new level 0 file. Existing data files are not read or rewritten. Once the number
+   * of level 0 files exceeds {@link #maxDeltaFiles}, they are compacted into the level 1 files.
+   *
+   * @throws IOException
+   */
+  private void writeDeltaFile(Bucket bucket) throws IOException
+  {
+    BucketIOStats ioStats = getOrCretaStats(bucket.bucketKey);
+    LOG.debug("Writing delta file in bucket {}", bucket.bucketKey);
+    long startTime = System.currentTimeMillis();
+    BucketMeta bucketMetaCopy = flushKryo.get().copy(getMeta(bucket.bucketKey));
+
+    // the frozen write cache is sorted and not modified while it is written
+    TreeMap<Slice, byte[]> fileData = bucket.frozenWriteCache;
+
+    BucketFileMeta fileMeta = bucketMetaCopy.addDeltaFile(bucket.bucketKey, fileData.firstKey(), fileData.lastKey());
+    HDSFileWriter fw = this.store.getWriter(bucket.bucketKey, fileMeta.name + ".tmp");
+    HDHTBloomFilter.Builder filterKeys = bloomFilterFalsePositiveRate > 0 ? new HDHTBloomFilter.Builder() : null;
+    for (Map.Entry<Slice, byte[]> dataEntry : fileData.entrySet()) {
+      byte[] value = dataEntry.getValue();
+      byte[] deltaValue;
+      if (value == HDHT.WALReader.DELETED) {
+        deltaValue = new byte[] {DELTA_DELETE};
+      } else {
+        deltaValue = new byte[value.length + 1];
+        deltaValue[0] = DELTA_PUT;
+        System.arraycopy(value, 0, deltaValue, 1, value.length);
+      }
+      fw.append(dataEntry.getKey().toByteArray(), deltaValue);
+      if (filterKeys != null) {
+        // deletes are included, they need to be found to hide older values
+        filterKeys.add(dataEntry.getKey());
+      }
+    }
+    fw.close();
+    if (filterKeys != null) {
+      writeBloomFilter(bucket.bucketKey, fileMeta.name, filterKeys);
     }
+    this.store.rename(bucket.bucketKey, fileMeta.name + ".tmp", fileMeta.name);
+    LOG.debug("created delta file {} {} with {} entries", bucket.bucketKey, fileMeta.name, fileData.size());
+
+    ioStats.dataFilesWritten++;
+    ioStats.dataBytesWritten += fw.getBytesWritten();
+    ioStats.dataWriteTime += System.currentTimeMillis() - startTime;
+
+    bucketMetaCopy.committedWid = bucket.committedLSN;
+    bucketMetaCopy.recoveryStartWalPosition = bucket.flushRecoveryStartWalPosition;
+    writeBucketMeta(bucket.bucketKey, bucketMetaCopy);
 
-    // clear pending changes
-    ioStats.dataKeysWritten += bucket.frozenWriteCache.size();
-    bucket.frozenWriteCache.clear();
     // switch to new version
     this.metaCache.put(bucket.bucketKey, bucketMetaCopy);
+    // release pending changes, the frozen write cache may still be read by scans of the operator thread
+    ioStats.dataKeysWritten += fileData.size();
+    bucket.frozenWriteCache = bucket.newWriteCache();
+    invalidateReader(bucket.bucketKey, bucketMetaCopy, Collections.<String>emptySet());
+
+    // cleanup WAL files which are not needed anymore, the shared WAL is cleaned up on committed
+    if (!sharedWal) {
+      bucket.wal.cleanup(bucketMetaCopy.recoveryStartWalPosition.fileId);
+    }
 
-    // delete old files
-    for (String fileName : filesToDelete) {
-      store.delete(bucket.bucketKey, fileName);
+    if (bucketMetaCopy.deltaFiles.size() > maxDeltaFiles) {
+      compact(bucket);
     }
-    invalidateReader(bucket.bucketKey, filesToDelete);
+    ioStats.deltaFileCount = getMeta(bucket.bucketKey).deltaFiles.size();
+  }
 
-    // cleanup WAL files which are not needed anymore.
-    bucket.wal.cleanup(bucketMetaCopy.recoveryStartWalPosition.fileId);
+  /**
+   * Merge all level 0 files of the bucket with the level 1 files that overlap their key range. Files are read
+   * sequentially and only the current entry of each file is held in memory. The merged entries replace the overlapping
+   * level 1 files, deleted keys are dropped.
+   *
+   * @throws IOException
+   */
+  private void compact(Bucket bucket) throws IOException
+  {
+    BucketIOStats ioStats = getOrCretaStats(bucket.bucketKey);
+    BucketMeta bucketMetaCopy = flushKryo.get().copy(getMeta(bucket.bucketKey));
+    Comparator<Slice> cmp = getKeyComparator();
+    LOG.debug("Compacting {} delta files in bucket {}", bucketMetaCopy.deltaFiles.size(), bucket.bucketKey);
+
+    Slice minKey = null;
+    Slice maxKey = null;
+    for (BucketFileMeta fileMeta : bucketMetaCopy.deltaFiles) {
+      if (minKey == null || cmp.compare(fileMeta.startKey, minKey) < 0) {
+        minKey = fileMeta.startKey;
+      }
+      if (maxKey == null || cmp.compare(fileMeta.endKey, maxKey) > 0) {
+        maxKey = fileMeta.endKey;
+      }
+    }
+
+    // level 1 files whose key range intersects [minKey, maxKey]
+    List<BucketFileMeta> overlappingFiles = Lists.newArrayList();
+    Slice fromKey = bucketMetaCopy.files.floorKey(minKey);
+    for (BucketFileMeta fileMeta : bucketMetaCopy.files.subMap(fromKey == null ? minKey : fromKey, true, maxKey, true).values()) {
+      if (fileMeta.name != null) {
+        overlappingFiles.add(fileMeta);
+      }
+    }
+
+    HashSet<String> filesToDelete = Sets.newHashSet();
+    List<HDHTMergeScanner.Source> sources = Lists.newArrayList();
+    try {
+      int rank = 0;
+      for (BucketFileMeta fileMeta : overlappingFiles) {
+        sources.add(new HDHTMergeScanner.FileSource(store.getReader(bucket.bucketKey, fileMeta.name), rank++, false, null, cmp));
+        ioStats.dataBytesRead += store.getFileSize(bucket.bucketKey, fileMeta.name);
+        ioStats.dataFilesRead++;
+        filesToDelete.add(fileMeta.name);
+        bucketMetaCopy.files.remove(fileMeta.startKey);
+      }
+      for (BucketFileMeta fileMeta : bucketMetaCopy.deltaFiles) {
+        sources.add(new HDHTMergeScanner.FileSource(store.getReader(bucket.bucketKey, fileMeta.name), rank++, true, null, cmp));
+        ioStats.dataBytesRead += store.getFileSize(bucket.bucketKey, fileMeta.name);
+        ioStats.dataFilesRead++;
+        filesToDelete.add(fileMeta.name);
+      }
+      bucketMetaCopy.deltaFiles.clear();
+
+      // deletes are passed through and skipped by writeFile
+      HDHTMergeScanner scanner = new HDHTMergeScanner(sources, cmp, null, true);
+      writeFile(bucket, bucketMetaCopy, new ScannerIterator(scanner));
+      ioStats.dataKeysRewritten += scanner.keysRead;
+    } finally {
+      for (HDHTMergeScanner.Source source : sources) {
+        IOUtils.closeQuietly(source);
+      }
+    }
 
+    writeBucketMeta(bucket.bucketKey, bucketMetaCopy);
+    this.metaCache.put(bucket.bucketKey, bucketMetaCopy);
+
+    for (String fileName : filesToDelete) {
+      deleteDataFile(bucket.bucketKey, fileName);
+    }
+    invalidateReader(bucket.bucketKey, bucketMetaCopy, filesToDelete);
+    ioStats.compactionCount++;
     ioStats.filesReadInCurrentWriteCycle = 0;
     ioStats.filesWroteInCurrentWriteCycle = 0;
   }
 
+  /**
+   * Entries of a merge scan with copied keys and values, as input for {@link #writeFile}. Deletes are returned as
+   * {@link HDHT.WALReader#DELETED}.
+   */
+  private static class ScannerIterator implements Iterator<Map.Entry<Slice, byte[]>>
+  {
+    private final HDHTMergeScanner scanner;
+    private final Slice key = new Slice(null, 0, 0);
+    private final Slice value = new Slice(null, 0, 0);
+    private Map.Entry<Slice, byte[]> next;
+
+    private ScannerIterator(HDHTMergeScanner scanner)
+    {
+      this.scanner = scanner;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      if (next == null) {
+        try {
+          if (scanner.next(key, value)) {
+            byte[] v = scanner.isDeleted() ? HDHT.WALReader.DELETED : value.toByteArray();
+            next = new AbstractMap.SimpleImmutableEntry<Slice, byte[]>(new Slice(key.toByteArray()), v);
+          }
+        } catch (IOException e) {
+          throw new RuntimeException("Failed to read data file", e);
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public Map.Entry<Slice, byte[]> next()
+    {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry<Slice, byte[]> entry = next;
+      next = null;
+      return entry;
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Include changes that are not written to the data files yet. The write caches are sorted and read in place, they
+   * are not copied. Must be called from the operator thread.
+   */
+  @Override
+  protected void addScanSources(long bucketKey, Slice startKey, Slice endKey, List<HDHTMergeScanner.Source> sources) throws IOException
+  {
+    super.addScanSources(bucketKey, startKey, endKey, sources);
+    Bucket bucket = this.buckets.get(bucketKey);
+    if (bucket == null) {
+      return;
+    }
+    // apply from oldest to most recent change
+    addCacheSource(bucket.frozenWriteCache, startKey, sources);
+    addCacheSource(bucket.committedWriteCache, startKey, sources);
+    for (TreeMap<Slice, byte[]> checkpointed : bucket.checkpointedWriteCache.values()) {
+      addCacheSource(checkpointed, startKey, sources);
+    }
+    addCacheSource(bucket.writeCache, startKey, sources);
+  }
+
+  private static void addCacheSource(TreeMap<Slice, byte[]> cache, Slice startKey, List<HDHTMergeScanner.Source> sources)
+  {
+    if (!cache.isEmpty()) {
+      sources.add(new HDHTMergeScanner.NavigableMapSource(cache, startKey, sources.size() + 1));
+    }
+  }
+
   @Override
   public void setup(OperatorContext context)
   {
     super.setup(context);
-    writeExecutor = Executors.newSingleThreadScheduledExecutor(new NameableThreadFactory(this.getClass().getSimpleName() + "-Writer"));
+    writeExecutor = Executors.newFixedThreadPool(flushThreads, new NameableThreadFactory(this.getClass().getSimpleName() + "-Writer"));
     this.context = context;
+    if (sharedWal) {
+      walKey = context != null ? -1L - context.getId() : -1L;
+      try {
+        recoverSharedWal();
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to recover shared WAL", e);
+      }
+    }
   }
 
   @Override
   public void teardown()
   {
-    for (Bucket bucket : this.buckets.values()) {
-      IOUtils.closeQuietly(bucket.wal);
+    if (sharedWal) {
+      IOUtils.closeQuietly(wal);
+    } else {
+      for (Bucket bucket : this.buckets.values()) {
+        IOUtils.closeQuietly(bucket.wal);
+      }
     }
     writeExecutor.shutdown();
     super.teardown();
@@ -434,17 +877,25 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
   public void endWindow()
   {
     super.endWindow();
-    for (final Bucket bucket : this.buckets.values()) {
-      try {
+    try {
+      if (sharedWal) {
+        // single flush for all buckets
+        wal.endWindow(currentWindowId);
+        sharedWalMeta.cpWalPosition = wal.getCurrentPosition();
+        sharedWalMeta.windowId = currentWindowId;
+      }
+      for (final Bucket bucket : this.buckets.values()) {
         if (bucket.wal != null) {
-          bucket.wal.endWindow(currentWindowId);
+          if (!sharedWal) {
+            bucket.wal.endWindow(currentWindowId);
+          }
           WalMeta walMeta = getWalMeta(bucket.bucketKey);
           walMeta.cpWalPosition = bucket.wal.getCurrentPosition();
           walMeta.windowId = currentWindowId;
         }
-      } catch (IOException e) {
-        throw new RuntimeException("Failed to flush WAL", e);
       }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to flush WAL", e);
     }
 
     // propagate writer exceptions
@@ -478,7 +929,7 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
             bucket.wal.getWalFileId(),
             bucket.wal.getWalSize()
         ));
-        bucket.writeCache = Maps.newHashMap();
+        bucket.writeCache = bucket.newWriteCache();
       }
     }
   }
@@ -503,8 +954,8 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
   public void committed(long committedWindowId)
   {
     for (final Bucket bucket : this.buckets.values()) {
-      for (Iterator<Map.Entry<Long, HashMap<Slice, byte[]>>> cpIter = bucket.checkpointedWriteCache.entrySet().iterator(); cpIter.hasNext();) {
-        Map.Entry<Long, HashMap<Slice, byte[]>> checkpointEntry = cpIter.next();
+      for (Iterator<Map.Entry<Long, TreeMap<Slice, byte[]>>> cpIter = bucket.checkpointedWriteCache.entrySet().iterator(); cpIter.hasNext();) {
+        Map.Entry<Long, TreeMap<Slice, byte[]>> checkpointEntry = cpIter.next();
         if (checkpointEntry.getKey() <= committedWindowId) {
           bucket.committedWriteCache.putAll(checkpointEntry.getValue());
           cpIter.remove();
@@ -519,13 +970,16 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
         }
       }
 
-      if ((bucket.committedWriteCache.size() > this.flushSize || currentWindowId - lastFlushWindowId > flushIntervalCount) && !bucket.committedWriteCache.isEmpty()) {
+      if ((bucket.committedWriteCache.size() > this.flushSize || currentWindowId - bucket.lastFlushWindowId > flushIntervalCount) && !bucket.committedWriteCache.isEmpty()) {
         // ensure previous flush completed
-        if (bucket.frozenWriteCache.isEmpty()) {
+        if (!bucket.flushPending) {
+          final long cacheBytes = estimateSize(bucket.committedWriteCache);
+          reserveFrozenBytes(bucket.bucketKey, cacheBytes);
           bucket.frozenWriteCache = bucket.committedWriteCache;
-          bucket.committedWriteCache = Maps.newHashMap();
+          bucket.committedWriteCache = bucket.newWriteCache();
 
           bucket.committedLSN = committedWindowId;
+          bucket.flushRecoveryStartWalPosition = bucket.recoveryStartWalPosition;
 
           LOG.debug("Flushing data for bucket {} committedWid {} recoveryStartWalPosition {}", bucket.bucketKey, bucket.committedLSN, bucket.recoveryStartWalPosition);
           Runnable flushRunnable = new Runnable() {
@@ -533,43 +987,116 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
             public void run()
             {
               try {
-                writeDataFiles(bucket);
+                if (maxDeltaFiles > 0) {
+                  writeDeltaFile(bucket);
+                } else {
+                  writeDataFiles(bucket);
+                }
               } catch (Throwable e) {
                 LOG.debug("Write error: {}", e.getMessage());
                 writerError = e;
+              } finally {
+                releaseFrozenBytes(cacheBytes);
+                bucket.flushPending = false;
               }
             }
           };
+          bucket.flushPending = true;
           this.writeExecutor.execute(flushRunnable);
-          lastFlushWindowId = committedWindowId;
+          bucket.lastFlushWindowId = committedWindowId;
         }
       }
     }
 
+    if (sharedWal) {
+      cleanupSharedWal();
+    }
+
     // propagate writer exceptions
     if (writerError != null) {
       throw new RuntimeException("Error while flushing write cache.", this.writerError);
     }
   }
 
+  private static long estimateSize(Map<Slice, byte[]> cache)
+  {
+    long size = 0;
+    for (Map.Entry<Slice, byte[]> entry : cache.entrySet()) {
+      size += entry.getKey().length + entry.getValue().length;
+    }
+    return size;
+  }
+
+  /**
+   * Wait until the write cache of the given size can be flushed within {@link #maxFrozenBytes}. A flush that exceeds the
+   * budget by itself is admitted when no other flush is in progress.
+   */
+  private void reserveFrozenBytes(long bucketKey, long bytes)
+  {
+    long startTime = System.currentTimeMillis();
+    synchronized (frozenLock) {
+      while (maxFrozenBytes > 0 && frozenBytes > 0 && frozenBytes + bytes > maxFrozenBytes && writerError == null) {
+        try {
+          frozenLock.wait();
+        } catch (InterruptedException e) {
+          throw new RuntimeException("Interrupted while waiting for flush", e);
+        }
+      }
+      frozenBytes += bytes;
+    }
+    getOrCretaStats(bucketKey).flushWaitTime += System.currentTimeMillis() - startTime;
+  }
+
+  private void releaseFrozenBytes(long bytes)
+  {
+    synchronized (frozenLock) {
+      frozenBytes -= bytes;
+      frozenLock.notifyAll();
+    }
+  }
+
   private static class Bucket
   {
+    private final Comparator<Slice> keyComparator;
     private long bucketKey;
     // keys that were modified and written to WAL, but not yet persisted, by checkpoint
-    private HashMap<Slice, byte[]> writeCache = Maps.newHashMap();
-    private final LinkedHashMap<Long, HashMap<Slice, byte[]>> checkpointedWriteCache = Maps.newLinkedHashMap();
+    // the write caches are sorted for range scans
+    private TreeMap<Slice, byte[]> writeCache;
+    private final LinkedHashMap<Long, TreeMap<Slice, byte[]>> checkpointedWriteCache = Maps.newLinkedHashMap();
     public HashMap<Long, HDHTWalManager.WalPosition> walPositions = Maps.newLinkedHashMap();
-    private HashMap<Slice, byte[]> committedWriteCache = Maps.newHashMap();
-    // keys that are being flushed to data files
-    private HashMap<Slice, byte[]> frozenWriteCache = Maps.newHashMap();
+    private TreeMap<Slice, byte[]> committedWriteCache;
+    // keys that are being flushed to data files, not modified once frozen and replaced by the writer thread when written
+    private volatile TreeMap<Slice, byte[]> frozenWriteCache;
     private HDHTWalManager wal;
     private long committedLSN;
+    private long lastFlushWindowId;
+    /* frozen write cache is being written, set by operator thread and cleared by writer thread */
+    private volatile boolean flushPending;
     public HDHTWalManager.WalPosition recoveryStartWalPosition;
+    /* recovery start position of the frozen write cache */
+    private HDHTWalManager.WalPosition flushRecoveryStartWalPosition;
+
+    private Bucket(Comparator<Slice> keyComparator)
+    {
+      this.keyComparator = keyComparator;
+      writeCache = newWriteCache();
+      committedWriteCache = newWriteCache();
+      frozenWriteCache = newWriteCache();
+    }
+
+    private TreeMap<Slice, byte[]> newWriteCache()
+    {
+      return new TreeMap<Slice, byte[]>(keyComparator);
+    }
   }
 
   @VisibleForTesting
   protected void forceWal() throws IOException
   {
+    if (sharedWal) {
+      wal.close();
+      return;
+    }
     for (Bucket bucket : buckets.values()) {
       bucket.wal.close();
     }
@@ -640,6 +1167,23 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
     /* Number of bytes read during data read */
     public long dataBytesRead;
 
+    /* Number of level 0 files merged into the data files */
+    public long compactionCount;
+    /* Number of level 0 files not yet compacted */
+    public int deltaFileCount;
+
+    /* Lookups where the Bloom filter matched and the key was found */
+    public long bloomFilterHits;
+    /* Lookups answered by the Bloom filter without reading the data file */
+    public long bloomFilterSkips;
+    /* Lookups where the Bloom filter matched but the key was not in the data file */
+    public long bloomFilterFalsePositives;
+    /* Observed false positive rate, relative to lookups for keys that were not in the data file */
+    public double bloomFilterFalsePositiveRate;
+
+    /* Time the operator thread waited for the flush memory budget in milliseconds */
+    public long flushWaitTime;
+
     @Override public String toString()
     {
       return "BucketIOStats{" +
@@ -659,24 +1203,55 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
           ", dataFilesRead=" + dataFilesRead +
           ", dataReadTime=" + dataReadTime +
           ", dataBytesRead=" + dataBytesRead +
+          ", compactionCount=" + compactionCount +
+          ", deltaFileCount=" + deltaFileCount +
+          ", bloomFilterHits=" + bloomFilterHits +
+          ", bloomFilterSkips=" + bloomFilterSkips +
+          ", bloomFilterFalsePositives=" + bloomFilterFalsePositives +
+          ", bloomFilterFalsePositiveRate=" + bloomFilterFalsePositiveRate +
+          ", flushWaitTime=" + flushWaitTime +
           '}';
     }
   }
 
+  private static double falsePositiveRate(BucketIOStats stats)
+  {
+    long negatives = stats.bloomFilterSkips + stats.bloomFilterFalsePositives;
+    return negatives == 0 ? 0 : (double)stats.bloomFilterFalsePositives / negatives;
+  }
+
   private void updateStats()
   {
     for(Bucket bucket : buckets.values())
     {
       BucketIOStats ioStats = getOrCretaStats(bucket.bucketKey);
       /* fill in stats for WAL */
-      HDHTWalManager.WalStats walStats = bucket.wal.getCounters();
-      ioStats.walBytesWritten = walStats.totalBytes;
-      ioStats.walFlushCount = walStats.flushCounts;
-      ioStats.walFlushTime = walStats.flushDuration;
-      ioStats.walKeysWritten = walStats.totalKeys;
+      if (!sharedWal) {
+        updateWalStats(ioStats, bucket.wal);
+      }
       ioStats.dataInWriteCache = bucket.writeCache.size();
       ioStats.dataInFrozenCache = bucket.frozenWriteCache.size();
     }
+    if (sharedWal) {
+      updateWalStats(getOrCretaStats(walKey), wal);
+    }
+    for (Map.Entry<Long, BloomFilterStats> entry : bloomFilterStats.entrySet()) {
+      BucketIOStats ioStats = getOrCretaStats(entry.getKey());
+      BloomFilterStats filterStats = entry.getValue();
+      ioStats.bloomFilterHits = filterStats.hits.get();
+      ioStats.bloomFilterSkips = filterStats.skips.get();
+      ioStats.bloomFilterFalsePositives = filterStats.falsePositives.get();
+      ioStats.bloomFilterFalsePositiveRate = falsePositiveRate(ioStats);
+    }
+  }
+
+  private static void updateWalStats(BucketIOStats ioStats, HDHTWalManager wal)
+  {
+    HDHTWalManager.WalStats walStats = wal.getCounters();
+    ioStats.walBytesWritten = walStats.totalBytes;
+    ioStats.walFlushCount = walStats.flushCounts;
+    ioStats.walFlushTime = walStats.flushDuration;
+    ioStats.walKeysWritten = walStats.totalKeys;
   }
 
   @JsonSerialize
@@ -721,22 +1296,34 @@ public class HDHTWriter extends HDHTReader implements CheckpointListener, Operat
           aggStats.globalStats.dataFilesRead += stats.dataFilesRead;
           aggStats.globalStats.dataBytesRead += stats.dataBytesRead;
 
+          aggStats.globalStats.compactionCount += stats.compactionCount;
+          aggStats.globalStats.deltaFileCount += stats.deltaFileCount;
+
+          aggStats.globalStats.bloomFilterHits += stats.bloomFilterHits;
+          aggStats.globalStats.bloomFilterSkips += stats.bloomFilterSkips;
+          aggStats.globalStats.bloomFilterFalsePositives += stats.bloomFilterFalsePositives;
+
+          aggStats.globalStats.flushWaitTime += stats.flushWaitTime;
+
           aggStats.aggregatedStats.put(bId, stats);
         }
       }
+      aggStats.globalStats.bloomFilterFalsePositiveRate = falsePositiveRate(aggStats.globalStats);
       return aggStats;
     }
   }
 
   /* A map holding stats for each bucket written by this partition */
-  private final HashMap<Long, BucketIOStats> bucketStats = Maps.newHashMap();
+  private final ConcurrentMap<Long, BucketIOStats> bucketStats = Maps.newConcurrentMap();
 
   private BucketIOStats getOrCretaStats(long bucketKey)
   {
     BucketIOStats ioStats = bucketStats.get(bucketKey);
     if (ioStats == null) {
-      ioStats = new BucketIOStats();
-      bucketStats.put(bucketKey, ioStats);
+      BucketIOStats existing = bucketStats.putIfAbsent(bucketKey, ioStats = new BucketIOStats());
+      if (existing != null) {
+        ioStats = existing;
+      }
     }
     return ioStats;
   }
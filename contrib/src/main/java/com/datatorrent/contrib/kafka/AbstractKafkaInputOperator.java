@@ -45,6 +45,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -143,6 +144,17 @@ public abstract class AbstractKafkaInputOperator<K extends KafkaConsumer> implem
   protected transient int operatorId;
   protected final transient Map<KafkaPartition, MutablePair<Long, Integer>> currentWindowRecoveryState;
   protected transient Map<KafkaPartition, Long> offsetStats = new HashMap<KafkaPartition, Long>();
+  /**
+   * The partitions seen by the operator, the offsets and counts below are indexed like this array.
+   */
+  private transient KafkaPartition[] trackedPartitions = new KafkaPartition[0];
+  private transient int lastPartitionIndex;
+  // offset of the last message emitted from each partition, -1 if none
+  private transient long[] emittedOffsets = new long[0];
+  // offset of the first message and number of messages emitted from each partition in the current window
+  private transient long[] windowStartOffsets = new long[0];
+  private transient int[] windowCounts = new int[0];
+  private final transient List<KafkaConsumer.KafkaMessage> pendingMessages = new ArrayList<KafkaConsumer.KafkaMessage>();
   private transient OperatorContext context = null;
   // By default the partition policy is 1:1
   public PartitionStrategy strategy = PartitionStrategy.ONE_TO_ONE;
@@ -267,9 +279,10 @@ public abstract class AbstractKafkaInputOperator<K extends KafkaConsumer> implem
             SimpleConsumer ksc = new SimpleConsumer(bk.host(), bk.port(), cons.getTimeout(), cons.getBufferSize(), cons.getClientId());
             FetchResponse fetchResponse = ksc.fetch(req);
             Integer count = 0;
+            int index = partitionIndex(kp);
             for (MessageAndOffset msg : fetchResponse.messageSet(consumer.topic, kp.getPartitionId())) {
               emitTuple(msg.message());
-              offsetStats.put(kp, msg.offset());
+              emittedOffsets[index] = msg.offset();
               count = count + 1;
               if (count.equals(rc.getValue().right))
                 break;
@@ -280,6 +293,7 @@ public abstract class AbstractKafkaInputOperator<K extends KafkaConsumer> implem
       if(windowId == idempotentStorageManager.getLargestRecoveryWindow()) {
         // Start the consumer at the largest recovery window
         SimpleKafkaConsumer cons = (SimpleKafkaConsumer)getConsumer();
+        updateOffsetStats();
         // Set the offset positions to the consumer
         Map<KafkaPartition, Long> currentOffsets = new HashMap<KafkaPartition, Long>(cons.getCurrentOffsets());
         // Increment the offsets
@@ -298,6 +312,13 @@ public abstract class AbstractKafkaInputOperator<K extends KafkaConsumer> implem
   @Override
   public void endWindow()
   {
+    updateOffsetStats();
+    for (int i = 0; i < windowCounts.length; i++) {
+      if (windowCounts[i] > 0) {
+        currentWindowRecoveryState.put(trackedPartitions[i], new MutablePair<Long, Integer>(windowStartOffsets[i], windowCounts[i]));
+        windowCounts[i] = 0;
+      }
+    }
     if (currentWindowId > idempotentStorageManager.getLargestRecoveryWindow()) {
       try {
         if((getConsumer() instanceof  SimpleKafkaConsumer)) {
@@ -356,27 +377,66 @@ public abstract class AbstractKafkaInputOperator<K extends KafkaConsumer> implem
     if (currentWindowId <= idempotentStorageManager.getLargestRecoveryWindow()) {
       return;
     }
-    int count = consumer.messageSize();
-    if (maxTuplesPerWindow > 0) {
-      count = Math.min(count, maxTuplesPerWindow - emitCount);
-    }
+    int count = consumer.pollMessages(pendingMessages, maxTuplesPerWindow - emitCount);
     for (int i = 0; i < count; i++) {
-      KafkaConsumer.KafkaMessage message = consumer.pollMessage();
+      KafkaConsumer.KafkaMessage message = pendingMessages.get(i);
+      int index = partitionIndex(message.kafkaPart);
       // Ignore the duplicate messages
-      if(offsetStats.containsKey(message.kafkaPart) && message.offSet <= offsetStats.get(message.kafkaPart))
+      if (message.offSet <= emittedOffsets[index]) {
         continue;
+      }
       emitTuple(message.msg);
-      offsetStats.put(message.kafkaPart, message.offSet);
-      MutablePair<Long, Integer> offsetAndCount = currentWindowRecoveryState.get(message.kafkaPart);
-      if(offsetAndCount == null) {
-        currentWindowRecoveryState.put(message.kafkaPart, new MutablePair<Long, Integer>(message.offSet, 1));
-      } else {
-        offsetAndCount.setRight(offsetAndCount.right+1);
+      emittedOffsets[index] = message.offSet;
+      if (windowCounts[index]++ == 0) {
+        windowStartOffsets[index] = message.offSet;
       }
     }
+    pendingMessages.clear();
     emitCount += count;
   }
 
+  /**
+   * Returns the index of the partition in the tracking arrays and adds the partition when it is new. The consumer
+   * threads reuse the partition instances, so the partition is looked up by identity before it is compared.
+   */
+  private int partitionIndex(KafkaPartition kafkaPartition)
+  {
+    if (lastPartitionIndex < trackedPartitions.length && trackedPartitions[lastPartitionIndex] == kafkaPartition) {
+      return lastPartitionIndex;
+    }
+    for (int i = 0; i < trackedPartitions.length; i++) {
+      if (trackedPartitions[i] == kafkaPartition) {
+        return lastPartitionIndex = i;
+      }
+    }
+    for (int i = 0; i < trackedPartitions.length; i++) {
+      if (trackedPartitions[i].equals(kafkaPartition)) {
+        return lastPartitionIndex = i;
+      }
+    }
+    int index = trackedPartitions.length;
+    trackedPartitions = Arrays.copyOf(trackedPartitions, index + 1);
+    trackedPartitions[index] = kafkaPartition;
+    emittedOffsets = Arrays.copyOf(emittedOffsets, index + 1);
+    Long offset = offsetStats.get(kafkaPartition);
+    emittedOffsets[index] = offset == null ? -1 : offset;
+    windowStartOffsets = Arrays.copyOf(windowStartOffsets, index + 1);
+    windowCounts = Arrays.copyOf(windowCounts, index + 1);
+    return lastPartitionIndex = index;
+  }
+
+  /**
+   * Copies the offsets of the last emitted messages to {@link #offsetStats}.
+   */
+  private void updateOffsetStats()
+  {
+    for (int i = 0; i < trackedPartitions.length; i++) {
+      if (emittedOffsets[i] >= 0) {
+        offsetStats.put(trackedPartitions[i], emittedOffsets[i]);
+      }
+    }
+  }
+
   public void setConsumer(K consumer)
   {
     this.consumer = consumer;
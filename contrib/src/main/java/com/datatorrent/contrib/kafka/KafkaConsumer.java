@@ -25,9 +25,13 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import kafka.message.Message;
 
@@ -75,9 +79,15 @@ public abstract class KafkaConsumer implements Closeable
 
   private int cacheSize = 1024;
 
+  /**
+   * How the messages are handed from the consumer threads to the operator thread
+   */
+  @NotNull
+  private HandoffStrategy handoffStrategy = HandoffStrategy.BLOCKING_QUEUE;
+
   protected transient boolean isAlive = false;
 
-  private transient ArrayBlockingQueue<KafkaMessage> holdingBuffer;
+  private transient MessageBuffer holdingBuffer;
 
   /**
    * The topic that this consumer consumes
@@ -116,7 +126,12 @@ public abstract class KafkaConsumer implements Closeable
    */
   public void create(){
     initBrokers();
-    holdingBuffer = new ArrayBlockingQueue<KafkaMessage>(cacheSize);
+    if (handoffStrategy == HandoffStrategy.RING_BUFFER) {
+      holdingBuffer = new RingMessageBuffer(cacheSize);
+    }
+    else {
+      holdingBuffer = new BlockingQueueMessageBuffer(cacheSize);
+    }
   }
 
   public void initBrokers()
@@ -185,11 +200,29 @@ public abstract class KafkaConsumer implements Closeable
     return topic;
   }
 
+  /**
+   * Removes a message from the holding buffer. The message is valid till the next message is polled.
+   *
+   * @return the message, null if there is none
+   */
   public KafkaMessage pollMessage()
   {
     return holdingBuffer.poll();
   }
 
+  /**
+   * Moves the available messages, at most maxMessages, from the holding buffer to the given collection. The messages
+   * are valid till the next messages are polled.
+   *
+   * @param messages the collection to add the messages to
+   * @param maxMessages the maximum number of messages to move
+   * @return the number of messages moved
+   */
+  public int pollMessages(Collection<? super KafkaMessage> messages, int maxMessages)
+  {
+    return holdingBuffer.drainTo(messages, maxMessages);
+  }
+
   public int messageSize()
   {
     return holdingBuffer.size();
@@ -225,10 +258,26 @@ public abstract class KafkaConsumer implements Closeable
     this.cacheSize = cacheSize;
   }
 
+  public HandoffStrategy getHandoffStrategy()
+  {
+    return handoffStrategy;
+  }
+
+  /**
+   * Sets how the messages are handed from the consumer threads to the operator thread, the holding buffer holds at
+   * most {@link #getCacheSize()} messages with either strategy.
+   *
+   * @param handoffStrategy the strategy
+   */
+  public void setHandoffStrategy(HandoffStrategy handoffStrategy)
+  {
+    this.handoffStrategy = handoffStrategy;
+  }
+
 
   final protected void putMessage(KafkaPartition partition, Message msg, long offset) throws InterruptedException{
     // block from receiving more message
-    holdingBuffer.put(new KafkaMessage(partition, msg, offset));
+    holdingBuffer.put(partition, msg, offset);
     statsSnapShot.mark(partition, msg.payloadSize());
   }
 
@@ -333,6 +382,242 @@ public abstract class KafkaConsumer implements Closeable
 
   }
 
+  /**
+   * The handoff of the messages from the consumer threads to the operator thread
+   */
+  public static enum HandoffStrategy
+  {
+    /**
+     * A bounded blocking queue shared by all the consumer threads
+     */
+    BLOCKING_QUEUE,
+    /**
+     * A single producer single consumer ring buffer per consumer thread, drained round robin by the operator thread
+     */
+    RING_BUFFER
+  }
+
+  /**
+   * The holding buffer between the consumer threads, which put the messages, and the operator thread, which polls
+   * them. A polled message is valid till the next poll, drain or clear.
+   */
+  interface MessageBuffer
+  {
+    void put(KafkaPartition partition, Message msg, long offset) throws InterruptedException;
+
+    KafkaMessage poll();
+
+    int drainTo(Collection<? super KafkaMessage> messages, int maxMessages);
+
+    int size();
+
+    void clear();
+  }
+
+  static class BlockingQueueMessageBuffer implements MessageBuffer
+  {
+    private final ArrayBlockingQueue<KafkaMessage> queue;
+
+    BlockingQueueMessageBuffer(int capacity)
+    {
+      queue = new ArrayBlockingQueue<KafkaMessage>(capacity);
+    }
+
+    @Override
+    public void put(KafkaPartition partition, Message msg, long offset) throws InterruptedException
+    {
+      queue.put(new KafkaMessage(partition, msg, offset));
+    }
+
+    @Override
+    public KafkaMessage poll()
+    {
+      return queue.poll();
+    }
+
+    @Override
+    public int drainTo(Collection<? super KafkaMessage> messages, int maxMessages)
+    {
+      return queue.drainTo(messages, maxMessages);
+    }
+
+    @Override
+    public int size()
+    {
+      return queue.size();
+    }
+
+    @Override
+    public void clear()
+    {
+      queue.clear();
+    }
+  }
+
+  /**
+   * A buffer with a ring of preallocated messages per consumer thread. A consumer thread only writes to its own ring
+   * and the operator thread only reads, so neither side takes a lock. The number of messages which are put and not
+   * released by the operator thread is bounded by the capacity, a consumer thread waits while the buffer is full.
+   * The operator thread releases the polled messages when it polls again, after which their slots are reused. Released
+   * slots don't reference the Kafka messages, so the payloads held by the buffer are bounded by the capacity too.
+   */
+  static class RingMessageBuffer implements MessageBuffer
+  {
+    private static final long PARK_NANOS = 100000L;
+
+    private final int capacity;
+    private final AtomicInteger size = new AtomicInteger();
+    private final CopyOnWriteArrayList<Ring> rings = new CopyOnWriteArrayList<Ring>();
+    private final ThreadLocal<Ring> threadRing = new ThreadLocal<Ring>();
+    // operator thread state
+    private int nextRing;
+
+    RingMessageBuffer(int capacity)
+    {
+      this.capacity = capacity;
+    }
+
+    @Override
+    public void put(KafkaPartition partition, Message msg, long offset) throws InterruptedException
+    {
+      Ring ring = threadRing.get();
+      if (ring == null) {
+        ring = new Ring(Thread.currentThread(), capacity);
+        threadRing.set(ring);
+        rings.add(ring);
+      }
+      //reserve a slot, the size never exceeds the capacity
+      int current = size.get();
+      while (current >= capacity || !size.compareAndSet(current, current + 1)) {
+        if (current >= capacity) {
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+          LockSupport.parkNanos(PARK_NANOS);
+        }
+        current = size.get();
+      }
+      //the ring holds at most as many unreleased messages as the buffer, so the slot is released
+      long tail = ring.tail.get();
+      int index = (int) (tail & ring.mask);
+      KafkaMessage message = ring.slots[index];
+      if (message == null) {
+        ring.slots[index] = new KafkaMessage(partition, msg, offset);
+      }
+      else {
+        message.kafkaPart = partition;
+        message.msg = msg;
+        message.offSet = offset;
+      }
+      ring.tail.lazySet(tail + 1);
+    }
+
+    @Override
+    public KafkaMessage poll()
+    {
+      release();
+      int ringCount = rings.size();
+      for (int i = 0; i < ringCount; i++) {
+        Ring ring = rings.get((nextRing + i) % ringCount);
+        if (ring.head < ring.tail.get()) {
+          nextRing = (nextRing + i + 1) % ringCount;
+          return ring.slots[(int) (ring.head++ & ring.mask)];
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public int drainTo(Collection<? super KafkaMessage> messages, int maxMessages)
+    {
+      release();
+      int count = 0;
+      int ringCount = rings.size();
+      for (int i = 0; i < ringCount && count < maxMessages; i++) {
+        Ring ring = rings.get((nextRing + i) % ringCount);
+        long tail = ring.tail.get();
+        while (ring.head < tail && count < maxMessages) {
+          messages.add(ring.slots[(int) (ring.head++ & ring.mask)]);
+          count++;
+        }
+      }
+      if (ringCount > 0) {
+        nextRing = (nextRing + 1) % ringCount;
+      }
+      if (count == 0) {
+        removeEndedRings();
+      }
+      return count;
+    }
+
+    @Override
+    public int size()
+    {
+      int available = 0;
+      for (Ring ring : rings) {
+        available += ring.tail.get() - ring.head;
+      }
+      return available;
+    }
+
+    @Override
+    public void clear()
+    {
+      for (Ring ring : rings) {
+        ring.head = ring.tail.get();
+      }
+      release();
+      removeEndedRings();
+    }
+
+    /**
+     * Releases the slots of the polled messages. The messages don't reference the Kafka messages anymore.
+     */
+    private void release()
+    {
+      int released = 0;
+      for (Ring ring : rings) {
+        for (; ring.released < ring.head; ring.released++) {
+          ring.slots[(int) (ring.released & ring.mask)].msg = null;
+          released++;
+        }
+      }
+      if (released > 0) {
+        size.addAndGet(-released);
+      }
+    }
+
+    private void removeEndedRings()
+    {
+      for (Ring ring : rings) {
+        if (!ring.producer.isAlive() && ring.released == ring.tail.get()) {
+          rings.remove(ring);
+        }
+      }
+    }
+
+    private static final class Ring
+    {
+      final Thread producer;
+      final KafkaMessage[] slots;
+      final int mask;
+      // position of the next message put by the producer
+      final AtomicLong tail = new AtomicLong();
+      // position of the next message polled by the operator thread
+      long head;
+      // position of the next message released by the operator thread
+      long released;
+
+      Ring(Thread producer, int capacity)
+      {
+        this.producer = producer;
+        int length = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        slots = new KafkaMessage[length];
+        mask = length - 1;
+      }
+    }
+  }
+
   public static class KafkaMeterStatsUtil {
 
     public static Map<KafkaPartition, Long> getOffsetsForPartitions(List<KafkaMeterStats> kafkaMeterStats)
@@ -28,8 +28,11 @@ import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.common.util.DTThrowable;
+import com.datatorrent.common.util.Slice;
+import com.datatorrent.lib.util.ReusableByteArrayReader;
 import com.datatorrent.lib.util.ReusableStringReader;
 import java.io.*;
+import java.nio.charset.Charset;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -79,6 +82,9 @@ public abstract class AbstractCsvParser<T> extends BaseOperator
 
   @NotNull
   private transient ReusableStringReader csvStringReader = new ReusableStringReader();
+  private transient ReusableByteArrayReader csvByteReader;
+  //true when the csv reader reads the records from csvStringReader
+  private transient boolean decodeToString;
 
   public AbstractCsvParser()
   {
@@ -104,36 +110,66 @@ public abstract class AbstractCsvParser<T> extends BaseOperator
     @Override
     public void process(byte[] tuple)
     {
-      try {
-        csvStringReader.open(new String(tuple, inputEncoding));
-        if (hasHeader) {
-          String[] header = csvReader.getHeader(true);
-          int len = header.length;
-          for (int i = 0; i < len; i++) {
-            logger.debug("header is {}", header[i]);
-            @SuppressWarnings("unchecked")
-            T headerData = (T)header[i];
-            output.emit(headerData);
-          }
-        }
+      processBytes(tuple, 0, tuple.length);
+    }
 
-        while (true) {
-          T data = readData(properties, processors);
-          if (data == null) {
-            break;
-          }
-          logger.debug("data in loop is {}", data.toString());
-          output.emit(data);
-        }
-      }
-      catch (IOException ex) {
-        throw new RuntimeException(ex);
-      }
+  };
 
+  /**
+   * This input port receives slices of byte arrays as tuples. The records are decoded from the slice without copying
+   * the bytes into an intermediate array.
+   */
+  public final transient DefaultInputPort<Slice> sliceInput = new DefaultInputPort<Slice>()
+  {
+    @Override
+    public void process(Slice tuple)
+    {
+      processBytes(tuple.buffer, tuple.offset, tuple.length);
     }
 
   };
 
+  /**
+   * Parses the records in a range of a byte array and emits them.
+   *
+   * @param bytes The byte array.
+   * @param offset The offset of the records in the array.
+   * @param length The length of the records.
+   */
+  protected void processBytes(byte[] bytes, int offset, int length)
+  {
+    try {
+      if (decodeToString) {
+        csvStringReader.open(new String(bytes, offset, length, inputEncoding));
+      }
+      else {
+        csvByteReader.open(bytes, offset, length);
+      }
+      if (hasHeader) {
+        String[] header = csvReader.getHeader(true);
+        int len = header.length;
+        for (int i = 0; i < len; i++) {
+          logger.debug("header is {}", header[i]);
+          @SuppressWarnings("unchecked")
+          T headerData = (T)header[i];
+          output.emit(headerData);
+        }
+      }
+
+      while (true) {
+        T data = readData(properties, processors);
+        if (data == null) {
+          break;
+        }
+        logger.debug("data in loop is {}", data.toString());
+        output.emit(data);
+      }
+    }
+    catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
   @Override
   public void setup(OperatorContext context)
   {
@@ -170,7 +206,9 @@ public abstract class AbstractCsvParser<T> extends BaseOperator
     processors = new CellProcessor[countKeyValue];
     initialise(properties, processors);
     CsvPreference preference = new CsvPreference.Builder('"', fieldDelimiter, lineDelimiter).build();
-    csvReader = getReader(csvStringReader, preference);
+    csvByteReader = new ReusableByteArrayReader(Charset.forName(inputEncoding));
+    decodeToString = false;
+    csvReader = getByteReader(csvByteReader, preference);
 
   }
 
@@ -232,6 +270,22 @@ public abstract class AbstractCsvParser<T> extends BaseOperator
    */
   protected abstract ICsvReader getReader(ReusableStringReader reader, CsvPreference preference);
 
+  /**
+   * It returns an instance of specific CsvReader which reads the records straight from the input bytes, without
+   * decoding every record into a String first. The default returns the reader of
+   * {@link #getReader(ReusableStringReader, CsvPreference)}, in which case every record is decoded into a String.
+   * Concrete classes override this method to avoid the String per record.
+   *
+   * @param reader reader of the characters of the record bytes
+   * @param preference
+   * @return CsvReader
+   */
+  protected ICsvReader getByteReader(Reader reader, CsvPreference preference)
+  {
+    decodeToString = true;
+    return getReader(csvStringReader, preference);
+  }
+
   /**
    * Any concrete class derived from AbstractParser has to implement this method.
    * It returns the specific data structure in which field values are being read to.
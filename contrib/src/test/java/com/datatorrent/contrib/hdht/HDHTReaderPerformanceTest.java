@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.hdht;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.common.util.Slice;
+import com.datatorrent.contrib.hdht.tfile.TFileImpl;
+import com.datatorrent.lib.util.TestUtils;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Measures lookup throughput of {@link HDHTReader} with increasing number of concurrent threads.
+ * <p>
+ * Lookups are spread over multiple buckets and files. The size of the test can be changed with system properties:
+ * <pre>
+ *   -DTEST_KV_COUNT=100000 -DTEST_LOOKUP_COUNT=1000000 -DTEST_MAX_THREADS=16
+ * </pre>
+ */
+public class HDHTReaderPerformanceTest
+{
+  private static final Logger LOG = LoggerFactory.getLogger(HDHTReaderPerformanceTest.class);
+
+  private static int testSize = Integer.parseInt(System.getProperty("TEST_KV_COUNT", "10000"));
+  private static int lookupCount = Integer.parseInt(System.getProperty("TEST_LOOKUP_COUNT", "100000"));
+  private static int maxThreads = Integer.parseInt(System.getProperty("TEST_MAX_THREADS", "8"));
+  private static final int NUM_BUCKETS = 4;
+
+  @Rule
+  public final TestUtils.TestInfo testInfo = new TestUtils.TestInfo();
+
+  @Test
+  public void testConcurrentLookups() throws Exception
+  {
+    File file = new File(testInfo.getDir());
+    FileUtils.deleteDirectory(file);
+
+    TFileImpl fa = new TFileImpl.DTFileImpl();
+    fa.setBasePath(file.getAbsolutePath());
+
+    HDHTWriter hds = new HDHTWriter();
+    hds.setFileStore(fa);
+    hds.setFlushIntervalCount(0);
+    hds.setMaxFileSize(1024 * 1024);
+    hds.setup(null);
+    hds.writeExecutor = MoreExecutors.sameThreadExecutor(); // synchronous flush on endWindow
+    hds.beginWindow(1);
+    for (int i = 0; i < testSize; i++) {
+      hds.put(i % NUM_BUCKETS, HDHTWriterTest.newKey(i % NUM_BUCKETS, i), ("data" + i).getBytes());
+    }
+    hds.endWindow();
+    hds.checkpointed(1);
+    hds.committed(1);
+    hds.teardown();
+
+    long singleThreadRate = 0;
+    for (int numThreads = 1; numThreads <= maxThreads; numThreads *= 2) {
+      final HDHTReader reader = new HDHTReader();
+      reader.setFileStore(fa);
+      reader.setup(null);
+
+      // warm up file readers and block cache
+      runLookups(reader, 1, testSize);
+
+      long start = System.nanoTime();
+      runLookups(reader, numThreads, lookupCount);
+      long elapsedNanos = System.nanoTime() - start;
+      reader.teardown();
+
+      long rate = lookupCount * 1000000000L / Math.max(1, elapsedNanos);
+      if (numThreads == 1) {
+        singleThreadRate = rate;
+      }
+      LOG.info("threads {} lookups/s {} speedup {}", numThreads, rate, String.format("%.2f", (double)rate / singleThreadRate));
+    }
+  }
+
+  private void runLookups(final HDHTReader reader, int numThreads, int count) throws Exception
+  {
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<Integer>> results = Lists.newArrayList();
+    final int lookupsPerThread = count / numThreads;
+    for (int t = 0; t < numThreads; t++) {
+      final long seed = t;
+      results.add(executor.submit(new Callable<Integer>()
+      {
+        @Override
+        public Integer call() throws Exception
+        {
+          Random random = new Random(seed);
+          for (int i = 0; i < lookupsPerThread; i++) {
+            int seq = random.nextInt(testSize);
+            Slice value = reader.getSlice(seq % NUM_BUCKETS, HDHTWriterTest.newKey(seq % NUM_BUCKETS, seq));
+            Assert.assertArrayEquals("value " + seq, ("data" + seq).getBytes(), value.toByteArray());
+          }
+          return lookupsPerThread;
+        }
+      }));
+    }
+    for (Future<Integer> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+  }
+
+}
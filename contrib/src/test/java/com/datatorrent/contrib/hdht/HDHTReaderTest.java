@@ -16,19 +16,27 @@
 package com.datatorrent.contrib.hdht;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 
 import com.datatorrent.common.util.Slice;
 import com.datatorrent.contrib.hdht.HDHTFileAccess;
+import com.datatorrent.contrib.hdht.HDHTFileAccess.HDSFileReader;
 import com.datatorrent.contrib.hdht.HDHTFileAccessFSImpl;
 import com.datatorrent.contrib.hdht.HDHTReader;
 import com.datatorrent.contrib.hdht.HDHTWriter;
 import com.datatorrent.contrib.hdht.HDHTReader.HDSQuery;
+import com.datatorrent.contrib.hdht.tfile.TFileImpl;
 import com.datatorrent.lib.util.TestUtils;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -187,4 +195,220 @@ public class HDHTReaderTest
     reader.teardown();
 
   }
+
+  @Test
+  public void testBloomFilter() throws Exception
+  {
+    File file = new File(testInfo.getDir());
+    FileUtils.deleteDirectory(file);
+
+    HDHTFileAccessFSImpl fa = new MockFileAccess();
+    fa.setBasePath(file.getAbsolutePath());
+
+    HDHTWriter hds = new HDHTWriter();
+    hds.setFileStore(fa);
+    hds.setFlushSize(0); // flush after every key
+    hds.setBloomFilterFalsePositiveRate(0.01);
+
+    hds.setup(null);
+    hds.writeExecutor = MoreExecutors.sameThreadExecutor(); // synchronous flush on endWindow
+    hds.beginWindow(1);
+    for (int i = 0; i < 100; i += 2) {
+      Slice key = HDHTWriterTest.newKey(1, i);
+      hds.put(1, key, ("data" + i).getBytes());
+    }
+    hds.endWindow();
+    hds.checkpointed(1);
+    hds.committed(1);
+    hds.teardown();
+
+    Assert.assertTrue("filter file", new File(file, "1/1-0" + HDHTBloomFilter.FILE_SUFFIX).exists());
+
+    HDHTReader reader = new HDHTReader();
+    reader.setFileStore(fa);
+    reader.setup(null);
+    for (int i = 0; i < 100; i++) {
+      byte[] value = reader.get(1, HDHTWriterTest.newKey(1, i));
+      if (i % 2 == 0) {
+        Assert.assertArrayEquals("get " + i, ("data" + i).getBytes(), value);
+      } else {
+        Assert.assertNull("get " + i, value);
+      }
+    }
+    HDHTReader.BloomFilterStats stats = reader.getBloomFilterStats(1);
+    Assert.assertEquals("hits", 50, stats.hits);
+    Assert.assertEquals("lookups for missing keys", 50, stats.skips + stats.falsePositives);
+    Assert.assertTrue("skips " + stats.skips, stats.skips > 40);
+    reader.teardown();
+  }
+
+  @Test
+  public void testGetSlice() throws Exception
+  {
+    File file = new File(testInfo.getDir());
+    FileUtils.deleteDirectory(file);
+
+    TFileImpl fa = new TFileImpl.DTFileImpl();
+    fa.setBasePath(file.getAbsolutePath());
+
+    Slice key0 = HDHTWriterTest.newKey(1, 0);
+    Slice key1 = HDHTWriterTest.newKey(1, 1);
+    writeKey(fa, key0, "data0");
+    writeKey(fa, key1, "data1");
+
+    HDHTReader reader = new HDHTReader();
+    reader.setFileStore(fa);
+    reader.setup(null);
+
+    Slice value = reader.getSlice(1, key1);
+    Assert.assertNotNull("value", value);
+    Assert.assertTrue("value references block buffer", value.buffer.length > value.length);
+    Assert.assertArrayEquals("value", "data1".getBytes(), value.toByteArray());
+
+    Slice value0 = reader.getSlice(1, key0);
+    Assert.assertArrayEquals("value", "data0".getBytes(), value0.toByteArray());
+    Assert.assertArrayEquals("value still valid", "data1".getBytes(), value.toByteArray());
+    Assert.assertNull("unknown key", reader.getSlice(1, HDHTWriterTest.newKey(1, 2)));
+    reader.teardown();
+  }
+
+  /**
+   * Meta data written before level 0 files were added is read without the fields that were added since, the bucket
+   * continues with the current format.
+   */
+  @Test
+  public void testReadMetaWithoutVersion() throws Exception
+  {
+    File file = new File(testInfo.getDir());
+    FileUtils.deleteDirectory(file);
+    File bucketDir = new File(file, "1");
+    bucketDir.mkdirs();
+    InputStream is = getClass().getResourceAsStream("/com/datatorrent/contrib/hdht/_META_v1");
+    FileUtils.copyInputStreamToFile(is, new File(bucketDir, HDHTReader.FNAME_META));
+    is.close();
+
+    HDHTFileAccessFSImpl fa = new MockFileAccess();
+    fa.setBasePath(file.getAbsolutePath());
+    HDHTWriter hds = new HDHTWriter();
+    hds.setFileStore(fa);
+    hds.setFlushSize(0); // flush after every key
+    hds.setMaxDeltaFiles(5);
+
+    HDHTReader.BucketMeta meta = hds.loadBucketMeta(1);
+    Assert.assertEquals("committed window", 5, meta.committedWid);
+    Assert.assertEquals("file sequence", 2, meta.fileSeq);
+    Assert.assertEquals("recovery start", 100, meta.recoveryStartWalPosition.offset);
+    Assert.assertEquals("files", 2, meta.files.size());
+    Assert.assertEquals("file", "1-0", meta.files.get(HDHTWriterTest.newKey(1, 0)).name);
+    Assert.assertEquals("file", "1-1", meta.files.get(HDHTWriterTest.newKey(1, 5)).name);
+    Assert.assertTrue("delta files", meta.deltaFiles.isEmpty());
+
+    Slice key = HDHTWriterTest.newKey(1, 7);
+    hds.setup(null);
+    hds.writeExecutor = MoreExecutors.sameThreadExecutor(); // synchronous flush on endWindow
+    hds.beginWindow(6);
+    hds.put(1, key, "data7".getBytes());
+    hds.endWindow();
+    hds.checkpointed(6);
+    hds.committed(6);
+    hds.teardown();
+
+    meta = hds.loadBucketMeta(1);
+    Assert.assertEquals("files", 2, meta.files.size());
+    Assert.assertEquals("delta files", 1, meta.deltaFiles.size());
+    Assert.assertEquals("delta file", "1-2", meta.deltaFiles.get(0).name);
+
+    HDHTReader reader = new HDHTReader();
+    reader.setFileStore(fa);
+    reader.setup(null);
+    Assert.assertArrayEquals("value", "data7".getBytes(), reader.get(1, key));
+    reader.teardown();
+  }
+
+  /**
+   * A lookup that started before the meta data was replaced completes against its snapshot, the reader it opens for a
+   * file that is no longer referenced is closed instead of pooled.
+   */
+  @Test
+  public void testReaderOfRemovedFile() throws Exception
+  {
+    File file = new File(testInfo.getDir());
+    FileUtils.deleteDirectory(file);
+
+    final AtomicInteger openReaders = new AtomicInteger();
+    final HDHTReader[] reader = new HDHTReader[1];
+    final String[] removedFile = new String[1];
+    HDHTFileAccessFSImpl fa = new MockFileAccess() {
+      @Override
+      public FSDataInputStream getInputStream(long bucketKey, String fileName) throws IOException
+      {
+        if (reader[0] != null && removedFile[0] == null && fileName.endsWith(HDHTBloomFilter.FILE_SUFFIX)) {
+          // the meta data is replaced after the lookup started and before the data file is opened
+          removedFile[0] = fileName.substring(0, fileName.length() - HDHTBloomFilter.FILE_SUFFIX.length());
+          reader[0].invalidateReader(bucketKey, Collections.singleton(removedFile[0]));
+        }
+        return super.getInputStream(bucketKey, fileName);
+      }
+
+      @Override
+      public HDSFileReader getReader(long bucketKey, String fileName) throws IOException
+      {
+        final HDSFileReader fileReader = super.getReader(bucketKey, fileName);
+        openReaders.incrementAndGet();
+        return new HDSFileReader() {
+          @Override
+          public void readFully(TreeMap<Slice, byte[]> data) throws IOException
+          {
+            fileReader.readFully(data);
+          }
+
+          @Override
+          public void reset() throws IOException
+          {
+            fileReader.reset();
+          }
+
+          @Override
+          public boolean seek(Slice key) throws IOException
+          {
+            return fileReader.seek(key);
+          }
+
+          @Override
+          public boolean next(Slice key, Slice value) throws IOException
+          {
+            return fileReader.next(key, value);
+          }
+
+          @Override
+          public void close() throws IOException
+          {
+            openReaders.decrementAndGet();
+            fileReader.close();
+          }
+        };
+      }
+    };
+    fa.setBasePath(file.getAbsolutePath());
+
+    Slice key = HDHTWriterTest.newKey(1, 1);
+    writeKey(fa, key, "data1");
+
+    reader[0] = new HDHTReader();
+    reader[0].setFileStore(fa);
+    reader[0].setup(null);
+
+    Assert.assertArrayEquals("value", "data1".getBytes(), reader[0].get(1, key));
+    Assert.assertNotNull("removed file", removedFile[0]);
+    Assert.assertEquals("readers of the removed file", 0, openReaders.get());
+
+    // the reader of the reloaded meta data is kept for the next lookup
+    Assert.assertArrayEquals("value", "data1".getBytes(), reader[0].get(1, key));
+    Assert.assertEquals("pooled readers", 1, openReaders.get());
+    Assert.assertArrayEquals("value", "data1".getBytes(), reader[0].get(1, key));
+    Assert.assertEquals("pooled readers", 1, openReaders.get());
+
+    reader[0].teardown();
+    Assert.assertEquals("open readers", 0, openReaders.get());
+  }
 }
@@ -20,9 +20,12 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.RegexFileFilter;
@@ -35,6 +38,7 @@ import com.datatorrent.contrib.hdht.HDHTFileAccessFSImpl;
 import com.datatorrent.contrib.hdht.HDHTWalManager;
 import com.datatorrent.contrib.hdht.HDHTWriter;
 import com.datatorrent.contrib.hdht.HDHTFileAccess.HDSFileReader;
+import com.datatorrent.contrib.hdht.HDHTFileAccess.HDSFileWriter;
 import com.datatorrent.contrib.hdht.HDHTReader.HDSQuery;
 import com.datatorrent.contrib.hdht.hfile.HFileImpl;
 import com.datatorrent.contrib.hdht.tfile.TFileImpl;
@@ -347,6 +351,286 @@ public class HDHTWriterTest
     Assert.assertEquals(5, seq);
   }
 
+  @Test
+  public void testTieredCompaction() throws Exception
+  {
+    File file = new File(testInfo.getDir());
+    FileUtils.deleteDirectory(file);
+
+    HDHTFileAccessFSImpl fa = new MockFileAccess();
+    fa.setBasePath(file.getAbsolutePath());
+    HDHTWriter hds = new HDHTWriter();
+    hds.setFileStore(fa);
+    hds.setFlushIntervalCount(0); // flush after every window
+    hds.setMaxDeltaFiles(2);
+
+    long BUCKETKEY = 1;
+
+    hds.setup(null);
+    hds.writeExecutor = MoreExecutors.sameThreadExecutor(); // synchronous flush on endWindow
+
+    long wid = 0;
+    for (long seq = 1; seq <= 3; seq++) {
+      hds.beginWindow(++wid);
+      for (long i = 1; i <= 5; i++) {
+        hds.put(BUCKETKEY, newKey(BUCKETKEY, i), ("data" + i + "-" + seq).getBytes());
+      }
+      hds.endWindow();
+      hds.checkpointed(wid);
+      hds.committed(wid);
+      HDHTWriter.BucketMeta meta = hds.loadBucketMeta(BUCKETKEY);
+      Assert.assertEquals("data files " + seq, seq > 2 ? 1 : 0, meta.files.size());
+      Assert.assertEquals("delta files " + seq, seq > 2 ? 0 : seq, meta.deltaFiles.size());
+      for (long i = 1; i <= 5; i++) {
+        Assert.assertArrayEquals("get " + i, ("data" + i + "-" + seq).getBytes(), hds.get(BUCKETKEY, newKey(BUCKETKEY, i)));
+      }
+    }
+
+    // delete in level 0 file hides key in level 1 file
+    hds.beginWindow(++wid);
+    hds.delete(BUCKETKEY, newKey(BUCKETKEY, 3));
+    hds.put(BUCKETKEY, newKey(BUCKETKEY, 6), "data6".getBytes());
+    hds.endWindow();
+    hds.checkpointed(wid);
+    hds.committed(wid);
+    Assert.assertEquals("delta files", 1, hds.loadBucketMeta(BUCKETKEY).deltaFiles.size());
+    Assert.assertNull("get deleted", hds.get(BUCKETKEY, newKey(BUCKETKEY, 3)));
+    Assert.assertArrayEquals("get 6", "data6".getBytes(), hds.get(BUCKETKEY, newKey(BUCKETKEY, 6)));
+    Assert.assertArrayEquals("get 5", "data5-3".getBytes(), hds.get(BUCKETKEY, newKey(BUCKETKEY, 5)));
+
+    for (int i = 0; i < 2; i++) {
+      hds.beginWindow(++wid);
+      hds.put(BUCKETKEY, newKey(BUCKETKEY, 1), ("data1-" + wid).getBytes());
+      hds.endWindow();
+      hds.checkpointed(wid);
+      hds.committed(wid);
+    }
+    HDHTWriter.BucketMeta meta = hds.loadBucketMeta(BUCKETKEY);
+    Assert.assertEquals("delta files after compaction", 0, meta.deltaFiles.size());
+    Assert.assertEquals("data files after compaction", 1, meta.files.size());
+    hds.teardown();
+
+    TreeMap<Slice, byte[]> data = readFile(hds, BUCKETKEY, meta.files.firstEntry().getValue().name);
+    Assert.assertEquals("keys " + data.keySet(), 5, data.size());
+    Assert.assertNull("deleted key", data.get(newKey(BUCKETKEY, 3)));
+    Assert.assertArrayEquals("compacted key", ("data1-" + wid).getBytes(), data.get(newKey(BUCKETKEY, 1)));
+  }
+
+  @Test
+  public void testMultiBucketFlush() throws Exception
+  {
+    File file = new File(testInfo.getDir());
+    FileUtils.deleteDirectory(file);
+
+    // data files of the flushes are opened once the test releases them
+    final CountDownLatch twoFlushing = new CountDownLatch(2);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger flushing = new AtomicInteger();
+    HDHTFileAccessFSImpl fa = new MockFileAccess()
+    {
+      @Override
+      public HDSFileWriter getWriter(long bucketKey, String fileName) throws IOException
+      {
+        flushing.incrementAndGet();
+        twoFlushing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        } finally {
+          flushing.decrementAndGet();
+        }
+        return super.getWriter(bucketKey, fileName);
+      }
+    };
+    fa.setBasePath(file.getAbsolutePath());
+    final HDHTWriter hds = new HDHTWriter();
+    hds.setFileStore(fa);
+    hds.setFlushSize(1000);
+    hds.setFlushIntervalCount(1);
+    hds.setFlushThreads(4);
+    // the write cache of a bucket is 16 bytes key and 5 bytes value, 2 buckets fit into the budget
+    hds.setMaxFrozenBytes(50);
+
+    hds.setup(null);
+
+    long wid = 0;
+    for (int i = 0; i < 2; i++) {
+      hds.beginWindow(++wid);
+      for (long bucketKey = 1; bucketKey <= 4; bucketKey++) {
+        hds.put(bucketKey, newKey(bucketKey, 0), ("data" + wid).getBytes());
+      }
+      hds.endWindow();
+      hds.checkpointed(wid);
+    }
+
+    final long committedWindowId = wid;
+    Thread committer = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        hds.committed(committedWindowId);
+      }
+    };
+    committer.start();
+
+    // 2 buckets are flushed by separate threads, the next bucket waits for the budget
+    Assert.assertTrue("concurrent flushes", twoFlushing.await(10, TimeUnit.SECONDS));
+    committer.join(500);
+    Assert.assertTrue("committed waits for the budget", committer.isAlive());
+    Assert.assertEquals("flushes within budget", 2, flushing.get());
+
+    release.countDown();
+    committer.join(10000);
+    Assert.assertFalse("committed", committer.isAlive());
+    hds.writeExecutor.shutdown();
+    Assert.assertTrue("flushed", hds.writeExecutor.awaitTermination(10, TimeUnit.SECONDS));
+
+    // flush interval is tracked per bucket, all buckets are flushed in the same call
+    for (long bucketKey = 1; bucketKey <= 4; bucketKey++) {
+      HDHTWriter.BucketMeta meta = hds.loadBucketMeta(bucketKey);
+      Assert.assertEquals("data files bucket " + bucketKey, 1, meta.files.size());
+      Assert.assertEquals("committed window bucket " + bucketKey, wid, meta.committedWid);
+    }
+    hds.teardown();
+  }
+
+  @Test
+  public void testScan() throws Exception
+  {
+    File file = new File(testInfo.getDir());
+    FileUtils.deleteDirectory(file);
+
+    HDHTFileAccessFSImpl fa = new MockFileAccess();
+    fa.setBasePath(file.getAbsolutePath());
+    HDHTWriter hds = new HDHTWriter();
+    hds.setFileStore(fa);
+    hds.setFlushIntervalCount(0); // flush after every window
+    hds.setMaxDeltaFiles(5);
+    hds.setMaxFileSize(1); // single entry per data file
+
+    long BUCKETKEY = 1;
+
+    hds.setup(null);
+    hds.writeExecutor = MoreExecutors.sameThreadExecutor(); // synchronous flush on endWindow
+
+    // data files
+    hds.setMaxDeltaFiles(0);
+    hds.beginWindow(1);
+    for (long i = 0; i < 10; i++) {
+      hds.put(BUCKETKEY, newKey(BUCKETKEY, i), ("data" + i).getBytes());
+    }
+    hds.endWindow();
+    hds.checkpointed(1);
+    hds.committed(1);
+
+    // delta file
+    hds.setMaxDeltaFiles(5);
+    hds.beginWindow(2);
+    hds.put(BUCKETKEY, newKey(BUCKETKEY, 3), "update3".getBytes());
+    hds.delete(BUCKETKEY, newKey(BUCKETKEY, 4));
+    hds.put(BUCKETKEY, newKey(BUCKETKEY, 11), "data11".getBytes());
+    hds.endWindow();
+    hds.checkpointed(2);
+    hds.committed(2);
+    Assert.assertEquals("delta files", 1, hds.loadBucketMeta(BUCKETKEY).deltaFiles.size());
+
+    // uncommitted
+    hds.beginWindow(3);
+    hds.put(BUCKETKEY, newKey(BUCKETKEY, 5), "update5".getBytes());
+    hds.delete(BUCKETKEY, newKey(BUCKETKEY, 6));
+    hds.put(BUCKETKEY, newKey(BUCKETKEY, 7), "update7".getBytes());
+
+    TreeMap<Slice, byte[]> expected = new TreeMap<Slice, byte[]>(hds.getKeyComparator());
+    expected.put(newKey(BUCKETKEY, 2), "data2".getBytes());
+    expected.put(newKey(BUCKETKEY, 3), "update3".getBytes());
+    expected.put(newKey(BUCKETKEY, 5), "update5".getBytes());
+
+    HDHT.Scanner scanner = hds.scan(BUCKETKEY, newKey(BUCKETKEY, 2), newKey(BUCKETKEY, 7));
+    Slice key = new Slice(null, 0, 0);
+    Slice value = new Slice(null, 0, 0);
+    for (Map.Entry<Slice, byte[]> e : expected.entrySet()) {
+      Assert.assertTrue("next " + e.getKey(), scanner.next(key, value));
+      Assert.assertEquals("key", e.getKey(), new Slice(key.toByteArray()));
+      Assert.assertArrayEquals("value " + e.getKey(), e.getValue(), value.toByteArray());
+    }
+    Assert.assertFalse("end of range", scanner.next(key, value));
+    scanner.close();
+
+    int count = 0;
+    scanner = hds.scan(BUCKETKEY, null, null);
+    while (scanner.next(key, value)) {
+      count++;
+    }
+    scanner.close();
+    Assert.assertEquals("keys", 9, count);
+
+    hds.endWindow();
+    hds.teardown();
+  }
+
+  @Test
+  public void testScanDuringFlush() throws Exception
+  {
+    File file = new File(testInfo.getDir());
+    FileUtils.deleteDirectory(file);
+
+    HDHTFileAccessFSImpl fa = new MockFileAccess();
+    fa.setBasePath(file.getAbsolutePath());
+    HDHTWriter hds = new HDHTWriter();
+    hds.setFileStore(fa);
+    hds.setFlushIntervalCount(0); // flush after every window
+
+    long BUCKETKEY = 1;
+
+    hds.setup(null);
+    hds.writeExecutor.shutdown();
+    hds.writeExecutor = Executors.newSingleThreadExecutor();
+    // the flush waits till the scan is positioned in the frozen write cache
+    final CountDownLatch scanStarted = new CountDownLatch(1);
+    hds.writeExecutor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try {
+          scanStarted.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+
+    hds.beginWindow(1);
+    for (long i = 0; i < 10; i++) {
+      hds.put(BUCKETKEY, newKey(BUCKETKEY, i), ("data" + i).getBytes());
+    }
+    hds.endWindow();
+    hds.checkpointed(1);
+    hds.committed(1);
+
+    HDHT.Scanner scanner = hds.scan(BUCKETKEY, null, null);
+    Slice key = new Slice(null, 0, 0);
+    Slice value = new Slice(null, 0, 0);
+    Assert.assertTrue("next", scanner.next(key, value));
+    Assert.assertArrayEquals("value", "data0".getBytes(), value.toByteArray());
+
+    scanStarted.countDown();
+    hds.writeExecutor.shutdown();
+    Assert.assertTrue("flushed", hds.writeExecutor.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertEquals("data files", 1, hds.loadBucketMeta(BUCKETKEY).files.size());
+
+    // the frozen write cache is replaced, not cleared, the scan still sees its entries
+    for (long i = 1; i < 10; i++) {
+      Assert.assertTrue("next " + i, scanner.next(key, value));
+      Assert.assertArrayEquals("value " + i, ("data" + i).getBytes(), value.toByteArray());
+    }
+    Assert.assertFalse("end of range", scanner.next(key, value));
+    scanner.close();
+    hds.teardown();
+  }
+
   @Test
   public void testWriteError() throws Exception
   {
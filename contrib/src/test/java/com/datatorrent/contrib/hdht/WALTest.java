@@ -485,6 +485,67 @@ public class WALTest
 
   }
 
+  /**
+   * Buckets write to a single WAL, recovery restores changes of all buckets
+   * after the respective recovery start position.
+   * @throws IOException
+   */
+  @Test
+  public void testSharedWalRecovery() throws IOException
+  {
+    File file = new File("target/hds");
+    FileUtils.deleteDirectory(file);
+
+    HDHTFileAccessFSImpl bfs = new MockFileAccess();
+    bfs.setBasePath(file.getAbsolutePath());
+    bfs.init();
+    ((MockFileAccess)bfs).disableChecksum();
+
+    HDHTWriter hds = new HDHTWriter();
+    hds.setFileStore(bfs);
+    hds.setFlushSize(1);
+    hds.setFlushIntervalCount(1);
+    hds.setSharedWal(true);
+    hds.setup(null);
+    hds.writeExecutor = MoreExecutors.sameThreadExecutor();
+
+    for (long wid = 1; wid <= 3; wid++) {
+      hds.beginWindow(wid);
+      for (long bucketKey = 1; bucketKey <= 3; bucketKey++) {
+        hds.put(bucketKey, getLongByteArray(1), getLongByteArray(wid * 10 + bucketKey).toByteArray());
+      }
+      hds.endWindow();
+      hds.checkpointed(wid);
+    }
+    hds.committed(2);
+
+    // use checkpoint after window 3 for recovery.
+    HDHTWriter newOperator = TestUtils.clone(new Kryo(), hds);
+    hds.forceWal();
+    hds.teardown();
+
+    Assert.assertTrue("Shared WAL created", new File(file.getAbsoluteFile().toString() + "/-1/_WAL-0").exists());
+    Assert.assertFalse("No bucket WAL", new File(file.getAbsoluteFile().toString() + "/1/_WAL-0").exists());
+
+    newOperator.setFileStore(bfs);
+    newOperator.setup(null);
+    newOperator.writeExecutor = MoreExecutors.sameThreadExecutor();
+
+    for (long bucketKey = 1; bucketKey <= 3; bucketKey++) {
+      Assert.assertEquals("Number of tuples in committed cache " + bucketKey, 1, newOperator.committedDataSize(bucketKey));
+      long l = ByteBuffer.wrap(newOperator.getUncommitted(bucketKey, getLongByteArray(1))).getLong();
+      Assert.assertEquals("Value recovered from WAL " + bucketKey, 30 + bucketKey, l);
+      l = ByteBuffer.wrap(newOperator.get(bucketKey, getLongByteArray(1))).getLong();
+      Assert.assertEquals("Value is persisted " + bucketKey, 20 + bucketKey, l);
+    }
+
+    newOperator.beginWindow(4);
+    newOperator.put(1, getLongByteArray(2), getLongByteArray(200).toByteArray());
+    newOperator.endWindow();
+    newOperator.forceWal();
+    Assert.assertTrue("New shared WAL file after recovery", new File(file.getAbsoluteFile().toString() + "/-1/_WAL-1").exists());
+    newOperator.teardown();
+  }
 
   private static final Logger logger = LoggerFactory.getLogger(WALTest.class);
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.contrib.kafka;
+
+import java.util.List;
+
+import kafka.message.Message;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class KafkaMessageBufferTest
+{
+  private static final int NUM_PRODUCERS = 3;
+  private static final int MESSAGES_PER_PRODUCER = 100000;
+
+  @Test
+  public void testBlockingQueue() throws Exception
+  {
+    testHandoff(new KafkaConsumer.BlockingQueueMessageBuffer(100));
+  }
+
+  @Test
+  public void testRingBuffer() throws Exception
+  {
+    testHandoff(new KafkaConsumer.RingMessageBuffer(100));
+  }
+
+  @Test
+  public void testRingBufferRelease() throws Exception
+  {
+    KafkaConsumer.RingMessageBuffer buffer = new KafkaConsumer.RingMessageBuffer(2);
+    KafkaPartition partition = new KafkaPartition("test_topic", 0);
+    Message message = new Message(new byte[1]);
+    buffer.put(partition, message, 0);
+    buffer.put(partition, message, 1);
+
+    KafkaConsumer.KafkaMessage first = buffer.poll();
+    Assert.assertSame("message", message, first.msg);
+    KafkaConsumer.KafkaMessage second = buffer.poll();
+    Assert.assertNull("released message", first.msg);
+    Assert.assertEquals("offset", 1, second.offSet);
+
+    // the slot of the first message is free, the slot of the second message is released on the next poll
+    buffer.put(partition, message, 2);
+    Assert.assertEquals("offset", 2, buffer.poll().offSet);
+    Assert.assertNull("released message", second.msg);
+    Assert.assertNull("no more messages", buffer.poll());
+  }
+
+  private void testHandoff(final KafkaConsumer.MessageBuffer buffer) throws Exception
+  {
+    final Message message = new Message(new byte[1]);
+    Thread[] producers = new Thread[NUM_PRODUCERS];
+    for (int i = 0; i < NUM_PRODUCERS; i++) {
+      final KafkaPartition partition = new KafkaPartition("test_topic", i);
+      producers[i] = new Thread()
+      {
+        @Override
+        public void run()
+        {
+          try {
+            for (int offset = 0; offset < MESSAGES_PER_PRODUCER; offset++) {
+              buffer.put(partition, message, offset);
+            }
+          }
+          catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+          }
+        }
+      };
+      producers[i].start();
+    }
+
+    long[] nextOffsets = new long[NUM_PRODUCERS];
+    List<KafkaConsumer.KafkaMessage> messages = Lists.newArrayList();
+    int count = 0;
+    long deadline = System.currentTimeMillis() + 60000;
+    while (count < NUM_PRODUCERS * MESSAGES_PER_PRODUCER && System.currentTimeMillis() < deadline) {
+      Assert.assertTrue("buffered messages " + buffer.size(), buffer.size() <= 100);
+      buffer.drainTo(messages, 50);
+      for (KafkaConsumer.KafkaMessage kafkaMessage : messages) {
+        int partition = kafkaMessage.kafkaPart.getPartitionId();
+        Assert.assertEquals("offset of partition " + partition, nextOffsets[partition]++, kafkaMessage.offSet);
+      }
+      count += messages.size();
+      messages.clear();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    Assert.assertEquals("messages", NUM_PRODUCERS * MESSAGES_PER_PRODUCER, count);
+    Assert.assertNull("no more messages", buffer.poll());
+    Assert.assertEquals("size", 0, buffer.size());
+  }
+}
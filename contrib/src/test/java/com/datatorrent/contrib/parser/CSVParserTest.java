@@ -16,12 +16,14 @@
 package com.datatorrent.contrib.parser;
 
 import com.datatorrent.common.util.DTThrowable;
+import com.datatorrent.common.util.Slice;
 import com.datatorrent.contrib.parser.AbstractCsvParser.Field;
 import com.datatorrent.lib.testbench.CollectorTestSink;
 import com.datatorrent.lib.util.ReusableStringReader;
 import com.datatorrent.lib.util.TestUtils.TestInfo;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Map;
 import org.apache.commons.io.FileUtils;
@@ -160,6 +162,45 @@ public class CSVParserTest
     sink.clear();
   }
 
+  @Test
+  public void TestParserWithSliceInput() throws Exception
+  {
+    //records decoded into a String by the reader of getReader
+    testSliceInput(new CsvToMapParser());
+    //records decoded from the slice by the reader of getByteReader
+    testSliceInput(new BytesToMapParser());
+  }
+
+  private void testSliceInput(CsvToMapParser parser) throws Exception
+  {
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    parser.output.setSink(sink);
+    parser.setFieldDelimiter(',');
+    parser.setLineDelimiter("\n");
+    ArrayList<CsvToMapParser.Field> fields = new ArrayList<CsvToMapParser.Field>();
+    Field field1 = new Field();
+    field1.setName("Eid");
+    field1.setType("INTEGER");
+    fields.add(field1);
+    Field field2 = new Field();
+    field2.setName("Name");
+    field2.setType("STRING");
+    fields.add(field2);
+    parser.setFields(fields);
+    parser.setup(null);
+    //the records are slices of a buffer shared with other data
+    byte[] buffer = "#123,xyz\n321,\u00e9t\u00e9#456,pqr#".getBytes("UTF-8");
+    int second = "#123,xyz\n321,\u00e9t\u00e9#".getBytes("UTF-8").length;
+    parser.sliceInput.process(new Slice(buffer, 1, second - 2));
+    parser.sliceInput.process(new Slice(buffer, second, buffer.length - second - 1));
+    parser.teardown();
+
+    Assert.assertEquals("Tuples read should be same ", 3, sink.collectedTuples.size());
+    Assert.assertEquals("{Name=xyz, Eid=123}", sink.collectedTuples.get(0).toString());
+    Assert.assertEquals("{Name=\u00e9t\u00e9, Eid=321}", sink.collectedTuples.get(1).toString());
+    Assert.assertEquals("{Name=pqr, Eid=456}", sink.collectedTuples.get(2).toString());
+  }
+
   public void createFieldMappingFile()
   {
     FileSystem hdfs = null;
@@ -238,5 +279,16 @@ public class CSVParserTest
 
   }
 
+  private class BytesToMapParser extends CsvToMapParser
+  {
+    @Override
+    protected ICsvMapReader getByteReader(Reader reader, CsvPreference preference)
+    {
+      csvReader = new CsvMapReader(reader, preference);
+      return csvReader;
+    }
+
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(CSVParserTest.class);
 }
@@ -21,6 +21,7 @@ import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 
 /**
@@ -90,6 +91,31 @@ public abstract class AbstractBucket<T>
     unwrittenEvents = null;
   }
 
+  /**
+   * Moves the un-written events to the written section. The given map becomes the written section when the bucket does
+   * not have one yet.
+   *
+   * @param emptyWrittenEvents empty map for the written events.
+   */
+  void transferDataFromMemoryToStore(@Nonnull Map<Object, T> emptyWrittenEvents)
+  {
+    if (writtenEvents == null) {
+      writtenEvents = emptyWrittenEvents;
+    }
+    transferDataFromMemoryToStore();
+  }
+
+  /**
+   * @return number of bytes used by written events that are kept off-heap.
+   */
+  long sizeOfWrittenEventsInBytes()
+  {
+    if (writtenEvents instanceof OffHeapEventMap) {
+      return ((OffHeapEventMap<?>) writtenEvents).sizeInBytes();
+    }
+    return 0;
+  }
+
   void updateAccessTime()
   {
     lastUpdateTime = System.currentTimeMillis();
@@ -174,6 +200,18 @@ public abstract class AbstractBucket<T>
     return unwrittenEvents.size();
   }
 
+  /**
+   * Returns the keys of all the events in the bucket, written and un-written.
+   *
+   * @return keys of the events in the bucket.
+   */
+  public Iterable<Object> getEventKeys()
+  {
+    Iterable<Object> writtenKeys = writtenEvents == null ? Collections.<Object>emptySet() : writtenEvents.keySet();
+    Iterable<Object> unwrittenKeys = unwrittenEvents == null ? Collections.<Object>emptySet() : unwrittenEvents.keySet();
+    return Iterables.concat(writtenKeys, unwrittenKeys);
+  }
+
   /**
    * Returns whether the bucket data persisted on the disk is loaded.
    *
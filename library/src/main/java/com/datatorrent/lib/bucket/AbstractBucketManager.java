@@ -24,6 +24,7 @@ import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.validation.constraints.Min;
@@ -70,6 +71,11 @@ import com.datatorrent.lib.counters.BasicCounters;
  * keep the event key. This reduces memory usage and is useful for operators like De-duplicator which are interested only
  * in the event key.
  * </li>
+ * <li>
+ * {@link #offHeapMemoryBytes}: when set, the written events of buckets are kept serialized in off-heap memory and the
+ * number of buckets in memory is limited by their size in bytes instead of {@link #noOfBucketsInMemory}. Events are
+ * deserialized when they are looked up. {@link #maxOffHeapMemoryBytes} is the corresponding hard limit.
+ * </li>
  * </ol>
  * </p>
  *
@@ -92,6 +98,10 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
   @Min(0)
   protected long millisPreventingBucketEviction;
   protected boolean writeEventKeysOnly;
+  @Min(0)
+  protected long offHeapMemoryBytes;
+  @Min(0)
+  protected long maxOffHeapMemoryBytes;
   @NotNull
   protected BucketStore<T> bucketStore;
   @NotNull
@@ -102,6 +112,8 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
   protected transient AbstractBucket<T>[] buckets;
   @NotNull
   protected transient Set<Integer> evictionCandidates;
+  //off-heap bytes of the written events of the buckets in evictionCandidates.
+  private transient AtomicLong offHeapBytes;
   protected transient Listener<T> listener;
   @NotNull
   private transient final BlockingQueue<Long> eventQueue;
@@ -118,6 +130,7 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
   {
     eventQueue = new LinkedBlockingQueue<Long>();
     evictionCandidates = Sets.newHashSet();
+    offHeapBytes = new AtomicLong();
     dirtyBuckets = Maps.newConcurrentMap();
     bucketHeap = MinMaxPriorityQueue.orderedBy(new Comparator<AbstractBucket<T>>()
     {
@@ -194,6 +207,25 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
     }
   }
 
+  /**
+   * Sets the off-heap memory for written events of buckets in memory. 0 keeps events on the heap and limits buckets
+   * by count.
+   * @param offHeapMemoryBytes
+   */
+  public void setOffHeapMemoryBytes(long offHeapMemoryBytes)
+  {
+    this.offHeapMemoryBytes = offHeapMemoryBytes;
+  }
+
+  /**
+   * Sets the hard limit on off-heap memory for written events of buckets in memory.
+   * @param maxOffHeapMemoryBytes
+   */
+  public void setMaxOffHeapMemoryBytes(long maxOffHeapMemoryBytes)
+  {
+    this.maxOffHeapMemoryBytes = maxOffHeapMemoryBytes;
+  }
+
   @Override
   public void setBucketCounters(@Nonnull BasicCounters<MutableLong> bucketCounters)
   {
@@ -203,6 +235,7 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
     bucketCounters.setCounter(CounterKeys.DELETED_BUCKETS, new MutableLong());
     bucketCounters.setCounter(CounterKeys.EVENTS_COMMITTED_LAST_WINDOW, new MutableLong());
     bucketCounters.setCounter(CounterKeys.EVENTS_IN_MEMORY, new MutableLong());
+    bucketCounters.setCounter(CounterKeys.OFF_HEAP_BYTES_IN_MEMORY, new MutableLong());
     recordStats = true;
   }
 
@@ -236,7 +269,9 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
               AbstractBucket<T> oldBucket = buckets[bucketIdx];
 
               dirtyBuckets.remove(bucketIdx);
-              evictionCandidates.remove(bucketIdx);
+              if (evictionCandidates.remove(bucketIdx)) {
+                offHeapBytes.addAndGet(-oldBucket.sizeOfWrittenEventsInBytes());
+              }
               buckets[bucketIdx] = null;
 
               listener.bucketOffLoaded(oldBucket.bucketKey);
@@ -250,15 +285,22 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
             }
 
             Map<Object, T> bucketDataInStore = bucketStore.fetchBucket(bucketIdx);
+            int eventsInStore = bucketDataInStore.size();
+            long loadedBytes = 0;
+            if (offHeapMemoryBytes > 0) {
+              OffHeapEventMap<T> offHeapEvents = new OffHeapEventMap<T>(bucketDataInStore);
+              loadedBytes = offHeapEvents.sizeInBytes();
+              bucketDataInStore = offHeapEvents;
+            }
 
             //Delete the least recently used bucket in memory if the noOfBucketsInMemory threshold is reached.
-            if (evictionCandidates.size() + 1 > noOfBucketsInMemory) {
+            if (isEvictionRequired(loadedBytes)) {
 
               for (int anIndex : evictionCandidates) {
                 bucketHeap.add(buckets[anIndex]);
               }
               int overFlow = evictionCandidates.size() + 1 - noOfBucketsInMemory;
-              while (overFlow-- >= 0) {
+              while (offHeapMemoryBytes > 0 ? isEvictionRequired(loadedBytes) : overFlow-- >= 0) {
                 AbstractBucket<T> lruBucket = bucketHeap.poll();
                 if (lruBucket == null) {
                   break;
@@ -269,10 +311,11 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
                   break;
                 }
                 if (((System.currentTimeMillis() - lruBucket.lastUpdateTime()) < millisPreventingBucketEviction)
-                  && ((evictionCandidates.size() + 1) <= maxNoOfBucketsInMemory)) {
+                  && !isHardLimitReached(loadedBytes)) {
                   break;
                 }
                 evictionCandidates.remove(lruIdx);
+                offHeapBytes.addAndGet(-lruBucket.sizeOfWrittenEventsInBytes());
                 buckets[lruIdx] = null;
                 listener.bucketOffLoaded(lruBucket.bucketKey);
                 if (recordStats) {
@@ -289,12 +332,17 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
               bucket = createBucket(requestedKey);
               buckets[bucketIdx] = bucket;
             }
+            long replacedBytes = evictionCandidates.contains(bucketIdx) ? bucket.sizeOfWrittenEventsInBytes() : 0;
             bucket.setWrittenEvents(bucketDataInStore);
             evictionCandidates.add(bucketIdx);
+            offHeapBytes.addAndGet(bucket.sizeOfWrittenEventsInBytes() - replacedBytes);
             listener.bucketLoaded(bucket);
             if (recordStats) {
               bucketCounters.getCounter(CounterKeys.BUCKETS_IN_MEMORY).increment();
-              bucketCounters.getCounter(CounterKeys.EVENTS_IN_MEMORY).add(bucketDataInStore.size() - numEventsRemoved);
+              bucketCounters.getCounter(CounterKeys.EVENTS_IN_MEMORY).add(eventsInStore - numEventsRemoved);
+              if (offHeapMemoryBytes > 0) {
+                bucketCounters.getCounter(CounterKeys.OFF_HEAP_BYTES_IN_MEMORY).setValue(offHeapBytesInMemory());
+              }
             }
             bucketHeap.clear();
           }
@@ -307,6 +355,48 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
     }
   }
 
+  /**
+   * Whether buckets need to be off-loaded to load a new bucket, based on the soft limits.
+   *
+   * @param loadedBytes off-heap bytes of the bucket that is being loaded.
+   */
+  private boolean isEvictionRequired(long loadedBytes)
+  {
+    if (offHeapMemoryBytes > 0) {
+      return !evictionCandidates.isEmpty() && offHeapBytesInMemory() + loadedBytes > offHeapMemoryBytes;
+    }
+    return evictionCandidates.size() + 1 > noOfBucketsInMemory;
+  }
+
+  private boolean isHardLimitReached(long loadedBytes)
+  {
+    if (offHeapMemoryBytes > 0) {
+      return maxOffHeapMemoryBytes > 0 && offHeapBytesInMemory() + loadedBytes > maxOffHeapMemoryBytes;
+    }
+    return evictionCandidates.size() + 1 > maxNoOfBucketsInMemory;
+  }
+
+  private long offHeapBytesInMemory()
+  {
+    return offHeapBytes.get();
+  }
+
+  /**
+   * Puts a new bucket at the index of a bucket with a different key. The off-heap bytes of the replaced bucket are
+   * released.
+   *
+   * @param bucketIdx index of the bucket
+   * @param bucket new bucket
+   */
+  protected void replaceBucket(int bucketIdx, AbstractBucket<T> bucket)
+  {
+    AbstractBucket<T> replacedBucket = buckets[bucketIdx];
+    if (replacedBucket != null && evictionCandidates.contains(bucketIdx)) {
+      offHeapBytes.addAndGet(-replacedBucket.sizeOfWrittenEventsInBytes());
+    }
+    buckets[bucketIdx] = bucket;
+  }
+
   @Override
   public void setBucketStore(@Nonnull BucketStore<T> bucketStore)
   {
@@ -362,7 +452,7 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
 
     if (bucket == null || bucket.bucketKey != bucketKey) {
       bucket = createBucket(bucketKey);
-      buckets[bucketIdx] = bucket;
+      replaceBucket(bucketIdx, bucket);
       dirtyBuckets.put(bucketIdx, bucket);
     }
     else if (dirtyBuckets.get(bucketIdx) == null) {
@@ -389,8 +479,15 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
       AbstractBucket<T> bucket = entry.getValue();
       dataToStore.put(entry.getKey(), bucket.getUnwrittenEvents());
       eventsCount += bucket.countOfUnwrittenEvents();
-      bucket.transferDataFromMemoryToStore();
+      long writtenBytes = evictionCandidates.contains(entry.getKey()) ? bucket.sizeOfWrittenEventsInBytes() : 0;
+      if (offHeapMemoryBytes > 0) {
+        bucket.transferDataFromMemoryToStore(new OffHeapEventMap<T>());
+      }
+      else {
+        bucket.transferDataFromMemoryToStore();
+      }
       evictionCandidates.add(entry.getKey());
+      offHeapBytes.addAndGet(bucket.sizeOfWrittenEventsInBytes() - writtenBytes);
     }
     if (recordStats) {
       bucketCounters.getCounter(CounterKeys.EVENTS_COMMITTED_LAST_WINDOW).setValue(eventsCount);
@@ -496,6 +593,12 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
     if (writeEventKeysOnly != that.writeEventKeysOnly) {
       return false;
     }
+    if (offHeapMemoryBytes != that.offHeapMemoryBytes) {
+      return false;
+    }
+    if (maxOffHeapMemoryBytes != that.maxOffHeapMemoryBytes) {
+      return false;
+    }
     if (!bucketStore.equals(that.bucketStore)) {
       return false;
     }
@@ -511,6 +614,8 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
     result = 31 * result + maxNoOfBucketsInMemory;
     result = 31 * result + (int) (millisPreventingBucketEviction ^ (millisPreventingBucketEviction >>> 32));
     result = 31 * result + (writeEventKeysOnly ? 1 : 0);
+    result = 31 * result + (int) (offHeapMemoryBytes ^ (offHeapMemoryBytes >>> 32));
+    result = 31 * result + (int) (maxOffHeapMemoryBytes ^ (maxOffHeapMemoryBytes >>> 32));
     result = 31 * result + (bucketStore.hashCode());
     result = 31 * result + (dirtyBuckets.hashCode());
     result = 31 * result + (int) (committedWindow ^ (committedWindow >>> 32));
@@ -522,6 +627,7 @@ public abstract class AbstractBucketManager<T> implements BucketManager<T>, Runn
   {
     @SuppressWarnings("unchecked")
     AbstractBucketManager<T> clone = (AbstractBucketManager<T>)super.clone();
+    clone.offHeapBytes = new AtomicLong();
     clone.setBucketStore(clone.getBucketStore().clone());
     return clone;
   }
@@ -281,7 +281,7 @@ public abstract class AbstractTimeBasedBucketManager<T> extends AbstractBucketMa
 
     if (bucket == null || bucket.bucketKey != bucketKey) {
       bucket = createBucket(bucketKey);
-      buckets[bucketIdx] = bucket;
+      replaceBucket(bucketIdx, bucket);
       dirtyBuckets.put(bucketIdx, bucket);
     }
     else if (dirtyBuckets.get(bucketIdx) == null) {
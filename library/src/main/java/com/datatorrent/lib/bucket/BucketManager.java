@@ -191,6 +191,6 @@ public interface BucketManager<T> extends Cloneable
   {
 
     BUCKETS_IN_MEMORY, EVICTED_BUCKETS, DELETED_BUCKETS, EVENTS_COMMITTED_LAST_WINDOW,
-    EVENTS_IN_MEMORY
+    EVENTS_IN_MEMORY, OFF_HEAP_BYTES_IN_MEMORY
   }
 }
\ No newline at end of file
@@ -59,7 +59,7 @@ public class HdfsBucketStore<T> implements BucketStore<T>
   static transient final String PATH_SEPARATOR = "/";
 
   //Check-pointed
-  private boolean writeEventKeysOnly;
+  protected boolean writeEventKeysOnly;
   @Min(1)
   protected int noOfBuckets;
   protected Map<Long, Long>[] bucketPositions;
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Map of bucket events that keeps the serialized keys and events in a direct (off-heap) buffer.<br/>
+ * The heap only holds a compact open addressing index of entry offsets and key hashes. Keys are compared in their
+ * serialized form, so they need to serialize deterministically with Kryo. Events are deserialized when they are
+ * retrieved, the key set only deserializes the keys.
+ * <p>
+ * Entries are appended to the buffer, replaced entries are reclaimed when the buffer grows. {@link #put(Object, Object)}
+ * does not return the previous value and entries cannot be removed.
+ * </p>
+ *
+ * @param <T> type of bucket events
+ */
+class OffHeapEventMap<T> extends AbstractMap<Object, T>
+{
+  private static final int NULL_VALUE = -1;
+  private static final ThreadLocal<Kryo> KRYO = new ThreadLocal<Kryo>()
+  {
+    @Override
+    protected Kryo initialValue()
+    {
+      Kryo kryo = new Kryo();
+      kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+      return kryo;
+    }
+  };
+  private static final ThreadLocal<Output> OUTPUT = new ThreadLocal<Output>()
+  {
+    @Override
+    protected Output initialValue()
+    {
+      return new Output(256, -1);
+    }
+  };
+
+  private ByteBuffer data;
+  /* offset + 1 of the entry in data, 0 for empty slots */
+  private int[] offsets;
+  private int[] hashes;
+  private int size;
+  private int garbageBytes;
+
+  OffHeapEventMap()
+  {
+    data = ByteBuffer.allocateDirect(4096);
+    offsets = new int[16];
+    hashes = new int[16];
+  }
+
+  OffHeapEventMap(Map<Object, T> events)
+  {
+    this();
+    putAll(events);
+  }
+
+  /**
+   * @return number of bytes used by the buffer and the index.
+   */
+  long sizeInBytes()
+  {
+    return data.capacity() + 8L * offsets.length;
+  }
+
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    Output output = serializeKey(key);
+    return offsets[findSlot(output.getBuffer(), output.position(), hash(output.getBuffer(), output.position()))] != 0;
+  }
+
+  @Override
+  public T get(Object key)
+  {
+    Output output = serializeKey(key);
+    int slot = findSlot(output.getBuffer(), output.position(), hash(output.getBuffer(), output.position()));
+    if (offsets[slot] == 0) {
+      return null;
+    }
+    return readValue(offsets[slot] - 1);
+  }
+
+  @Override
+  public T put(Object key, T value)
+  {
+    Output output = serializeKey(key);
+    int keyLength = output.position();
+    int hash = hash(output.getBuffer(), keyLength);
+    if (value == null) {
+      output.writeInt(NULL_VALUE);
+    }
+    else {
+      int posLength = output.position();
+      output.writeInt(0); //temporary place holder
+      KRYO.get().writeClassAndObject(output, value);
+      int posValue = output.position();
+      output.setPosition(posLength);
+      output.writeInt(posValue - posLength - 4);
+      output.setPosition(posValue);
+    }
+    int entryLength = 4 + output.position();
+
+    if (data.remaining() < entryLength) {
+      grow(entryLength);
+    }
+    int slot = findSlot(output.getBuffer(), keyLength, hash);
+    if (offsets[slot] != 0) {
+      garbageBytes += entryLength(offsets[slot] - 1);
+    }
+    else {
+      size++;
+    }
+    offsets[slot] = data.position() + 1;
+    hashes[slot] = hash;
+    data.putInt(keyLength);
+    data.put(output.getBuffer(), 0, output.position());
+
+    if (size * 2 > offsets.length) {
+      rehash(offsets.length * 2);
+    }
+    return null;
+  }
+
+  @Override
+  public Set<Entry<Object, T>> entrySet()
+  {
+    return new AbstractSet<Entry<Object, T>>()
+    {
+      @Override
+      public Iterator<Entry<Object, T>> iterator()
+      {
+        return new EntryIterator<Entry<Object, T>>()
+        {
+          @Override
+          Entry<Object, T> read(int offset)
+          {
+            return new SimpleImmutableEntry<Object, T>(readKey(offset), readValue(offset));
+          }
+        };
+      }
+
+      @Override
+      public int size()
+      {
+        return size;
+      }
+    };
+  }
+
+  @Override
+  public Set<Object> keySet()
+  {
+    return new AbstractSet<Object>()
+    {
+      @Override
+      public Iterator<Object> iterator()
+      {
+        return new EntryIterator<Object>()
+        {
+          @Override
+          Object read(int offset)
+          {
+            return readKey(offset);
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object key)
+      {
+        return containsKey(key);
+      }
+
+      @Override
+      public int size()
+      {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Iterates the entries in slot order.
+   *
+   * @param <E> type of the element read from an entry
+   */
+  private abstract class EntryIterator<E> implements Iterator<E>
+  {
+    int slot = nextSlot(0);
+
+    abstract E read(int offset);
+
+    @Override
+    public boolean hasNext()
+    {
+      return slot < offsets.length;
+    }
+
+    @Override
+    public E next()
+    {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int offset = offsets[slot] - 1;
+      slot = nextSlot(slot + 1);
+      return read(offset);
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private int nextSlot(int slot)
+  {
+    while (slot < offsets.length && offsets[slot] == 0) {
+      slot++;
+    }
+    return slot;
+  }
+
+  private static Output serializeKey(Object key)
+  {
+    Output output = OUTPUT.get();
+    output.clear();
+    KRYO.get().writeClassAndObject(output, key);
+    return output;
+  }
+
+  private static int hash(byte[] bytes, int length)
+  {
+    int h = 0x811c9dc5;
+    for (int i = 0; i < length; i++) {
+      h ^= bytes[i];
+      h *= 0x01000193;
+    }
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * @return slot of the key or the empty slot where it would be inserted.
+   */
+  private int findSlot(byte[] key, int keyLength, int hash)
+  {
+    int mask = offsets.length - 1;
+    int slot = hash & mask;
+    while (offsets[slot] != 0) {
+      if (hashes[slot] == hash && keyEquals(offsets[slot] - 1, key, keyLength)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private boolean keyEquals(int offset, byte[] key, int keyLength)
+  {
+    if (data.getInt(offset) != keyLength) {
+      return false;
+    }
+    int keyOffset = offset + 4;
+    for (int i = 0; i < keyLength; i++) {
+      if (data.get(keyOffset + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int entryLength(int offset)
+  {
+    int keyLength = data.getInt(offset);
+    int valueLength = data.getInt(offset + 4 + keyLength);
+    return 8 + keyLength + (valueLength == NULL_VALUE ? 0 : valueLength);
+  }
+
+  private Object readKey(int offset)
+  {
+    int keyLength = data.getInt(offset);
+    return KRYO.get().readClassAndObject(new Input(copy(offset + 4, keyLength)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private T readValue(int offset)
+  {
+    int valueOffset = offset + 4 + data.getInt(offset);
+    int valueLength = data.getInt(valueOffset);
+    if (valueLength == NULL_VALUE) {
+      return null;
+    }
+    return (T) KRYO.get().readClassAndObject(new Input(copy(valueOffset + 4, valueLength)));
+  }
+
+  private byte[] copy(int offset, int length)
+  {
+    byte[] bytes = new byte[length];
+    ByteBuffer view = data.duplicate();
+    view.position(offset);
+    view.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Allocate a larger buffer and copy the live entries to it.
+   */
+  private void grow(int entryLength)
+  {
+    int liveBytes = data.position() - garbageBytes;
+    int capacity = data.capacity();
+    while (capacity < liveBytes + entryLength || (capacity == data.capacity() && garbageBytes * 2 < liveBytes)) {
+      capacity *= 2;
+    }
+    ByteBuffer newData = ByteBuffer.allocateDirect(capacity);
+    for (int slot = 0; slot < offsets.length; slot++) {
+      if (offsets[slot] != 0) {
+        int offset = offsets[slot] - 1;
+        int length = entryLength(offset);
+        ByteBuffer entry = data.duplicate();
+        entry.position(offset);
+        entry.limit(offset + length);
+        offsets[slot] = newData.position() + 1;
+        newData.put(entry);
+      }
+    }
+    data = newData;
+    garbageBytes = 0;
+  }
+
+  private void rehash(int capacity)
+  {
+    int[] oldOffsets = offsets;
+    int[] oldHashes = hashes;
+    offsets = new int[capacity];
+    hashes = new int[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < oldOffsets.length; i++) {
+      if (oldOffsets[i] != 0) {
+        int slot = oldHashes[i] & mask;
+        while (offsets[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        offsets[slot] = oldOffsets[i];
+        hashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.*;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.Min;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+/**
+ * {@link HdfsBucketStore} which packs the data of multiple windows into rolling segment files.<br/>
+ * The path of segments in hdfs is <code>{application-path}/buckets/{operatorId}/segment-{segmentId}</code>.
+ * <p>
+ * Each window appends the events of its buckets to the current segment, which is rolled once it exceeds
+ * {@link #getMaxSegmentSize()}. The offset and length of every bucket in a segment is kept in the index, which is
+ * check-pointed with the store. A bucket is loaded by reading its ranges segment by segment in file order, ranges that
+ * are close to each other are read together. Segments are deleted when all windows in them are deleted or expired.
+ * </p>
+ * <p>
+ * After recovery, writing continues in a new segment. Data that was written to the last segment after the checkpoint
+ * is not referenced by the index.
+ * </p>
+ *
+ * @param <T> type of bucket event
+ */
+public class SegmentedHdfsBucketStore<T> extends HdfsBucketStore<T> implements BucketStore.ExpirableBucketStore<T>
+{
+  public static final String SEGMENT_PREFIX = "segment-";
+
+  //Check-pointed
+  protected Map<Long, Integer>[] bucketLengths;
+  protected Map<Long, Long> windowToSegment;
+  protected long segmentId;
+  @Min(1)
+  private long maxSegmentSize;
+  @Min(0)
+  private int maxReadGap;
+
+  //Non check-pointed
+  protected transient Multimap<Long, Long> segmentToWindows;
+  protected transient FileSystem fs;
+  private transient FSDataOutputStream segmentStream;
+  private transient long segmentSize;
+  private transient Output buffer;
+
+  public SegmentedHdfsBucketStore()
+  {
+    super();
+    windowToSegment = Maps.newHashMap();
+    segmentId = -1;
+    maxSegmentSize = 64 * 1024 * 1024;
+    maxReadGap = 64 * 1024;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void setNoOfBuckets(int noOfBuckets)
+  {
+    super.setNoOfBuckets(noOfBuckets);
+    bucketLengths = (Map<Long, Integer>[]) Array.newInstance(HashMap.class, noOfBuckets);
+  }
+
+  /**
+   * Size in bytes after which the current segment is closed and a new segment is started.
+   *
+   * @return maximum segment size.
+   */
+  public long getMaxSegmentSize()
+  {
+    return maxSegmentSize;
+  }
+
+  public void setMaxSegmentSize(long maxSegmentSize)
+  {
+    this.maxSegmentSize = maxSegmentSize;
+  }
+
+  /**
+   * Ranges of a bucket in the same segment that are separated by at most this number of bytes are fetched with a
+   * single read.
+   *
+   * @return maximum gap in bytes.
+   */
+  public int getMaxReadGap()
+  {
+    return maxReadGap;
+  }
+
+  public void setMaxReadGap(int maxReadGap)
+  {
+    this.maxReadGap = maxReadGap;
+  }
+
+  @Override
+  public void setup()
+  {
+    super.setup();
+    try {
+      fs = FileSystem.newInstance(new Path(bucketRoot).toUri(), configuration);
+      if (fs instanceof LocalFileSystem) {
+        // written data has to be visible to fetches before the segment is closed
+        fs = ((LocalFileSystem) fs).getRaw();
+      }
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    segmentToWindows = HashMultimap.create();
+    for (Map.Entry<Long, Long> entry : windowToSegment.entrySet()) {
+      segmentToWindows.put(entry.getValue(), entry.getKey());
+    }
+    // the current segment may contain data written after the checkpoint
+    segmentId++;
+    segmentStream = null;
+    segmentSize = 0;
+    buffer = new Output(4096, -1);
+  }
+
+  @Override
+  public void teardown()
+  {
+    IOUtils.closeQuietly(segmentStream);
+    segmentStream = null;
+    IOUtils.closeQuietly(fs);
+    super.teardown();
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws java.io.IOException
+   */
+  @Override
+  public void storeBucketData(long window, long timestamp, Map<Integer, Map<Object, T>> data) throws IOException
+  {
+    if (segmentStream == null) {
+      segmentStream = fs.create(getSegmentPath(segmentId), true);
+      segmentSize = 0;
+    }
+    Map<Integer, long[]> ranges = Maps.newHashMap();
+    for (Map.Entry<Integer, Map<Object, T>> bucketEntry : data.entrySet()) {
+      Map<Object, T> bucketData = bucketEntry.getValue();
+
+      if (eventKeyClass == null) {
+        Map.Entry<Object, T> eventEntry = bucketData.entrySet().iterator().next();
+        eventKeyClass = eventEntry.getKey().getClass();
+        if (!writeEventKeysOnly) {
+          @SuppressWarnings("unchecked")
+          Class<T> lEventClass = (Class<T>) eventEntry.getValue().getClass();
+          eventClass = lEventClass;
+        }
+      }
+      //Write the size of data and then data
+      buffer.clear();
+      buffer.writeInt(bucketData.size());
+      for (Map.Entry<Object, T> entry : bucketData.entrySet()) {
+        writeSerde.writeObject(buffer, entry.getKey());
+
+        if (!writeEventKeysOnly) {
+          int posLength = buffer.position();
+          buffer.writeInt(0); //temporary place holder
+          writeSerde.writeObject(buffer, entry.getValue());
+          int posValue = buffer.position();
+          int valueLength = posValue - posLength - 4;
+          buffer.setPosition(posLength);
+          buffer.writeInt(valueLength);
+          buffer.setPosition(posValue);
+        }
+      }
+      segmentStream.write(buffer.getBuffer(), 0, buffer.position());
+      ranges.put(bucketEntry.getKey(), new long[] {segmentSize, buffer.position()});
+      segmentSize += buffer.position();
+    }
+    segmentStream.hflush();
+
+    synchronized (this) {
+      for (Map.Entry<Integer, long[]> entry : ranges.entrySet()) {
+        int bucketIdx = entry.getKey();
+        if (bucketPositions[bucketIdx] == null) {
+          bucketPositions[bucketIdx] = Maps.newHashMap();
+          bucketLengths[bucketIdx] = Maps.newHashMap();
+        }
+        bucketPositions[bucketIdx].put(window, entry.getValue()[0]);
+        bucketLengths[bucketIdx].put(window, (int) entry.getValue()[1]);
+        windowToBuckets.put(window, bucketIdx);
+      }
+      windowToTimestamp.put(window, timestamp);
+      Long previousSegment = windowToSegment.put(window, segmentId);
+      if (previousSegment != null && previousSegment != segmentId) {
+        // window was stored again, e.g. after recovery
+        segmentToWindows.remove(previousSegment, window);
+        if (!segmentToWindows.containsKey(previousSegment)) {
+          deleteSegment(previousSegment);
+        }
+      }
+      segmentToWindows.put(segmentId, window);
+
+      if (segmentSize >= maxSegmentSize) {
+        logger.debug("rolling segment {} size {}", segmentId, segmentSize);
+        segmentStream.close();
+        segmentStream = null;
+        segmentId++;
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws java.io.IOException
+   */
+  @Override
+  public synchronized void deleteBucket(int bucketIdx) throws IOException
+  {
+    Map<Long, Long> offsetMap = bucketPositions[bucketIdx];
+    if (offsetMap != null) {
+      for (Long window : offsetMap.keySet()) {
+        Collection<Integer> indices = windowToBuckets.get(window);
+        if (indices.remove(bucketIdx) && indices.isEmpty()) {
+          removeWindow(window);
+        }
+      }
+    }
+    bucketPositions[bucketIdx] = null;
+    bucketLengths[bucketIdx] = null;
+  }
+
+  @Override
+  public synchronized void deleteExpiredBuckets(long time) throws IOException
+  {
+    List<Long> expiredWindows = Lists.newArrayList();
+    for (Map.Entry<Long, Long> entry : windowToTimestamp.entrySet()) {
+      if (entry.getValue() < time) {
+        expiredWindows.add(entry.getKey());
+      }
+    }
+    for (long window : expiredWindows) {
+      for (int bucketIdx : windowToBuckets.get(window)) {
+        if (bucketPositions[bucketIdx] != null) {
+          bucketPositions[bucketIdx].remove(window);
+          bucketLengths[bucketIdx].remove(window);
+        }
+      }
+      removeWindow(window);
+    }
+  }
+
+  private void removeWindow(long window) throws IOException
+  {
+    windowToBuckets.removeAll(window);
+    windowToTimestamp.remove(window);
+    Long segment = windowToSegment.remove(window);
+    if (segment != null && segmentToWindows.remove(segment, window) && !segmentToWindows.containsKey(segment)
+      && (segment != segmentId || segmentStream == null)) {
+      deleteSegment(segment);
+    }
+  }
+
+  private void deleteSegment(long segment) throws IOException
+  {
+    Path segmentPath = getSegmentPath(segment);
+    if (fs.exists(segmentPath)) {
+      logger.debug("delete segment {}", segment);
+      fs.delete(segmentPath, true);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws java.lang.Exception
+   */
+  @Override
+  @Nonnull
+  public Map<Object, T> fetchBucket(int bucketIdx) throws Exception
+  {
+    Map<Object, T> bucketData = Maps.newHashMap();
+    List<Range> ranges = Lists.newArrayList();
+    synchronized (this) {
+      if (bucketPositions[bucketIdx] == null) {
+        return bucketData;
+      }
+      for (Map.Entry<Long, Long> entry : bucketPositions[bucketIdx].entrySet()) {
+        long window = entry.getKey();
+        ranges.add(new Range(windowToSegment.get(window), entry.getValue(), bucketLengths[bucketIdx].get(window)));
+      }
+    }
+    // segment and file order is the window order, later windows overwrite earlier values
+    Collections.sort(ranges);
+
+    logger.debug("start fetch bucket {}", bucketIdx);
+    long startTime = System.currentTimeMillis();
+    Kryo readSerde = new Kryo();
+    readSerde.setClassLoader(classLoader);
+    Input input = new Input();
+    byte[] bytes = new byte[0];
+    FSDataInputStream stream = null;
+    long openSegment = -1;
+    try {
+      for (int first = 0; first < ranges.size(); ) {
+        Range firstRange = ranges.get(first);
+        // coalesce nearby ranges of the same segment into one read
+        int last = first;
+        while (last + 1 < ranges.size() && ranges.get(last + 1).segment == firstRange.segment
+          && ranges.get(last + 1).offset - ranges.get(last).end() <= maxReadGap) {
+          last++;
+        }
+        int readLength = (int) (ranges.get(last).end() - firstRange.offset);
+        if (bytes.length < readLength) {
+          bytes = new byte[readLength];
+        }
+        if (openSegment != firstRange.segment) {
+          IOUtils.closeQuietly(stream);
+          stream = fs.open(getSegmentPath(firstRange.segment));
+          openSegment = firstRange.segment;
+        }
+        stream.readFully(firstRange.offset, bytes, 0, readLength);
+        for (int i = first; i <= last; i++) {
+          Range range = ranges.get(i);
+          input.setBuffer(bytes, (int) (range.offset - firstRange.offset), range.length);
+          readEvents(readSerde, input, bucketData);
+        }
+        first = last + 1;
+      }
+    }
+    finally {
+      IOUtils.closeQuietly(stream);
+    }
+    logger.debug("end fetch bucket {} num {} took {}", bucketIdx, bucketData.size(), System.currentTimeMillis() - startTime);
+    return bucketData;
+  }
+
+  private void readEvents(Kryo readSerde, Input input, Map<Object, T> bucketData)
+  {
+    int length = input.readInt();
+    for (int i = 0; i < length; i++) {
+      Object key = readSerde.readObject(input, eventKeyClass);
+
+      int partitionKey = key.hashCode() & partitionMask;
+      boolean keyPasses = partitionKeys.contains(partitionKey);
+
+      if (!writeEventKeysOnly) {
+        //if key passes then read the value otherwise skip the value
+        int entrySize = input.readInt();
+        if (keyPasses) {
+          T entry = readSerde.readObject(input, eventClass);
+          bucketData.put(key, entry);
+        }
+        else {
+          input.skip(entrySize);
+        }
+      }
+      else if (keyPasses) {
+        bucketData.put(key, null);
+      }
+    }
+  }
+
+  protected Path getSegmentPath(long segment)
+  {
+    return new Path(bucketRoot + PATH_SEPARATOR + SEGMENT_PREFIX + segment);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public SegmentedHdfsBucketStore<T> clone() throws CloneNotSupportedException
+  {
+    return (SegmentedHdfsBucketStore<T>) super.clone();
+  }
+
+  private static class Range implements Comparable<Range>
+  {
+    final long segment;
+    final long offset;
+    final int length;
+
+    Range(long segment, long offset, int length)
+    {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    long end()
+    {
+      return offset + length;
+    }
+
+    @Override
+    public int compareTo(@Nonnull Range o)
+    {
+      if (segment != o.segment) {
+        return segment < o.segment ? -1 : 1;
+      }
+      return offset < o.offset ? -1 : (offset == o.offset ? 0 : 1);
+    }
+  }
+
+  private static transient final Logger logger = LoggerFactory.getLogger(SegmentedHdfsBucketStore.class);
+}
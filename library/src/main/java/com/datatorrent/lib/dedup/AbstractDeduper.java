@@ -23,10 +23,13 @@ import java.util.concurrent.LinkedBlockingQueue;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +68,15 @@ import com.datatorrent.common.util.DTThrowable;
  * </p>
  *
  * <p>
+ * When {@link #setUseBloomFilter(boolean)} is enabled, the deduper keeps a bloom filter over the event keys of every
+ * bucket it has seen loaded. An event whose key is definitely not in the filter of its bucket is emitted right away and
+ * added to the bucket without waiting for the bucket to be loaded. Only the events which may be duplicates take the
+ * path above. The filters are check-pointed with the operator so that the fast path is available right after recovery,
+ * when the buckets are not loaded. At most {@link #setMaxBloomFilters(int)} filters are kept in memory and
+ * check-pointed.
+ * </p>
+ *
+ * <p>
  * Based on the assumption that duplicate events fall in the same bucket.
  * </p>
  *
@@ -108,12 +120,22 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
   protected final Map<Long, List<INPUT>> waitingEvents;
   protected Set<Integer> partitionKeys;
   protected int partitionMask;
+  //bucketKey -> filter over the event keys in the bucket, in the order the filters were created.
+  private final Map<Long, BucketBloomFilter> bloomFilters;
+  private boolean useBloomFilter;
+  @Min(1)
+  private int expectedEventsPerBucket = 10000;
+  private double bloomFilterFalsePositiveRate = 0.01;
+  @Min(1)
+  private int maxBloomFilters = 1000;
   //Non check-pointed state
   protected transient final BlockingQueue<AbstractBucket<INPUT>> fetchedBuckets;
   private transient long sleepTimeMillis;
   private transient OperatorContext context;
   protected BasicCounters<MutableLong> counters;
   private transient long currentWindow;
+  private transient Kryo eventKeyKryo;
+  private transient Output eventKeyOutput;
   @Min(1)
   private int partitionCount = 1;
 
@@ -122,6 +144,7 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
     waitingEvents = Maps.newHashMap();
     partitionKeys = Sets.newHashSet(0);
     partitionMask = 0;
+    bloomFilters = Maps.newLinkedHashMap();
 
     fetchedBuckets = new LinkedBlockingQueue<AbstractBucket<INPUT>>();
     counters = new BasicCounters<MutableLong>(MutableLong.class);
@@ -137,6 +160,64 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
     return partitionCount;
   }
 
+  /**
+   * Enables the bloom filter pre-check of events against buckets which are not loaded.
+   *
+   * @param useBloomFilter
+   */
+  public void setUseBloomFilter(boolean useBloomFilter)
+  {
+    this.useBloomFilter = useBloomFilter;
+  }
+
+  public boolean isUseBloomFilter()
+  {
+    return useBloomFilter;
+  }
+
+  /**
+   * Sets the number of events a bucket is expected to hold. The bloom filters are sized for at least this number and
+   * are dropped when more events are added to them. A dropped filter is created with twice the size of the bucket when
+   * the bucket is loaded again.
+   *
+   * @param expectedEventsPerBucket
+   */
+  public void setExpectedEventsPerBucket(int expectedEventsPerBucket)
+  {
+    this.expectedEventsPerBucket = expectedEventsPerBucket;
+  }
+
+  public int getExpectedEventsPerBucket()
+  {
+    return expectedEventsPerBucket;
+  }
+
+  public void setBloomFilterFalsePositiveRate(double bloomFilterFalsePositiveRate)
+  {
+    Preconditions.checkArgument(bloomFilterFalsePositiveRate > 0 && bloomFilterFalsePositiveRate < 1, "false positive rate");
+    this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+  }
+
+  public double getBloomFilterFalsePositiveRate()
+  {
+    return bloomFilterFalsePositiveRate;
+  }
+
+  /**
+   * Sets the maximum number of bucket bloom filters. The oldest filter is removed when the limit is reached.
+   *
+   * @param maxBloomFilters
+   */
+  public void setMaxBloomFilters(int maxBloomFilters)
+  {
+    this.maxBloomFilters = maxBloomFilters;
+  }
+
+  public int getMaxBloomFilters()
+  {
+    return maxBloomFilters;
+  }
+
   @Override
   public void setup(OperatorContext context)
   {
@@ -146,6 +227,13 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
 
     bucketManager.setBucketCounters(counters);
     counters.setCounter(CounterKeys.DUPLICATE_EVENTS, new MutableLong());
+    if (useBloomFilter) {
+      eventKeyKryo = new Kryo();
+      eventKeyOutput = new Output(4096, -1);
+      counters.setCounter(CounterKeys.BLOOM_FILTER_CHECKED_EVENTS, new MutableLong());
+      counters.setCounter(CounterKeys.FAST_PATH_EVENTS, new MutableLong());
+      counters.setCounter(CounterKeys.FAST_PATH_PERCENT, new MutableLong());
+    }
 
     bucketManager.startService(this);
     logger.debug("bucket keys at startup {}", waitingEvents.keySet());
@@ -183,6 +271,11 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
       } //ignore event
 
       if (bucket != null && bucket.isDataOnDiskLoaded()) {
+        addToBloomFilter(bucket, tuple);
+        bucketManager.newEvent(bucketKey, tuple);
+        output.emit(convert(tuple));
+      }
+      else if (isDefinitelyNew(bucketKey, tuple)) {
         bucketManager.newEvent(bucketKey, tuple);
         output.emit(convert(tuple));
       }
@@ -208,6 +301,89 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
       }
   }
 
+  /**
+   * Checks the event against the bloom filter of its bucket and adds it to the filter when it is definitely new.
+   *
+   * @return true if the event is definitely not present in the bucket; false if it needs to be checked against the
+   * bucket.
+   */
+  private boolean isDefinitelyNew(long bucketKey, INPUT event)
+  {
+    if (!useBloomFilter) {
+      return false;
+    }
+    counters.getCounter(CounterKeys.BLOOM_FILTER_CHECKED_EVENTS).increment();
+    BucketBloomFilter filter = bloomFilters.get(bucketKey);
+    if (filter == null) {
+      return false;
+    }
+    long eventKeyHash = getEventKeyHash(getEventKey(event));
+    if (filter.mightContain(eventKeyHash)) {
+      return false;
+    }
+    addToBloomFilter(bucketKey, filter, eventKeyHash);
+    counters.getCounter(CounterKeys.FAST_PATH_EVENTS).increment();
+    return true;
+  }
+
+  /**
+   * Adds a new event of a loaded bucket to the bloom filter of the bucket.
+   */
+  private void addToBloomFilter(AbstractBucket<INPUT> bucket, INPUT event)
+  {
+    if (!useBloomFilter) {
+      return;
+    }
+    BucketBloomFilter filter = bloomFilters.get(bucket.bucketKey);
+    if (filter == null) {
+      filter = createBloomFilter(bucket);
+    }
+    addToBloomFilter(bucket.bucketKey, filter, getEventKeyHash(getEventKey(event)));
+  }
+
+  private void addToBloomFilter(long bucketKey, BucketBloomFilter filter, long eventKeyHash)
+  {
+    filter.add(eventKeyHash);
+    if (filter.isSaturated()) {
+      //false positive rate is too high, the filter is created again with a larger size when the bucket is loaded.
+      bloomFilters.remove(bucketKey);
+    }
+  }
+
+  /**
+   * Creates the bloom filter of a loaded bucket from the events in the bucket. The oldest filter is removed when there
+   * are {@link #maxBloomFilters} filters.
+   */
+  private BucketBloomFilter createBloomFilter(AbstractBucket<INPUT> bucket)
+  {
+    int bucketSize = bucket.countOfWrittenEvents() + bucket.countOfUnwrittenEvents();
+    BucketBloomFilter filter = new BucketBloomFilter(Math.max(expectedEventsPerBucket, 2 * bucketSize), bloomFilterFalsePositiveRate);
+    for (Object eventKey : bucket.getEventKeys()) {
+      filter.add(getEventKeyHash(eventKey));
+    }
+    if (bloomFilters.size() >= maxBloomFilters) {
+      Iterator<Long> iterator = bloomFilters.keySet().iterator();
+      iterator.next();
+      iterator.remove();
+    }
+    bloomFilters.put(bucket.bucketKey, filter);
+    return filter;
+  }
+
+  /**
+   * Returns the 64 bit hash of an event key which is added to and checked against the bloom filters. The default hashes
+   * the key serialized with kryo, so equal event keys must serialize to equal bytes.
+   *
+   * @param eventKey event key
+   * @return hash of the event key.
+   */
+  protected long getEventKeyHash(Object eventKey)
+  {
+    eventKeyOutput.clear();
+    eventKeyKryo.writeClassAndObject(eventKeyOutput, eventKey);
+    return Hashing.murmur3_128().hashBytes(eventKeyOutput.getBuffer(), 0, eventKeyOutput.position()).asLong();
+  }
+
   @Override
   public void endWindow()
   {
@@ -220,6 +396,13 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
     catch (Throwable cause) {
       DTThrowable.rethrow(cause);
     }
+    if (useBloomFilter) {
+      long checkedEvents = counters.getCounter(CounterKeys.BLOOM_FILTER_CHECKED_EVENTS).longValue();
+      if (checkedEvents > 0) {
+        long fastPathEvents = counters.getCounter(CounterKeys.FAST_PATH_EVENTS).longValue();
+        counters.getCounter(CounterKeys.FAST_PATH_PERCENT).setValue(fastPathEvents * 100 / checkedEvents);
+      }
+    }
     context.setCounters(counters);
   }
 
@@ -242,10 +425,14 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
        */
       AbstractBucket<INPUT> bucket;
       while ((bucket = fetchedBuckets.poll()) != null) {
+        if (useBloomFilter && !bloomFilters.containsKey(bucket.bucketKey)) {
+          createBloomFilter(bucket);
+        }
         List<INPUT> waitingList = waitingEvents.remove(bucket.bucketKey);
         if (waitingList != null) {
           for (INPUT event : waitingList) {
             if (!bucket.containsEvent(event)) {
+              addToBloomFilter(bucket, event);
               bucketManager.newEvent(bucket.bucketKey, event);
               output.emit(convert(event));
             }
@@ -336,6 +523,11 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
 
       deduperInstance.partitionKeys = deduperPartition.getPartitionKeys().get(input).partitions;
       deduperInstance.partitionMask = lPartitionMask;
+      //bloom filters are not distributed, they are created again when the buckets are loaded in the new partitions.
+      deduperInstance.useBloomFilter = useBloomFilter;
+      deduperInstance.expectedEventsPerBucket = expectedEventsPerBucket;
+      deduperInstance.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+      deduperInstance.maxBloomFilters = maxBloomFilters;
       logger.debug("partitions {},{}", deduperInstance.partitionKeys, deduperInstance.partitionMask);
       try {
         deduperInstance.bucketManager = bucketManager.clone();
@@ -443,7 +635,7 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
 
   public static enum CounterKeys
   {
-    DUPLICATE_EVENTS
+    DUPLICATE_EVENTS, BLOOM_FILTER_CHECKED_EVENTS, FAST_PATH_EVENTS, FAST_PATH_PERCENT
   }
 
   public static class CountersListener implements StatsListener, Serializable
@@ -459,13 +651,14 @@ public abstract class AbstractDeduper<INPUT, OUTPUT> implements Operator, Bucket
               @SuppressWarnings("unchecked")
               BasicCounters<MutableLong> cs = (BasicCounters<MutableLong>) os.counters;
               logger.debug("operatorId:{} buckets:[in-memory:{} deleted:{} evicted:{}] events:[in-memory:{} committed-last-window:{} " +
-                  "duplicates:{}] low:{} high:{}", batchedOperatorStats.getOperatorId(),
+                  "duplicates:{} fast-path:{}%] low:{} high:{}", batchedOperatorStats.getOperatorId(),
                 cs.getCounter(BucketManager.CounterKeys.BUCKETS_IN_MEMORY),
                 cs.getCounter(BucketManager.CounterKeys.DELETED_BUCKETS),
                 cs.getCounter(BucketManager.CounterKeys.EVICTED_BUCKETS),
                 cs.getCounter(BucketManager.CounterKeys.EVENTS_IN_MEMORY),
                 cs.getCounter(BucketManager.CounterKeys.EVENTS_COMMITTED_LAST_WINDOW),
-                cs.getCounter(CounterKeys.DUPLICATE_EVENTS));
+                cs.getCounter(CounterKeys.DUPLICATE_EVENTS),
+                cs.getCounter(CounterKeys.FAST_PATH_PERCENT));
             }
           }
         }
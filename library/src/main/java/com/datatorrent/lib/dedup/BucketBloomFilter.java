@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.dedup;
+
+/**
+ * Bloom filter over the event keys of a bucket. Used by {@link AbstractDeduper} to find events which are definitely
+ * not present in a bucket without loading the bucket.
+ * <p>
+ * Keys are added and checked by their 64 bit hash, the probe positions are derived from the two 32 bit halves (double
+ * hashing).
+ * </p>
+ */
+class BucketBloomFilter
+{
+  private long[] bits;
+  private long numBits;
+  private int numHashes;
+  private int expectedKeys;
+  private int size;
+
+  @SuppressWarnings("unused")
+  private BucketBloomFilter()
+  {
+    //for kryo
+  }
+
+  /**
+   * Create an empty filter sized for the given number of keys and false positive probability.
+   *
+   * @param expectedKeys
+   * @param falsePositiveRate
+   */
+  BucketBloomFilter(int expectedKeys, double falsePositiveRate)
+  {
+    int n = Math.max(1, expectedKeys);
+    this.expectedKeys = n;
+    long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    int words = (int) Math.max(1, (m + Long.SIZE - 1) / Long.SIZE);
+    bits = new long[words];
+    numBits = (long) words * Long.SIZE;
+    numHashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+  }
+
+  /**
+   * @param keyHash 64 bit hash of the event key
+   */
+  void add(long keyHash)
+  {
+    int h1 = (int) keyHash;
+    int h2 = (int) (keyHash >>> 32);
+    for (int i = 1; i <= numHashes; i++) {
+      long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+      bits[(int) (index >>> 6)] |= 1L << index;
+    }
+    size++;
+  }
+
+  /**
+   * @param keyHash 64 bit hash of the event key
+   * @return false if the key is definitely not in the filter.
+   */
+  boolean mightContain(long keyHash)
+  {
+    int h1 = (int) keyHash;
+    int h2 = (int) (keyHash >>> 32);
+    for (int i = 1; i <= numHashes; i++) {
+      long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+      if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if more keys were added than the filter was sized for.
+   */
+  boolean isSaturated()
+  {
+    return size > expectedKeys;
+  }
+
+}
@@ -19,7 +19,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.apache.commons.lang.mutable.MutableLong;
@@ -35,6 +41,9 @@ import com.google.common.collect.Maps;
 
 import com.datatorrent.api.*;
 
+import com.datatorrent.common.util.NameableThreadFactory;
+import com.datatorrent.common.util.Slice;
+
 import com.datatorrent.lib.counters.BasicCounters;
 
 /**
@@ -53,6 +62,15 @@ import com.datatorrent.lib.counters.BasicCounters;
  * {@link #maxReaders}: Maximum number of readers when dynamic partitioning is on.<br/>
  * {@link #minReaders}: Minimum number of readers when dynamic partitioning is on.<br/>
  * {@link #intervalMillis}: interval at which stats are processed by the block reader.<br/>
+ * {@link #readAheadBlocks}: number of blocks which are opened and read ahead while a block is parsed.<br/>
+ * {@link #readAheadBufferSize}: number of bytes read ahead of the parsing of a block at a time.<br/>
+ *
+ * <p/>
+ * When {@link #readAheadBlocks} is greater than 0, the blocks are queued and the streams of the queued blocks are set
+ * up on read ahead threads. A block which continues the previous block continues its stream, a stream is set up only
+ * for the first of adjacent blocks. The queued blocks are processed in order when the queue exceeds
+ * {@link #readAheadBlocks}, when the operator is idle and at the end of the window, so the records of a block are still
+ * emitted in the window in which the block was received.
  *
  * <p/>
  * It emits a {@link ReaderRecord} which wraps the record and the block id of the record.
@@ -103,6 +121,19 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
    * Interval at which stats are processed. Default : 1 minute
    */
   protected long intervalMillis;
+  /**
+   * Number of blocks which are read ahead while a block is parsed. Default : 0, blocks are read one at a time
+   */
+  @Min(0)
+  protected int readAheadBlocks;
+  /**
+   * Number of bytes read ahead of the parsing of a block at a time. Default : 1MB
+   */
+  @Min(1)
+  protected int readAheadBufferSize;
+
+  protected transient ExecutorService readAheadExecutor;
+  private final transient Deque<ReadAheadBlock> queuedBlocks;
 
   protected transient final StatsListener.Response response;
   protected transient int partitionCount;
@@ -136,6 +167,8 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
     counters = new BasicCounters<MutableLong>(MutableLong.class);
     collectStats = true;
     lastBlockOpenTime = -1;
+    readAheadBufferSize = 1024 * 1024;
+    queuedBlocks = new ArrayDeque<ReadAheadBlock>();
   }
 
   @Override
@@ -150,6 +183,21 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
     counters.setCounter(ReaderCounterKeys.BYTES, new MutableLong());
     counters.setCounter(ReaderCounterKeys.TIME, new MutableLong());
     sleepTimeMillis = context.getValue(Context.OperatorContext.SPIN_MILLIS);
+    if (readAheadBlocks > 0) {
+      readAheadExecutor = Executors.newFixedThreadPool(readAheadBlocks + 1, new NameableThreadFactory("BlockReadAhead"));
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (readAheadExecutor != null) {
+      for (ReadAheadBlock queuedBlock : queuedBlocks) {
+        queuedBlock.close();
+      }
+      queuedBlocks.clear();
+      readAheadExecutor.shutdownNow();
+    }
   }
 
   @Override
@@ -162,7 +210,10 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
   @Override
   public void handleIdleTime()
   {
-    if (lastProcessedBlock != null && System.currentTimeMillis() - lastBlockOpenTime > intervalMillis) {
+    if (!queuedBlocks.isEmpty()) {
+      processQueuedBlocks(0);
+    }
+    else if (lastProcessedBlock != null && System.currentTimeMillis() - lastBlockOpenTime > intervalMillis) {
       try {
         teardownStream(lastProcessedBlock);
         lastProcessedBlock = null;
@@ -185,15 +236,74 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
   @Override
   public void endWindow()
   {
+    processQueuedBlocks(0);
     counters.getCounter(ReaderCounterKeys.BLOCKS).add(blocksPerWindow);
     context.setCounters(counters);
   }
 
   protected void processBlockMetadata(B block)
+  {
+    if (readAheadExecutor == null) {
+      processBlock(block, null);
+      return;
+    }
+
+    //the stream of the previous block is continued for the block
+    ReadAheadBlock lastQueuedBlock = queuedBlocks.peekLast();
+    B previousBlock = lastQueuedBlock != null ? lastQueuedBlock.block : lastProcessedBlock;
+    boolean continued = block.getPreviousBlockId() != -1 && previousBlock != null &&
+      block.getPreviousBlockId() == previousBlock.getBlockId();
+    queuedBlocks.add(new ReadAheadBlock(block, continued));
+    processQueuedBlocks(readAheadBlocks);
+  }
+
+  /**
+   * Processes the queued blocks in order till at most the given number of blocks are queued.
+   *
+   * @param maxQueuedBlocks number of blocks which can stay in the queue.
+   */
+  private void processQueuedBlocks(int maxQueuedBlocks)
+  {
+    while (queuedBlocks.size() > maxQueuedBlocks) {
+      ReadAheadBlock queuedBlock = queuedBlocks.peek();
+      STREAM readAheadStream = null;
+      if (queuedBlock.future != null) {
+        try {
+          readAheadStream = queuedBlock.future.get();
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+          queuedBlocks.poll();
+          throw new RuntimeException("read ahead " + queuedBlock.block.getBlockId(), e.getCause());
+        }
+      }
+      queuedBlocks.poll();
+      processBlock(queuedBlock.block, readAheadStream);
+    }
+  }
+
+  /**
+   * Reads a block.
+   *
+   * @param block           block
+   * @param readAheadStream the stream set up for the block on a read ahead thread; null when the stream of the last
+   *                        block is continued or a new stream is set up.
+   */
+  private void processBlock(B block, STREAM readAheadStream)
   {
     try {
       long blockStartTime = System.currentTimeMillis();
-      if (block.getPreviousBlockId() == -1 || lastProcessedBlock == null || block.getPreviousBlockId() != lastProcessedBlock.getBlockId()) {
+      boolean newStream = block.getPreviousBlockId() == -1 || lastProcessedBlock == null || block.getPreviousBlockId() != lastProcessedBlock.getBlockId();
+      if (readAheadStream != null) {
+        //the stream of the block replaces the stream of the last block even if the block is consecutive
+        teardownStream(lastProcessedBlock);
+        consecutiveBlock = !newStream;
+        lastBlockOpenTime = System.currentTimeMillis();
+        stream = readAheadStream;
+      }
+      else if (newStream) {
         teardownStream(lastProcessedBlock);
         consecutiveBlock = false;
         lastBlockOpenTime = System.currentTimeMillis();
@@ -239,7 +349,7 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
 
       counters.getCounter(ReaderCounterKeys.BYTES).add(entity.getUsedBytes());
 
-      R record = convertToRecord(entity.getRecord());
+      R record = entity.getRecordSlice() != null ? convertSliceToRecord(entity.getRecordSlice()) : convertToRecord(entity.getRecord());
 
       //If the record is partial then ignore the record.
       if (record != null) {
@@ -425,6 +535,20 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
    */
   protected abstract STREAM setupStream(B block) throws IOException;
 
+  /**
+   * Initializes the reading of a block on a read ahead thread. The implementation can read the block ahead of the
+   * parsing, the stream is continued for the following blocks of the source.<br/>
+   * The default implementation calls {@link #setupStream(BlockMetadata)}, so setupStream must be thread safe when
+   * {@link #readAheadBlocks} is greater than 0.
+   *
+   * @param block block
+   * @throws IOException
+   */
+  protected STREAM setupReadAheadStream(B block) throws IOException
+  {
+    return setupStream(block);
+  }
+
   /**
    * Close the reading of a block-metadata.
    *
@@ -447,6 +571,20 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
    */
   protected abstract R convertToRecord(byte[] bytes);
 
+  /**
+   * Converts a slice of the buffer of the {@link ReaderContext} to record. The slice is only valid during the call
+   * because the buffer is reused, so the record must not refer to it.<br/>
+   * The default implementation copies the bytes and calls {@link #convertToRecord(byte[])}. Override it to parse the
+   * record without the copy.
+   *
+   * @param slice slice of the bytes
+   * @return record
+   */
+  protected R convertSliceToRecord(Slice slice)
+  {
+    return convertToRecord(Arrays.copyOfRange(slice.buffer, slice.offset, slice.offset + slice.length));
+  }
+
   /**
    * Sets the maximum number of block readers.
    *
@@ -527,6 +665,80 @@ public abstract class AbstractBlockReader<R, B extends BlockMetadata, STREAM ext
     return readerContext;
   }
 
+  /**
+   * Sets the number of blocks which are opened and read ahead while a block is parsed. 0 disables read ahead.
+   *
+   * @param readAheadBlocks number of blocks.
+   */
+  public void setReadAheadBlocks(int readAheadBlocks)
+  {
+    this.readAheadBlocks = readAheadBlocks;
+  }
+
+  /**
+   * @return the number of blocks which are opened and read ahead while a block is parsed.
+   */
+  public int getReadAheadBlocks()
+  {
+    return readAheadBlocks;
+  }
+
+  /**
+   * Sets the number of bytes read ahead of the parsing of a block at a time. A read ahead stream uses two buffers of
+   * this size, at most {@link #readAheadBlocks} + 1 streams are open.
+   *
+   * @param readAheadBufferSize size of the read ahead buffer.
+   */
+  public void setReadAheadBufferSize(int readAheadBufferSize)
+  {
+    this.readAheadBufferSize = readAheadBufferSize;
+  }
+
+  /**
+   * @return the number of bytes read ahead of the parsing of a block at a time.
+   */
+  public int getReadAheadBufferSize()
+  {
+    return readAheadBufferSize;
+  }
+
+  /**
+   * A block which is queued while its stream is set up on a read ahead thread. A block which continues the stream of
+   * the previous block has no stream of its own.
+   */
+  private class ReadAheadBlock implements Callable<STREAM>
+  {
+    final B block;
+    final Future<STREAM> future;
+
+    ReadAheadBlock(B block, boolean continued)
+    {
+      this.block = block;
+      future = continued ? null : readAheadExecutor.submit(this);
+    }
+
+    @Override
+    public STREAM call() throws Exception
+    {
+      return setupReadAheadStream(block);
+    }
+
+    /**
+     * Closes the stream when it was set up. A stream which is being set up is closed once it is set up.
+     */
+    void close()
+    {
+      if (future != null && !future.cancel(false)) {
+        try {
+          future.get().close();
+        }
+        catch (Exception e) {
+          LOG.warn("closing read ahead stream {}", block.getBlockId(), e);
+        }
+      }
+    }
+  }
+
   @Override
   public String toString()
   {
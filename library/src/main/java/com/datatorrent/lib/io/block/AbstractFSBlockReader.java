@@ -16,6 +16,8 @@
 package com.datatorrent.lib.io.block;
 
 import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -37,6 +39,8 @@ public abstract class AbstractFSBlockReader<R> extends AbstractBlockReader<R, Bl
 {
   protected transient FileSystem fs;
   protected transient Configuration configuration;
+  //buffers of the closed read ahead streams
+  private final transient Queue<byte[]> readAheadBuffers = new ConcurrentLinkedQueue<byte[]>();
 
   @Override
   public void setup(Context.OperatorContext context)
@@ -69,6 +73,24 @@ public abstract class AbstractFSBlockReader<R> extends AbstractBlockReader<R, Bl
     return fs.open(new Path(block.getFilePath()));
   }
 
+  /**
+   * Opens the file and reads the start of the block into a buffer, the following bytes are read ahead of the parsing
+   * on the read ahead threads.
+   */
+  @Override
+  protected FSDataInputStream setupReadAheadStream(BlockMetadata.FileBlockMetadata block) throws IOException
+  {
+    FSDataInputStream in = setupStream(block);
+    try {
+      return new FSDataInputStream(new ReadAheadInputStream(in, block.getOffset(), readAheadBuffers, readAheadBufferSize,
+        readAheadExecutor));
+    }
+    catch (IOException e) {
+      in.close();
+      throw e;
+    }
+  }
+
   /**
    * Override this method to change the FileSystem instance that is used by the operator.
    *
@@ -108,4 +130,20 @@ public abstract class AbstractFSBlockReader<R> extends AbstractBlockReader<R, Bl
       this.readerContext = new ReaderContext.ReadAheadLineReaderContext<FSDataInputStream>();
     }
   }
+
+  /**
+   * An {@link AbstractFSBlockReader} which reads lines from the block using
+   * {@link ReaderContext.ReadAheadLineSliceReaderContext}. The lines are passed to
+   * {@link #convertSliceToRecord(com.datatorrent.common.util.Slice)} without being copied.
+   *
+   * @param <R> type of records
+   */
+  public static abstract class AbstractFSReadAheadLineSliceReader<R> extends AbstractFSBlockReader<R>
+  {
+    public AbstractFSReadAheadLineSliceReader()
+    {
+      super();
+      this.readerContext = new ReaderContext.ReadAheadLineSliceReaderContext<FSDataInputStream>();
+    }
+  }
 }
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.block;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A stream of a file which reads the file ahead of the reader in chunks. The chunk at the position of the reader is
+ * served from a buffer while the following chunk is read into a second buffer on a read ahead thread, so the file is
+ * read continuously as long as the reader moves forward, across the blocks of the file. The bytes behind the chunk of
+ * the reader are read from the file stream.
+ * <p/>
+ * The buffers are taken from a pool and returned to it when the stream is closed.
+ */
+class ReadAheadInputStream extends InputStream implements Seekable, PositionedReadable
+{
+  private final FSDataInputStream in;
+  private final Queue<byte[]> bufferPool;
+  private final int bufferSize;
+  private final ExecutorService executor;
+
+  //chunk at the position of the reader
+  private byte[] buffer;
+  private long bufferStart;
+  private int bufferLength;
+
+  //chunk which follows the chunk of the reader, null when the end of the file was reached
+  private byte[] nextBuffer;
+  private long nextBufferStart;
+  private Future<Integer> nextBufferLength;
+
+  private long position;
+
+  /**
+   * Reads the first chunk from the start position and the second one on the executor.
+   *
+   * @param in         the stream of the file.
+   * @param start      position of the first byte read.
+   * @param bufferPool pool of the buffers.
+   * @param bufferSize size of a chunk.
+   * @param executor   executor of the reads ahead.
+   * @throws IOException
+   */
+  ReadAheadInputStream(FSDataInputStream in, long start, Queue<byte[]> bufferPool, int bufferSize,
+                       ExecutorService executor) throws IOException
+  {
+    this.in = in;
+    this.bufferPool = bufferPool;
+    this.bufferSize = bufferSize;
+    this.executor = executor;
+    this.position = start;
+    buffer = pollBuffer();
+    nextBuffer = pollBuffer();
+    fill(start);
+  }
+
+  private byte[] pollBuffer()
+  {
+    byte[] pooled = bufferPool.poll();
+    return pooled != null && pooled.length == bufferSize ? pooled : new byte[bufferSize];
+  }
+
+  /**
+   * Reads the chunk at the position and starts reading the following chunk ahead.
+   */
+  private void fill(long position) throws IOException
+  {
+    awaitNextBuffer();
+    bufferStart = position;
+    bufferLength = readChunk(in, position, buffer);
+    readAhead();
+  }
+
+  private void readAhead()
+  {
+    if (bufferLength < buffer.length) {
+      //end of the file
+      nextBufferLength = null;
+      return;
+    }
+    nextBufferStart = bufferStart + bufferLength;
+    final byte[] chunk = nextBuffer;
+    final long chunkStart = nextBufferStart;
+    nextBufferLength = executor.submit(new Callable<Integer>()
+    {
+      @Override
+      public Integer call() throws Exception
+      {
+        return readChunk(in, chunkStart, chunk);
+      }
+    });
+  }
+
+  /**
+   * Makes the chunk read ahead the chunk of the reader and starts reading the following chunk ahead.
+   */
+  private void advance() throws IOException
+  {
+    int length = awaitNextBuffer();
+    byte[] previous = buffer;
+    buffer = nextBuffer;
+    nextBuffer = previous;
+    bufferStart = nextBufferStart;
+    bufferLength = length;
+    readAhead();
+  }
+
+  /**
+   * Waits till the chunk read ahead is read.
+   *
+   * @return the number of bytes of the chunk.
+   */
+  private int awaitNextBuffer() throws IOException
+  {
+    if (nextBufferLength == null) {
+      return 0;
+    }
+    int length;
+    try {
+      length = nextBufferLength.get();
+    }
+    catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+    catch (ExecutionException e) {
+      nextBufferLength = null;
+      throw new IOException("read ahead " + nextBufferStart, e.getCause());
+    }
+    nextBufferLength = null;
+    return length;
+  }
+
+  /**
+   * Reads bytes at the position till the chunk is full or the end of the file is reached. The chunks are read one at
+   * a time with the sequential reads of the file stream, which usually continue at the position.
+   *
+   * @return the number of bytes read.
+   */
+  private static int readChunk(FSDataInputStream in, long position, byte[] chunk) throws IOException
+  {
+    if (in.getPos() != position) {
+      try {
+        in.seek(position);
+      }
+      catch (EOFException e) {
+        return 0;
+      }
+    }
+    int length = 0;
+    while (length < chunk.length) {
+      int bytesRead = in.read(chunk, length, chunk.length - length);
+      if (bytesRead < 0) {
+        break;
+      }
+      length += bytesRead;
+    }
+    return length;
+  }
+
+  @Override
+  public int read(long position, byte[] b, int off, int len) throws IOException
+  {
+    if (position < bufferStart) {
+      return in.read(position, b, off, len);
+    }
+    if (position >= bufferStart + bufferLength) {
+      if (nextBufferLength != null && position < nextBufferStart + nextBuffer.length) {
+        advance();
+      }
+      else if (bufferLength == buffer.length) {
+        //the reader skipped the chunk read ahead
+        fill(position);
+      }
+      if (position >= bufferStart + bufferLength) {
+        //end of the file
+        return in.read(position, b, off, len);
+      }
+    }
+    int bytesFromBuffer = (int) Math.min(len, bufferStart + bufferLength - position);
+    System.arraycopy(buffer, (int) (position - bufferStart), b, off, bytesFromBuffer);
+    return bytesFromBuffer;
+  }
+
+  @Override
+  public void readFully(long position, byte[] b, int off, int len) throws IOException
+  {
+    while (len > 0) {
+      int bytesRead = read(position, b, off, len);
+      if (bytesRead < 0) {
+        throw new EOFException("end of file at " + position);
+      }
+      position += bytesRead;
+      off += bytesRead;
+      len -= bytesRead;
+    }
+  }
+
+  @Override
+  public void readFully(long position, byte[] b) throws IOException
+  {
+    readFully(position, b, 0, b.length);
+  }
+
+  @Override
+  public int read() throws IOException
+  {
+    byte[] b = new byte[1];
+    return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException
+  {
+    int bytesRead = read(position, b, off, len);
+    if (bytesRead > 0) {
+      position += bytesRead;
+    }
+    return bytesRead;
+  }
+
+  @Override
+  public void seek(long pos) throws IOException
+  {
+    position = pos;
+  }
+
+  @Override
+  public long getPos() throws IOException
+  {
+    return position;
+  }
+
+  @Override
+  public boolean seekToNewSource(long targetPos) throws IOException
+  {
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    try {
+      //the buffer is returned to the pool only when the read ahead is done with it
+      if (nextBufferLength != null && !nextBufferLength.cancel(false)) {
+        awaitNextBuffer();
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("read ahead {}", nextBufferStart, e);
+    }
+    finally {
+      if (nextBufferLength == null) {
+        bufferPool.add(nextBuffer);
+      }
+      nextBufferLength = null;
+      bufferPool.add(buffer);
+      in.close();
+    }
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReadAheadInputStream.class);
+}
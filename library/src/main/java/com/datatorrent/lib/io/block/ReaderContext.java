@@ -25,6 +25,8 @@ import org.apache.hadoop.fs.PositionedReadable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.common.util.Slice;
+
 /**
  * This controls how an {@link AbstractBlockReader} reads a {@link BlockMetadata}.
  *
@@ -55,16 +57,19 @@ public interface ReaderContext<STREAM extends InputStream & PositionedReadable>
 
   /**
    * Represents the total bytes used to construct the record.<br/>
-   * Used bytes can be different from the bytes in the record.
+   * Used bytes can be different from the bytes in the record.<br/>
+   * The record is either a byte array or a slice of a buffer of the reader context.
    */
   public static class Entity
   {
     private byte[] record;
+    private Slice recordSlice;
     private long usedBytes;
 
     public void clear()
     {
       record = null;
+      recordSlice = null;
       usedBytes = -1;
     }
 
@@ -78,6 +83,20 @@ public interface ReaderContext<STREAM extends InputStream & PositionedReadable>
       this.record = record;
     }
 
+    /**
+     * @return the view of the record in the buffer of the reader context, which is only valid till the next entity
+     * is read; null when the record is a byte array.
+     */
+    public Slice getRecordSlice()
+    {
+      return recordSlice;
+    }
+
+    public void setRecordSlice(Slice recordSlice)
+    {
+      this.recordSlice = recordSlice;
+    }
+
     public long getUsedBytes()
     {
       return usedBytes;
@@ -302,6 +321,214 @@ public interface ReaderContext<STREAM extends InputStream & PositionedReadable>
     }
   }
 
+  /**
+   * This reader context splits the block into entities on '\n' or '\r' like {@link LineReaderContext}, without copying
+   * the entities.<br/>
+   * The block is read into a buffer which is reused and grown when an entity doesn't fit in it. An entity is handed out
+   * as a {@link Slice} of the buffer, which is valid till the next entity is read. An entity which crosses the block
+   * boundary is read completely.<br/>
+   * Any records formed using this context will need a way to validate the start of the record.
+   *
+   * @param <STREAM> type of stream.
+   */
+  public static class LineSliceReaderContext<STREAM extends InputStream & PositionedReadable> extends AbstractReaderContext<STREAM>
+  {
+    protected int bufferSize;
+
+    private transient byte[] buffer;
+    //position of the first byte of the buffer in the stream
+    private transient long bufferStart;
+    private transient int bufferLength;
+    private final transient Slice slice;
+
+    public LineSliceReaderContext()
+    {
+      super();
+      bufferSize = 64 * 1024;
+      slice = new Slice(null, 0, 0);
+    }
+
+    @Override
+    public void initialize(STREAM stream, BlockMetadata blockMetadata, boolean consecutiveBlock)
+    {
+      if (buffer == null) {
+        buffer = new byte[bufferSize];
+      }
+      if (!consecutiveBlock) {
+        //consecutive blocks belong to the same source, so the buffered bytes stay valid
+        bufferLength = 0;
+      }
+      super.initialize(stream, blockMetadata, consecutiveBlock);
+    }
+
+    @Override
+    public Entity next() throws IOException
+    {
+      if (offset < blockMetadata.getLength()) {
+        return nextEntity();
+      }
+      return null;
+    }
+
+    /**
+     * Reads the entity at the offset and moves the offset past it.
+     *
+     * @return the entity; null at the end of the stream.
+     * @throws IOException
+     */
+    protected Entity nextEntity() throws IOException
+    {
+      Entity entity = readEntity();
+      if (entity != null) {
+        offset += entity.getUsedBytes();
+      }
+      return entity;
+    }
+
+    @Override
+    protected Entity readEntity() throws IOException
+    {
+      if (offset < bufferStart || offset >= bufferStart + bufferLength) {
+        bufferStart = offset;
+        bufferLength = 0;
+        if (!readMore(0)) {
+          return null;
+        }
+      }
+
+      int start = (int) (offset - bufferStart);
+      int end = start;
+      boolean foundEOL = false;
+      while (!foundEOL) {
+        if (end == bufferLength) {
+          if (!readMore(start)) {
+            break;
+          }
+          end -= start;
+          start = 0;
+        }
+        else if (buffer[end] == '\r' || buffer[end] == '\n') {
+          foundEOL = true;
+        }
+        else {
+          end++;
+        }
+      }
+
+      int usedEnd = end;
+      while (foundEOL) {
+        if (usedEnd == bufferLength) {
+          if (!readMore(start)) {
+            break;
+          }
+          usedEnd -= start;
+          end -= start;
+          start = 0;
+        }
+        else if (buffer[usedEnd] == '\r' || buffer[usedEnd] == '\n') {
+          usedEnd++;
+        }
+        else {
+          break;
+        }
+      }
+
+      if (usedEnd == start) {
+        //end of stream
+        return null;
+      }
+      slice.buffer = buffer;
+      slice.offset = start;
+      slice.length = end - start;
+      entity.clear();
+      entity.setRecordSlice(slice);
+      entity.setUsedBytes(usedEnd - start);
+      return entity;
+    }
+
+    /**
+     * Moves the bytes from the given index to the start of the buffer and reads more bytes after them. The buffer is
+     * grown when it is full.
+     *
+     * @param from index of the first byte which is kept.
+     * @return false at the end of the stream.
+     * @throws IOException
+     */
+    private boolean readMore(int from) throws IOException
+    {
+      int keep = bufferLength - from;
+      if (keep == buffer.length) {
+        byte[] newBuffer = new byte[buffer.length * 2];
+        System.arraycopy(buffer, from, newBuffer, 0, keep);
+        buffer = newBuffer;
+      }
+      else if (from > 0) {
+        System.arraycopy(buffer, from, buffer, 0, keep);
+      }
+      bufferStart += from;
+      bufferLength = keep;
+
+      int bytesRead = stream.read(bufferStart + bufferLength, buffer, bufferLength, buffer.length - bufferLength);
+      if (bytesRead <= 0) {
+        return false;
+      }
+      bufferLength += bytesRead;
+      return true;
+    }
+
+    /**
+     * Sets the initial size of the buffer.
+     *
+     * @param bufferSize size of the buffer
+     */
+    public void setBufferSize(int bufferSize)
+    {
+      this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @return the initial size of the buffer.
+     */
+    public int getBufferSize()
+    {
+      return this.bufferSize;
+    }
+  }
+
+  /**
+   * A {@link LineSliceReaderContext} which reads beyond the block boundary like {@link ReadAheadLineReaderContext}, so
+   * the records don't need a way to validate their start.
+   *
+   * @param <STREAM> type of stream.
+   */
+  public static class ReadAheadLineSliceReaderContext<STREAM extends InputStream & PositionedReadable> extends LineSliceReaderContext<STREAM>
+  {
+    @Override
+    public void initialize(STREAM stream, BlockMetadata blockMetadata, boolean consecutiveBlock)
+    {
+      super.initialize(stream, blockMetadata, consecutiveBlock);
+      //ignore first entity of  all the blocks except the first one because those bytes
+      //were used during the parsing of the previous block.
+      if (!consecutiveBlock && blockMetadata.getOffset() != 0) {
+        try {
+          nextEntity();
+        }
+        catch (IOException e) {
+          throw new RuntimeException("when reading first entity", e);
+        }
+      }
+    }
+
+    @Override
+    public Entity next() throws IOException
+    {
+      if (offset < blockMetadata.getLength() || (offset == blockMetadata.getLength() && !blockMetadata.isLastBlock())) {
+        return nextEntity();
+      }
+      return null;
+    }
+  }
+
   /**
    * This creates fixed sized entities.<br/>
    * It doesn't read beyond the block boundary therefore the last byte-array could be smaller.<br/>
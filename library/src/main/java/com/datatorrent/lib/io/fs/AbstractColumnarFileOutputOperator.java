@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.api.Context.OperatorContext;
+
+import com.datatorrent.lib.util.PojoUtils;
+import com.datatorrent.lib.util.PojoUtils.Getter;
+
+/**
+ * This is a file output operator which writes POJOs in a columnar layout.
+ * <p>
+ * The values of the {@link #columns} are extracted from the tuples with {@link PojoUtils} getters created from the
+ * {@link #expressions}. Rows are buffered per file and written as a row group once {@link #rowGroupSize} rows are
+ * buffered, before a file is rotated and when the operator is torn down. Every column of a row
+ * group is dictionary encoded when it has few distinct values and run length encoded. The format is described in
+ * {@link ColumnarFileFormat} and the files are read with {@link ColumnarFileReader}, which reads only the projected
+ * columns.
+ * </p>
+ * <p>
+ * Row groups are written to the files like tuples by {@link AbstractFileOutputOperator}, so the files are rolled over
+ * at a row group boundary once they exceed {@link #maxLength} and are restored to the end offsets on recovery. The
+ * buffered rows are part of the check-pointed state of the operator. {@link #getBytesForTuple(Object)} encodes a
+ * single tuple as a row group of one row.
+ * </p>
+ *
+ * @displayName FS Columnar Writer
+ * @category Output
+ * @tags fs, file, output operator, pojo
+ *
+ * @param <INPUT> The type of the incoming tuples.
+ */
+public abstract class AbstractColumnarFileOutputOperator<INPUT> extends AbstractFileOutputOperator<INPUT>
+{
+  /**
+   * Names of the columns.
+   */
+  @NotNull
+  protected ArrayList<String> columns;
+
+  /**
+   * Java expressions that yield the value of each column from the POJO.
+   */
+  @NotNull
+  protected ArrayList<String> expressions;
+
+  /**
+   * Maximum number of rows in a row group.
+   */
+  @Min(1)
+  protected int rowGroupSize = 10000;
+
+  /**
+   * File name to the rows which are not written yet, per column.
+   */
+  protected Map<String, List<List<Object>>> pendingRowGroups;
+
+  private transient List<Getter<Object, Object>> getters;
+  private transient Kryo kryo;
+  private transient Output rowGroupOutput;
+  private transient Output chunkOutput;
+
+  public AbstractColumnarFileOutputOperator()
+  {
+    pendingRowGroups = Maps.newHashMap();
+  }
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    Preconditions.checkArgument(!columns.isEmpty() && columns.size() == expressions.size(), "columns and expressions");
+    kryo = new Kryo();
+    kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    rowGroupOutput = new Output(64 * 1024, -1);
+    chunkOutput = new Output(64 * 1024, -1);
+    super.setup(context);
+  }
+
+  @Override
+  protected void processTuple(INPUT tuple)
+  {
+    String fileName = getFileName(tuple);
+
+    if (Strings.isNullOrEmpty(fileName)) {
+      return;
+    }
+
+    List<Getter<Object, Object>> columnGetters = getGetters(tuple);
+    List<List<Object>> rowGroup = pendingRowGroups.get(fileName);
+    if (rowGroup == null) {
+      rowGroup = Lists.newArrayListWithCapacity(columns.size());
+      for (int i = 0; i < columns.size(); i++) {
+        rowGroup.add(new ArrayList<Object>());
+      }
+      pendingRowGroups.put(fileName, rowGroup);
+    }
+    for (int i = 0; i < columnGetters.size(); i++) {
+      rowGroup.get(i).add(columnGetters.get(i).get(tuple));
+    }
+
+    if (rowGroup.get(0).size() >= rowGroupSize) {
+      writeRowGroup(fileName);
+    }
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (rotationWindows > 0 && rotationCount + 1 == rotationWindows) {
+      //rows of the period are written to the files before they are rotated
+      writeRowGroups();
+    }
+    super.endWindow();
+  }
+
+  @Override
+  public void teardown()
+  {
+    //the rows of the last partial row groups are written before the files are closed
+    writeRowGroups();
+    super.teardown();
+  }
+
+  @Override
+  protected void rotate(String fileName) throws IllegalArgumentException, IOException, ExecutionException
+  {
+    //the buffered rows belong to the part which is finished
+    if (pendingRowGroups.containsKey(fileName)) {
+      int part = openPart.get(fileName).intValue();
+      writeRowGroup(fileName);
+      if (openPart.get(fileName).intValue() != part) {
+        //the row group filled up the part and it was rotated
+        return;
+      }
+    }
+    super.rotate(fileName);
+  }
+
+  private List<Getter<Object, Object>> getGetters(INPUT tuple)
+  {
+    if (getters == null) {
+      getters = Lists.newArrayListWithCapacity(expressions.size());
+      for (String expression : expressions) {
+        getters.add(PojoUtils.<Object, Object>createGetter(tuple.getClass(), expression, Object.class));
+      }
+    }
+    return getters;
+  }
+
+  /**
+   * Writes the buffered rows of all the files.
+   */
+  protected void writeRowGroups()
+  {
+    for (String fileName : Lists.newArrayList(pendingRowGroups.keySet())) {
+      writeRowGroup(fileName);
+    }
+  }
+
+  /**
+   * Writes the buffered rows of a file as a row group.
+   * @param fileName The file to write to.
+   */
+  protected void writeRowGroup(String fileName)
+  {
+    List<List<Object>> rowGroup = pendingRowGroups.remove(fileName);
+    if (rowGroup == null) {
+      return;
+    }
+
+    encodeRowGroup(rowGroup);
+    writeBytes(fileName, rowGroupOutput.getBuffer(), 0, rowGroupOutput.position(), rowGroup.get(0).size());
+  }
+
+  /**
+   * Encodes the rows of a row group into the row group output.
+   * @param rowGroup The values of the rows, per column.
+   */
+  private void encodeRowGroup(List<List<Object>> rowGroup)
+  {
+    chunkOutput.clear();
+    int[] chunkLengths = new int[columns.size()];
+    for (int i = 0; i < columns.size(); i++) {
+      int chunkStart = chunkOutput.position();
+      ColumnarFileFormat.writeChunk(kryo, chunkOutput, rowGroup.get(i));
+      chunkLengths[i] = chunkOutput.position() - chunkStart;
+    }
+
+    rowGroupOutput.clear();
+    rowGroupOutput.writeBytes(ColumnarFileFormat.SYNC);
+    rowGroupOutput.writeInt(0); //header length place holder
+    int headerStart = rowGroupOutput.position();
+    rowGroupOutput.writeVarInt(rowGroup.get(0).size(), true);
+    rowGroupOutput.writeVarInt(columns.size(), true);
+    for (int i = 0; i < columns.size(); i++) {
+      rowGroupOutput.writeString(columns.get(i));
+      rowGroupOutput.writeVarInt(chunkLengths[i], true);
+    }
+    int headerEnd = rowGroupOutput.position();
+    rowGroupOutput.setPosition(headerStart - 4);
+    rowGroupOutput.writeInt(headerEnd - headerStart);
+    rowGroupOutput.setPosition(headerEnd);
+    rowGroupOutput.writeBytes(chunkOutput.getBuffer(), 0, chunkOutput.position());
+  }
+
+  /**
+   * Encodes the tuple as a row group of one row. The operator itself buffers the rows of a file and writes them in
+   * larger row groups.
+   * @param tuple The tuple to encode.
+   * @return The row group.
+   */
+  @Override
+  protected byte[] getBytesForTuple(INPUT tuple)
+  {
+    List<Getter<Object, Object>> columnGetters = getGetters(tuple);
+    List<List<Object>> rowGroup = Lists.newArrayListWithCapacity(columnGetters.size());
+    for (Getter<Object, Object> getter : columnGetters) {
+      List<Object> column = new ArrayList<Object>(1);
+      column.add(getter.get(tuple));
+      rowGroup.add(column);
+    }
+    encodeRowGroup(rowGroup);
+    return rowGroupOutput.toBytes();
+  }
+
+  /**
+   * Sets the names of the columns.
+   * @param columns The column names.
+   */
+  public void setColumns(@NotNull ArrayList<String> columns)
+  {
+    this.columns = columns;
+  }
+
+  /**
+   * Gets the names of the columns.
+   * @return The column names.
+   */
+  public ArrayList<String> getColumns()
+  {
+    return columns;
+  }
+
+  /**
+   * Sets the Java expressions that yield the value of each column from the POJO.
+   * @param expressions The getter expressions.
+   */
+  public void setExpressions(@NotNull ArrayList<String> expressions)
+  {
+    this.expressions = expressions;
+  }
+
+  /**
+   * Gets the Java expressions that yield the value of each column from the POJO.
+   * @return The getter expressions.
+   */
+  public ArrayList<String> getExpressions()
+  {
+    return expressions;
+  }
+
+  /**
+   * Sets the maximum number of rows in a row group.
+   * @param rowGroupSize The number of rows.
+   */
+  public void setRowGroupSize(int rowGroupSize)
+  {
+    this.rowGroupSize = rowGroupSize;
+  }
+
+  /**
+   * Gets the maximum number of rows in a row group.
+   * @return The number of rows.
+   */
+  public int getRowGroupSize()
+  {
+    return rowGroupSize;
+  }
+}
@@ -17,9 +17,15 @@ package com.datatorrent.lib.io.fs;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import com.esotericsoftware.kryo.Kryo;
@@ -27,6 +33,7 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import org.slf4j.Logger;
@@ -43,6 +50,9 @@ import com.datatorrent.api.*;
 import com.datatorrent.api.Context.CountersAggregator;
 import com.datatorrent.api.Context.OperatorContext;
 
+import com.datatorrent.common.util.DTThrowable;
+import com.datatorrent.common.util.NameableThreadFactory;
+
 /**
  * This is the base implementation of a directory input operator, which scans a directory for files.&nbsp;
  * Files are then read and split into tuples, which are emitted.&nbsp;
@@ -66,6 +76,17 @@ import com.datatorrent.api.Context.OperatorContext;
  * This class supports retrying of failed files by putting them into failed list, and retrying them after pending
  * files are processed. Retrying is disabled when maxRetryCount is set to zero.
  * </p>
+ * <p>
+ * By default every processed file is tracked in the check-pointed state. For directories which accumulate a large
+ * number of files, {@link #processedFilesRetentionMillis} bounds the tracked files to the ones modified within the
+ * retention period of the latest modified file; older files are skipped by the scanner based on their modification
+ * time.
+ * </p>
+ * <p>
+ * The directory is listed on the operator thread by default. With {@link #scanInBackground} the directory is listed
+ * by a scan thread, which hands the discovered files over to the operator through a queue bounded by
+ * {@link #discoveredFilesQueueCapacity}, so slow listings don't stall the emission of tuples.
+ * </p>
  * @displayName FS Directory Scan Input
  * @category Input
  * @tags fs, file, input operator
@@ -86,6 +107,19 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
   protected int offset;
   protected String currentFile;
   protected Set<String> processedFiles = new HashSet<String>();
+  /*
+   * Modification times of the processed files, tracked when processedFilesRetentionMillis is set.
+   */
+  protected Map<String, Long> processedFileModificationTimes = new HashMap<String, Long>();
+  /*
+   * Files modified before the watermark are considered processed.
+   */
+  protected long processedFilesWatermark = Long.MIN_VALUE;
+  protected long expiredProcessedFileCount;
+  private long processedFilesRetentionMillis = 0;
+  private boolean scanInBackground;
+  @Min(1)
+  private int discoveredFilesQueueCapacity = 10000;
   protected int emitBatchSize = 1000;
   protected int currentPartitions = 1 ;
   protected int partitionCount = 1;
@@ -102,6 +136,19 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
   protected transient MutableLong globalProcessedFileCount = new MutableLong();
   protected transient MutableLong localProcessedFileCount = new MutableLong();
   protected transient MutableLong pendingFileCount = new MutableLong();
+  protected transient MutableLong lastScanTimeMillis = new MutableLong();
+  protected transient MutableLong lastScanDiscoveredFiles = new MutableLong();
+  protected transient MutableLong discoveredFilesQueueSize = new MutableLong();
+
+  private transient ExecutorService scanService;
+  private transient BlockingQueue<DiscoveredFile> discoveredFiles;
+  private final transient AtomicReference<Throwable> scanThrowable = new AtomicReference<Throwable>();
+  /*
+   * The processed files watermark published to the scan thread.
+   */
+  private transient volatile long scanWatermark;
+  private transient volatile long scanTimeMillis;
+  private transient volatile long scanDiscoveredFiles;
 
   @NotNull
   protected IdempotentStorageManager idempotentStorageManager = new IdempotentStorageManager.NoopIdempotentStorageManager();
@@ -220,7 +267,19 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
     /**
      * The number of files pending on the physical operator.
      */
-    PENDING_FILES
+    PENDING_FILES,
+    /**
+     * The time taken by the last listing of the directory.
+     */
+    LAST_SCAN_TIME_MILLIS,
+    /**
+     * The number of new files found by the last listing of the directory.
+     */
+    LAST_SCAN_DISCOVERED_FILES,
+    /**
+     * The number of discovered files waiting to be handed over from the scan thread to the operator.
+     */
+    DISCOVERED_FILES_QUEUE_SIZE
   }
 
   /**
@@ -410,7 +469,7 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
   public void setup(OperatorContext context)
   {
     operatorId = context.getId();
-    globalProcessedFileCount.setValue(processedFiles.size());
+    globalProcessedFileCount.setValue(processedFiles.size() + expiredProcessedFileCount);
     LOG.debug("Setup processed file count: {}", globalProcessedFileCount);
     this.context = context;
 
@@ -437,6 +496,12 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
                             localNumberOfRetries);
     fileCounters.setCounter(FileCounters.PENDING_FILES,
                             pendingFileCount);
+    fileCounters.setCounter(FileCounters.LAST_SCAN_TIME_MILLIS,
+                            lastScanTimeMillis);
+    fileCounters.setCounter(FileCounters.LAST_SCAN_DISCOVERED_FILES,
+                            lastScanDiscoveredFiles);
+    fileCounters.setCounter(FileCounters.DISCOVERED_FILES_QUEUE_SIZE,
+                            discoveredFilesQueueSize);
 
     idempotentStorageManager.setup(context);
     if (context.getValue(OperatorContext.ACTIVATION_WINDOW_ID) < idempotentStorageManager.getLargestRecoveryWindow()) {
@@ -444,6 +509,18 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
       currentFile = null;
       offset = 0;
     }
+
+    if (scanInBackground) {
+      Map<String, Long> discovered = Maps.newHashMap();
+      for (String processedFile : processedFiles) {
+        Long modificationTime = processedFileModificationTimes.get(processedFile);
+        discovered.put(processedFile, modificationTime == null ? Long.MAX_VALUE : modificationTime);
+      }
+      discoveredFiles = new LinkedBlockingQueue<DiscoveredFile>(discoveredFilesQueueCapacity);
+      scanWatermark = processedFilesWatermark;
+      scanService = Executors.newSingleThreadExecutor(new NameableThreadFactory("DirectoryScanner"));
+      scanService.execute(new ScanService(discovered));
+    }
   }
 
   /**
@@ -460,6 +537,10 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
   @Override
   public void teardown()
   {
+    if (scanService != null) {
+      scanService.shutdownNow();
+    }
+
     IOException savedException = null;
     boolean fileFailed = false;
 
@@ -529,6 +610,12 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
         pendingFileCount.increment();
       }
 
+      if (scanService != null) {
+        lastScanTimeMillis.setValue(scanTimeMillis);
+        lastScanDiscoveredFiles.setValue(scanDiscoveredFiles);
+        discoveredFilesQueueSize.setValue(discoveredFiles.size());
+      }
+
       context.setCounters(fileCounters);
     }
   }
@@ -685,17 +772,78 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
    */
   protected void scanDirectory()
   {
+    if (scanService != null) {
+      pollDiscoveredFiles();
+      return;
+    }
+
     if(System.currentTimeMillis() - scanIntervalMillis >= lastScanMillis) {
-      Set<Path> newPaths = scanner.scan(fs, filePath, processedFiles);
+      long startMillis = System.currentTimeMillis();
+      // the watermark stays Long.MIN_VALUE unless processed files are expired
+      Map<Path, Long> newPaths = scanner.scan(fs, filePath, processedFiles, processedFilesWatermark);
 
-      for(Path newPath : newPaths) {
-        String newPathString = newPath.toString();
-        pendingFiles.add(newPathString);
-        processedFiles.add(newPathString);
-        localProcessedFileCount.increment();
+      for (Map.Entry<Path, Long> entry : newPaths.entrySet()) {
+        addNewFile(entry.getKey().toString(), entry.getValue());
+      }
+      lastScanDiscoveredFiles.setValue(newPaths.size());
+      if (processedFilesRetentionMillis > 0) {
+        expireProcessedFiles();
       }
 
       lastScanMillis = System.currentTimeMillis();
+      lastScanTimeMillis.setValue(lastScanMillis - startMillis);
+    }
+  }
+
+  /**
+   * Takes over the files discovered by the scan thread.
+   */
+  private void pollDiscoveredFiles()
+  {
+    Throwable throwable = scanThrowable.get();
+    if (throwable != null) {
+      DTThrowable.rethrow(throwable);
+    }
+
+    DiscoveredFile discoveredFile;
+    while ((discoveredFile = discoveredFiles.poll()) != null) {
+      //the file may have been processed in a replayed window or expired since it was discovered
+      if (!processedFiles.contains(discoveredFile.path) && discoveredFile.modificationTime >= processedFilesWatermark) {
+        addNewFile(discoveredFile.path, discoveredFile.modificationTime);
+      }
+    }
+
+    if (processedFilesRetentionMillis > 0) {
+      expireProcessedFiles();
+      scanWatermark = processedFilesWatermark;
+    }
+  }
+
+  private void addNewFile(String newPathString, long modificationTime)
+  {
+    pendingFiles.add(newPathString);
+    processedFiles.add(newPathString);
+    localProcessedFileCount.increment();
+
+    if (processedFilesRetentionMillis > 0) {
+      processedFileModificationTimes.put(newPathString, modificationTime);
+      processedFilesWatermark = Math.max(processedFilesWatermark, modificationTime - processedFilesRetentionMillis);
+    }
+  }
+
+  /**
+   * Stops tracking the processed files which were modified before the watermark. The scanner skips these files.
+   */
+  private void expireProcessedFiles()
+  {
+    Iterator<Map.Entry<String, Long>> iterator = processedFileModificationTimes.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Long> entry = iterator.next();
+      if (entry.getValue() < processedFilesWatermark) {
+        processedFiles.remove(entry.getKey());
+        iterator.remove();
+        expiredProcessedFileCount++;
+      }
     }
   }
 
@@ -799,6 +947,9 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
      * Build collective state from all instances of the operator.
      */
     Set<String> totalProcessedFiles = Sets.newHashSet();
+    Map<String, Long> totalProcessedFileModificationTimes = Maps.newHashMap();
+    long totalExpiredProcessedFileCount = 0;
+    long watermark = Long.MIN_VALUE;
     Set<FailedFile> currentFiles = Sets.newHashSet();
     List<DirectoryScanner> oldscanners = Lists.newLinkedList();
     List<FailedFile> totalFailedFiles = Lists.newLinkedList();
@@ -808,6 +959,10 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
     for(Partition<AbstractFileInputOperator<T>> partition : partitions) {
       AbstractFileInputOperator<T> oper = partition.getPartitionedInstance();
       totalProcessedFiles.addAll(oper.processedFiles);
+      totalProcessedFileModificationTimes.putAll(oper.processedFileModificationTimes);
+      totalExpiredProcessedFileCount += oper.expiredProcessedFileCount;
+      //the files below the watermark of any partition may have been expired, they must not be processed again
+      watermark = Math.max(watermark, oper.processedFilesWatermark);
       totalFailedFiles.addAll(oper.failedFiles);
       totalPendingFiles.addAll(oper.pendingFiles);
       currentFiles.addAll(unfinishedFiles);
@@ -847,6 +1002,9 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
 
       // Do state transfer for processed files.
       oper.processedFiles.addAll(totalProcessedFiles);
+      oper.processedFileModificationTimes.putAll(totalProcessedFileModificationTimes);
+      oper.processedFilesWatermark = watermark;
+      oper.expiredProcessedFileCount = totalExpiredProcessedFileCount;
       oper.globalNumberOfFailures = tempGlobalNumberOfRetries;
       oper.localNumberOfFailures.setValue(0);
       oper.globalNumberOfRetries = tempGlobalNumberOfFailures;
@@ -977,18 +1135,162 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
     this.maxRetryCount = maxRetryCount;
   }
 
+  /**
+   * Returns the period, relative to the modification time of the latest modified processed file, within which
+   * processed files are tracked individually.
+   * @return The retention period in milliseconds, 0 when all the processed files are tracked.
+   */
+  public long getProcessedFilesRetentionMillis()
+  {
+    return processedFilesRetentionMillis;
+  }
+
+  /**
+   * Sets the period, relative to the modification time of the latest modified processed file, within which
+   * processed files are tracked individually. Older files are skipped by the scanner, so files which appear in the
+   * directory later than the retention period after their modification time are not processed. The default value
+   * of 0 tracks all the processed files.
+   * @param processedFilesRetentionMillis The retention period in milliseconds.
+   */
+  public void setProcessedFilesRetentionMillis(long processedFilesRetentionMillis)
+  {
+    this.processedFilesRetentionMillis = processedFilesRetentionMillis;
+  }
+
+  /**
+   * Returns whether the directory is listed by a scan thread instead of the operator thread.
+   * @return true if the directory is scanned in the background.
+   */
+  public boolean isScanInBackground()
+  {
+    return scanInBackground;
+  }
+
+  /**
+   * Sets whether the directory is listed by a scan thread instead of the operator thread. The scan thread lists the
+   * directory every {@link #scanIntervalMillis} and queues the new files for the operator.
+   * @param scanInBackground true to scan the directory in the background.
+   */
+  public void setScanInBackground(boolean scanInBackground)
+  {
+    this.scanInBackground = scanInBackground;
+  }
+
+  /**
+   * Returns the maximum number of discovered files queued by the scan thread.
+   * @return The capacity of the queue.
+   */
+  public int getDiscoveredFilesQueueCapacity()
+  {
+    return discoveredFilesQueueCapacity;
+  }
+
+  /**
+   * Sets the maximum number of discovered files queued by the scan thread. The scan thread waits when the queue is
+   * full.
+   * @param discoveredFilesQueueCapacity The capacity of the queue.
+   */
+  public void setDiscoveredFilesQueueCapacity(int discoveredFilesQueueCapacity)
+  {
+    this.discoveredFilesQueueCapacity = discoveredFilesQueueCapacity;
+  }
+
+  /**
+   * Lists the directory in the background and queues the new files for the operator thread.
+   */
+  private class ScanService implements Runnable
+  {
+    /*
+     * Files queued so far mapped to their modification times, only accessed by the scan thread.
+     */
+    private final Map<String, Long> discovered;
+
+    ScanService(Map<String, Long> discovered)
+    {
+      this.discovered = discovered;
+    }
+
+    @Override
+    public void run()
+    {
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          long startMillis = System.currentTimeMillis();
+          long watermark = scanWatermark;
+          Map<Path, Long> newPaths = scanner.scan(fs, filePath, discovered.keySet(), watermark);
+          scanTimeMillis = System.currentTimeMillis() - startMillis;
+          scanDiscoveredFiles = newPaths.size();
+
+          for (Map.Entry<Path, Long> entry : newPaths.entrySet()) {
+            String path = entry.getKey().toString();
+            discovered.put(path, entry.getValue());
+            discoveredFiles.put(new DiscoveredFile(path, entry.getValue()));
+          }
+
+          if (watermark > Long.MIN_VALUE) {
+            Iterator<Long> iterator = discovered.values().iterator();
+            while (iterator.hasNext()) {
+              if (iterator.next() < watermark) {
+                iterator.remove();
+              }
+            }
+          }
+
+          Thread.sleep(Math.max(0, scanIntervalMillis - (System.currentTimeMillis() - startMillis)));
+        }
+      }
+      catch (InterruptedException ex) {
+        //torn down
+      }
+      catch (Throwable throwable) {
+        if (!scanService.isShutdown()) {
+          LOG.error("scanning {}", filePath, throwable);
+          scanThrowable.set(throwable);
+        }
+      }
+    }
+  }
+
+  private static class DiscoveredFile
+  {
+    final String path;
+    final long modificationTime;
+
+    DiscoveredFile(String path, long modificationTime)
+    {
+      this.path = path;
+      this.modificationTime = modificationTime;
+    }
+  }
+
   /**
    * The class that is used to scan for new files in the directory for the
    * AbstractFSDirectoryInputOperator.
+   * <p>
+   * The operator always calls {@link #scan(FileSystem, Path, Set, long)}, whether the scan runs in the operator thread
+   * or in the background and whether processed files expire or not. Subclasses which change how the directory is
+   * scanned override that method, {@link #scan(FileSystem, Path, Set)} only delegates to it.
+   * </p>
    */
   public static class DirectoryScanner implements Serializable
   {
     private static final long serialVersionUID = 4535844463258899929L;
+    /**
+     * Resolution of the modification times of the file systems.
+     */
+    public static final long MODIFICATION_TIME_RESOLUTION_MILLIS = 2000;
     private String filePatternRegexp;
     private transient Pattern regex = null;
     private int partitionIndex;
     private int partitionCount;
+    private boolean recursive;
+    private boolean skipUnchangedDirectories;
     protected final transient HashSet<String> ignoredFiles = new HashSet<String>();
+    /*
+     * Modification times and sub directories of the directories which were listed, to skip unchanged directories.
+     */
+    protected final transient Map<String, Long> lastModifiedTimes = new HashMap<String, Long>();
+    protected final transient Map<String, List<Path>> subDirectories = new HashMap<String, List<Path>>();
 
     public String getFilePatternRegexp()
     {
@@ -1005,6 +1307,38 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
       return partitionCount;
     }
 
+    public boolean isRecursive()
+    {
+      return recursive;
+    }
+
+    /**
+     * Sets whether the sub directories are scanned.
+     * @param recursive true to scan the sub directories.
+     */
+    public void setRecursive(boolean recursive)
+    {
+      this.recursive = recursive;
+    }
+
+    public boolean isSkipUnchangedDirectories()
+    {
+      return skipUnchangedDirectories;
+    }
+
+    /**
+     * Sets whether directories whose modification time didn't change since they were listed are skipped. The
+     * modification time of a directory changes when an entry is added or removed, so the new files are found without
+     * listing every directory on every scan. A directory is skipped only after its modification time is at least
+     * {@link #MODIFICATION_TIME_RESOLUTION_MILLIS} old, since files created within the resolution of the file system
+     * timestamps don't change it.
+     * @param skipUnchangedDirectories true to skip unchanged directories.
+     */
+    public void setSkipUnchangedDirectories(boolean skipUnchangedDirectories)
+    {
+      this.skipUnchangedDirectories = skipUnchangedDirectories;
+    }
+
     public int getPartitionIndex() {
       return partitionIndex;
     }
@@ -1015,17 +1349,73 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
       return this.regex;
     }
 
+    /**
+     * Scans for the accepted files which are not consumed, see {@link #scan(FileSystem, Path, Set, long)}. The operator
+     * doesn't call this method, override the other one to change the scan.
+     * @param fs The file system.
+     * @param filePath The directory to scan.
+     * @param consumedFiles The files which are consumed.
+     * @return The new files, in the order they were found.
+     */
     public LinkedHashSet<Path> scan(FileSystem fs, Path filePath, Set<String> consumedFiles)
     {
-      LinkedHashSet<Path> pathSet = Sets.newLinkedHashSet();
+      return Sets.newLinkedHashSet(scan(fs, filePath, consumedFiles, Long.MIN_VALUE).keySet());
+    }
+
+    /**
+     * Scans for the accepted files which are not consumed and were modified at or after the given time.
+     * @param fs The file system.
+     * @param filePath The directory to scan.
+     * @param consumedFiles The files which are consumed.
+     * @param minModificationTime The files modified before this time are skipped.
+     * @return The new files mapped to their modification times, in the order they were found.
+     */
+    public LinkedHashMap<Path, Long> scan(FileSystem fs, Path filePath, Set<String> consumedFiles, long minModificationTime)
+    {
+      LinkedHashMap<Path, Long> pathMap = Maps.newLinkedHashMap();
       try {
         LOG.debug("Scanning {} with pattern {}", filePath, this.filePatternRegexp);
-        FileStatus[] files = fs.listStatus(filePath);
+        scan(fs, filePath, consumedFiles, minModificationTime, pathMap, System.currentTimeMillis());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return pathMap;
+    }
+
+    private void scan(FileSystem fs, Path directory, Set<String> consumedFiles, long minModificationTime,
+                      Map<Path, Long> pathMap, long scanMillis) throws IOException
+    {
+      String directoryStr = directory.toString();
+      List<Path> directories = Lists.newArrayList();
+      try {
+        long modificationTime = 0;
+        if (skipUnchangedDirectories) {
+          modificationTime = fs.getFileStatus(directory).getModificationTime();
+          Long lastModifiedTime = lastModifiedTimes.get(directoryStr);
+          if (lastModifiedTime != null && lastModifiedTime == modificationTime) {
+            //no entry was added to or removed from the directory since it was listed
+            for (Path subDirectory : subDirectories.get(directoryStr)) {
+              scan(fs, subDirectory, consumedFiles, minModificationTime, pathMap, scanMillis);
+            }
+            return;
+          }
+        }
+
+        FileStatus[] files = fs.listStatus(directory);
         for (FileStatus status : files)
         {
           Path path = status.getPath();
           String filePathStr = path.toString();
 
+          if (recursive && status.isDirectory()) {
+            directories.add(path);
+            continue;
+          }
+
+          if (status.getModificationTime() < minModificationTime) {
+            continue;
+          }
+
           if (consumedFiles.contains(filePathStr)) {
             continue;
           }
@@ -1036,18 +1426,33 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
 
           if (acceptFile(filePathStr)) {
             LOG.debug("Found {}", filePathStr);
-            pathSet.add(path);
+            pathMap.put(path, status.getModificationTime());
           } else {
             // don't look at it again
             ignoredFiles.add(filePathStr);
           }
         }
+
+        if (skipUnchangedDirectories) {
+          if (scanMillis - modificationTime >= MODIFICATION_TIME_RESOLUTION_MILLIS) {
+            lastModifiedTimes.put(directoryStr, modificationTime);
+            subDirectories.put(directoryStr, directories);
+          }
+          else {
+            lastModifiedTimes.remove(directoryStr);
+            subDirectories.remove(directoryStr);
+          }
+        }
       } catch (FileNotFoundException e) {
-        LOG.warn("Failed to list directory {}", filePath, e);
-      } catch (IOException e) {
-        throw new RuntimeException(e);
+        LOG.warn("Failed to list directory {}", directory, e);
+        lastModifiedTimes.remove(directoryStr);
+        subDirectories.remove(directoryStr);
+        return;
+      }
+
+      for (Path subDirectory : directories) {
+        scan(fs, subDirectory, consumedFiles, minModificationTime, pathMap, scanMillis);
       }
-      return pathSet;
     }
 
     protected boolean acceptFile(String filePathStr)
@@ -1095,6 +1500,8 @@ public abstract class AbstractFileInputOperator<T> implements InputOperator, Par
       that.regex = this.regex;
       that.partitionIndex = partitionIndex;
       that.partitionCount = partitionCount;
+      that.recursive = this.recursive;
+      that.skipUnchangedDirectories = this.skipUnchangedDirectories;
       return that;
     }
 
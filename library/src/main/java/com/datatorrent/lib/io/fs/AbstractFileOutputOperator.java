@@ -19,11 +19,16 @@ package com.datatorrent.lib.io.fs;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.annotation.Nonnull;
 import javax.validation.constraints.Min;
@@ -44,6 +49,8 @@ import org.apache.hadoop.fs.permission.FsPermission;
 
 import com.datatorrent.lib.counters.BasicCounters;
 
+import com.datatorrent.common.util.NameableThreadFactory;
+
 import com.datatorrent.api.BaseOperator;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.Context.OperatorContext;
@@ -81,6 +88,15 @@ import com.datatorrent.api.annotation.OperatorAnnotation;
  * output to a single file
  * Application window length of 30 seconds
  *
+ * Asynchronous writes
+ * -------------------
+ * When {@link #setAsyncWriteThreads(int)} is set, tuple bytes are copied to pooled per file buffers and a pool of I/O
+ * threads writes full buffers to the file system while the operator keeps processing tuples. At most two buffers
+ * per file are outstanding. At the end of a window the remaining bytes of all files are written and flushed in
+ * parallel and the operator waits till the files contain all the bytes covered by endOffsets, so recovery works the
+ * same way as with synchronous writes. Time the operator thread spends waiting for the I/O threads is reported by
+ * {@link Counters#TOTAL_TIME_BLOCKED_ON_IO_MILLISECONDS}.
+ *
  * @displayName FS Writer
  * @category Output
  * @tags fs, file, output operator
@@ -103,6 +119,11 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
    */
   private static final int COPY_BUFFER_SIZE = 1024;
 
+  /**
+   * Maximum number of buffers of a file that are handed to the I/O threads and not written yet.
+   */
+  private static final int MAX_PENDING_ASYNC_BUFFERS = 2;
+
   /**
    * The default number of max open files.
    */
@@ -203,7 +224,7 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
   /**
    * Number of windows since the last rotation
    */
-  private int rotationCount;
+  protected int rotationCount;
 
   /**
    * If a filter stream provider is set it is used to obtain the filter that will be applied to data before it is 
@@ -212,6 +233,32 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
    */
   protected FilterStreamProvider filterStreamProvider;
 
+  /**
+   * Number of threads writing to the file system in asynchronous mode. 0 disables asynchronous writes.
+   */
+  @Min(0)
+  protected int asyncWriteThreads = 0;
+
+  /**
+   * Size of the per file buffers in asynchronous mode.
+   */
+  @Min(1)
+  protected int asyncBufferSize = 64 * 1024;
+
+  private transient ExecutorService asyncWriteExecutor;
+
+  private transient Queue<byte[]> asyncBufferPool;
+
+  /**
+   * Time the operator thread has spent waiting for asynchronous writes.
+   */
+  private transient long totalBlockedTime;
+
+  /**
+   * Counts the bytes of a tuple written to the stream of its file.
+   */
+  private final transient CountingOutputStream tupleOutput = new CountingOutputStream();
+
   /**
    * This input port receives incoming tuples.
    */
@@ -286,6 +333,11 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
 
     LOG.debug("FS class {}", fs.getClass());
 
+    if (asyncWriteThreads > 0) {
+      asyncWriteExecutor = Executors.newFixedThreadPool(asyncWriteThreads, new NameableThreadFactory("FileWriter"));
+      asyncBufferPool = new ConcurrentLinkedQueue<byte[]>();
+    }
+
     //When an entry is removed from the cache, removal listener is notified and it closes the output stream.
     RemovalListener<String, FSFilterStreamContext> removalListener = new RemovalListener<String, FSFilterStreamContext>()
     {
@@ -476,6 +528,8 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
                             new MutableLong());
     fileCounters.setCounter(Counters.TOTAL_TIME_WRITING_MILLISECONDS,
                             new MutableLong());
+    fileCounters.setCounter(Counters.TOTAL_TIME_BLOCKED_ON_IO_MILLISECONDS,
+                            new MutableLong());
   }
 
   @Override
@@ -508,6 +562,10 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
       }
     }
 
+    if (asyncWriteExecutor != null) {
+      asyncWriteExecutor.shutdownNow();
+    }
+
     //Try to close the file system
     boolean fsFailed = false;
 
@@ -566,36 +624,38 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
 
     try {
       FilterOutputStream fsOutput = streamsCache.get(fileName).getFilterStream();
-      byte[] tupleBytes = getBytesForTuple(tuple);
+      tupleOutput.setOutputStream(fsOutput);
       long start = System.currentTimeMillis();
-      fsOutput.write(tupleBytes);
+      writeTuple(tuple, tupleOutput);
       totalWritingTime += System.currentTimeMillis() - start;
-      totalBytesWritten += tupleBytes.length;
-      MutableLong currentOffset = endOffsets.get(fileName);
-
-      if(currentOffset == null) {
-        currentOffset = new MutableLong(0);
-        endOffsets.put(fileName, currentOffset);
-      }
-
-      currentOffset.add(tupleBytes.length);
-
-      if (rotationWindows > 0) {
-        getRotationState(fileName).notEmpty = true;
-      }
-
-      if (rollingFile && currentOffset.longValue() > maxLength) {
-        LOG.debug("Rotating file {} {}", fileName, currentOffset.longValue());
-        rotate(fileName);
-      }
-
-      MutableLong count = counts.get(fileName);
-      if (count == null) {
-        count = new MutableLong(0);
-        counts.put(fileName, count);
-      }
+      bytesWritten(fileName, tupleOutput.getCount(), 1);
+    }
+    catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+    catch (ExecutionException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
 
-      count.add(1);
+  /**
+   * This method writes bytes which don't correspond to a single tuple to a file. The bytes are accounted for in the
+   * same way as the bytes of a tuple, so the end offset of the file is updated and the file is rolled over when it
+   * exceeds the maximum length.
+   * @param fileName The name of the file to write to.
+   * @param bytes The buffer holding the bytes.
+   * @param offset The offset of the bytes in the buffer.
+   * @param length The number of bytes to write.
+   * @param tupleCount The number of tuples the bytes hold, added to the count of the file.
+   */
+  protected void writeBytes(String fileName, byte[] bytes, int offset, int length, int tupleCount)
+  {
+    try {
+      FilterOutputStream fsOutput = streamsCache.get(fileName).getFilterStream();
+      long start = System.currentTimeMillis();
+      fsOutput.write(bytes, offset, length);
+      totalWritingTime += System.currentTimeMillis() - start;
+      bytesWritten(fileName, length, tupleCount);
     }
     catch (IOException ex) {
       throw new RuntimeException(ex);
@@ -605,6 +665,36 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
     }
   }
 
+  private void bytesWritten(String fileName, long length, int tupleCount) throws IOException, ExecutionException
+  {
+    totalBytesWritten += length;
+    MutableLong currentOffset = endOffsets.get(fileName);
+
+    if(currentOffset == null) {
+      currentOffset = new MutableLong(0);
+      endOffsets.put(fileName, currentOffset);
+    }
+
+    currentOffset.add(length);
+
+    if (rotationWindows > 0) {
+      getRotationState(fileName).notEmpty = true;
+    }
+
+    if (rollingFile && currentOffset.longValue() > maxLength) {
+      LOG.debug("Rotating file {} {}", fileName, currentOffset.longValue());
+      rotate(fileName);
+    }
+
+    MutableLong count = counts.get(fileName);
+    if (count == null) {
+      count = new MutableLong(0);
+      counts.put(fileName, count);
+    }
+
+    count.add(tupleCount);
+  }
+
   /**
    * This method rolls over to the next files.
    * @param fileName The file that you are rolling.
@@ -729,6 +819,12 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
         totalWritingTime += System.currentTimeMillis() - start;
         //streamContext.resetFilter();
       }
+      if (asyncWriteExecutor != null) {
+        //the files are flushed in parallel, wait till all of them contain the bytes covered by endOffsets
+        for (FSFilterStreamContext streamContext: openStreams.values()) {
+          streamContext.awaitWrites();
+        }
+      }
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -768,6 +864,7 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
     }
 
     fileCounters.getCounter(Counters.TOTAL_TIME_WRITING_MILLISECONDS).setValue(totalWritingTime);
+    fileCounters.getCounter(Counters.TOTAL_TIME_BLOCKED_ON_IO_MILLISECONDS).setValue(totalBlockedTime);
     fileCounters.getCounter(Counters.TOTAL_BYTES_WRITTEN).setValue(totalBytesWritten);
     context.setCounters(fileCounters);
   }
@@ -786,6 +883,19 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
    */
   protected abstract byte[] getBytesForTuple(INPUT tuple);
 
+  /**
+   * This method writes a tuple to the output stream of its file. The stream is the head of the filter chain
+   * of the file, if there is one. By default the bytes returned by {@link #getBytesForTuple(Object)} are written.
+   * Override this method to serialize tuples directly into the stream without creating a byte array per tuple.
+   * @param tuple A received tuple to be written.
+   * @param output The stream the tuple is written to. It must not be closed or retained.
+   * @throws IOException
+   */
+  protected void writeTuple(INPUT tuple, OutputStream output) throws IOException
+  {
+    output.write(getBytesForTuple(tuple));
+  }
+
   /**
    * Sets the path of the working directory where files are being written.
    * @param dir The path of the working directory where files are being written.
@@ -899,6 +1009,43 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
     this.filterStreamProvider = filterStreamProvider;
   }
 
+  /**
+   * Gets the number of threads writing to the file system in asynchronous mode.
+   * @return The number of threads, 0 if writes are synchronous.
+   */
+  public int getAsyncWriteThreads()
+  {
+    return asyncWriteThreads;
+  }
+
+  /**
+   * Sets the number of threads writing to the file system. When this is greater than 0 tuples are buffered and
+   * written to the files asynchronously.
+   * @param asyncWriteThreads The number of threads, 0 for synchronous writes.
+   */
+  public void setAsyncWriteThreads(int asyncWriteThreads)
+  {
+    this.asyncWriteThreads = asyncWriteThreads;
+  }
+
+  /**
+   * Gets the size of the per file buffers in asynchronous mode.
+   * @return The buffer size in bytes.
+   */
+  public int getAsyncBufferSize()
+  {
+    return asyncBufferSize;
+  }
+
+  /**
+   * Sets the size of the per file buffers in asynchronous mode.
+   * @param asyncBufferSize The buffer size in bytes.
+   */
+  public void setAsyncBufferSize(int asyncBufferSize)
+  {
+    this.asyncBufferSize = asyncBufferSize;
+  }
+
   public static enum Counters
   {
     /**
@@ -911,7 +1058,13 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
      * An enum for counters representing the total time the operator has
      * been operational for.
      */
-    TOTAL_TIME_WRITING_MILLISECONDS
+    TOTAL_TIME_WRITING_MILLISECONDS,
+
+    /**
+     * An enum for counters representing the total time the operator has
+     * waited for asynchronous writes to the file system.
+     */
+    TOTAL_TIME_BLOCKED_ON_IO_MILLISECONDS
   }
 
   private class FSFilterStreamContext implements FilterStreamContext<FilterOutputStream>
@@ -921,11 +1074,18 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
     
     private FilterStreamContext filterContext;
     private NonCloseableFilterOutputStream outputWrapper;
+    private AsyncFileOutputStream asyncStream;
     
     public FSFilterStreamContext(FSDataOutputStream outputStream) throws IOException
     {
       this.outputStream = outputStream;     
-      outputWrapper = new NonCloseableFilterOutputStream(outputStream);
+      if (asyncWriteExecutor != null) {
+        asyncStream = new AsyncFileOutputStream(outputStream);
+        outputWrapper = new NonCloseableFilterOutputStream(asyncStream);
+      }
+      else {
+        outputWrapper = new NonCloseableFilterOutputStream(outputStream);
+      }
       //resetFilter();
       initializeContext();
     }
@@ -936,6 +1096,9 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
       if (filterContext != null) {
         return filterContext.getFilterStream();
       }
+      if (asyncStream != null) {
+        return asyncStream;
+      }
       return outputStream;
     }
 
@@ -946,11 +1109,27 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
         filterContext.finalizeContext();
         outputWrapper.flush();
       }
-      outputStream.hflush();
+      if (asyncStream != null) {
+        asyncStream.hflushAsync();
+      }
+      else {
+        outputStream.hflush();
+      }
       if (filterStreamProvider != null) {
         filterStreamProvider.reclaimFilterStreamContext(filterContext);
       }
     }
+
+    /**
+     * Waits till the bytes written so far are written to the file in asynchronous mode.
+     * @throws IOException
+     */
+    public void awaitWrites() throws IOException
+    {
+      if (asyncStream != null) {
+        asyncStream.await(0);
+      }
+    }
     
     public void initializeContext() throws IOException
     {
@@ -965,11 +1144,246 @@ public abstract class AbstractFileOutputOperator<INPUT> extends BaseOperator
       if (filterContext != null) {
         filterContext.getFilterStream().close();
       }
-      outputStream.close();
+      if (asyncStream != null) {
+        asyncStream.close();
+      }
+      else {
+        outputStream.close();
+      }
     }
     
   }
+
+  /**
+   * Copies the written bytes to pooled buffers which are written to the underlying file stream by the asynchronous
+   * write threads. The buffers of a file are written in order by one thread at a time.
+   */
+  private class AsyncFileOutputStream extends FilterOutputStream implements Runnable
+  {
+    private final FSDataOutputStream outputStream;
+    private byte[] buffer;
+    private int count;
+    //guarded by this
+    private final Queue<AsyncBuffer> pendingBuffers = new ArrayDeque<AsyncBuffer>();
+    private int numPendingBuffers;
+    private boolean draining;
+    private volatile IOException failure;
+
+    AsyncFileOutputStream(FSDataOutputStream outputStream)
+    {
+      super(outputStream);
+      this.outputStream = outputStream;
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+      if (buffer == null) {
+        buffer = borrowBuffer();
+      }
+      buffer[count++] = (byte) b;
+      if (count == buffer.length) {
+        handOff(false);
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      while (len > 0) {
+        if (buffer == null) {
+          buffer = borrowBuffer();
+        }
+        int length = Math.min(len, buffer.length - count);
+        System.arraycopy(b, off, buffer, count, length);
+        count += length;
+        off += length;
+        len -= length;
+        if (count == buffer.length) {
+          handOff(false);
+        }
+      }
+    }
+
+    /**
+     * Hands the buffered bytes to the write threads without waiting for them to be written.
+     */
+    @Override
+    public void flush() throws IOException
+    {
+      if (count > 0) {
+        handOff(false);
+      }
+    }
+
+    /**
+     * Hands the buffered bytes to the write threads, followed by a hflush of the file.
+     */
+    void hflushAsync() throws IOException
+    {
+      handOff(true);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      try {
+        flush();
+        await(0);
+      }
+      finally {
+        outputStream.close();
+      }
+    }
+
+    private void handOff(boolean hflush) throws IOException
+    {
+      await(MAX_PENDING_ASYNC_BUFFERS - 1);
+      synchronized (this) {
+        pendingBuffers.add(new AsyncBuffer(buffer, count, hflush));
+        numPendingBuffers++;
+        if (!draining) {
+          draining = true;
+          asyncWriteExecutor.execute(this);
+        }
+      }
+      buffer = null;
+      count = 0;
+    }
+
+    /**
+     * Waits till at most the given number of buffers are pending.
+     */
+    synchronized void await(int maxPendingBuffers) throws IOException
+    {
+      if (numPendingBuffers > maxPendingBuffers) {
+        long start = System.currentTimeMillis();
+        try {
+          while (numPendingBuffers > maxPendingBuffers && failure == null) {
+            wait();
+          }
+        }
+        catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+        finally {
+          totalBlockedTime += System.currentTimeMillis() - start;
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+    @Override
+    public void run()
+    {
+      while (true) {
+        AsyncBuffer asyncBuffer;
+        synchronized (this) {
+          asyncBuffer = pendingBuffers.poll();
+          if (asyncBuffer == null) {
+            draining = false;
+            return;
+          }
+        }
+        try {
+          if (failure == null) {
+            if (asyncBuffer.length > 0) {
+              outputStream.write(asyncBuffer.buffer, 0, asyncBuffer.length);
+            }
+            if (asyncBuffer.hflush) {
+              outputStream.hflush();
+            }
+          }
+        }
+        catch (IOException ex) {
+          synchronized (this) {
+            failure = ex;
+          }
+        }
+        finally {
+          if (asyncBuffer.buffer != null) {
+            asyncBufferPool.offer(asyncBuffer.buffer);
+          }
+          synchronized (this) {
+            numPendingBuffers--;
+            notifyAll();
+          }
+        }
+      }
+    }
+  }
+
+  private byte[] borrowBuffer()
+  {
+    byte[] buffer = asyncBufferPool.poll();
+    if (buffer == null || buffer.length != asyncBufferSize) {
+      buffer = new byte[asyncBufferSize];
+    }
+    return buffer;
+  }
+
+  private static class AsyncBuffer
+  {
+    final byte[] buffer;
+    final int length;
+    final boolean hflush;
+
+    AsyncBuffer(byte[] buffer, int length, boolean hflush)
+    {
+      this.buffer = buffer;
+      this.length = length;
+      this.hflush = hflush;
+    }
+  }
   
+  /**
+   * Output stream handed to {@link #writeTuple(Object, OutputStream)}, it is reused for every tuple.
+   */
+  private static class CountingOutputStream extends OutputStream
+  {
+    private OutputStream out;
+    private long count;
+
+    void setOutputStream(OutputStream out)
+    {
+      this.out = out;
+      count = 0;
+    }
+
+    long getCount()
+    {
+      return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+      //the streams of the files are flushed at the end of the window
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      throw new UnsupportedOperationException("the stream of a file can not be closed by a tuple");
+    }
+  }
+
   private static class NonCloseableFilterOutputStream extends FilterOutputStream 
   {
     public NonCloseableFilterOutputStream(OutputStream out)
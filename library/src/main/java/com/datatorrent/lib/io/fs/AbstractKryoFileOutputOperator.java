@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.api.Context.OperatorContext;
+
+/**
+ * This is a file output operator which writes tuples serialized with Kryo, including their class.
+ * Tuples are serialized into an output buffer that is reused for all the tuples, so no byte array is created per
+ * tuple. The files can be read back with {@link Kryo#readClassAndObject(com.esotericsoftware.kryo.io.Input)}.
+ *
+ * @displayName FS Kryo Writer
+ * @category Output
+ * @tags fs, file, output operator
+ *
+ * @param <INPUT> The type of the incoming tuples.
+ */
+public abstract class AbstractKryoFileOutputOperator<INPUT> extends AbstractFileOutputOperator<INPUT>
+{
+  protected transient Kryo kryo;
+
+  private transient Output output;
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    kryo = new Kryo();
+    kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    output = new Output(4096, -1);
+    super.setup(context);
+  }
+
+  @Override
+  protected byte[] getBytesForTuple(INPUT tuple)
+  {
+    output.clear();
+    kryo.writeClassAndObject(output, tuple);
+    return output.toBytes();
+  }
+
+  @Override
+  protected void writeTuple(INPUT tuple, OutputStream outputStream) throws IOException
+  {
+    output.clear();
+    kryo.writeClassAndObject(output, tuple);
+    outputStream.write(output.getBuffer(), 0, output.position());
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This is a file output operator which writes every tuple as a UTF-8 encoded line.
+ * The characters of the line are encoded into a buffer that is reused for all the tuples, so no byte array is created
+ * per tuple.
+ *
+ * @displayName FS Line Writer
+ * @category Output
+ * @tags fs, file, output operator
+ *
+ * @param <INPUT> The type of the incoming tuples.
+ */
+public abstract class AbstractLineFileOutputOperator<INPUT> extends AbstractFileOutputOperator<INPUT>
+{
+  /**
+   * The separator written after every line.
+   */
+  @NotNull
+  protected String lineSeparator = "\n";
+
+  private transient byte[] buffer = new byte[1024];
+  private transient StringBuilder line = new StringBuilder();
+
+  /**
+   * Appends the line for a tuple, without line separator, to a builder that is reused for all the tuples. By default
+   * this is the string representation of the tuple, override to append the fields of the tuple without creating a
+   * string per tuple.
+   * @param tuple The tuple to write out.
+   * @param line The builder to append the line to.
+   */
+  protected void appendLine(INPUT tuple, StringBuilder line)
+  {
+    if (tuple instanceof CharSequence) {
+      line.append((CharSequence) tuple);
+    }
+    else {
+      line.append(tuple);
+    }
+  }
+
+  @Override
+  protected byte[] getBytesForTuple(INPUT tuple)
+  {
+    byte[] bytes = new byte[encodeLine(tuple)];
+    System.arraycopy(buffer, 0, bytes, 0, bytes.length);
+    return bytes;
+  }
+
+  @Override
+  protected void writeTuple(INPUT tuple, OutputStream output) throws IOException
+  {
+    output.write(buffer, 0, encodeLine(tuple));
+  }
+
+  /**
+   * Encodes the line of the tuple followed by the line separator into the buffer.
+   * @return The number of bytes of the line.
+   */
+  private int encodeLine(INPUT tuple)
+  {
+    line.setLength(0);
+    appendLine(tuple, line);
+    line.append(lineSeparator);
+    return encode(line, 0);
+  }
+
+  /**
+   * Encodes the characters in UTF-8 at the given position of the buffer, the buffer is grown as needed.
+   * @return The position after the encoded characters.
+   */
+  private int encode(CharSequence chars, int position)
+  {
+    int length = chars.length();
+    for (int i = 0; i < length; i++) {
+      if (buffer.length - position < 4) {
+        byte[] newBuffer = new byte[buffer.length * 2];
+        System.arraycopy(buffer, 0, newBuffer, 0, position);
+        buffer = newBuffer;
+      }
+      char c = chars.charAt(i);
+      if (c < 0x80) {
+        buffer[position++] = (byte) c;
+      }
+      else if (c < 0x800) {
+        buffer[position++] = (byte) (0xc0 | (c >> 6));
+        buffer[position++] = (byte) (0x80 | (c & 0x3f));
+      }
+      else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+        buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+      }
+      else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+        //malformed surrogate is replaced like String.getBytes does
+        buffer[position++] = '?';
+      }
+      else {
+        buffer[position++] = (byte) (0xe0 | (c >> 12));
+        buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[position++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    return position;
+  }
+
+  /**
+   * Sets the separator written after every line.
+   * @param lineSeparator The line separator.
+   */
+  public void setLineSeparator(@NotNull String lineSeparator)
+  {
+    this.lineSeparator = lineSeparator;
+  }
+
+  /**
+   * Gets the separator written after every line.
+   * @return The line separator.
+   */
+  public String getLineSeparator()
+  {
+    return lineSeparator;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Encoding of the row groups written by {@link AbstractColumnarFileOutputOperator} and read by
+ * {@link ColumnarFileReader}.
+ * <p>
+ * A file is a sequence of self contained row groups, so a file can be truncated to the end of any row group:
+ * <pre>
+ * row group: SYNC (16 bytes) | header length (int) | header | column chunk ...
+ * header:    row count (varint) | column count (varint) | (column name (string) | chunk length (varint)) ...
+ * chunk:     PLAIN | (run length (varint) | value) ...
+ *            DICTIONARY | dictionary size (varint) | value ... | (run length (varint) | dictionary index (varint)) ...
+ * </pre>
+ * Values are written with {@link Kryo#writeClassAndObject(Output, Object)}. The sync marker lets a reader find the
+ * first row group in an arbitrary block of a file.
+ * </p>
+ */
+final class ColumnarFileFormat
+{
+  static final byte[] SYNC = {
+    (byte) 0x8f, 0x43, 0x4f, 0x4c, (byte) 0xd2, 0x17, 0x5a, (byte) 0xe6,
+    0x31, (byte) 0x9c, 0x0b, 0x77, (byte) 0xc4, 0x2e, (byte) 0xa8, 0x55
+  };
+
+  static final byte PLAIN = 0;
+  static final byte DICTIONARY = 1;
+
+  /**
+   * Dictionaries with more entries are not used.
+   */
+  static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+  private ColumnarFileFormat()
+  {
+  }
+
+  /**
+   * Encodes a column chunk with a dictionary when the column has at most half as many distinct values as rows,
+   * run length encoded plain values otherwise.
+   */
+  static void writeChunk(Kryo kryo, Output output, List<Object> values)
+  {
+    Map<Object, Integer> dictionary = Maps.newLinkedHashMap();
+    for (Object value : values) {
+      if (!dictionary.containsKey(value)) {
+        if (dictionary.size() == MAX_DICTIONARY_SIZE || dictionary.size() > values.size() / 2) {
+          dictionary = null;
+          break;
+        }
+        dictionary.put(value, dictionary.size());
+      }
+    }
+
+    if (dictionary != null) {
+      output.writeByte(DICTIONARY);
+      output.writeVarInt(dictionary.size(), true);
+      for (Object value : dictionary.keySet()) {
+        kryo.writeClassAndObject(output, value);
+      }
+    }
+    else {
+      output.writeByte(PLAIN);
+    }
+
+    int size = values.size();
+    int runStart = 0;
+    for (int i = 1; i <= size; i++) {
+      if (i == size || !Objects.equal(values.get(i), values.get(runStart))) {
+        output.writeVarInt(i - runStart, true);
+        if (dictionary != null) {
+          output.writeVarInt(dictionary.get(values.get(runStart)), true);
+        }
+        else {
+          kryo.writeClassAndObject(output, values.get(runStart));
+        }
+        runStart = i;
+      }
+    }
+  }
+
+  /**
+   * Decodes a column chunk of the given number of rows.
+   */
+  static List<Object> readChunk(Kryo kryo, Input input, int rowCount)
+  {
+    List<Object> values = new ArrayList<Object>(rowCount);
+    Object[] dictionary = null;
+    if (input.readByte() == DICTIONARY) {
+      dictionary = new Object[input.readVarInt(true)];
+      for (int i = 0; i < dictionary.length; i++) {
+        dictionary[i] = kryo.readClassAndObject(input);
+      }
+    }
+    while (values.size() < rowCount) {
+      int runLength = input.readVarInt(true);
+      Object value = dictionary != null ? dictionary[input.readVarInt(true)] : kryo.readClassAndObject(input);
+      for (int i = 0; i < runLength; i++) {
+        values.add(value);
+      }
+    }
+    return values;
+  }
+}
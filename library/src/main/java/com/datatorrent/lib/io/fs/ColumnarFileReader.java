@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Reads the rows of a file written by {@link AbstractColumnarFileOutputOperator}.
+ * <p>
+ * Only the chunks of the projected columns are read, the chunks of the other columns are skipped. The reader can be
+ * restricted to a block of the file, in which case it reads the row groups which start in the block. The readers of
+ * consecutive blocks of a file read every row group exactly once.
+ * </p>
+ */
+public class ColumnarFileReader implements Closeable
+{
+  private final FSDataInputStream inputStream;
+  private final String[] projection;
+  private final long end;
+  private final Kryo kryo;
+  private long rowGroupStart;
+  private byte[] buffer = new byte[4096];
+
+  private List<Object>[] rowGroup;
+  private int rowCount;
+  private int row;
+
+  /**
+   * Reads the projected columns of the whole file.
+   * @param fs The file system.
+   * @param path The file to read.
+   * @param columns The projected columns.
+   * @throws IOException
+   */
+  public ColumnarFileReader(FileSystem fs, Path path, String... columns) throws IOException
+  {
+    this(fs, path, 0, Long.MAX_VALUE, columns);
+  }
+
+  /**
+   * Reads the projected columns of the row groups which start in the block [start, end) of the file.
+   * @param fs The file system.
+   * @param path The file to read.
+   * @param start The start offset of the block.
+   * @param end The end offset of the block.
+   * @param columns The projected columns.
+   * @throws IOException
+   */
+  public ColumnarFileReader(FileSystem fs, Path path, long start, long end, String... columns) throws IOException
+  {
+    this.end = Math.min(end, fs.getFileStatus(path).getLen());
+    this.projection = columns;
+    inputStream = fs.open(path);
+    kryo = new Kryo();
+    kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    rowGroupStart = start == 0 ? 0 : findSync(start);
+  }
+
+  /**
+   * Returns the values of the projected columns of the next row. The value of a column which is not in the file is
+   * null.
+   * @return The values or null at the end of the block.
+   * @throws IOException
+   */
+  @Nullable
+  public Object[] nextRow() throws IOException
+  {
+    while (row == rowCount) {
+      if (!readRowGroup()) {
+        return null;
+      }
+    }
+    Object[] values = new Object[projection.length];
+    for (int i = 0; i < projection.length; i++) {
+      if (rowGroup[i] != null) {
+        values[i] = rowGroup[i].get(row);
+      }
+    }
+    row++;
+    return values;
+  }
+
+  @SuppressWarnings("unchecked")
+  private boolean readRowGroup() throws IOException
+  {
+    if (rowGroupStart >= end) {
+      return false;
+    }
+    inputStream.seek(rowGroupStart);
+    byte[] sync = new byte[ColumnarFileFormat.SYNC.length];
+    inputStream.readFully(sync);
+    for (int i = 0; i < sync.length; i++) {
+      if (sync[i] != ColumnarFileFormat.SYNC[i]) {
+        throw new IOException("missing row group at " + rowGroupStart);
+      }
+    }
+    byte[] headerBytes = new byte[inputStream.readInt()];
+    inputStream.readFully(headerBytes);
+    Input header = new Input(headerBytes);
+    rowCount = header.readVarInt(true);
+    int columnCount = header.readVarInt(true);
+    long chunkStart = rowGroupStart + sync.length + 4 + headerBytes.length;
+
+    rowGroup = new List[projection.length];
+    for (int column = 0; column < columnCount; column++) {
+      String name = header.readString();
+      int chunkLength = header.readVarInt(true);
+      for (int i = 0; i < projection.length; i++) {
+        if (projection[i].equals(name)) {
+          inputStream.seek(chunkStart);
+          //the buffer is reused for the chunks, a chunk is decoded before the next one is read
+          Input chunk = new Input(read(chunkLength), 0, chunkLength);
+          rowGroup[i] = ColumnarFileFormat.readChunk(kryo, chunk, rowCount);
+          break;
+        }
+      }
+      chunkStart += chunkLength;
+    }
+
+    rowGroupStart = chunkStart;
+    row = 0;
+    return true;
+  }
+
+  private byte[] read(int length) throws IOException
+  {
+    if (buffer.length < length) {
+      buffer = new byte[Math.max(length, buffer.length * 2)];
+    }
+    inputStream.readFully(buffer, 0, length);
+    return buffer;
+  }
+
+  /**
+   * @return The offset of the first sync marker at or after the position, or the end of the block.
+   */
+  private long findSync(long position) throws IOException
+  {
+    inputStream.seek(position);
+    byte[] sync = ColumnarFileFormat.SYNC;
+    int matched = 0;
+    long offset = position;
+    try {
+      while (offset < end + sync.length) {
+        byte b = inputStream.readByte();
+        offset++;
+        if (b == sync[matched]) {
+          if (++matched == sync.length) {
+            return offset - sync.length;
+          }
+        }
+        else {
+          //the first byte of the marker doesn't occur in it again
+          matched = b == sync[0] ? 1 : 0;
+        }
+      }
+    }
+    catch (EOFException ex) {
+      //no row group starts in the block
+    }
+    return end;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    inputStream.close();
+  }
+}
@@ -121,6 +121,9 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
     this.context = context;
 
     fileCounters.setCounter(Counters.PROCESSED_FILES, new MutableLong());
+    fileCounters.setCounter(Counters.LAST_SCAN_TIME_MILLIS, new MutableLong());
+    fileCounters.setCounter(Counters.LAST_SCAN_DISCOVERED_FILES, new MutableLong());
+    fileCounters.setCounter(Counters.DISCOVERED_FILES_QUEUE_SIZE, new MutableLong());
     idempotentStorageManager.setup(context);
 
     try {
@@ -265,6 +268,9 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
       }
     }
     currentWindowRecoveryState.clear();
+    fileCounters.getCounter(Counters.LAST_SCAN_TIME_MILLIS).setValue(scanner.lastScanTimeMillis);
+    fileCounters.getCounter(Counters.LAST_SCAN_DISCOVERED_FILES).setValue(scanner.lastScanDiscoveredFiles);
+    fileCounters.getCounter(Counters.DISCOVERED_FILES_QUEUE_SIZE).setValue(scanner.discoveredFiles.size());
     context.setCounters(fileCounters);
   }
 
@@ -617,6 +623,7 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
   public static class TimeBasedDirectoryScanner implements Component<Context.OperatorContext>, Runnable
   {
     private static long DEF_SCAN_INTERVAL_MILLIS = 5000;
+    private static int DEF_DISCOVERED_FILES_QUEUE_CAPACITY = 10000;
 
     protected boolean recursive;
 
@@ -631,11 +638,20 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
     @Min(0)
     protected long scanIntervalMillis;
 
+    /**
+     * Maximum number of discovered files waiting for the operator. The scan waits when the queue is full.
+     */
+    @Min(1)
+    protected int discoveredFilesQueueCapacity;
+
     private String filePatternRegularExp;
 
     protected transient long lastScanMillis;
+    protected transient volatile long lastScanTimeMillis;
+    protected transient volatile long lastScanDiscoveredFiles;
+    private transient long scanDiscoveredFiles;
     protected transient FileSystem fs;
-    protected final transient LinkedBlockingDeque<FileInfo> discoveredFiles;
+    protected transient LinkedBlockingDeque<FileInfo> discoveredFiles;
     protected final transient ExecutorService scanService;
     protected final transient AtomicReference<Throwable> atomicThrowable;
 
@@ -649,9 +665,10 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
       lastModifiedTimes = Maps.newHashMap();
       recursive = true;
       scanIntervalMillis = DEF_SCAN_INTERVAL_MILLIS;
+      discoveredFilesQueueCapacity = DEF_DISCOVERED_FILES_QUEUE_CAPACITY;
       files = Sets.newLinkedHashSet();
       scanService = Executors.newSingleThreadExecutor();
-      discoveredFiles = new LinkedBlockingDeque<FileInfo>();
+      discoveredFiles = new LinkedBlockingDeque<FileInfo>(discoveredFilesQueueCapacity);
       atomicThrowable = new AtomicReference<Throwable>();
       ignoredFiles = Sets.newHashSet();
     }
@@ -663,12 +680,14 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
       if (filePatternRegularExp != null) {
         regex = Pattern.compile(filePatternRegularExp);
       }
+      discoveredFiles = new LinkedBlockingDeque<FileInfo>(discoveredFilesQueueCapacity);
       try {
         fs = getFSInstance();
       }
       catch (IOException e) {
         throw new RuntimeException("opening fs", e);
       }
+      running = true;
       scanService.submit(this);
     }
 
@@ -693,14 +712,17 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
     @Override
     public void run()
     {
-      running = true;
       try {
         while (running) {
           if (trigger || (System.currentTimeMillis() - scanIntervalMillis >= lastScanMillis)) {
             trigger = false;
+            long scanStartMillis = System.currentTimeMillis();
+            scanDiscoveredFiles = 0;
             for (String afile : files) {
               scan(new Path(afile), null);
             }
+            lastScanTimeMillis = System.currentTimeMillis() - scanStartMillis;
+            lastScanDiscoveredFiles = scanDiscoveredFiles;
             scanComplete();
           }
           else {
@@ -709,6 +731,11 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
         }
       }
       catch (Throwable throwable) {
+        if (!running) {
+          //teardown interrupts the scan, e.g. while it waits for space in the queue
+          LOG.debug("scan stopped", throwable);
+          return;
+        }
         LOG.error("service", throwable);
         running = false;
         atomicThrowable.set(throwable);
@@ -781,7 +808,9 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
                 parentStatus.getModificationTime());
             }
 
-            discoveredFiles.add(info);
+            //waits for the operator when the queue is full
+            discoveredFiles.put(info);
+            scanDiscoveredFiles++;
           }
           else {
             // don't look at it again
@@ -795,6 +824,9 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
       catch (IOException e) {
         throw new RuntimeException("listing files", e);
       }
+      catch (InterruptedException e) {
+        throw new RuntimeException("queueing files", e);
+      }
     }
 
     /**
@@ -927,6 +959,26 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
     {
       this.scanIntervalMillis = scanIntervalMillis;
     }
+
+    /**
+     * Returns the maximum number of discovered files waiting for the operator.
+     *
+     * @return The capacity of the queue of discovered files.
+     */
+    public int getDiscoveredFilesQueueCapacity()
+    {
+      return discoveredFilesQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of discovered files waiting for the operator. The scan waits when the queue is full.
+     *
+     * @param discoveredFilesQueueCapacity The capacity of the queue of discovered files.
+     */
+    public void setDiscoveredFilesQueueCapacity(int discoveredFilesQueueCapacity)
+    {
+      this.discoveredFilesQueueCapacity = discoveredFilesQueueCapacity;
+    }
   }
 
   /**
@@ -988,7 +1040,19 @@ public class FileSplitter implements InputOperator, Operator.CheckpointListener
 
   public static enum Counters
   {
-    PROCESSED_FILES
+    PROCESSED_FILES,
+    /**
+     * The time taken by the last scan.
+     */
+    LAST_SCAN_TIME_MILLIS,
+    /**
+     * The number of files discovered by the last scan.
+     */
+    LAST_SCAN_DISCOVERED_FILES,
+    /**
+     * The number of discovered files waiting for the operator.
+     */
+    DISCOVERED_FILES_QUEUE_SIZE
   }
 
   private static final Logger LOG = LoggerFactory.getLogger(FileSplitter.class);
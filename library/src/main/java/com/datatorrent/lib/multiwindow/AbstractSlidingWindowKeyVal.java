@@ -56,7 +56,8 @@ public abstract class AbstractSlidingWindowKeyVal<K, V extends Number, S extends
 	 */
 	protected HashMap<K, ArrayList<S>> buffer = new HashMap<K, ArrayList<S>>();
 	/**
-	 * Index of windows stating at 0.
+	 * Index of the state of the current window. The states of a key form a ring,
+	 * the state of the oldest window follows the state of the current window.
 	 */
 	protected int currentstate = -1;
 
@@ -114,7 +115,7 @@ public abstract class AbstractSlidingWindowKeyVal<K, V extends Number, S extends
 	};
 
 	/**
-	 * Moves buffer by 1 and clear contents of current. If you override
+	 * Moves the current state by 1 and clears its contents. If you override
 	 * beginWindow, you must call super.beginWindow(windowId) to ensure proper
 	 * operator behavior.
 	 *
@@ -124,16 +125,8 @@ public abstract class AbstractSlidingWindowKeyVal<K, V extends Number, S extends
 	public void beginWindow(long windowId)
 	{
 		this.windowId = windowId;
-		currentstate++;
-		if (currentstate >= windowSize) {
-			for (Map.Entry<K, ArrayList<S>> e : buffer.entrySet()) {
-				ArrayList<S> states = e.getValue();
-                		S first = states.get(0);
-				for (int i=1; i < windowSize; i++) states.set(i-1, states.get(i));
-				states.set(windowSize-1, first);
-			}
-			currentstate = windowSize-1;
-		}
+		// the state of the oldest window is reused instead of shifting the states
+		currentstate = (currentstate + 1) % windowSize;
 		for (Map.Entry<K, ArrayList<S>> e : buffer.entrySet()) {
 			e.getValue().get(currentstate).clear();
 		}
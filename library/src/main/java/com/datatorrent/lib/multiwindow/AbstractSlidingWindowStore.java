@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import java.util.Arrays;
+
+/**
+ * Keeps per key state of a sliding window of streaming windows in primitive arrays.
+ * <p>
+ * Each key is assigned a slot, the state of the slot is kept by the concrete class in arrays indexed by the slot,
+ * the pre-aggregated state of each streaming window (pane) of a slot is at index slot * windowSize + pane. The panes
+ * of a slot form a ring, the pane of the current streaming window replaces the pane of the streaming window which
+ * moved out of the sliding window. Keys are mapped to slots by an open addressing hash table so that no object is
+ * created per tuple or per streaming window. A key which did not receive any value within the sliding window is
+ * removed and its slot is reused, the memory is bounded by the number of keys active in a sliding window.
+ * </p>
+ * <p>
+ * {@link #advance()} is called at the beginning of each streaming window and visits each slot once, the concrete class
+ * updates the aggregate of the slot in {@link #evict(int, int)} in constant amortized time.
+ * </p>
+ *
+ * @param <K> type of the keys
+ */
+public abstract class AbstractSlidingWindowStore<K>
+{
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * Stands for the null key in the table of keys.
+   */
+  private enum NullKey
+  {
+    INSTANCE
+  }
+
+  protected final int windowSize;
+  /**
+   * Sequence number of the current streaming window starting at 0, -1 before the first streaming window.
+   */
+  protected long currentWindow = -1;
+  /**
+   * Pane of the current streaming window.
+   */
+  protected int currentPane = -1;
+
+  private Object[] keys;
+  private int[] hashes;
+  private long[] lastWindows;
+  private int[] table;
+  private int[] freeSlots;
+  private int freeCount;
+  private int slotCount;
+  private int size;
+
+  /**
+   * Needed for serialization.
+   */
+  protected AbstractSlidingWindowStore()
+  {
+    windowSize = 0;
+  }
+
+  /**
+   * @param windowSize number of streaming windows in the sliding window.
+   */
+  protected AbstractSlidingWindowStore(int windowSize)
+  {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException("Invalid window size " + windowSize);
+    }
+    this.windowSize = windowSize;
+    keys = new Object[INITIAL_CAPACITY];
+    hashes = new int[INITIAL_CAPACITY];
+    lastWindows = new long[INITIAL_CAPACITY];
+    table = new int[INITIAL_CAPACITY * 2];
+    freeSlots = new int[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Grows the arrays holding the state of the slots.
+   *
+   * @param capacity new number of slots.
+   */
+  protected abstract void allocate(int capacity);
+
+  /**
+   * Resets the state of a slot assigned to a new key, all the panes are empty.
+   */
+  protected abstract void clear(int slot);
+
+  /**
+   * Called for each slot when the sliding window moves, the pane is the one of the new streaming window and holds the
+   * state of the streaming window which moved out of the sliding window.
+   */
+  protected abstract void evict(int slot, int pane);
+
+  public int getWindowSize()
+  {
+    return windowSize;
+  }
+
+  /**
+   * Moves the sliding window to the next streaming window, removes the keys which did not get any value within the
+   * sliding window.
+   */
+  public void advance()
+  {
+    currentWindow++;
+    currentPane = (int)(currentWindow % windowSize);
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (keys[slot] == null) {
+        continue;
+      }
+      if (currentWindow - lastWindows[slot] >= windowSize) {
+        remove(slot);
+      }
+      else {
+        evict(slot, currentPane);
+      }
+    }
+  }
+
+  /**
+   * Returns the slot of the key in the current streaming window, assigns a slot if the key has none.
+   */
+  protected int slot(K key)
+  {
+    Object k = key == null ? NullKey.INSTANCE : key;
+    int hash = hash(k);
+    int mask = table.length - 1;
+    int index = hash & mask;
+    for (int entry = table[index]; entry != 0; entry = table[index]) {
+      int slot = entry - 1;
+      if (hashes[slot] == hash && keys[slot].equals(k)) {
+        lastWindows[slot] = currentWindow;
+        return slot;
+      }
+      index = (index + 1) & mask;
+    }
+
+    int slot;
+    if (freeCount > 0) {
+      slot = freeSlots[--freeCount];
+    }
+    else {
+      if (slotCount == keys.length) {
+        grow();
+        return slot(key);
+      }
+      slot = slotCount++;
+    }
+    keys[slot] = k;
+    hashes[slot] = hash;
+    lastWindows[slot] = currentWindow;
+    table[index] = slot + 1;
+    size++;
+    clear(slot);
+    return slot;
+  }
+
+  /**
+   * @return slot of the key, -1 if the key has no value within the sliding window.
+   */
+  public int getSlot(K key)
+  {
+    Object k = key == null ? NullKey.INSTANCE : key;
+    int hash = hash(k);
+    int mask = table.length - 1;
+    for (int index = hash & mask; table[index] != 0; index = (index + 1) & mask) {
+      int slot = table[index] - 1;
+      if (hashes[slot] == hash && keys[slot].equals(k)) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return number of slots the state arrays are allocated for.
+   */
+  protected int getCapacity()
+  {
+    return keys.length;
+  }
+
+  /**
+   * Slots are numbered from 0 to getSlotCount() - 1, use {@link #isActive(int)} to skip the unused ones.
+   */
+  public int getSlotCount()
+  {
+    return slotCount;
+  }
+
+  public boolean isActive(int slot)
+  {
+    return keys[slot] != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public K getKey(int slot)
+  {
+    Object key = keys[slot];
+    return key == NullKey.INSTANCE ? null : (K)key;
+  }
+
+  /**
+   * @return number of keys with values within the sliding window.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  private void remove(int slot)
+  {
+    int mask = table.length - 1;
+    int index = hashes[slot] & mask;
+    while (table[index] != slot + 1) {
+      index = (index + 1) & mask;
+    }
+    // shift back the entries of the probe sequence which follow the removed one
+    for (int next = (index + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+      int home = hashes[table[next] - 1] & mask;
+      if (next > index ? (home <= index || home > next) : (home <= index && home > next)) {
+        table[index] = table[next];
+        index = next;
+      }
+    }
+    table[index] = 0;
+    keys[slot] = null;
+    freeSlots[freeCount++] = slot;
+    size--;
+  }
+
+  private void grow()
+  {
+    int capacity = keys.length * 2;
+    keys = Arrays.copyOf(keys, capacity);
+    hashes = Arrays.copyOf(hashes, capacity);
+    lastWindows = Arrays.copyOf(lastWindows, capacity);
+    freeSlots = Arrays.copyOf(freeSlots, capacity);
+    table = new int[capacity * 2];
+    int mask = table.length - 1;
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (keys[slot] != null) {
+        int index = hashes[slot] & mask;
+        while (table[index] != 0) {
+          index = (index + 1) & mask;
+        }
+        table[index] = slot + 1;
+      }
+    }
+    allocate(capacity);
+  }
+
+  private static int hash(Object key)
+  {
+    int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
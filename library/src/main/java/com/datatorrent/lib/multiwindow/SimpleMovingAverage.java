@@ -25,7 +25,7 @@ import com.datatorrent.lib.util.KeyValPair;
 /**
  * Calculates simple moving average (SMA) of last N window. <br>
  * <p>
- * <b>StateFull : Yes</b>, operator store values  for n-1 th windows. <br>
+ * <b>StateFull : Yes</b>, operator stores the sum and count of each key for each of the last N windows. <br>
  * <b>Partitions : No</b>, sum is not unified on output ports. <br>
  * <br>
  * <b>Ports</b>:<br>
@@ -70,27 +70,47 @@ public class SimpleMovingAverage<K, V extends Number> extends
 	public final transient DefaultOutputPort<KeyValPair<K, Integer>> integerSMA = new DefaultOutputPort<KeyValPair<K, Integer>>();
 
 	/**
-	 * Create the list if key doesn't exist. Add value to buffer and increment
-	 * counter.
+	 * Sums and counts of the keys over the last N windows, kept incrementally.
+	 */
+	private SlidingWindowSum<K> sums;
+
+	/**
+	 * Moves the sliding window of the sums by 1.
+	 *
+	 * @param windowId
+	 */
+	@Override
+	public void beginWindow(long windowId)
+	{
+		super.beginWindow(windowId);
+		if (sums == null || sums.getWindowSize() != windowSize) {
+			sums = new SlidingWindowSum<K>(windowSize);
+		}
+		sums.advance();
+	}
+
+	/**
+	 * Add value to the sum of the key in the current window.
 	 * 
 	 * @param tuple
 	 */
 	@Override
 	public void processDataTuple(KeyValPair<K, V> tuple)
 	{
-		K key = tuple.getKey();
-		double val = tuple.getValue().doubleValue();
-		ArrayList<SimpleMovingAverageObject> dataList = buffer.get(key);
+		sums.add(tuple.getKey(), tuple.getValue().doubleValue());
+	}
 
-		if (dataList == null) {
-			dataList = new ArrayList<SimpleMovingAverageObject>(windowSize);
-			for (int i = 0; i < windowSize; ++i) {
-				dataList.add(new SimpleMovingAverageObject());
+	/**
+	 * Emits the average of each key with values in the last N windows.
+	 */
+	@Override
+	public void endWindow()
+	{
+		for (int slot = 0; slot < sums.getSlotCount(); slot++) {
+			if (sums.isActive(slot)) {
+				emitAverage(sums.getKey(slot), sums.getSum(slot), sums.getCount(slot));
 			}
 		}
-
-		dataList.get(currentstate).add(val); // add to previous value
-		buffer.put(key, dataList);
 	}
 
 	/**
@@ -110,6 +130,11 @@ public class SimpleMovingAverage<K, V extends Number> extends
 			count += d.getCount();
 		}
 
+		emitAverage(key, sum, count);
+	}
+
+	private void emitAverage(K key, double sum, long count)
+	{
 		if (count == 0) { // Nothing to emit.
 			return;
 		}
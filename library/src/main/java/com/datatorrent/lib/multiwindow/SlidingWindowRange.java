@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import java.util.Arrays;
+
+/**
+ * Low and high of the values of each key over a sliding window.
+ * <p>
+ * Min and max cannot be undone when a pane moves out of the sliding window, the panes are aggregated with two stacks
+ * instead. The older panes form the front stack and hold the aggregate of the pane and all the following panes of the
+ * front stack, the newer panes form the back stack and hold their own aggregate while a running aggregate of the back
+ * stack is kept per key. The aggregate of the sliding window combines the oldest pane of the front stack with the
+ * running aggregate. When the front stack runs empty the back stack becomes the front stack, which is done in place
+ * in one pass over the panes, so each pane is aggregated a constant number of times.
+ * </p>
+ *
+ * @param <K> type of the keys
+ */
+public class SlidingWindowRange<K> extends AbstractSlidingWindowStore<K>
+{
+  private double[] paneLows;
+  private double[] paneHighs;
+  private double[] backLows;
+  private double[] backHighs;
+  /**
+   * Streaming window of the first pane of the back stack, the front stack holds the panes before it.
+   */
+  private long backStart;
+  private transient boolean flip;
+
+  @SuppressWarnings("unused")
+  private SlidingWindowRange()
+  {
+  }
+
+  public SlidingWindowRange(int windowSize)
+  {
+    super(windowSize);
+    allocate(getCapacity());
+  }
+
+  /**
+   * Adds a value of the key to the current streaming window.
+   */
+  public void add(K key, double value)
+  {
+    int slot = slot(key);
+    int index = slot * windowSize + currentPane;
+    if (value < paneLows[index]) {
+      paneLows[index] = value;
+    }
+    if (value > paneHighs[index]) {
+      paneHighs[index] = value;
+    }
+    if (value < backLows[slot]) {
+      backLows[slot] = value;
+    }
+    if (value > backHighs[slot]) {
+      backHighs[slot] = value;
+    }
+  }
+
+  /**
+   * @return lowest value of the slot within the sliding window.
+   */
+  public double getLow(int slot)
+  {
+    long oldest = currentWindow - windowSize + 1;
+    if (oldest >= 0 && oldest < backStart) {
+      return Math.min(paneLows[slot * windowSize + (int)(oldest % windowSize)], backLows[slot]);
+    }
+    return backLows[slot];
+  }
+
+  /**
+   * @return highest value of the slot within the sliding window.
+   */
+  public double getHigh(int slot)
+  {
+    long oldest = currentWindow - windowSize + 1;
+    if (oldest >= 0 && oldest < backStart) {
+      return Math.max(paneHighs[slot * windowSize + (int)(oldest % windowSize)], backHighs[slot]);
+    }
+    return backHighs[slot];
+  }
+
+  @Override
+  public void advance()
+  {
+    // the front stack is empty once the oldest pane of the next sliding window is in the back stack
+    flip = currentWindow + 2 - windowSize >= backStart;
+    super.advance();
+    if (flip) {
+      backStart = currentWindow;
+    }
+  }
+
+  @Override
+  protected void allocate(int capacity)
+  {
+    int length = capacity * windowSize;
+    if (backLows == null) {
+      paneLows = new double[length];
+      paneHighs = new double[length];
+      backLows = new double[capacity];
+      backHighs = new double[capacity];
+      return;
+    }
+    paneLows = Arrays.copyOf(paneLows, length);
+    paneHighs = Arrays.copyOf(paneHighs, length);
+    backLows = Arrays.copyOf(backLows, capacity);
+    backHighs = Arrays.copyOf(backHighs, capacity);
+  }
+
+  @Override
+  protected void clear(int slot)
+  {
+    int start = slot * windowSize;
+    Arrays.fill(paneLows, start, start + windowSize, Double.POSITIVE_INFINITY);
+    Arrays.fill(paneHighs, start, start + windowSize, Double.NEGATIVE_INFINITY);
+    backLows[slot] = Double.POSITIVE_INFINITY;
+    backHighs[slot] = Double.NEGATIVE_INFINITY;
+  }
+
+  @Override
+  protected void evict(int slot, int pane)
+  {
+    int start = slot * windowSize;
+    if (flip) {
+      // the panes of the back stack become the front stack, from the newest to the oldest
+      double low = Double.POSITIVE_INFINITY;
+      double high = Double.NEGATIVE_INFINITY;
+      for (long window = currentWindow - 1; window >= backStart; window--) {
+        int index = start + (int)(window % windowSize);
+        low = Math.min(low, paneLows[index]);
+        high = Math.max(high, paneHighs[index]);
+        paneLows[index] = low;
+        paneHighs[index] = high;
+      }
+      backLows[slot] = Double.POSITIVE_INFINITY;
+      backHighs[slot] = Double.NEGATIVE_INFINITY;
+    }
+    paneLows[start + pane] = Double.POSITIVE_INFINITY;
+    paneHighs[start + pane] = Double.NEGATIVE_INFINITY;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import java.util.Arrays;
+
+/**
+ * Sum and count of the values of each key over a sliding window.
+ * <p>
+ * Sum and count are invertible, the running totals of a key are updated with each value and the pane of the
+ * streaming window moving out of the sliding window is subtracted from them, each update takes constant time.
+ * The sums are recomputed from the panes once per sliding window so that rounding errors do not accumulate.
+ * </p>
+ *
+ * @param <K> type of the keys
+ */
+public class SlidingWindowSum<K> extends AbstractSlidingWindowStore<K>
+{
+  private double[] paneSums;
+  private long[] paneCounts;
+  private double[] sums;
+  private long[] counts;
+
+  @SuppressWarnings("unused")
+  private SlidingWindowSum()
+  {
+  }
+
+  public SlidingWindowSum(int windowSize)
+  {
+    super(windowSize);
+    allocate(getCapacity());
+  }
+
+  /**
+   * Adds a value of the key to the current streaming window.
+   */
+  public void add(K key, double value)
+  {
+    int slot = slot(key);
+    int index = slot * windowSize + currentPane;
+    paneSums[index] += value;
+    paneCounts[index]++;
+    sums[slot] += value;
+    counts[slot]++;
+  }
+
+  /**
+   * @return sum of the values of the slot within the sliding window.
+   */
+  public double getSum(int slot)
+  {
+    return sums[slot];
+  }
+
+  /**
+   * @return number of values of the slot within the sliding window.
+   */
+  public long getCount(int slot)
+  {
+    return counts[slot];
+  }
+
+  @Override
+  protected void allocate(int capacity)
+  {
+    if (sums == null) {
+      paneSums = new double[capacity * windowSize];
+      paneCounts = new long[capacity * windowSize];
+      sums = new double[capacity];
+      counts = new long[capacity];
+      return;
+    }
+    paneSums = Arrays.copyOf(paneSums, capacity * windowSize);
+    paneCounts = Arrays.copyOf(paneCounts, capacity * windowSize);
+    sums = Arrays.copyOf(sums, capacity);
+    counts = Arrays.copyOf(counts, capacity);
+  }
+
+  @Override
+  protected void clear(int slot)
+  {
+    int start = slot * windowSize;
+    Arrays.fill(paneSums, start, start + windowSize, 0);
+    Arrays.fill(paneCounts, start, start + windowSize, 0);
+    sums[slot] = 0;
+    counts[slot] = 0;
+  }
+
+  @Override
+  protected void evict(int slot, int pane)
+  {
+    int start = slot * windowSize;
+    int index = start + pane;
+    counts[slot] -= paneCounts[index];
+    sums[slot] -= paneSums[index];
+    paneSums[index] = 0;
+    paneCounts[index] = 0;
+    if (pane == 0) {
+      double sum = 0;
+      for (int i = start; i < start + windowSize; i++) {
+        sum += paneSums[i];
+      }
+      sums[slot] = sum;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.HashMap;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+
+/**
+ * An implementation of BaseOperator that computes approximate percentiles of incoming data with a
+ * {@link QuantileSketch}. <br>
+ * <p>
+ * The values are not kept, the memory used does not depend on the number of values. Use {@link MedianOperator} for
+ * the exact median of small windows.
+ * </p>
+ * <p>
+ * <b>Input Port(s) : </b><br>
+ * <b>data : </b> Data values input port, optional. <br>
+ * <b>sketches : </b> Sketches merged with the data values, e.g. the sketches of upstream partitions, optional. A
+ * downstream operator of partitions connects only this port. <br>
+ * <br>
+ * <b>Output Port(s) : </b> <br>
+ * <b>quantiles : </b>Emits a map of each percentile to its value. <br>
+ * <b>median : </b>Emits the median. <br>
+ * <b>sketch : </b>Emits the sketch of the values of the streaming window, the sketches of the partitions are merged by
+ * the unifier. <br>
+ * <br>
+ * <b>Properties : </b> <br>
+ * <b>percentiles : </b>Percentiles to emit, between 0 and 100. Default is 50 and 99. <br>
+ * <b>k : </b>Accuracy of the sketch, the rank error is at most about 2 / k. Default is 200. <br>
+ * <b>windowSize : </b>Number of streaming windows the percentiles are computed over, the sketches of the streaming
+ * windows are merged. The sketch port emits the sketch of a single streaming window whatever the window size, the
+ * downstream operator merges the windows with its own window size. Default is 1. <br>
+ * <b>seed : </b>Seed of the sketches, the sketches of the same values in the same windows are the same. Default is 0,
+ * every sketch is seeded randomly. <br>
+ * <br>
+ * <b>StateFull : Yes</b>, values are aggregated over application window. <br>
+ * <b>Partitions : Yes</b>, the sketches of the partitions are merged by the unifier of the sketch port into
+ * the sketches port of a downstream QuantileOperator. <br>
+ * <br>
+ * @displayName Quantile
+ * @category Statistics
+ * @tags quantile, percentile, median, number
+ */
+public class QuantileOperator extends BaseOperator
+{
+  @NotNull
+  private double[] percentiles = {50, 99};
+  @Min(8)
+  private int k = QuantileSketch.DEFAULT_K;
+  @Min(1)
+  private int windowSize = 1;
+  private long seed;
+
+  /**
+   * Sketches of the last windowSize windows, the current one is at currentPane.
+   */
+  private QuantileSketch[] panes;
+  private int currentPane = -1;
+  private transient long windowId;
+  /**
+   * Seed of the sketches of this partition.
+   */
+  private transient long partitionSeed;
+
+  /**
+   * Input data port that takes a number.
+   */
+  @InputPortFieldAnnotation(optional = true)
+  public final transient DefaultInputPort<Number> data = new DefaultInputPort<Number>()
+  {
+    @Override
+    public void process(Number tuple)
+    {
+      panes[currentPane].update(tuple.doubleValue());
+    }
+  };
+
+  /**
+   * Input port that takes sketches to merge.
+   */
+  @InputPortFieldAnnotation(optional = true)
+  public final transient DefaultInputPort<QuantileSketch> sketches = new DefaultInputPort<QuantileSketch>()
+  {
+    @Override
+    public void process(QuantileSketch tuple)
+    {
+      panes[currentPane].merge(tuple);
+    }
+  };
+
+  /**
+   * Output port that emits the value of each percentile.
+   */
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<HashMap<Double, Double>> quantiles = new DefaultOutputPort<HashMap<Double, Double>>();
+
+  /**
+   * Output port that emits the median.
+   */
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<Double> median = new DefaultOutputPort<Double>();
+
+  /**
+   * Output port that emits the sketch of the values of the streaming window, the unifier merges the sketches of the
+   * partitions.
+   */
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<QuantileSketch> sketch = new DefaultOutputPort<QuantileSketch>()
+  {
+    @Override
+    public Unifier<QuantileSketch> getUnifier()
+    {
+      QuantileSketchUnifier unifier = new QuantileSketchUnifier();
+      unifier.setSeed(seed);
+      return unifier;
+    }
+  };
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    partitionSeed = seed;
+    if (seed != 0 && context != null) {
+      // the partitions share the seed property
+      partitionSeed = seed ^ (context.getId() * 0xBF58476D1CE4E5B9L);
+    }
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    this.windowId = windowId;
+    if (panes == null || panes.length != windowSize) {
+      panes = new QuantileSketch[windowSize];
+      currentPane = -1;
+    }
+    currentPane = (currentPane + 1) % windowSize;
+    // the sketch of the expired window is replaced, it may have been emitted
+    panes[currentPane] = createSketch(k, partitionSeed, 2 * windowId);
+  }
+
+  @Override
+  public void endWindow()
+  {
+    QuantileSketch result = panes[currentPane];
+    if (sketch.isConnected() && !result.isEmpty()) {
+      //a merged sketch would count the values of a window again in every window of the downstream operator
+      sketch.emit(result);
+    }
+
+    if (windowSize > 1) {
+      result = createSketch(k, partitionSeed, 2 * windowId + 1);
+      for (QuantileSketch pane : panes) {
+        if (pane != null) {
+          result.merge(pane);
+        }
+      }
+    }
+    if (result.isEmpty()) {
+      return;
+    }
+
+    double[] fractions = new double[percentiles.length + 1];
+    for (int i = 0; i < percentiles.length; i++) {
+      fractions[i] = percentiles[i] / 100;
+    }
+    fractions[percentiles.length] = 0.5;
+    double[] values = result.getQuantiles(fractions);
+    if (quantiles.isConnected()) {
+      HashMap<Double, Double> tuple = new HashMap<Double, Double>();
+      for (int i = 0; i < percentiles.length; i++) {
+        tuple.put(percentiles[i], values[i]);
+      }
+      quantiles.emit(tuple);
+    }
+    if (median.isConnected()) {
+      median.emit(values[percentiles.length]);
+    }
+  }
+
+  /**
+   * Creates a sketch seeded with the given seed and salt, or randomly when the seed is 0.
+   */
+  static QuantileSketch createSketch(int k, long seed, long salt)
+  {
+    if (seed == 0) {
+      return new QuantileSketch(k);
+    }
+    return new QuantileSketch(k, seed + salt * 0x9E3779B97F4A7C15L);
+  }
+
+  public double[] getPercentiles()
+  {
+    return percentiles;
+  }
+
+  /**
+   * Sets the percentiles to emit.
+   *
+   * @param percentiles percentiles between 0 and 100, e.g. 99.9.
+   */
+  public void setPercentiles(double[] percentiles)
+  {
+    for (double percentile : percentiles) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+      }
+    }
+    this.percentiles = percentiles;
+  }
+
+  public int getK()
+  {
+    return k;
+  }
+
+  /**
+   * Sets the accuracy of the sketch, the sketch keeps less than 3 * k values.
+   *
+   * @param k
+   */
+  public void setK(int k)
+  {
+    this.k = k;
+  }
+
+  public int getWindowSize()
+  {
+    return windowSize;
+  }
+
+  /**
+   * Sets the number of streaming windows the percentiles are computed over.
+   *
+   * @param windowSize
+   */
+  public void setWindowSize(int windowSize)
+  {
+    this.windowSize = windowSize;
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  /**
+   * Sets the seed of the sketches, the sketch of every window is seeded with the seed, the operator id and the window
+   * id.
+   *
+   * @param seed seed of the sketches, 0 to seed every sketch randomly.
+   */
+  public void setSeed(long seed)
+  {
+    this.seed = seed;
+  }
+}
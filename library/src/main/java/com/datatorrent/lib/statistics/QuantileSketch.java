@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A mergeable sketch of a stream of values which answers quantile queries approximately, in the style of the KLL
+ * sketch.
+ * <p>
+ * Values are kept in a hierarchy of compactors, a value at level h stands for 2^h values of the stream. When a level
+ * exceeds its capacity it is sorted and every other value, starting at a random offset, is promoted to the next level
+ * while the others are dropped. The capacity of the top level is k and decreases geometrically towards the lower
+ * levels, so the sketch holds O(k) values whatever the number of values of the stream. The rank error of a quantile is
+ * usually below 2 / k of the number of values, k = 200 gives an error of about 1%. The error depends on the random
+ * offsets, which are seeded differently for every sketch unless a seed is given. Sketches with the same k are merged
+ * level by level, the result has the accuracy of a sketch of the union of the streams.
+ * </p>
+ * <p>
+ * The minimum and the maximum are kept exactly and returned for the quantiles 0 and 1.
+ * </p>
+ */
+public class QuantileSketch
+{
+  public static final int DEFAULT_K = 200;
+  private static final int MIN_CAPACITY = 8;
+  private static final double CAPACITY_RATIO = 2.0 / 3;
+
+  private int k;
+  private double[][] levels;
+  private int[] sizes;
+  private int levelCount;
+  private long count;
+  private double min = Double.NaN;
+  private double max = Double.NaN;
+  private long random;
+
+  private static final AtomicLong seedUniquifier = new AtomicLong(0x2545F4914F6CDD1DL);
+
+  public QuantileSketch()
+  {
+    this(DEFAULT_K);
+  }
+
+  /**
+   * @param k capacity of the top level, larger values give more accurate quantiles for more memory.
+   */
+  public QuantileSketch(int k)
+  {
+    this(k, seedUniquifier.addAndGet(0x9E3779B97F4A7C15L) ^ System.nanoTime());
+  }
+
+  /**
+   * @param k    capacity of the top level.
+   * @param seed seed of the random offsets, sketches with the same seed and the same values are the same.
+   */
+  public QuantileSketch(int k, long seed)
+  {
+    if (k < MIN_CAPACITY) {
+      throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY + ": " + k);
+    }
+    this.k = k;
+    //xorshift does not leave 0
+    random = seed != 0 ? seed : 0x2545F4914F6CDD1DL;
+    levels = new double[][] {new double[k]};
+    sizes = new int[1];
+    levelCount = 1;
+  }
+
+  public int getK()
+  {
+    return k;
+  }
+
+  /**
+   * @return number of values of the stream.
+   */
+  public long getCount()
+  {
+    return count;
+  }
+
+  public boolean isEmpty()
+  {
+    return count == 0;
+  }
+
+  /**
+   * @return smallest value of the stream, NaN if empty.
+   */
+  public double getMin()
+  {
+    return min;
+  }
+
+  /**
+   * @return largest value of the stream, NaN if empty.
+   */
+  public double getMax()
+  {
+    return max;
+  }
+
+  /**
+   * @return number of values retained by the sketch.
+   */
+  public int getRetained()
+  {
+    int retained = 0;
+    for (int level = 0; level < levelCount; level++) {
+      retained += sizes[level];
+    }
+    return retained;
+  }
+
+  public void update(double value)
+  {
+    if (Double.isNaN(value)) {
+      return;
+    }
+    if (count == 0) {
+      min = value;
+      max = value;
+    }
+    else if (value < min) {
+      min = value;
+    }
+    else if (value > max) {
+      max = value;
+    }
+    count++;
+    if (sizes[0] == levels[0].length) {
+      levels[0] = Arrays.copyOf(levels[0], levels[0].length * 2);
+    }
+    levels[0][sizes[0]++] = value;
+    if (sizes[0] >= capacity(0)) {
+      compress();
+    }
+  }
+
+  /**
+   * Merges the values of the other sketch into this sketch, the other sketch is not changed.
+   *
+   * @throws IllegalArgumentException if the sketches have different k.
+   */
+  public void merge(QuantileSketch other)
+  {
+    if (other.k != k) {
+      throw new IllegalArgumentException("Cannot merge sketches with k " + k + " and " + other.k);
+    }
+    if (other.count == 0) {
+      return;
+    }
+    if (count == 0) {
+      min = other.min;
+      max = other.max;
+    }
+    else {
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+    }
+    count += other.count;
+    while (levelCount < other.levelCount) {
+      addLevel();
+    }
+    for (int level = 0; level < other.levelCount; level++) {
+      int size = sizes[level] + other.sizes[level];
+      if (size > levels[level].length) {
+        levels[level] = Arrays.copyOf(levels[level], Math.max(size, levels[level].length * 2));
+      }
+      System.arraycopy(other.levels[level], 0, levels[level], sizes[level], other.sizes[level]);
+      sizes[level] = size;
+    }
+    compress();
+  }
+
+  /**
+   * Returns the value of the given rank, the value is smaller than or equal to a fraction q of the values of the stream.
+   *
+   * @param q fraction between 0 and 1, e.g. 0.5 for the median or 0.99 for the 99th percentile.
+   * @return approximate quantile, NaN if the sketch is empty.
+   */
+  public double getQuantile(double q)
+  {
+    return getQuantiles(new double[] {q})[0];
+  }
+
+  /**
+   * Returns the values of the given ranks, the retained values are sorted only once.
+   *
+   * @see #getQuantile(double)
+   */
+  public double[] getQuantiles(double[] qs)
+  {
+    for (double q : qs) {
+      if (q < 0 || q > 1) {
+        throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+      }
+    }
+    double[] quantiles = new double[qs.length];
+    if (count == 0) {
+      Arrays.fill(quantiles, Double.NaN);
+      return quantiles;
+    }
+
+    // merge the sorted levels into the sorted values with their cumulative weights
+    int retained = getRetained();
+    double[] values = new double[retained];
+    long[] ranks = new long[retained];
+    double[][] sorted = new double[levelCount][];
+    int[] positions = new int[levelCount];
+    for (int level = 0; level < levelCount; level++) {
+      sorted[level] = Arrays.copyOf(levels[level], sizes[level]);
+      Arrays.sort(sorted[level]);
+    }
+    long total = 0;
+    for (int i = 0; i < retained; i++) {
+      int next = -1;
+      for (int level = 0; level < levelCount; level++) {
+        if (positions[level] < sorted[level].length
+            && (next == -1 || sorted[level][positions[level]] < sorted[next][positions[next]])) {
+          next = level;
+        }
+      }
+      values[i] = sorted[next][positions[next]++];
+      total += 1L << next;
+      ranks[i] = total;
+    }
+
+    for (int j = 0; j < qs.length; j++) {
+      if (qs[j] == 0) {
+        quantiles[j] = min;
+        continue;
+      }
+      if (qs[j] == 1) {
+        quantiles[j] = max;
+        continue;
+      }
+      long rank = (long)Math.ceil(qs[j] * total);
+      int index = Arrays.binarySearch(ranks, rank);
+      quantiles[j] = values[index >= 0 ? index : Math.min(-index - 1, retained - 1)];
+    }
+    return quantiles;
+  }
+
+  /**
+   * Removes all the values.
+   */
+  public void clear()
+  {
+    levels = new double[][] {new double[k]};
+    sizes = new int[1];
+    levelCount = 1;
+    count = 0;
+    min = Double.NaN;
+    max = Double.NaN;
+  }
+
+  private int capacity(int level)
+  {
+    int depth = levelCount - 1 - level;
+    return Math.max(MIN_CAPACITY, (int)Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)));
+  }
+
+  private void addLevel()
+  {
+    if (levelCount == levels.length) {
+      levels = Arrays.copyOf(levels, levelCount * 2);
+      sizes = Arrays.copyOf(sizes, levelCount * 2);
+    }
+    levels[levelCount] = new double[MIN_CAPACITY];
+    sizes[levelCount] = 0;
+    levelCount++;
+  }
+
+  /**
+   * Compacts the levels which exceed their capacity, from the bottom up.
+   */
+  private void compress()
+  {
+    for (int level = 0; level < levelCount; level++) {
+      if (sizes[level] < capacity(level)) {
+        continue;
+      }
+      if (level == levelCount - 1) {
+        addLevel();
+      }
+      double[] items = levels[level];
+      int size = sizes[level];
+      Arrays.sort(items, 0, size);
+      // an odd value out stays at this level so that the weight of the sketch is the number of values
+      int kept = size & 1;
+      int offset = kept + (nextBit() ? 1 : 0);
+      int promoted = (size - kept) / 2;
+      int next = level + 1;
+      if (sizes[next] + promoted > levels[next].length) {
+        levels[next] = Arrays.copyOf(levels[next], Math.max(sizes[next] + promoted, levels[next].length * 2));
+      }
+      for (int i = offset; i < size; i += 2) {
+        levels[next][sizes[next]++] = items[i];
+      }
+      sizes[level] = kept;
+    }
+  }
+
+  private boolean nextBit()
+  {
+    random ^= random << 13;
+    random ^= random >>> 7;
+    random ^= random << 17;
+    return (random & 1) != 0;
+  }
+}
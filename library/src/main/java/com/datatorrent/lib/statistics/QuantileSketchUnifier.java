@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator;
+
+/**
+ * A {@link Unifier} which merges the sketches of the partitions of {@link QuantileOperator} and emits the merged
+ * sketch at the end of each window.
+ * <p>
+ * @displayName Quantile Sketch Unifier
+ * @category Statistics
+ * @tags quantile, percentile, median, sketch
+ */
+public class QuantileSketchUnifier extends BaseOperator implements Operator.Unifier<QuantileSketch>
+{
+  private long seed;
+  private transient long windowId;
+  private transient QuantileSketch merged;
+
+  /**
+   * Output port that emits the merged sketch.
+   */
+  public final transient DefaultOutputPort<QuantileSketch> mergedport = new DefaultOutputPort<QuantileSketch>();
+
+  @Override
+  public void process(QuantileSketch tuple)
+  {
+    if (merged == null) {
+      // the tuple may be shared with the partition, it is not changed
+      merged = QuantileOperator.createSketch(tuple.getK(), seed, windowId);
+    }
+    merged.merge(tuple);
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    this.windowId = windowId;
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (merged != null) {
+      mergedport.emit(merged);
+      merged = null;
+    }
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  /**
+   * Sets the seed of the merged sketches, see {@link QuantileOperator#setSeed(long)}.
+   *
+   * @param seed seed of the merged sketches, 0 to seed every sketch randomly.
+   */
+  public void setSeed(long seed)
+  {
+    this.seed = seed;
+  }
+}
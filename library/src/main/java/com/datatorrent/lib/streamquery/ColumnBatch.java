@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Rows buffered by the streamquery operators in vectorized mode, with a columnar view of the rows.
+ * <p>
+ * A column is built from the rows the first time it is requested and is cached until rows are added or the batch is
+ * cleared. The values of a column whose non null values are all Byte, Short, Integer or Long are stored in a long
+ * array, the values of a column whose non null values are all Float or Double are stored in a double array, the
+ * values of the other columns are dictionary encoded. Conditions, functions and order by rules evaluate a batch over
+ * a selection, an array of row indexes in the batch.
+ * </p>
+ */
+public class ColumnBatch
+{
+  /**
+   * Storage of the values of a column.
+   */
+  public enum ColumnType
+  {
+    LONG, DOUBLE, DICTIONARY
+  }
+
+  private static final ImmutableSet<Class<?>> LONG_CLASSES = ImmutableSet.<Class<?>>of(Byte.class, Short.class,
+    Integer.class, Long.class);
+  private static final ImmutableSet<Class<?>> DOUBLE_CLASSES = ImmutableSet.<Class<?>>of(Float.class, Double.class);
+
+  private final ArrayList<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+  private final HashMap<String, Column> columns = new HashMap<String, Column>();
+  private final HashMap<String, Column> dictionaryColumns = new HashMap<String, Column>();
+
+  /**
+   * Add a row to the batch.
+   */
+  public void add(@NotNull Map<String, Object> row)
+  {
+    rows.add(row);
+    if (!columns.isEmpty() || !dictionaryColumns.isEmpty()) {
+      columns.clear();
+      dictionaryColumns.clear();
+    }
+  }
+
+  /**
+   * @return number of rows in the batch.
+   */
+  public int size()
+  {
+    return rows.size();
+  }
+
+  /**
+   * @return row at the given index.
+   */
+  public Map<String, Object> getRow(int index)
+  {
+    return rows.get(index);
+  }
+
+  /**
+   * @return rows of the selection, in the order of the selection.
+   */
+  public ArrayList<Map<String, Object>> getRows(@NotNull int[] selection, int offset, int length)
+  {
+    ArrayList<Map<String, Object>> selected = new ArrayList<Map<String, Object>>(length);
+    for (int i = offset; i < offset + length; i++) {
+      selected.add(rows.get(selection[i]));
+    }
+    return selected;
+  }
+
+  /**
+   * @return selection of all the rows of the batch.
+   */
+  public int[] selectAll()
+  {
+    int[] selection = new int[rows.size()];
+    for (int i = 0; i < selection.length; i++) {
+      selection[i] = i;
+    }
+    return selection;
+  }
+
+  /**
+   * Keep only the rows of the selection. The columns already built are compacted, the columns requested afterwards
+   * are built from the kept rows only, so that the columns read after a selective condition skip the rejected rows.
+   * @param selection indexes of the rows to keep, in increasing order as left by a condition filter.
+   * @param length number of indexes in the selection.
+   */
+  public void retain(@NotNull int[] selection, int length)
+  {
+    for (int i = 0; i < length; i++) {
+      rows.set(i, rows.get(selection[i]));
+    }
+    rows.subList(length, rows.size()).clear();
+    for (Column column : columns.values()) {
+      column.retain(selection, length);
+    }
+    for (Column column : dictionaryColumns.values()) {
+      column.retain(selection, length);
+    }
+  }
+
+  /**
+   * Remove all the rows from the batch.
+   */
+  public void clear()
+  {
+    rows.clear();
+    columns.clear();
+    dictionaryColumns.clear();
+  }
+
+  /**
+   * @return typed column of the given name, numeric values are stored in primitive arrays.
+   */
+  public Column getColumn(@NotNull String name)
+  {
+    Column column = columns.get(name);
+    if (column == null) {
+      column = buildColumn(name, false);
+      columns.put(name, column);
+    }
+    return column;
+  }
+
+  /**
+   * @return dictionary encoded column of the given name, regardless of the type of the values.
+   */
+  public Column getDictionaryColumn(@NotNull String name)
+  {
+    Column column = dictionaryColumns.get(name);
+    if (column == null) {
+      column = buildColumn(name, true);
+      dictionaryColumns.put(name, column);
+    }
+    return column;
+  }
+
+  private Column buildColumn(String name, boolean dictionaryEncoded)
+  {
+    Column column = new Column(rows.size());
+    if (dictionaryEncoded || !column.readPrimitives(rows, name)) {
+      column.readDictionary(rows, name);
+    }
+    return column;
+  }
+
+  /**
+   * Values of a column of the batch, indexed by row.
+   */
+  public static class Column
+  {
+    private ColumnType type;
+    private Class<?> valueClass;
+    private final BitSet nulls;
+    private final BitSet missing;
+    private int nullCount;
+    private long[] longs;
+    private double[] doubles;
+    private int[] codes;
+    private ArrayList<Object> dictionary;
+    private HashMap<Object, Integer> dictionaryCodes;
+
+    Column(int size)
+    {
+      nulls = new BitSet(size);
+      missing = new BitSet(size);
+    }
+
+    /**
+     * Read the values of the rows straight into a long or a double array.
+     *
+     * @return false if the values are not all of the same integral or floating point class.
+     */
+    boolean readPrimitives(List<Map<String, Object>> rows, String name)
+    {
+      int size = rows.size();
+      for (int i = 0; i < size; i++) {
+        Map<String, Object> row = rows.get(i);
+        Object value = row.get(name);
+        if (value == null) {
+          setNull(i, row, name);
+          continue;
+        }
+        if (valueClass == null) {
+          valueClass = value.getClass();
+          if (LONG_CLASSES.contains(valueClass)) {
+            type = ColumnType.LONG;
+            longs = new long[size];
+          }
+          else if (DOUBLE_CLASSES.contains(valueClass)) {
+            type = ColumnType.DOUBLE;
+            doubles = new double[size];
+          }
+          else {
+            return false;
+          }
+        }
+        else if (valueClass != value.getClass()) {
+          return false;
+        }
+        if (longs != null) {
+          longs[i] = ((Number)value).longValue();
+        }
+        else {
+          doubles[i] = ((Number)value).doubleValue();
+        }
+      }
+      nullCount = nulls.cardinality();
+      return valueClass != null;
+    }
+
+    /**
+     * Read the values of the rows into dictionary codes, the values read by {@link #readPrimitives(List, String)} are
+     * discarded.
+     */
+    void readDictionary(List<Map<String, Object>> rows, String name)
+    {
+      int size = rows.size();
+      type = ColumnType.DICTIONARY;
+      valueClass = null;
+      longs = null;
+      doubles = null;
+      nulls.clear();
+      missing.clear();
+      codes = new int[size];
+      dictionary = new ArrayList<Object>();
+      dictionaryCodes = new HashMap<Object, Integer>();
+      boolean uniform = true;
+      for (int i = 0; i < size; i++) {
+        Map<String, Object> row = rows.get(i);
+        Object value = row.get(name);
+        if (value == null) {
+          setNull(i, row, name);
+          codes[i] = -1;
+          continue;
+        }
+        if (valueClass == null) {
+          valueClass = value.getClass();
+        }
+        else if (valueClass != value.getClass()) {
+          uniform = false;
+        }
+        Integer code = dictionaryCodes.get(value);
+        if (code == null) {
+          code = dictionary.size();
+          dictionary.add(value);
+          dictionaryCodes.put(value, code);
+        }
+        codes[i] = code;
+      }
+      if (!uniform) {
+        valueClass = null;
+      }
+      nullCount = nulls.cardinality();
+    }
+
+    /**
+     * Move the values of the selected rows to the front of the column, the dictionary is kept as is.
+     */
+    void retain(int[] selection, int length)
+    {
+      for (int i = 0; i < length; i++) {
+        int row = selection[i];
+        if (longs != null) {
+          longs[i] = longs[row];
+        }
+        else if (doubles != null) {
+          doubles[i] = doubles[row];
+        }
+        else if (codes != null) {
+          codes[i] = codes[row];
+        }
+        if (nullCount > 0) {
+          nulls.set(i, nulls.get(row));
+          missing.set(i, missing.get(row));
+        }
+      }
+      if (nullCount > 0) {
+        nulls.clear(length, Math.max(length, nulls.length()));
+        missing.clear(length, Math.max(length, missing.length()));
+        nullCount = nulls.cardinality();
+      }
+    }
+
+    private void setNull(int index, Map<String, Object> row, String name)
+    {
+      nulls.set(index);
+      if (!row.containsKey(name)) {
+        missing.set(index);
+      }
+    }
+
+    /**
+     * @return storage of the values.
+     */
+    public ColumnType getType()
+    {
+      return type;
+    }
+
+    /**
+     * @return class of all the non null values, null when the values are of different classes or all null.
+     */
+    public Class<?> getValueClass()
+    {
+      return valueClass;
+    }
+
+    /**
+     * @return values of a {@link ColumnType#LONG} column, 0 for null values.
+     */
+    public long[] getLongs()
+    {
+      return longs;
+    }
+
+    /**
+     * @return values of a {@link ColumnType#DOUBLE} column, 0 for null values.
+     */
+    public double[] getDoubles()
+    {
+      return doubles;
+    }
+
+    /**
+     * @return dictionary codes of a {@link ColumnType#DICTIONARY} column, -1 for null values.
+     */
+    public int[] getCodes()
+    {
+      return codes;
+    }
+
+    /**
+     * @return distinct non null values of a {@link ColumnType#DICTIONARY} column, indexed by code.
+     */
+    public List<Object> getDictionary()
+    {
+      return Collections.unmodifiableList(dictionary);
+    }
+
+    /**
+     * @return code of the value in a {@link ColumnType#DICTIONARY} column, -1 if the column doesn't have the value.
+     */
+    public int codeOf(Object value)
+    {
+      Integer code = value == null ? null : dictionaryCodes.get(value);
+      return code == null ? -1 : code;
+    }
+
+    /**
+     * @return true if the row doesn't have the column or the value is null.
+     */
+    public boolean isNull(int row)
+    {
+      return nulls.get(row);
+    }
+
+    /**
+     * @return true if the row doesn't have the column.
+     */
+    public boolean isMissing(int row)
+    {
+      return missing.get(row);
+    }
+
+    /**
+     * @return number of rows without a value.
+     */
+    public int getNullCount()
+    {
+      return nullCount;
+    }
+  }
+}
@@ -24,9 +24,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * An implementation of AbstractSqlStreamOperator that provides embedded derby sql input operator. 
  * <p>
+ * Statements in the subset supported by {@link StreamingSqlParser}, SELECT over one input table with WHERE and GROUP BY
+ * clauses, are compiled at setup and executed in memory as the tuples arrive, aggregates are updated incrementally.
+ * The other statements are executed by Derby at the end of the window over the tuples inserted into the temporary
+ * tables. The tuples are inserted into Derby only when a statement is executed by Derby.
+ * </p>
+ * <p>
  * @displayName Derby Sql Stream
  * @category Streamquery
  * @tags sql, in-memory, input operator
@@ -39,6 +48,19 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
   protected transient ArrayList<PreparedStatement> execStatements = new ArrayList<PreparedStatement>(5);
   protected transient ArrayList<PreparedStatement> deleteStatements = new ArrayList<PreparedStatement>(5);
   protected transient Connection db;
+  /**
+   * Execute the supported statements in memory instead of with Derby.
+   */
+  private boolean nativeExecution = true;
+  /**
+   * Compiled statements, null for the statements executed by Derby.
+   */
+  protected transient List<StreamingSqlQuery> nativeQueries;
+  /**
+   * Compiled statements by input table.
+   */
+  private transient List<List<StreamingSqlQuery>> tableQueries;
+  private transient List<StreamingSqlQuery.Table> tables;
 
   public void addExecStatementString(String stmt) {
        this.execStmtStringList.add(stmt);
@@ -48,6 +70,34 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
   @Override
   public void setup(OperatorContext context)
   {
+    tables = new ArrayList<StreamingSqlQuery.Table>();
+    tableQueries = new ArrayList<List<StreamingSqlQuery>>();
+    for (InputSchema inputSchema : inputSchemas) {
+      boolean hasTable = inputSchema != null && !inputSchema.columnInfoMap.isEmpty();
+      tables.add(hasTable ? new StreamingSqlQuery.Table(inputSchema) : null);
+      tableQueries.add(new ArrayList<StreamingSqlQuery>());
+    }
+    nativeQueries = new ArrayList<StreamingSqlQuery>();
+    boolean derbyRequired = false;
+    StreamingSqlParser parser = new StreamingSqlParser(tables);
+    for (String stmtStr : execStmtStringList) {
+      StreamingSqlQuery query = null;
+      if (nativeExecution) {
+        try {
+          query = parser.parse(stmtStr);
+          tableQueries.get(query.tableIndex).add(query);
+        }
+        catch (UnsupportedOperationException ex) {
+          logger.info("Executing with Derby ({}): {}", ex.getMessage(), stmtStr);
+        }
+      }
+      derbyRequired |= query == null;
+      nativeQueries.add(query);
+    }
+    if (!derbyRequired) {
+      return;
+    }
+
     System.setProperty("derby.stream.error.file", "/dev/null");
     try {
       Class.forName("org.apache.derby.jdbc.EmbeddedDriver").newInstance();
@@ -94,8 +144,8 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
         insertStatements.add(i, db.prepareStatement(insertStmt));
         deleteStatements.add(i, db.prepareStatement("DELETE FROM SESSION." + inputSchema.name));
       }
-        for (String stmtStr: execStmtStringList) {
-            execStatements.add(db.prepareStatement(stmtStr));
+        for (int i = 0; i < execStmtStringList.size(); i++) {
+            execStatements.add(nativeQueries.get(i) == null ? db.prepareStatement(execStmtStringList.get(i)) : null);
         }
     }
     catch (SQLException ex) {
@@ -106,6 +156,9 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
   @Override
   public void beginWindow(long windowId)
   {
+    if (db == null) {
+      return;
+    }
     try {
       db.setAutoCommit(false);
     }
@@ -117,6 +170,17 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
   @Override
   public void processTuple(int tableNum, HashMap<String, Object> tuple)
   {
+    List<StreamingSqlQuery> queries = tableQueries.get(tableNum);
+    if (!queries.isEmpty()) {
+      Object[] row = tables.get(tableNum).toRow(tuple);
+      for (StreamingSqlQuery query : queries) {
+        query.process(row);
+      }
+    }
+    if (db == null) {
+      return;
+    }
+
     InputSchema inputSchema = inputSchemas.get(tableNum);
 
     PreparedStatement insertStatement = insertStatements.get(tableNum);
@@ -140,19 +204,33 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
   @Override
   public void endWindow()
   {
+    if (db == null) {
+      for (StreamingSqlQuery query : nativeQueries) {
+        emitResults(query);
+      }
+      bindings = null;
+      return;
+    }
     try {
       db.commit();
       if (bindings != null) {
         for (int i = 0; i < bindings.size(); i++) {
             for (PreparedStatement stmt: execStatements) {
-                stmt.setString(i, bindings.get(i).toString());
+                if (stmt != null) {
+                    stmt.setString(i, bindings.get(i).toString());
+                }
             }
         }
       }
 
 
-     for (PreparedStatement stmt: execStatements) {
-          executePreparedStatement(stmt);
+     for (int i = 0; i < execStatements.size(); i++) {
+          if (nativeQueries.get(i) != null) {
+              emitResults(nativeQueries.get(i));
+          }
+          else {
+              executePreparedStatement(execStatements.get(i));
+          }
       }
       for (PreparedStatement st: deleteStatements) {
         st.executeUpdate();
@@ -165,6 +243,12 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
     bindings = null;
   }
 
+    private void emitResults(StreamingSqlQuery query) {
+        for (HashMap<String, Object> resultRow: query.endWindow()) {
+            this.result.emit(resultRow);
+        }
+    }
+
     private void executePreparedStatement(PreparedStatement statement) throws SQLException {
         ResultSet res = statement.executeQuery();
         ResultSetMetaData resmeta = res.getMetaData();
@@ -182,6 +266,9 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
   @Override
   public void teardown()
   {
+    if (db == null) {
+      return;
+    }
     try {
       db.close();
     }
@@ -190,4 +277,18 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
     }
   }
 
+  public boolean isNativeExecution()
+  {
+    return nativeExecution;
+  }
+
+  /**
+   * @param nativeExecution execute the supported statements in memory instead of with Derby if true.
+   */
+  public void setNativeExecution(boolean nativeExecution)
+  {
+    this.nativeExecution = nativeExecution;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(DerbySqlStreamOperator.class);
 }
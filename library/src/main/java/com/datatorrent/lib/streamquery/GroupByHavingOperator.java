@@ -16,11 +16,15 @@
 package com.datatorrent.lib.streamquery;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.datatorrent.api.BaseOperator;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
@@ -53,6 +57,8 @@ import com.datatorrent.lib.streamquery.index.ColumnIndex;
  * <b> columnGroupIndexes : </b> Group by names list. <br>
  * <b> indexes : </b> Select column indexes. <br>
  * <b> havingConditions : </b> Having filter conditions for aggregate(s). <br>
+ * <b> vectorized : </b> Buffer rows in a {@link ColumnBatch} and evaluate condition, groups and aggregates over the
+ * batch. <br>
  * <br>
  * @displayName GroupBy Having Operator
  * @category Streamquery
@@ -88,6 +94,16 @@ public class GroupByHavingOperator extends BaseOperator
    */
   private ArrayList<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
 
+  /**
+   * Evaluate condition, groups and aggregates over a batch of the rows of the window.
+   */
+  private boolean vectorized;
+
+  /**
+   * Rows buffered in vectorized mode.
+   */
+  private transient ColumnBatch batch = new ColumnBatch();
+
   public void addAggregateIndex(@NotNull FunctionIndex index)
   {
     aggregates.add(index);
@@ -120,6 +136,10 @@ public class GroupByHavingOperator extends BaseOperator
     @Override
     public void process(Map<String, Object> tuple)
     {
+      if (vectorized) {
+        batch.add(tuple);
+        return;
+      }
       if ((condition != null) && (!condition.isValidRow(tuple)))
         return;
       rows.add(tuple);
@@ -137,6 +157,12 @@ public class GroupByHavingOperator extends BaseOperator
   @Override
   public void endWindow()
   {
+    if (vectorized) {
+      processBatch();
+      batch.clear();
+      return;
+    }
+
     // group names
     if (columnGroupIndexes.size() == 0) {
       rows = new ArrayList<Map<String, Object>>();
@@ -197,6 +223,128 @@ public class GroupByHavingOperator extends BaseOperator
     rows = new ArrayList<Map<String, Object>>();
   }
 
+  /**
+   * Create aggregates of the buffered rows.
+   */
+  private void processBatch()
+  {
+    if (columnGroupIndexes.size() == 0) {
+      return;
+    }
+    int[] selection = batch.selectAll();
+    int length = selection.length;
+    if (condition != null) {
+      length = condition.filter(batch, selection, length);
+      if (length < selection.length) {
+        // group by and aggregate columns are read for the valid rows only
+        batch.retain(selection, length);
+        selection = batch.selectAll();
+      }
+    }
+
+    // group rows, rows of a group are stored consecutively in grouped rows
+    int[] groupIds = new int[length];
+    int groupCount = groupRows(selection, length, groupIds);
+    int[] offsets = new int[groupCount + 1];
+    for (int i = 0; i < length; i++) {
+      offsets[groupIds[i] + 1]++;
+    }
+    for (int i = 0; i < groupCount; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] next = Arrays.copyOf(offsets, groupCount);
+    int[] groupedRows = new int[length];
+    for (int i = 0; i < length; i++) {
+      groupedRows[next[groupIds[i]]++] = selection[i];
+    }
+
+    // Iterate over groups and emit aggregate values
+    for (int group = 0; group < groupCount; group++) {
+      int offset = offsets[group];
+      int count = offsets[group + 1] - offset;
+
+      // get result
+      Map<String, Object> result = new HashMap<String, Object>();
+      for (ColumnIndex index : columnGroupIndexes) {
+        index.filter(batch.getRow(groupedRows[offset]), result);
+      }
+
+      // append aggregate values
+      for (FunctionIndex aggregate : aggregates) {
+        try {
+          aggregate.filter(batch, groupedRows, offset, count, result);
+        } catch (Exception e) {
+          logger.error("Aggregate {} failed", aggregate, e);
+        }
+      }
+
+      // check valid having aggregate
+      boolean isValidHaving = true;
+      for (HavingCondition condition : havingConditions) {
+        try {
+          isValidHaving &= condition.isValidAggregate(batch, groupedRows, offset, count);
+        } catch (Exception e) {
+          logger.error("Having condition {} failed", condition, e);
+          return;
+        }
+      }
+      if (isValidHaving)
+        outport.emit(result);
+    }
+  }
+
+  /**
+   * Assign group ids to the selected rows from the dictionary codes of the group by columns, groups are numbered in
+   * the order of their first row.
+   * @return number of groups.
+   */
+  private int groupRows(int[] selection, int length, int[] groupIds)
+  {
+    int groupCount = 0;
+    for (int k = 0; k < columnGroupIndexes.size(); k++) {
+      ColumnBatch.Column column = batch.getDictionaryColumn(columnGroupIndexes.get(k).getColumn());
+      int[] codes = column.getCodes();
+      if (k == 0) {
+        // null values have code -1
+        int[] ids = new int[column.getDictionary().size() + 1];
+        Arrays.fill(ids, -1);
+        for (int i = 0; i < length; i++) {
+          int code = codes[selection[i]] + 1;
+          if (ids[code] < 0) {
+            ids[code] = groupCount++;
+          }
+          groupIds[i] = ids[code];
+        }
+      } else {
+        HashMap<Long, Integer> ids = new HashMap<Long, Integer>();
+        for (int i = 0; i < length; i++) {
+          long key = ((long)groupIds[i] << 32) | (codes[selection[i]] + 1);
+          Integer id = ids.get(key);
+          if (id == null) {
+            id = ids.size();
+            ids.put(key, id);
+          }
+          groupIds[i] = id;
+        }
+        groupCount = ids.size();
+      }
+    }
+    return groupCount;
+  }
+
+  public boolean isVectorized()
+  {
+    return vectorized;
+  }
+
+  /**
+   * @param vectorized evaluate condition, groups and aggregates over a batch of the rows of the window if true.
+   */
+  public void setVectorized(boolean vectorized)
+  {
+    this.vectorized = vectorized;
+  }
+
   /**
    * multi key compare class.
    */
@@ -251,4 +399,6 @@ public class GroupByHavingOperator extends BaseOperator
       compareKeys.add(value);
     }
   }
+
+  private static final Logger logger = LoggerFactory.getLogger(GroupByHavingOperator.class);
 }
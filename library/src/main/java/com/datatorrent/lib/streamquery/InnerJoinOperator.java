@@ -16,15 +16,26 @@
 package com.datatorrent.lib.streamquery;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import javax.validation.constraints.Min;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.DefaultPartition;
 import com.datatorrent.api.Operator;
-import com.datatorrent.api.annotation.OperatorAnnotation;
+import com.datatorrent.api.Partitioner;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.lib.codec.KryoSerializableStreamCodec;
 import com.datatorrent.lib.streamquery.condition.Condition;
+import com.datatorrent.lib.streamquery.condition.JoinColumnEqualCondition;
 import com.datatorrent.lib.streamquery.index.Index;
 
 /**
@@ -34,7 +45,12 @@ import com.datatorrent.lib.streamquery.index.Index;
  * joined result at output port.
  *  <br>
  *  <b>StateFull : Yes,</b> Operator aggregates input over application window. <br>
- *  <b>Partitions : No, </b> will yield wrong result(s). <br>
+ *  <b>Partitions : Yes, </b> when the join condition is a {@link JoinColumnEqualCondition}, both input ports are
+ *  partitioned by the hash of their join column with {@link JoinColumnStreamCodec} and the same partition keys, so the
+ *  rows which join are sent to the same partition. With other join conditions the operator is not partitioned. <br>
+ *  <br>
+ *  With a {@link JoinColumnEqualCondition} the rows of each table are indexed by the join column, so a row is only
+ *  compared with the rows of the other table which have the same value. <br>
  *  <br>
  *  <b>Ports : </b> <br>
  *  <b> inport1 : </b> Input port for table 1, expects HashMap&lt;String, Object&gt; <br>
@@ -45,6 +61,7 @@ import com.datatorrent.lib.streamquery.index.Index;
  *  <b> joinCondition : </b> Join condition for table rows. <br>
  *  <b> table1Columns : </b> Columns to be selected from table1. <br>
  *  <b> table2Columns : </b> Columns to be selected from table2. <br>
+ *  <b> partitionCount : </b> Number of partitions with an equal join condition. <br>
  *  <br>
  * @displayName Inner join
  * @category Streamquery
@@ -52,8 +69,7 @@ import com.datatorrent.lib.streamquery.index.Index;
  *
  * @since 0.3.3
  */
-@OperatorAnnotation(partitionable = false)
-public class InnerJoinOperator implements Operator
+public class InnerJoinOperator implements Operator, Partitioner<InnerJoinOperator>
 {
 
   /**
@@ -71,6 +87,12 @@ public class InnerJoinOperator implements Operator
    */
   private ArrayList<Index> table2Columns = new ArrayList<Index>();
 
+  /**
+   * Number of partitions with an equal join condition.
+   */
+  @Min(1)
+  private int partitionCount = 1;
+
   /**
    * Collect data rows from input port 1.
    */
@@ -81,6 +103,15 @@ public class InnerJoinOperator implements Operator
    */
   protected ArrayList<Map<String, Object>> table2;
 
+  /**
+   * Rows of table 1 and table 2 by the value of the join column, when the join condition is a
+   * {@link JoinColumnEqualCondition}.
+   */
+  private transient Map<Object, List<Map<String, Object>>> table1Index;
+  private transient Map<Object, List<Map<String, Object>>> table2Index;
+  private transient String joinColumn1;
+  private transient String joinColumn2;
+
   /**
    * Input port 1 that takes a map of &lt;string,object&gt;.
    */
@@ -90,32 +121,77 @@ public class InnerJoinOperator implements Operator
     public void process(Map<String, Object> tuple)
     {
       table1.add(tuple);
+      if (table2Index != null) {
+        Object key = tuple.get(joinColumn1);
+        if (key != null) {
+          addToIndex(table1Index, key, tuple);
+          List<Map<String, Object>> rows = table2Index.get(key);
+          if (rows != null) {
+            for (int j = 0; j < rows.size(); j++) {
+              joinRows(tuple, rows.get(j));
+            }
+          }
+        }
+        return;
+      }
       for (int j = 0; j < table2.size(); j++) {
         if ((joinCondition == null)
                 || (joinCondition.isValidJoin(tuple, table2.get(j)))) {
           joinRows(tuple, table2.get(j));
         }
       }
-		}
-	};
-	
-	/**
-	 * Input port 2 that takes a map of &lt;string,object&gt;.
-	 */
-	public final transient DefaultInputPort<Map<String, Object>> inport2 = new DefaultInputPort<Map<String, Object>>() {
-		@Override
-		public void process(Map<String, Object> tuple)
-		{
-	    table2.add(tuple);
+    }
+
+    @Override
+    public StreamCodec<Map<String, Object>> getStreamCodec()
+    {
+      if (joinCondition instanceof JoinColumnEqualCondition) {
+        return new JoinColumnStreamCodec(((JoinColumnEqualCondition) joinCondition).getColumn1());
+      }
+      return super.getStreamCodec();
+    }
+  };
+
+  /**
+   * Input port 2 that takes a map of &lt;string,object&gt;.
+   */
+  public final transient DefaultInputPort<Map<String, Object>> inport2 = new DefaultInputPort<Map<String, Object>>()
+  {
+    @Override
+    public void process(Map<String, Object> tuple)
+    {
+      table2.add(tuple);
+      if (table1Index != null) {
+        Object key = tuple.get(joinColumn2);
+        if (key != null) {
+          addToIndex(table2Index, key, tuple);
+          List<Map<String, Object>> rows = table1Index.get(key);
+          if (rows != null) {
+            for (int j = 0; j < rows.size(); j++) {
+              joinRows(rows.get(j), tuple);
+            }
+          }
+        }
+        return;
+      }
       for (int j = 0; j < table1.size(); j++) {
         if ((joinCondition == null)
                 || (joinCondition.isValidJoin(table1.get(j), tuple))) {
           joinRows(table1.get(j), tuple);
         }
       }
-		}
-	};
-	
+    }
+
+    @Override
+    public StreamCodec<Map<String, Object>> getStreamCodec()
+    {
+      if (joinCondition instanceof JoinColumnEqualCondition) {
+        return new JoinColumnStreamCodec(((JoinColumnEqualCondition) joinCondition).getColumn2());
+      }
+      return super.getStreamCodec();
+    }
+  };
+
 	/**
 	 * Output port that emits a map of &lt;string,object&gt;.
 	 */
@@ -127,6 +203,12 @@ public class InnerJoinOperator implements Operator
   {
     table1 = new ArrayList<Map<String, Object>>();
     table2 = new ArrayList<Map<String, Object>>();
+    if (joinCondition instanceof JoinColumnEqualCondition) {
+      joinColumn1 = ((JoinColumnEqualCondition) joinCondition).getColumn1();
+      joinColumn2 = ((JoinColumnEqualCondition) joinCondition).getColumn2();
+      table1Index = new HashMap<Object, List<Map<String, Object>>>();
+      table2Index = new HashMap<Object, List<Map<String, Object>>>();
+    }
   }
 
   @Override
@@ -144,6 +226,10 @@ public class InnerJoinOperator implements Operator
   {
     table1.clear();
     table2.clear();
+    if (table1Index != null) {
+      table1Index.clear();
+      table2Index.clear();
+    }
   }
 
   /**
@@ -162,6 +248,55 @@ public class InnerJoinOperator implements Operator
     this.joinCondition = joinCondition;
   }
 
+  public int getPartitionCount()
+  {
+    return partitionCount;
+  }
+
+  /**
+   * Sets the number of partitions, only used when the join condition is a {@link JoinColumnEqualCondition}.
+   *
+   * @param partitionCount
+   */
+  public void setPartitionCount(int partitionCount)
+  {
+    this.partitionCount = partitionCount;
+  }
+
+  /**
+   * Assigns the same partition keys to both input ports, the rows are sent to the partition of the hash of their join
+   * column. Without an equal join condition the operator is kept in one partition.
+   */
+  @Override
+  public Collection<Partition<InnerJoinOperator>> definePartitions(Collection<Partition<InnerJoinOperator>> partitions, PartitioningContext context)
+  {
+    if (!(joinCondition instanceof JoinColumnEqualCondition)) {
+      if (partitionCount > 1 || context.getParallelPartitionCount() > 1) {
+        logger.warn("Join condition {} is not an equal join condition, the operator is not partitioned", joinCondition);
+      }
+      return partitions;
+    }
+    int newPartitionCount = DefaultPartition.getRequiredPartitionCount(context, partitionCount);
+    InnerJoinOperator operator = partitions.iterator().next().getPartitionedInstance();
+    List<Partition<InnerJoinOperator>> newPartitions = new ArrayList<Partition<InnerJoinOperator>>(newPartitionCount);
+    for (int i = 0; i < newPartitionCount; i++) {
+      newPartitions.add(new DefaultPartition<InnerJoinOperator>(operator));
+    }
+    // the rows of a window are not kept across windows, the partitions start empty
+    DefaultPartition.assignPartitionKeys(newPartitions, operator.inport1);
+    for (Partition<InnerJoinOperator> partition : newPartitions) {
+      PartitionKeys keys = partition.getPartitionKeys().get(operator.inport1);
+      partition.getPartitionKeys().put(operator.inport2, new PartitionKeys(keys.mask, keys.partitions));
+    }
+    logger.debug("join partitions {}", newPartitions.size());
+    return newPartitions;
+  }
+
+  @Override
+  public void partitioned(Map<Integer, Partition<InnerJoinOperator>> partitions)
+  {
+  }
+
   /**
    * Select table1 column name.
    */
@@ -204,4 +339,78 @@ public class InnerJoinOperator implements Operator
     outport.emit(join);
   }
 
+  /**
+   * Returns whether a row of table 2 joins with the given row of table 1.
+   */
+  protected boolean hasJoinRow2(Map<String, Object> row1)
+  {
+    if (table2Index != null) {
+      Object key = row1.get(joinColumn1);
+      return key != null && table2Index.containsKey(key);
+    }
+    for (int j = 0; j < table2.size(); j++) {
+      if ((joinCondition == null) || (joinCondition.isValidJoin(row1, table2.get(j)))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether a row of table 1 joins with the given row of table 2.
+   */
+  protected boolean hasJoinRow1(Map<String, Object> row2)
+  {
+    if (table1Index != null) {
+      Object key = row2.get(joinColumn2);
+      return key != null && table1Index.containsKey(key);
+    }
+    for (int j = 0; j < table1.size(); j++) {
+      if ((joinCondition == null) || (joinCondition.isValidJoin(table1.get(j), row2))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void addToIndex(Map<Object, List<Map<String, Object>>> index, Object key, Map<String, Object> row)
+  {
+    List<Map<String, Object>> rows = index.get(key);
+    if (rows == null) {
+      rows = new ArrayList<Map<String, Object>>(1);
+      index.put(key, rows);
+    }
+    rows.add(row);
+  }
+
+  /**
+   * A codec which partitions the rows by the value of the join column, so the rows of both tables which join are
+   * sent to the same partition.
+   */
+  public static class JoinColumnStreamCodec extends KryoSerializableStreamCodec<Map<String, Object>>
+  {
+    private String column;
+
+    protected JoinColumnStreamCodec()
+    {
+      super();
+    }
+
+    public JoinColumnStreamCodec(String column)
+    {
+      super();
+      this.column = column;
+    }
+
+    @Override
+    public int getPartition(Map<String, Object> row)
+    {
+      Object value = row.get(column);
+      return value == null ? 0 : value.hashCode();
+    }
+
+    private static final long serialVersionUID = 201502111530L;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(InnerJoinOperator.class);
 }
@@ -38,7 +38,8 @@ import com.datatorrent.api.Operator.Unifier;
  * <b> outport : </b> Output hash map(row) port, emits  HashMap&lt;String,Object&gt;<br>
  * <br>
  * <b> Properties : </b> <br>
- * <b> oredrByRules : </b>List of order by rules for tuples.
+ * <b> oredrByRules : </b>List of order by rules for tuples. <br>
+ * <b> vectorized : </b> Buffer rows in a {@link ColumnBatch} and sort the batch.
  * @displayName OrderBy
  * @category Streamquery
  * @tags orderby operator
@@ -46,60 +47,79 @@ import com.datatorrent.api.Operator.Unifier;
  */
 public class OrderByOperator implements Operator, Unifier<Map<String, Object>>
 {
-	/**
-	 * Order by rules.
-	 */
-	ArrayList<OrderByRule<?>>	oredrByRules	= new ArrayList<OrderByRule<?>>();
-
-	/**
-	 * Descending flag.
-	 */
-	private boolean isDescending;
-	
-	/**
-	 * collected rows.
-	 */
-	private ArrayList<Map<String, Object>> rows;
-
-	/**
-	 * Add order by rule.
-	 */
-	public void addOrderByRule(OrderByRule<?> rule)
-	{
-		oredrByRules.add(rule);
-	}
-
-	/**
+  /**
+   * Order by rules.
+   */
+  ArrayList<OrderByRule<?>> oredrByRules = new ArrayList<OrderByRule<?>>();
+
+  /**
+   * Descending flag.
+   */
+  private boolean isDescending;
+  
+  /**
+   * collected rows.
+   */
+  private ArrayList<Map<String, Object>> rows;
+
+  /**
+   * Sort a batch of the rows of the window.
+   */
+  private boolean vectorized;
+
+  /**
+   * Rows buffered in vectorized mode.
+   */
+  private transient ColumnBatch batch = new ColumnBatch();
+
+  /**
+   * Add order by rule.
+   */
+  public void addOrderByRule(OrderByRule<?> rule)
+  {
+    oredrByRules.add(rule);
+  }
+
+  /**
    * @return isDescending
    */
   public boolean isDescending()
   {
-	  return isDescending;
+    return isDescending;
   }
 
-	/**
+  /**
    * @param set isDescending
    */
   public void setDescending(boolean isDescending)
   {
-	  this.isDescending = isDescending;
+    this.isDescending = isDescending;
   }
 
-	@Override
+  @Override
   public void process(Map<String, Object> tuple)
   {
-	  rows.add(tuple);
+    if (vectorized) {
+      batch.add(tuple);
+      return;
+    }
+    rows.add(tuple);
   }
 
   @Override
   public void beginWindow(long arg0)
   {
     rows = new ArrayList<Map<String, Object>>();
+    batch.clear();
   }
 
   @Override
   public void endWindow()
   {
+    if (vectorized) {
+      sortBatch();
+      return;
+    }
     for (int i=0; i < oredrByRules.size(); i++) {
       rows = oredrByRules.get(i).sort(rows);
     }
@@ -110,6 +130,36 @@ public class OrderByOperator implements Operator, Unifier<Map<String, Object>>
     }
   }
 
+  /**
+   * Sort the buffered rows by each rule and emit them.
+   */
+  private void sortBatch()
+  {
+    int[] selection = batch.selectAll();
+    for (int i=0; i < oredrByRules.size(); i++) {
+      selection = oredrByRules.get(i).sort(batch, selection, selection.length);
+    }
+    if (isDescending) {
+      for (int i=0; i < selection.length; i++)  outport.emit(batch.getRow(selection[i]));
+    } else {
+      for (int i=selection.length-1; i >= 0;  i--)  outport.emit(batch.getRow(selection[i]));
+    }
+    batch.clear();
+  }
+
+  public boolean isVectorized()
+  {
+    return vectorized;
+  }
+
+  /**
+   * @param vectorized sort a batch of the rows of the window if true.
+   */
+  public void setVectorized(boolean vectorized)
+  {
+    this.vectorized = vectorized;
+  }
+
   @Override
   public void setup(OperatorContext arg0)
   {
@@ -131,7 +181,7 @@ public class OrderByOperator implements Operator, Unifier<Map<String, Object>>
     @Override
     public void process(Map<String, Object> tuple)
     {
-      rows.add(tuple);
+      OrderByOperator.this.process(tuple);
     }
   };
   
@@ -147,6 +197,7 @@ public class OrderByOperator implements Operator, Unifier<Map<String, Object>>
              unifier.addOrderByRule(oredrByRules.get(i));
            }
            unifier.setDescending(isDescending);
+           unifier.setVectorized(vectorized);
            return unifier;
          }
       };
@@ -16,6 +16,9 @@
 package com.datatorrent.lib.streamquery;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -73,6 +76,105 @@ public class OrderByRule<T extends Comparable>
     return result;
   }
 
+  /**
+   * Sort the selected rows of a batch like {@link #sort(ArrayList)}, used by the operators in vectorized mode. The
+   * rows are sorted by a long key per row: the value of an integral column, the ordered bits of the value of a floating
+   * point column or the rank of the value among the sorted distinct values of a dictionary encoded column.
+   * @return sorted selection, without the rows which don't have the column.
+   */
+  @SuppressWarnings("unchecked")
+  public int[] sort(ColumnBatch batch, int[] selection, int length)
+  {
+    ColumnBatch.Column column = batch.getColumn(columnName);
+    int[] sorted = new int[length];
+    int count = 0;
+    for (int i = 0; i < length; i++) {
+      int row = selection[i];
+      if (column.isNull(row)) {
+        if (column.isMissing(row)) {
+          continue;
+        }
+        return sortRows(batch, selection, length);
+      }
+      sorted[count++] = row;
+    }
+
+    long[] keys;
+    switch (column.getType()) {
+      case LONG:
+        keys = column.getLongs();
+        break;
+      case DOUBLE:
+        keys = new long[batch.size()];
+        double[] doubles = column.getDoubles();
+        for (int i = 0; i < count; i++) {
+          long bits = Double.doubleToLongBits(doubles[sorted[i]]);
+          keys[sorted[i]] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+        break;
+      default:
+        keys = new long[batch.size()];
+        List<Object> dictionary = column.getDictionary();
+        T[] values = (T[])dictionary.toArray(new Comparable[dictionary.size()]);
+        Arrays.sort(values);
+        long[] ranks = new long[values.length];
+        long rank = 0;
+        for (int i = 0; i < values.length; i++) {
+          if (i > 0 && values[i].compareTo(values[i - 1]) != 0) {
+            rank++;
+          }
+          ranks[column.codeOf(values[i])] = rank;
+        }
+        int[] codes = column.getCodes();
+        for (int i = 0; i < count; i++) {
+          keys[sorted[i]] = ranks[codes[sorted[i]]];
+        }
+    }
+
+    sorted = Arrays.copyOf(sorted, count);
+    mergeSort(sorted, Arrays.copyOf(sorted, count), 0, count, keys);
+    return sorted;
+  }
+
+  /**
+   * Sort the rows of the selection with {@link #sort(ArrayList)}, for the columns with null values.
+   */
+  private int[] sortRows(ColumnBatch batch, int[] selection, int length)
+  {
+    IdentityHashMap<Map<String, Object>, Integer> indexes = new IdentityHashMap<Map<String, Object>, Integer>();
+    for (int i = 0; i < length; i++) {
+      indexes.put(batch.getRow(selection[i]), selection[i]);
+    }
+    ArrayList<Map<String, Object>> rows = sort(batch.getRows(selection, 0, length));
+    int[] sorted = new int[rows.size()];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = indexes.get(rows.get(i));
+    }
+    return sorted;
+  }
+
+  /**
+   * Stable sort of the rows in [from, to) of source into target by key, source and target start with the same rows.
+   */
+  private static void mergeSort(int[] target, int[] source, int from, int to, long[] keys)
+  {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(source, target, from, middle, keys);
+    mergeSort(source, target, middle, to, keys);
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < middle && keys[source[left]] <= keys[source[right]])) {
+        target[i] = source[left++];
+      } else {
+        target[i] = source[right++];
+      }
+    }
+  }
+
   /**
    * @return the columnName
    */
@@ -41,26 +41,12 @@ public class OuterJoinOperator extends InnerJoinOperator
     // full outer join
     if (isFullJoin) {
       for (int i = 0; i < table1.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table2.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(i), table2.get(j)))) {
-            merged = true;
-          }
-        }
-        if (!merged) {
+        if (!hasJoinRow2(table1.get(i))) {
           joinRows(table1.get(i), null);
         }
       }
       for (int i = 0; i < table2.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table1.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(j), table2.get(i)))) {
-            merged = true;
-          }
-        }
-        if (!merged) { // only output non merged rows
+        if (!hasJoinRow1(table2.get(i))) { // only output non merged rows
           joinRows(null, table2.get(i));
         }
       }
@@ -70,27 +56,13 @@ public class OuterJoinOperator extends InnerJoinOperator
     // left or right join
     if (isLeftJoin) {
       for (int i = 0; i < table1.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table2.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(i), table2.get(j)))) {
-            merged = true;
-          }
-        }
-        if (!merged) {
+        if (!hasJoinRow2(table1.get(i))) {
           joinRows(table1.get(i), null);
         }
       }
     } else {
       for (int i = 0; i < table2.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table1.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(j), table2.get(i)))) {
-            merged = true;
-          }
-        }
-        if (!merged) { // only output non merged rows
+        if (!hasJoinRow1(table2.get(i))) { // only output non merged rows
           joinRows(null, table2.get(i));
         }
       }
@@ -38,6 +38,7 @@ import com.datatorrent.lib.streamquery.function.FunctionIndex;
  * <br>
  * <b> Properties : </b> <br>
  * <b> functions : </b> Sql function for rows. <br>
+ * <b> vectorized : </b> Buffer rows in a {@link ColumnBatch} and apply functions over the batch. <br>
  * @displayName Select Function
  * @category Streamquery
  * @tags sql top, sql limit, sql select operator
@@ -56,6 +57,16 @@ public class SelectFunctionOperator implements Operator
    */
   private ArrayList<FunctionIndex> functions = new ArrayList<FunctionIndex>();
 
+  /**
+   * Apply functions over a batch of the rows of the window.
+   */
+  private boolean vectorized;
+
+  /**
+   * Rows buffered in vectorized mode.
+   */
+  private transient ColumnBatch batch = new ColumnBatch();
+
   /**
    * Input port that takes a map of &lt;string,object&gt;.
    */
@@ -65,6 +76,10 @@ public class SelectFunctionOperator implements Operator
     @Override
     public void process(Map<String, Object> row)
     {
+      if (vectorized) {
+        batch.add(row);
+        return;
+      }
       rows.add(row);
     }
   };
@@ -87,6 +102,7 @@ public class SelectFunctionOperator implements Operator
   public void beginWindow(long windowId)
   {
     rows = new ArrayList<Map<String, Object>>();
+    batch.clear();
   }
 
   @Override
@@ -94,9 +110,14 @@ public class SelectFunctionOperator implements Operator
   {
     if (functions.size() == 0) return;
     Map<String, Object>  collect = new HashMap<String, Object>();
+    int[] selection = vectorized ? batch.selectAll() : null;
     for (FunctionIndex function : functions) {
       try {
-        function.filter(rows, collect);
+        if (vectorized) {
+          function.filter(batch, selection, 0, selection.length, collect);
+        } else {
+          function.filter(rows, collect);
+        }
       } catch (Exception e) {
         e.printStackTrace();
         return;
@@ -118,4 +139,17 @@ public class SelectFunctionOperator implements Operator
   {
     functions.add(function);
   }
+
+  public boolean isVectorized()
+  {
+    return vectorized;
+  }
+
+  /**
+   * @param vectorized apply functions over a batch of the rows of the window if true.
+   */
+  public void setVectorized(boolean vectorized)
+  {
+    this.vectorized = vectorized;
+  }
 }
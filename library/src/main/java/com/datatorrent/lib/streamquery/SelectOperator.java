@@ -19,6 +19,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.validation.constraints.Min;
+
 import com.datatorrent.api.BaseOperator;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
@@ -42,6 +44,8 @@ import com.datatorrent.lib.streamquery.index.Index;
  * <b> Properties : <b> <br>
  * <b> condition : </b> Select condition for selecting rows. <br>
  * <b> columns : </b> Column names/aggregate functions for select. <br>
+ * <b> vectorized : </b> Buffer rows in a {@link ColumnBatch} and evaluate the condition over the batch. <br>
+ * <b> batchSize : </b> Maximum number of rows buffered in vectorized mode. <br>
  * <br>
  * @displayName Select
  * @category Streamquery
@@ -61,6 +65,22 @@ public class SelectOperator extends BaseOperator
    */
   private Condition condition = null;
 
+  /**
+   * Evaluate condition over batches of rows.
+   */
+  private boolean vectorized;
+
+  /**
+   * Maximum number of rows buffered in vectorized mode, rows are also processed at end window.
+   */
+  @Min(1)
+  private int batchSize = 1024;
+
+  /**
+   * Rows buffered in vectorized mode.
+   */
+  private transient ColumnBatch batch = new ColumnBatch();
+
   /**
    * add index.
    */
@@ -86,20 +106,82 @@ public class SelectOperator extends BaseOperator
     @Override
     public void process(Map<String, Object> tuple)
     {
-      if ((condition != null) && (!condition.isValidRow(tuple)))
-        return;
-      if (indexes.size() == 0) {
-        outport.emit(tuple);
+      if (vectorized) {
+        batch.add(tuple);
+        if (batch.size() >= batchSize) {
+          processBatch();
+        }
         return;
       }
-      Map<String, Object> result = new HashMap<String, Object>();
-      for (int i = 0; i < indexes.size(); i++) {
-        indexes.get(i).filter(tuple, result);
-      }
-      outport.emit(result);
+      if ((condition != null) && (!condition.isValidRow(tuple)))
+        return;
+      emitRow(tuple);
     }
   };
 
+  @Override
+  public void endWindow()
+  {
+    if (batch.size() > 0) {
+      processBatch();
+    }
+  }
+
+  /**
+   * Filter buffered rows and emit the valid ones.
+   */
+  private void processBatch()
+  {
+    int[] selection = batch.selectAll();
+    int length = selection.length;
+    if (condition != null) {
+      length = condition.filter(batch, selection, length);
+    }
+    for (int i = 0; i < length; i++) {
+      emitRow(batch.getRow(selection[i]));
+    }
+    batch.clear();
+  }
+
+  private void emitRow(Map<String, Object> tuple)
+  {
+    if (indexes.size() == 0) {
+      outport.emit(tuple);
+      return;
+    }
+    Map<String, Object> result = new HashMap<String, Object>();
+    for (int i = 0; i < indexes.size(); i++) {
+      indexes.get(i).filter(tuple, result);
+    }
+    outport.emit(result);
+  }
+
+  public boolean isVectorized()
+  {
+    return vectorized;
+  }
+
+  /**
+   * @param vectorized buffer rows and evaluate condition over batches of rows if true.
+   */
+  public void setVectorized(boolean vectorized)
+  {
+    this.vectorized = vectorized;
+  }
+
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  /**
+   * @param batchSize maximum number of rows buffered in vectorized mode.
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
   /**
    * Output port that emits a map of &lt;string,object&gt;.
    */
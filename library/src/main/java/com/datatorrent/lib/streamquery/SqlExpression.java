@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.Set;
+
+/**
+ * A typed expression of a statement compiled by {@link StreamingSqlParser}, evaluated over a row of values.
+ * <p>
+ * Values follow the types Derby uses for the results of the statement: INTEGER values are Integer, BIGINT values are
+ * Long, REAL values are Float, DOUBLE values are Double and VARCHAR values are String. Conditions evaluate to Boolean,
+ * null is unknown.
+ * </p>
+ */
+abstract class SqlExpression
+{
+  /**
+   * Types of the values, numeric types are in the order of precedence of the arithmetic operations.
+   */
+  enum Type
+  {
+    INTEGER, BIGINT, DECIMAL, REAL, DOUBLE, VARCHAR, BOOLEAN;
+
+    boolean isNumeric()
+    {
+      return ordinal() <= DOUBLE.ordinal();
+    }
+
+    boolean isIntegral()
+    {
+      return this == INTEGER || this == BIGINT;
+    }
+  }
+
+  final Type type;
+
+  SqlExpression(Type type)
+  {
+    this.type = type;
+  }
+
+  /**
+   * @param row values of the columns of the row.
+   * @return value of the expression, null for SQL NULL.
+   */
+  abstract Object evaluate(Object[] row);
+
+  /**
+   * Adds the indexes of the columns the expression reads, the arguments of aggregates are not included.
+   */
+  abstract void collectColumns(Set<Integer> columns);
+
+  static Type widerType(Type left, Type right)
+  {
+    return left.ordinal() >= right.ordinal() ? left : right;
+  }
+
+  static class Literal extends SqlExpression
+  {
+    private final Object value;
+
+    Literal(Type type, Object value)
+    {
+      super(type);
+      this.value = value;
+    }
+
+    @Override
+    Object evaluate(Object[] row)
+    {
+      return value;
+    }
+
+    @Override
+    void collectColumns(Set<Integer> columns)
+    {
+    }
+  }
+
+  /**
+   * Value of a column of the row, also used for the results of the aggregates which are appended to the row.
+   */
+  static class ColumnRef extends SqlExpression
+  {
+    final int index;
+
+    ColumnRef(Type type, int index)
+    {
+      super(type);
+      this.index = index;
+    }
+
+    @Override
+    Object evaluate(Object[] row)
+    {
+      return row[index];
+    }
+
+    @Override
+    void collectColumns(Set<Integer> columns)
+    {
+      columns.add(index);
+    }
+  }
+
+  static class AggregateRef extends ColumnRef
+  {
+    AggregateRef(Type type, int index)
+    {
+      super(type, index);
+    }
+
+    @Override
+    void collectColumns(Set<Integer> columns)
+    {
+    }
+  }
+
+  static class Arithmetic extends SqlExpression
+  {
+    private final char operator;
+    private final SqlExpression left;
+    private final SqlExpression right;
+
+    Arithmetic(char operator, SqlExpression left, SqlExpression right)
+    {
+      super(operator == '|' ? Type.VARCHAR : widerType(left.type, right.type));
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Object[] row)
+    {
+      Object leftValue = left.evaluate(row);
+      Object rightValue = right.evaluate(row);
+      if (leftValue == null || rightValue == null) {
+        return null;
+      }
+      if (operator == '|') {
+        return leftValue.toString() + rightValue;
+      }
+      Number l = (Number)leftValue;
+      Number r = (Number)rightValue;
+      switch (type) {
+        case INTEGER:
+          return toInteger(compute(l.longValue(), r.longValue()));
+        case BIGINT:
+          return compute(l.longValue(), r.longValue());
+        case REAL:
+          return (float)compute(l.floatValue(), r.floatValue());
+        default:
+          return compute(l.doubleValue(), r.doubleValue());
+      }
+    }
+
+    private long compute(long l, long r)
+    {
+      switch (operator) {
+        case '+':
+          return l + r;
+        case '-':
+          return l - r;
+        case '*':
+          return l * r;
+        default:
+          return l / r;
+      }
+    }
+
+    private double compute(double l, double r)
+    {
+      switch (operator) {
+        case '+':
+          return l + r;
+        case '-':
+          return l - r;
+        case '*':
+          return l * r;
+        default:
+          if (r == 0) {
+            throw new ArithmeticException("Attempt to divide by zero");
+          }
+          return l / r;
+      }
+    }
+
+    @Override
+    void collectColumns(Set<Integer> columns)
+    {
+      left.collectColumns(columns);
+      right.collectColumns(columns);
+    }
+  }
+
+  static Integer toInteger(long value)
+  {
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new ArithmeticException("INTEGER out of range: " + value);
+    }
+    return (int)value;
+  }
+
+  static class Negate extends SqlExpression
+  {
+    private final SqlExpression operand;
+
+    Negate(SqlExpression operand)
+    {
+      super(operand.type);
+      this.operand = operand;
+    }
+
+    @Override
+    Object evaluate(Object[] row)
+    {
+      Number value = (Number)operand.evaluate(row);
+      if (value == null) {
+        return null;
+      }
+      switch (type) {
+        case INTEGER:
+          return toInteger(-value.longValue());
+        case BIGINT:
+          return -value.longValue();
+        case REAL:
+          return -value.floatValue();
+        default:
+          return -value.doubleValue();
+      }
+    }
+
+    @Override
+    void collectColumns(Set<Integer> columns)
+    {
+      operand.collectColumns(columns);
+    }
+  }
+
+  /**
+   * Comparison of numeric values with each other or of VARCHAR values with each other.
+   */
+  static class Comparison extends SqlExpression
+  {
+    private final String operator;
+    private final SqlExpression left;
+    private final SqlExpression right;
+    private final boolean integral;
+
+    Comparison(String operator, SqlExpression left, SqlExpression right)
+    {
+      super(Type.BOOLEAN);
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+      integral = left.type.isIntegral() && right.type.isIntegral();
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Override
+    Object evaluate(Object[] row)
+    {
+      Object leftValue = left.evaluate(row);
+      Object rightValue = right.evaluate(row);
+      if (leftValue == null || rightValue == null) {
+        return null;
+      }
+      int compare;
+      if (left.type == Type.VARCHAR) {
+        compare = ((Comparable)leftValue).compareTo(rightValue);
+      }
+      else if (integral) {
+        long l = ((Number)leftValue).longValue();
+        long r = ((Number)rightValue).longValue();
+        compare = l < r ? -1 : (l == r ? 0 : 1);
+      }
+      else {
+        compare = Double.compare(((Number)leftValue).doubleValue(), ((Number)rightValue).doubleValue());
+      }
+      if (operator.equals("=")) {
+        return compare == 0;
+      }
+      if (operator.equals("<>")) {
+        return compare != 0;
+      }
+      if (operator.equals("<")) {
+        return compare < 0;
+      }
+      if (operator.equals("<=")) {
+        return compare <= 0;
+      }
+      if (operator.equals(">")) {
+        return compare > 0;
+      }
+      return compare >= 0;
+    }
+
+    @Override
+    void collectColumns(Set<Integer> columns)
+    {
+      left.collectColumns(columns);
+      right.collectColumns(columns);
+    }
+  }
+
+  /**
+   * AND/OR with three valued logic.
+   */
+  static class Logical extends SqlExpression
+  {
+    private final boolean and;
+    private final SqlExpression left;
+    private final SqlExpression right;
+
+    Logical(boolean and, SqlExpression left, SqlExpression right)
+    {
+      super(Type.BOOLEAN);
+      this.and = and;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object evaluate(Object[] row)
+    {
+      Boolean leftValue = (Boolean)left.evaluate(row);
+      if (leftValue != null && leftValue != and) {
+        return leftValue;
+      }
+      Boolean rightValue = (Boolean)right.evaluate(row);
+      if (rightValue != null && rightValue != and) {
+        return rightValue;
+      }
+      return leftValue == null || rightValue == null ? null : and;
+    }
+
+    @Override
+    void collectColumns(Set<Integer> columns)
+    {
+      left.collectColumns(columns);
+      right.collectColumns(columns);
+    }
+  }
+
+  static class Not extends SqlExpression
+  {
+    private final SqlExpression operand;
+
+    Not(SqlExpression operand)
+    {
+      super(Type.BOOLEAN);
+      this.operand = operand;
+    }
+
+    @Override
+    Object evaluate(Object[] row)
+    {
+      Boolean value = (Boolean)operand.evaluate(row);
+      return value == null ? null : !value;
+    }
+
+    @Override
+    void collectColumns(Set<Integer> columns)
+    {
+      operand.collectColumns(columns);
+    }
+  }
+
+  static class IsNull extends SqlExpression
+  {
+    private final SqlExpression operand;
+    private final boolean negated;
+
+    IsNull(SqlExpression operand, boolean negated)
+    {
+      super(Type.BOOLEAN);
+      this.operand = operand;
+      this.negated = negated;
+    }
+
+    @Override
+    Object evaluate(Object[] row)
+    {
+      return (operand.evaluate(row) == null) != negated;
+    }
+
+    @Override
+    void collectColumns(Set<Integer> columns)
+    {
+      operand.collectColumns(columns);
+    }
+  }
+}
@@ -0,0 +1,610 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+
+import com.datatorrent.lib.streamquery.SqlExpression.Type;
+import com.datatorrent.lib.streamquery.StreamingSqlQuery.Aggregate;
+import com.datatorrent.lib.streamquery.StreamingSqlQuery.AggregateFunction;
+import com.datatorrent.lib.streamquery.StreamingSqlQuery.Table;
+
+/**
+ * Compiles the SELECT statements of {@link DerbySqlStreamOperator} which can be executed without Derby.
+ * <p>
+ * The supported subset is
+ * <pre>
+ * SELECT * | item [, item]... FROM SESSION.table [alias] [WHERE condition] [GROUP BY column [, column]...]
+ * </pre>
+ * where the items are column references, arithmetic expressions (+, -, *, /, ||) of columns and literals, or COUNT,
+ * SUM, AVG, MIN, MAX aggregates of them with an optional [AS] alias, and the condition combines comparisons (=, &lt;&gt;,
+ * !=, &lt;, &lt;=, &gt;, &gt;=), BETWEEN and IS [NOT] NULL predicates with AND, OR and NOT. The columns of a table
+ * must be VARCHAR, INTEGER, SMALLINT, BIGINT, REAL, FLOAT or DOUBLE. {@link #parse(String)} throws an
+ * UnsupportedOperationException for any other statement, including joins, parameters and DISTINCT, HAVING and ORDER
+ * BY clauses, which are executed by Derby.
+ * </p>
+ */
+class StreamingSqlParser
+{
+  private static final ImmutableSet<String> KEYWORDS = ImmutableSet.of("SELECT", "FROM", "WHERE", "GROUP", "BY", "AS",
+    "AND", "OR", "NOT", "IS", "NULL", "BETWEEN", "HAVING", "ORDER", "JOIN", "ON", "DISTINCT", "ALL", "UNION", "INNER",
+    "LEFT", "RIGHT", "OUTER", "FETCH", "OFFSET", "FOR", "WITH", "IN", "LIKE", "CASE", "EXISTS", "CAST");
+
+  private final List<Table> tables;
+  private List<String> tokens;
+  private int position;
+  private Table table;
+  private int tableIndex;
+  private String tableAlias;
+  private List<Aggregate> aggregates;
+  private boolean aggregatesAllowed;
+
+  /**
+   * @param tables input tables by input index, null for the unused inputs.
+   */
+  StreamingSqlParser(List<Table> tables)
+  {
+    this.tables = tables;
+  }
+
+  /**
+   * Compiles a statement.
+   * @throws UnsupportedOperationException if the statement is not in the supported subset.
+   */
+  StreamingSqlQuery parse(String statement)
+  {
+    tokens = tokenize(statement);
+    aggregates = new ArrayList<Aggregate>();
+
+    // the table is resolved first, the columns of the select items refer to it
+    if (!"SELECT".equals(keyword(0))) {
+      unsupported("not a SELECT statement");
+    }
+    int depth = 0;
+    position = -1;
+    for (int i = 1; i < tokens.size() && position < 0; i++) {
+      String token = tokens.get(i);
+      if (token.equals("(")) {
+        depth++;
+      }
+      else if (token.equals(")")) {
+        depth--;
+      }
+      else if (depth == 0 && "FROM".equals(keyword(i))) {
+        position = i + 1;
+      }
+    }
+    if (position < 0) {
+      unsupported("no FROM clause");
+    }
+    parseTable();
+    int fromClauseEnd = position;
+
+    position = 1;
+    List<SqlExpression> projections = new ArrayList<SqlExpression>();
+    List<String> names = new ArrayList<String>();
+    if (accept("*")) {
+      for (int i = 0; i < table.columns.length; i++) {
+        projections.add(new SqlExpression.ColumnRef(columnType(i), i));
+        names.add(table.columns[i].toUpperCase(Locale.ENGLISH));
+      }
+    }
+    else {
+      aggregatesAllowed = true;
+      do {
+        SqlExpression projection = parseExpression();
+        if (projection.type == Type.BOOLEAN || projection.type == Type.DECIMAL) {
+          unsupported("select item of type " + projection.type);
+        }
+        String name = String.valueOf(projections.size() + 1);
+        if (acceptKeyword("AS")) {
+          name = identifier();
+        }
+        else if (position < tokens.size() && isIdentifier(tokens.get(position))) {
+          name = identifier();
+        }
+        else if (projection instanceof SqlExpression.ColumnRef
+            && !(projection instanceof SqlExpression.AggregateRef)) {
+          name = table.columns[((SqlExpression.ColumnRef)projection).index];
+        }
+        projections.add(projection);
+        names.add(name.toUpperCase(Locale.ENGLISH));
+      }
+      while (accept(","));
+      aggregatesAllowed = false;
+    }
+    if (!"FROM".equals(keyword(position))) {
+      unsupported("unexpected " + token());
+    }
+
+    position = fromClauseEnd;
+    SqlExpression condition = null;
+    if (acceptKeyword("WHERE")) {
+      condition = parseExpression();
+      if (condition.type != Type.BOOLEAN) {
+        unsupported("WHERE condition is not a boolean expression");
+      }
+    }
+    List<Integer> groupColumns = new ArrayList<Integer>();
+    if (acceptKeyword("GROUP")) {
+      expectKeyword("BY");
+      do {
+        SqlExpression column = parsePrimary();
+        if (!(column instanceof SqlExpression.ColumnRef) || column instanceof SqlExpression.AggregateRef) {
+          unsupported("GROUP BY expression");
+        }
+        groupColumns.add(((SqlExpression.ColumnRef)column).index);
+      }
+      while (accept(","));
+    }
+    if (position < tokens.size()) {
+      unsupported("unexpected " + token());
+    }
+
+    if (!aggregates.isEmpty() || !groupColumns.isEmpty()) {
+      // the other columns of an aggregate query are not the same for all the rows of a group
+      Set<Integer> columns = new HashSet<Integer>();
+      for (SqlExpression projection : projections) {
+        projection.collectColumns(columns);
+      }
+      columns.removeAll(groupColumns);
+      if (!columns.isEmpty()) {
+        unsupported("column which is not in GROUP BY");
+      }
+    }
+
+    int[] groupColumnIndexes = new int[groupColumns.size()];
+    for (int i = 0; i < groupColumnIndexes.length; i++) {
+      groupColumnIndexes[i] = groupColumns.get(i);
+    }
+    return new StreamingSqlQuery(tableIndex, table.columns.length, condition,
+      projections.toArray(new SqlExpression[projections.size()]), names.toArray(new String[names.size()]), aggregates,
+      groupColumnIndexes);
+  }
+
+  private void parseTable()
+  {
+    String schema = null;
+    String name = identifier();
+    if (accept(".")) {
+      schema = name;
+      name = identifier();
+    }
+    // the input tables are temporary tables of the SESSION schema
+    if (schema == null || !schema.equalsIgnoreCase("SESSION")) {
+      unsupported("table " + name + " outside of the SESSION schema");
+    }
+    table = null;
+    for (int i = 0; i < tables.size(); i++) {
+      if (tables.get(i) != null && tables.get(i).name.equalsIgnoreCase(name)) {
+        table = tables.get(i);
+        tableIndex = i;
+      }
+    }
+    if (table == null) {
+      unsupported("table " + name);
+    }
+    tableAlias = null;
+    if (acceptKeyword("AS") || (position < tokens.size() && isIdentifier(tokens.get(position)))) {
+      tableAlias = identifier();
+    }
+    if (accept(",")) {
+      unsupported("join");
+    }
+  }
+
+  private SqlExpression parseExpression()
+  {
+    SqlExpression left = parseAnd();
+    while (acceptKeyword("OR")) {
+      left = new SqlExpression.Logical(false, checkBoolean(left), checkBoolean(parseAnd()));
+    }
+    return left;
+  }
+
+  private SqlExpression parseAnd()
+  {
+    SqlExpression left = parseNot();
+    while (acceptKeyword("AND")) {
+      left = new SqlExpression.Logical(true, checkBoolean(left), checkBoolean(parseNot()));
+    }
+    return left;
+  }
+
+  private SqlExpression parseNot()
+  {
+    if (acceptKeyword("NOT")) {
+      return new SqlExpression.Not(checkBoolean(parseNot()));
+    }
+    return parsePredicate();
+  }
+
+  private SqlExpression parsePredicate()
+  {
+    SqlExpression left = parseAdditive();
+    if (acceptKeyword("IS")) {
+      boolean negated = acceptKeyword("NOT");
+      expectKeyword("NULL");
+      return new SqlExpression.IsNull(left, negated);
+    }
+    boolean negated = acceptKeyword("NOT");
+    if (acceptKeyword("BETWEEN")) {
+      SqlExpression low = parseAdditive();
+      expectKeyword("AND");
+      SqlExpression high = parseAdditive();
+      SqlExpression between = new SqlExpression.Logical(true, comparison(">=", left, low), comparison("<=", left, high));
+      return negated ? new SqlExpression.Not(between) : between;
+    }
+    if (negated) {
+      unsupported("NOT " + token());
+    }
+    String token = position < tokens.size() ? tokens.get(position) : "";
+    if (token.equals("=") || token.equals("<>") || token.equals("!=") || token.equals("<") || token.equals("<=")
+        || token.equals(">") || token.equals(">=")) {
+      position++;
+      return comparison(token.equals("!=") ? "<>" : token, left, parseAdditive());
+    }
+    return left;
+  }
+
+  private SqlExpression comparison(String operator, SqlExpression left, SqlExpression right)
+  {
+    boolean numeric = left.type.isNumeric() && right.type.isNumeric();
+    if (!numeric && !(left.type == Type.VARCHAR && right.type == Type.VARCHAR)) {
+      unsupported("comparison of " + left.type + " and " + right.type);
+    }
+    return new SqlExpression.Comparison(operator, left, right);
+  }
+
+  private SqlExpression parseAdditive()
+  {
+    SqlExpression left = parseMultiplicative();
+    while (true) {
+      if (accept("||")) {
+        SqlExpression right = parseMultiplicative();
+        if (left.type != Type.VARCHAR || right.type != Type.VARCHAR) {
+          unsupported("concatenation of " + left.type + " and " + right.type);
+        }
+        left = new SqlExpression.Arithmetic('|', left, right);
+      }
+      else if (accept("+")) {
+        left = arithmetic('+', left, parseMultiplicative());
+      }
+      else if (accept("-")) {
+        left = arithmetic('-', left, parseMultiplicative());
+      }
+      else {
+        return left;
+      }
+    }
+  }
+
+  private SqlExpression parseMultiplicative()
+  {
+    SqlExpression left = parseUnary();
+    while (true) {
+      if (accept("*")) {
+        left = arithmetic('*', left, parseUnary());
+      }
+      else if (accept("/")) {
+        left = arithmetic('/', left, parseUnary());
+      }
+      else {
+        return left;
+      }
+    }
+  }
+
+  private SqlExpression arithmetic(char operator, SqlExpression left, SqlExpression right)
+  {
+    if (!left.type.isNumeric() || !right.type.isNumeric()) {
+      unsupported("arithmetic on " + left.type + " and " + right.type);
+    }
+    return new SqlExpression.Arithmetic(operator, left, right);
+  }
+
+  private SqlExpression parseUnary()
+  {
+    if (accept("-")) {
+      SqlExpression operand = parseUnary();
+      if (!operand.type.isNumeric()) {
+        unsupported("negation of " + operand.type);
+      }
+      return new SqlExpression.Negate(operand);
+    }
+    accept("+");
+    return parsePrimary();
+  }
+
+  private SqlExpression parsePrimary()
+  {
+    if (position >= tokens.size()) {
+      unsupported("unexpected end of statement");
+    }
+    String token = tokens.get(position);
+    if (accept("(")) {
+      SqlExpression expression = parseExpression();
+      expect(")");
+      return expression;
+    }
+    if (token.startsWith("'")) {
+      position++;
+      return new SqlExpression.Literal(Type.VARCHAR, token.substring(1, token.length() - 1).replace("''", "'"));
+    }
+    if (Character.isDigit(token.charAt(0)) || token.charAt(0) == '.') {
+      position++;
+      return numericLiteral(token);
+    }
+    String keyword = keyword(position);
+    for (AggregateFunction function : AggregateFunction.values()) {
+      if (function.name().equals(keyword) && position + 1 < tokens.size() && tokens.get(position + 1).equals("(")) {
+        position += 2;
+        return parseAggregate(function);
+      }
+    }
+    if (!isIdentifier(token)) {
+      unsupported("unexpected " + token);
+    }
+    return parseColumn();
+  }
+
+  private SqlExpression numericLiteral(String token)
+  {
+    try {
+      if (token.indexOf('e') >= 0 || token.indexOf('E') >= 0) {
+        return new SqlExpression.Literal(Type.DOUBLE, Double.valueOf(token));
+      }
+      if (token.indexOf('.') >= 0) {
+        return new SqlExpression.Literal(Type.DECIMAL, Double.valueOf(token));
+      }
+      long value = Long.parseLong(token);
+      if (value <= Integer.MAX_VALUE) {
+        return new SqlExpression.Literal(Type.INTEGER, (int)value);
+      }
+      return new SqlExpression.Literal(Type.BIGINT, value);
+    }
+    catch (NumberFormatException ex) {
+      throw new UnsupportedOperationException("literal " + token, ex);
+    }
+  }
+
+  private SqlExpression parseAggregate(AggregateFunction function)
+  {
+    if (!aggregatesAllowed) {
+      unsupported("aggregate outside of the select items");
+    }
+    SqlExpression argument = null;
+    if (function == AggregateFunction.COUNT && accept("*")) {
+      expect(")");
+    }
+    else {
+      if ("DISTINCT".equals(keyword(position)) || "ALL".equals(keyword(position))) {
+        unsupported(function + " " + keyword(position));
+      }
+      aggregatesAllowed = false;
+      argument = parseAdditive();
+      aggregatesAllowed = true;
+      expect(")");
+      boolean numeric = argument.type.isNumeric() && argument.type != Type.DECIMAL;
+      boolean comparable = argument.type == Type.VARCHAR && function != AggregateFunction.SUM
+          && function != AggregateFunction.AVG;
+      if (!numeric && !comparable) {
+        unsupported(function + " of " + argument.type);
+      }
+    }
+    Aggregate aggregate = new Aggregate(function, argument);
+    aggregates.add(aggregate);
+    return new SqlExpression.AggregateRef(aggregate.type, table.columns.length + aggregates.size() - 1);
+  }
+
+  private SqlExpression parseColumn()
+  {
+    List<String> parts = new ArrayList<String>();
+    parts.add(identifier());
+    while (accept(".")) {
+      parts.add(identifier());
+    }
+    String name = parts.get(parts.size() - 1);
+    if (parts.size() > 3
+        || (parts.size() == 3 && !parts.get(0).equalsIgnoreCase("SESSION"))
+        || (parts.size() >= 2 && !isTable(parts.get(parts.size() - 2), parts.size() == 3))) {
+      unsupported("column " + parts);
+    }
+    for (int i = 0; i < table.columns.length; i++) {
+      if (table.columns[i].equalsIgnoreCase(name)) {
+        return new SqlExpression.ColumnRef(columnType(i), i);
+      }
+    }
+    unsupported("column " + name);
+    return null;
+  }
+
+  private boolean isTable(String qualifier, boolean schemaQualified)
+  {
+    if (tableAlias != null) {
+      return !schemaQualified && qualifier.equalsIgnoreCase(tableAlias);
+    }
+    return qualifier.equalsIgnoreCase(table.name);
+  }
+
+  private Type columnType(int index)
+  {
+    if (table.types[index] == null) {
+      unsupported("type of column " + table.columns[index]);
+    }
+    return table.types[index];
+  }
+
+  private SqlExpression checkBoolean(SqlExpression expression)
+  {
+    if (expression.type != Type.BOOLEAN) {
+      unsupported("logical operation on " + expression.type);
+    }
+    return expression;
+  }
+
+  private String token()
+  {
+    return position < tokens.size() ? tokens.get(position) : "end of statement";
+  }
+
+  private String keyword(int index)
+  {
+    if (index >= tokens.size()) {
+      return null;
+    }
+    String keyword = tokens.get(index).toUpperCase(Locale.ENGLISH);
+    return KEYWORDS.contains(keyword) || isAggregate(keyword) ? keyword : null;
+  }
+
+  private static boolean isAggregate(String keyword)
+  {
+    for (AggregateFunction function : AggregateFunction.values()) {
+      if (function.name().equals(keyword)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isIdentifier(String token)
+  {
+    char first = token.charAt(0);
+    return (Character.isLetter(first) || first == '_') && !KEYWORDS.contains(token.toUpperCase(Locale.ENGLISH));
+  }
+
+  private String identifier()
+  {
+    if (position >= tokens.size() || !isIdentifier(tokens.get(position))) {
+      unsupported("expected identifier at " + token());
+    }
+    return tokens.get(position++);
+  }
+
+  private boolean accept(String symbol)
+  {
+    if (position < tokens.size() && tokens.get(position).equals(symbol)) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(String symbol)
+  {
+    if (!accept(symbol)) {
+      unsupported("expected " + symbol + " at " + token());
+    }
+  }
+
+  private boolean acceptKeyword(String keyword)
+  {
+    if (keyword.equals(keyword(position))) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expectKeyword(String keyword)
+  {
+    if (!acceptKeyword(keyword)) {
+      unsupported("expected " + keyword + " at " + token());
+    }
+  }
+
+  private static void unsupported(String reason)
+  {
+    throw new UnsupportedOperationException(reason);
+  }
+
+  /**
+   * Splits a statement into identifiers, numbers, quoted strings and symbols. Quoted identifiers, parameters and
+   * comments are not supported.
+   */
+  static List<String> tokenize(String statement)
+  {
+    List<String> tokens = new ArrayList<String>();
+    int i = 0;
+    int length = statement.length();
+    while (i < length) {
+      char c = statement.charAt(i);
+      int start = i;
+      if (Character.isWhitespace(c)) {
+        i++;
+        continue;
+      }
+      if (Character.isLetter(c) || c == '_') {
+        while (i < length && (Character.isLetterOrDigit(statement.charAt(i)) || statement.charAt(i) == '_'
+            || statement.charAt(i) == '$')) {
+          i++;
+        }
+      }
+      else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(statement.charAt(i + 1)))) {
+        while (i < length && (Character.isDigit(statement.charAt(i)) || statement.charAt(i) == '.')) {
+          i++;
+        }
+        if (i < length && (statement.charAt(i) == 'e' || statement.charAt(i) == 'E')) {
+          i++;
+          if (i < length && (statement.charAt(i) == '+' || statement.charAt(i) == '-')) {
+            i++;
+          }
+          while (i < length && Character.isDigit(statement.charAt(i))) {
+            i++;
+          }
+        }
+      }
+      else if (c == '\'') {
+        i++;
+        while (true) {
+          if (i >= length) {
+            unsupported("unterminated string");
+          }
+          if (statement.charAt(i) == '\'') {
+            if (i + 1 < length && statement.charAt(i + 1) == '\'') {
+              i += 2;
+              continue;
+            }
+            i++;
+            break;
+          }
+          i++;
+        }
+      }
+      else if (statement.startsWith("--", i) || statement.startsWith("/*", i)) {
+        unsupported("comment");
+      }
+      else if (i + 1 < length && (statement.startsWith("<>", i) || statement.startsWith("!=", i)
+          || statement.startsWith("<=", i) || statement.startsWith(">=", i) || statement.startsWith("||", i))) {
+        i += 2;
+      }
+      else if ("(),.*+-/=<>".indexOf(c) >= 0) {
+        i++;
+      }
+      else {
+        unsupported("character " + c);
+      }
+      tokens.add(statement.substring(start, i));
+    }
+    return tokens;
+  }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.datatorrent.lib.streamquery.AbstractSqlStreamOperator.InputSchema;
+import com.datatorrent.lib.streamquery.AbstractSqlStreamOperator.InputSchema.ColumnInfo;
+
+/**
+ * A SELECT statement over one input table, compiled by {@link StreamingSqlParser} and executed incrementally.
+ * <p>
+ * The rows of a window are filtered by the WHERE condition as they arrive. Without aggregates the projected rows are
+ * buffered, otherwise the aggregates of the groups are updated and only the first row of each group is kept. The
+ * results are returned at the end of the window in the order Derby returns them, groups are ordered by their keys.
+ * </p>
+ */
+class StreamingSqlQuery
+{
+  /**
+   * Columns of an input table with the types of their values.
+   */
+  static class Table
+  {
+    private static final Pattern FLOAT_PRECISION = Pattern.compile("float\\s*\\(\\s*(\\d+)\\s*\\)");
+
+    final String name;
+    final String[] columns;
+    /**
+     * Type of each column, null if the SQL type is not supported.
+     */
+    final SqlExpression.Type[] types;
+
+    Table(InputSchema inputSchema)
+    {
+      name = inputSchema.name;
+      columns = new String[inputSchema.columnInfoMap.size()];
+      types = new SqlExpression.Type[columns.length];
+      int i = 0;
+      // same order as the columns of the table created by DerbySqlStreamOperator
+      for (Map.Entry<String, ColumnInfo> entry : inputSchema.columnInfoMap.entrySet()) {
+        columns[i] = entry.getKey();
+        types[i++] = toType(entry.getValue().type);
+      }
+    }
+
+    static SqlExpression.Type toType(String sqlType)
+    {
+      String type = sqlType.trim().toLowerCase(Locale.ENGLISH);
+      if (type.startsWith("varchar") || type.startsWith("long varchar") || type.startsWith("character varying")) {
+        return SqlExpression.Type.VARCHAR;
+      }
+      if (type.equals("int") || type.equals("integer") || type.equals("smallint")) {
+        return SqlExpression.Type.INTEGER;
+      }
+      if (type.equals("bigint")) {
+        return SqlExpression.Type.BIGINT;
+      }
+      if (type.equals("real")) {
+        return SqlExpression.Type.REAL;
+      }
+      if (type.equals("double") || type.equals("double precision") || type.equals("float")) {
+        return SqlExpression.Type.DOUBLE;
+      }
+      Matcher matcher = FLOAT_PRECISION.matcher(type);
+      if (matcher.matches()) {
+        return Integer.parseInt(matcher.group(1)) <= 23 ? SqlExpression.Type.REAL : SqlExpression.Type.DOUBLE;
+      }
+      return null;
+    }
+
+    /**
+     * Converts the values of a tuple to the types of the columns, from their string form like Derby does with the
+     * values bound to the insert statement.
+     */
+    Object[] toRow(Map<String, Object> tuple)
+    {
+      Object[] row = new Object[columns.length];
+      for (int i = 0; i < columns.length; i++) {
+        Object value = tuple.get(columns[i]);
+        if (value == null || types[i] == null) {
+          continue;
+        }
+        switch (types[i]) {
+          case VARCHAR:
+            row[i] = value.toString();
+            break;
+          case INTEGER:
+            row[i] = value instanceof Integer ? value : Integer.valueOf(value.toString().trim());
+            break;
+          case BIGINT:
+            row[i] = value instanceof Long ? value : Long.valueOf(value.toString().trim());
+            break;
+          case REAL:
+            row[i] = value instanceof Float ? value : Float.valueOf(value.toString().trim());
+            break;
+          default:
+            row[i] = value instanceof Double ? value : Double.valueOf(value.toString().trim());
+        }
+      }
+      return row;
+    }
+  }
+
+  enum AggregateFunction
+  {
+    COUNT, SUM, AVG, MIN, MAX
+  }
+
+  /**
+   * Aggregate of a select item, the argument is null for COUNT(*).
+   */
+  static class Aggregate
+  {
+    final AggregateFunction function;
+    final SqlExpression argument;
+    final SqlExpression.Type type;
+
+    Aggregate(AggregateFunction function, SqlExpression argument)
+    {
+      this.function = function;
+      this.argument = argument;
+      type = function == AggregateFunction.COUNT ? SqlExpression.Type.INTEGER : argument.type;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void update(Accumulator accumulator, Object[] row)
+    {
+      if (argument == null) {
+        accumulator.count++;
+        return;
+      }
+      Object value = argument.evaluate(row);
+      if (value == null) {
+        return;
+      }
+      accumulator.count++;
+      switch (function) {
+        case SUM:
+        case AVG:
+          if (type.isIntegral()) {
+            accumulator.longSum += ((Number)value).longValue();
+          }
+          else {
+            accumulator.doubleSum += ((Number)value).doubleValue();
+          }
+          break;
+        case MIN:
+          if (accumulator.value == null || ((Comparable)value).compareTo(accumulator.value) < 0) {
+            accumulator.value = value;
+          }
+          break;
+        case MAX:
+          if (accumulator.value == null || ((Comparable)value).compareTo(accumulator.value) > 0) {
+            accumulator.value = value;
+          }
+          break;
+        default:
+      }
+    }
+
+    Object result(Accumulator accumulator)
+    {
+      if (function == AggregateFunction.COUNT) {
+        return SqlExpression.toInteger(accumulator.count);
+      }
+      if (accumulator.count == 0) {
+        return null;
+      }
+      if (function == AggregateFunction.MIN || function == AggregateFunction.MAX) {
+        return accumulator.value;
+      }
+      boolean average = function == AggregateFunction.AVG;
+      switch (type) {
+        case INTEGER:
+          return SqlExpression.toInteger(average ? accumulator.longSum / accumulator.count : accumulator.longSum);
+        case BIGINT:
+          return average ? accumulator.longSum / accumulator.count : accumulator.longSum;
+        case REAL:
+          return (float)(average ? accumulator.doubleSum / accumulator.count : accumulator.doubleSum);
+        default:
+          return average ? accumulator.doubleSum / accumulator.count : accumulator.doubleSum;
+      }
+    }
+  }
+
+  /**
+   * Running state of an aggregate of a group.
+   */
+  static class Accumulator
+  {
+    long count;
+    long longSum;
+    double doubleSum;
+    Object value;
+  }
+
+  /**
+   * Orders group keys like Derby sorts them, null values last.
+   */
+  private static final Comparator<Object[]> KEY_COMPARATOR = new Comparator<Object[]>()
+  {
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Override
+    public int compare(Object[] key1, Object[] key2)
+    {
+      for (int i = 0; i < key1.length; i++) {
+        if (key1[i] == null || key2[i] == null) {
+          if (key1[i] != key2[i]) {
+            return key1[i] == null ? 1 : -1;
+          }
+          continue;
+        }
+        int compare = ((Comparable)key1[i]).compareTo(key2[i]);
+        if (compare != 0) {
+          return compare;
+        }
+      }
+      return 0;
+    }
+  };
+
+  /**
+   * Group of an aggregate query.
+   */
+  private static class Group
+  {
+    final Object[] row;
+    final Accumulator[] accumulators;
+
+    Group(Object[] row, int aggregateCount)
+    {
+      this.row = row;
+      accumulators = new Accumulator[aggregateCount];
+      for (int i = 0; i < aggregateCount; i++) {
+        accumulators[i] = new Accumulator();
+      }
+    }
+  }
+
+  final int tableIndex;
+  private final int columnCount;
+  private final SqlExpression condition;
+  private final SqlExpression[] projections;
+  private final String[] names;
+  private final Aggregate[] aggregates;
+  private final int[] groupColumns;
+  private final boolean aggregateQuery;
+
+  private final List<HashMap<String, Object>> results = new ArrayList<HashMap<String, Object>>();
+  private final TreeMap<Object[], Group> groups = new TreeMap<Object[], Group>(KEY_COMPARATOR);
+  private Group totals;
+
+  /**
+   * @param tableIndex index of the input of the table.
+   * @param columnCount number of columns of the table, the results of the aggregates follow the columns.
+   * @param condition WHERE condition, null if none.
+   * @param projections select items evaluated over the row with the results of the aggregates.
+   * @param names names of the result columns.
+   * @param aggregates aggregates of the select items.
+   * @param groupColumns indexes of the GROUP BY columns.
+   */
+  StreamingSqlQuery(int tableIndex, int columnCount, SqlExpression condition, SqlExpression[] projections,
+      String[] names, List<Aggregate> aggregates, int[] groupColumns)
+  {
+    this.tableIndex = tableIndex;
+    this.columnCount = columnCount;
+    this.condition = condition;
+    this.projections = projections;
+    this.names = names;
+    this.aggregates = aggregates.toArray(new Aggregate[aggregates.size()]);
+    this.groupColumns = groupColumns;
+    aggregateQuery = !aggregates.isEmpty() || groupColumns.length > 0;
+  }
+
+  /**
+   * Processes a row of the table.
+   */
+  void process(Object[] row)
+  {
+    if (condition != null && !Boolean.TRUE.equals(condition.evaluate(row))) {
+      return;
+    }
+    if (!aggregateQuery) {
+      results.add(project(row));
+      return;
+    }
+    Group group;
+    if (groupColumns.length == 0) {
+      if (totals == null) {
+        totals = new Group(row, aggregates.length);
+      }
+      group = totals;
+    }
+    else {
+      Object[] key = new Object[groupColumns.length];
+      for (int i = 0; i < key.length; i++) {
+        key[i] = row[groupColumns[i]];
+      }
+      group = groups.get(key);
+      if (group == null) {
+        group = new Group(row, aggregates.length);
+        groups.put(key, group);
+      }
+    }
+    for (int i = 0; i < aggregates.length; i++) {
+      aggregates[i].update(group.accumulators[i], row);
+    }
+  }
+
+  /**
+   * Returns the results of the window and resets the state of the query.
+   */
+  List<HashMap<String, Object>> endWindow()
+  {
+    if (aggregateQuery) {
+      if (groupColumns.length == 0) {
+        // an aggregate query without GROUP BY returns a row for an empty window too
+        results.add(projectGroup(totals != null ? totals : new Group(new Object[columnCount], aggregates.length)));
+        totals = null;
+      }
+      else {
+        for (Group group : groups.values()) {
+          results.add(projectGroup(group));
+        }
+        groups.clear();
+      }
+    }
+    List<HashMap<String, Object>> windowResults = new ArrayList<HashMap<String, Object>>(results);
+    results.clear();
+    return windowResults;
+  }
+
+  private HashMap<String, Object> projectGroup(Group group)
+  {
+    Object[] row = Arrays.copyOf(group.row, columnCount + aggregates.length);
+    for (int i = 0; i < aggregates.length; i++) {
+      row[columnCount + i] = aggregates[i].result(group.accumulators[i]);
+    }
+    return project(row);
+  }
+
+  private HashMap<String, Object> project(Object[] row)
+  {
+    HashMap<String, Object> result = new HashMap<String, Object>();
+    for (int i = 0; i < projections.length; i++) {
+      result.put(names[i], projections[i].evaluate(row));
+    }
+    return result;
+  }
+}
@@ -15,10 +15,13 @@
  */
 package com.datatorrent.lib.streamquery.condition;
 
+import java.util.List;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 /**
  *  A derivation of Condition that validates row by checking if the given column name value lies between given left,right range. <br>
  * <p>
@@ -79,6 +82,63 @@ public class BetweenCondition  extends Condition
     return true;
   }
 
+  /**
+   * Filter valid rows of a batch. Numeric columns are compared in place when the range values are of the class of the
+   * column values, the range of a dictionary encoded column is checked once per distinct value.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Override
+  public int filter(@NotNull ColumnBatch batch, @NotNull int[] selection, int length)
+  {
+    ColumnBatch.Column values = batch.getColumn(column);
+    boolean sameClass = leftValue.getClass() == values.getValueClass()
+        && rightValue.getClass() == values.getValueClass();
+    int count = 0;
+    if (values.getType() == ColumnBatch.ColumnType.LONG && sameClass) {
+      long[] longs = values.getLongs();
+      long left = ((Number)leftValue).longValue();
+      long right = ((Number)rightValue).longValue();
+      for (int i = 0; i < length; i++) {
+        int row = selection[i];
+        if (longs[row] >= left && longs[row] <= right && !values.isNull(row)) {
+          selection[count++] = row;
+        }
+      }
+    }
+    else if (values.getType() == ColumnBatch.ColumnType.DOUBLE && sameClass) {
+      double[] doubles = values.getDoubles();
+      double left = ((Number)leftValue).doubleValue();
+      double right = ((Number)rightValue).doubleValue();
+      for (int i = 0; i < length; i++) {
+        int row = selection[i];
+        // Double.compare orders like Double.compareTo and Float.compareTo
+        if (Double.compare(doubles[row], left) >= 0 && Double.compare(doubles[row], right) <= 0
+            && !values.isNull(row)) {
+          selection[count++] = row;
+        }
+      }
+    }
+    else if (values.getType() == ColumnBatch.ColumnType.DICTIONARY) {
+      List<Object> dictionary = values.getDictionary();
+      boolean[] valid = new boolean[dictionary.size()];
+      for (int code = 0; code < valid.length; code++) {
+        Comparable value = (Comparable)dictionary.get(code);
+        valid[code] = value.compareTo(leftValue) >= 0 && value.compareTo(rightValue) <= 0;
+      }
+      int[] codes = values.getCodes();
+      for (int i = 0; i < length; i++) {
+        int code = codes[selection[i]];
+        if (code >= 0 && valid[code]) {
+          selection[count++] = selection[i];
+        }
+      }
+    }
+    else {
+      return super.filter(batch, selection, length);
+    }
+    return count;
+  }
+
   /**
    * Must not be called. 
    */
@@ -15,10 +15,13 @@
  */
 package com.datatorrent.lib.streamquery.condition;
 
+import java.util.BitSet;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 /**
  * A derivation of Condition index that implements logical AND/OR select expression. <br>
  * <p>
@@ -87,6 +90,43 @@ public class CompoundCondition extends Condition
     }
   }
 
+  /**
+   * Filter valid rows of a batch, the right condition is evaluated on the rows left by the left condition like
+   * {@link #isValidRow(Map)} does.
+   */
+  @Override
+  public int filter(ColumnBatch batch, int[] selection, int length)
+  {
+    if (!logicalOr) {
+      return rightCondition.filter(batch, selection, leftCondition.filter(batch, selection, length));
+    }
+    int[] left = new int[length];
+    System.arraycopy(selection, 0, left, 0, length);
+    int leftLength = leftCondition.filter(batch, left, length);
+    BitSet valid = new BitSet(batch.size());
+    for (int i = 0; i < leftLength; i++) {
+      valid.set(left[i]);
+    }
+    int[] right = new int[length - leftLength];
+    int rightLength = 0;
+    for (int i = 0; i < length; i++) {
+      if (!valid.get(selection[i])) {
+        right[rightLength++] = selection[i];
+      }
+    }
+    rightLength = rightCondition.filter(batch, right, rightLength);
+    for (int i = 0; i < rightLength; i++) {
+      valid.set(right[i]);
+    }
+    int count = 0;
+    for (int i = 0; i < length; i++) {
+      if (valid.get(selection[i])) {
+        selection[count++] = selection[i];
+      }
+    }
+    return count;
+  }
+
   @Override
   public boolean isValidJoin(Map<String, Object> row1, Map<String, Object> row2)
   {
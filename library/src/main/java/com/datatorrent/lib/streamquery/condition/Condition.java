@@ -19,6 +19,8 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 /**
  * A base class for select condition for selecting or filtering the rows.&nbsp; Subclasses should provide the 
    implementation to filter valid rows and valid joins.
@@ -40,4 +42,24 @@ abstract public class Condition
    * Filter valid rows only.
    */
   public abstract boolean isValidJoin(@NotNull Map<String, Object> row1, Map<String, Object> row2);
+
+  /**
+   * Filter valid rows of a batch, used by the operators in vectorized mode. The valid rows are moved to the front of
+   * the selection in their order. Default implementation validates each row with {@link #isValidRow(Map)}, subclasses
+   * override it to evaluate the columns of the batch.
+   * @param batch buffered rows.
+   * @param selection indexes of the rows to filter.
+   * @param length number of indexes in the selection.
+   * @return number of valid rows.
+   */
+  public int filter(@NotNull ColumnBatch batch, @NotNull int[] selection, int length)
+  {
+    int count = 0;
+    for (int i = 0; i < length; i++) {
+      if (isValidRow(batch.getRow(selection[i]))) {
+        selection[count++] = selection[i];
+      }
+    }
+    return count;
+  }
 }
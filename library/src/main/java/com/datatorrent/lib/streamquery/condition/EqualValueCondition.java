@@ -18,6 +18,7 @@ package com.datatorrent.lib.streamquery.condition;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
 
 /**
  * An implementation of condition on column equality. 
@@ -75,6 +76,69 @@ public class EqualValueCondition extends Condition
     return true;
   }
 
+  /**
+   * Filter valid rows of a batch column by column.
+   */
+  @Override
+  public int filter(ColumnBatch batch, int[] selection, int length)
+  {
+    if (equalMap.containsValue(null)) {
+      return super.filter(batch, selection, length);
+    }
+    for (Map.Entry<String, Object> entry : equalMap.entrySet()) {
+      length = filterColumn(batch, entry.getKey(), entry.getValue(), selection, length);
+    }
+    return length;
+  }
+
+  private static int filterColumn(ColumnBatch batch, String name, Object expected, int[] selection, int length)
+  {
+    ColumnBatch.Column column = batch.getColumn(name);
+    int count = 0;
+    if (column.getType() == ColumnBatch.ColumnType.LONG && expected.getClass() == column.getValueClass()) {
+      long[] values = column.getLongs();
+      long value = ((Number)expected).longValue();
+      for (int i = 0; i < length; i++) {
+        int row = selection[i];
+        if (values[row] == value && !column.isNull(row)) {
+          selection[count++] = row;
+        }
+      }
+    }
+    else if (column.getType() == ColumnBatch.ColumnType.DOUBLE && expected.getClass() == column.getValueClass()) {
+      // bits are compared like Double.equals and Float.equals do
+      double[] values = column.getDoubles();
+      long bits = Double.doubleToLongBits(((Number)expected).doubleValue());
+      for (int i = 0; i < length; i++) {
+        int row = selection[i];
+        if (Double.doubleToLongBits(values[row]) == bits && !column.isNull(row)) {
+          selection[count++] = row;
+        }
+      }
+    }
+    else if (column.getType() == ColumnBatch.ColumnType.DICTIONARY) {
+      int[] codes = column.getCodes();
+      int code = column.codeOf(expected);
+      if (code < 0) {
+        return 0;
+      }
+      for (int i = 0; i < length; i++) {
+        if (codes[selection[i]] == code) {
+          selection[count++] = selection[i];
+        }
+      }
+    }
+    else {
+      for (int i = 0; i < length; i++) {
+        Object value = batch.getRow(selection[i]).get(name);
+        if (value != null && expected.equals(value)) {
+          selection[count++] = selection[i];
+        }
+      }
+    }
+    return count;
+  }
+
   /**
    * check valid join, not implemented
    * 
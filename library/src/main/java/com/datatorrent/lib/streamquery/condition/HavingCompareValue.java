@@ -20,6 +20,7 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
 import com.datatorrent.lib.streamquery.function.FunctionIndex;
 
 /**
@@ -71,4 +72,16 @@ public class HavingCompareValue<T extends Comparable>   extends HavingCondition
       return (compareType == compareValue.compareTo(computed));
   }
 
+  /**
+   * Validate aggregate of the selected rows of a batch.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public boolean isValidAggregate(@NotNull ColumnBatch batch, @NotNull int[] selection, int offset, int length)
+      throws Exception
+  {
+    Object computed = aggregateIndex.compute(batch, selection, offset, length);
+    return (compareType == compareValue.compareTo(computed));
+  }
+
 }
@@ -20,6 +20,7 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
 import com.datatorrent.lib.streamquery.function.FunctionIndex;
 
 /**
@@ -49,4 +50,14 @@ public abstract class HavingCondition
    *  Check if aggregate is valid.
    */
   abstract public boolean isValidAggregate(@NotNull ArrayList<Map<String, Object>> rows) throws Exception;
+
+  /**
+   *  Check if aggregate of the selected rows of a batch is valid, used by the operators in vectorized mode.
+   *  Default implementation checks the list of the selected rows.
+   */
+  public boolean isValidAggregate(@NotNull ColumnBatch batch, @NotNull int[] selection, int offset, int length)
+      throws Exception
+  {
+    return isValidAggregate(batch.getRows(selection, offset, length));
+  }
 }
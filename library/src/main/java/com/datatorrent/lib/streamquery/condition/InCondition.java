@@ -16,11 +16,14 @@
 package com.datatorrent.lib.streamquery.condition;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 /**
  * An implementation of condition class to check if a column value is in a given set of values.
  * <p>
@@ -60,6 +63,31 @@ public class InCondition extends Condition
     return inValues.contains(row.get(column));
   }
 
+  /**
+   * Filter valid rows of a batch, the set is checked once per distinct value of the column.
+   */
+  @Override
+  public int filter(@NotNull ColumnBatch batch, @NotNull int[] selection, int length)
+  {
+    ColumnBatch.Column values = batch.getDictionaryColumn(column);
+    List<Object> dictionary = values.getDictionary();
+    boolean[] valid = new boolean[dictionary.size()];
+    for (int code = 0; code < valid.length; code++) {
+      valid[code] = inValues.contains(dictionary.get(code));
+    }
+    boolean validNull = inValues.contains(null);
+    int[] codes = values.getCodes();
+    int count = 0;
+    for (int i = 0; i < length; i++) {
+      int row = selection[i];
+      int code = codes[row];
+      if (code >= 0 ? valid[code] : validNull && !values.isMissing(row)) {
+        selection[count++] = row;
+      }
+    }
+    return count;
+  }
+
   @Override
   public boolean isValidJoin(@NotNull Map<String, Object> row1, @NotNull Map<String, Object> row2)
   {
@@ -50,6 +50,16 @@ public class JoinColumnEqualCondition  extends Condition
     this.column2 = column2;
   }
   
+  public String getColumn1()
+  {
+    return column1;
+  }
+
+  public String getColumn2()
+  {
+    return column2;
+  }
+
   /**
    * Must never be called.
    */
@@ -22,6 +22,8 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 /**
  * An implementation of function index that implements average function semantics. <br>
  * <p>
@@ -60,6 +62,32 @@ public class AverageFunction  extends FunctionIndex
     return sum/rows.size();
   }
 
+  /**
+   * Compute average of the values of a numeric column in place.
+   */
+  @Override
+  public Object compute(@NotNull ColumnBatch batch, @NotNull int[] selection, int offset, int length) throws Exception
+  {
+    if (length == 0) return 0.0;
+    ColumnBatch.Column values = batch.getColumn(column);
+    if (values.getNullCount() > 0) return super.compute(batch, selection, offset, length);
+    double sum = 0.0;
+    if (values.getType() == ColumnBatch.ColumnType.LONG) {
+      long[] longs = values.getLongs();
+      for (int i = offset; i < offset + length; i++) {
+        sum += longs[selection[i]];
+      }
+    } else if (values.getType() == ColumnBatch.ColumnType.DOUBLE) {
+      double[] doubles = values.getDoubles();
+      for (int i = offset; i < offset + length; i++) {
+        sum += doubles[selection[i]];
+      }
+    } else {
+      return super.compute(batch, selection, offset, length);
+    }
+    return sum/length;
+  }
+
   /**
    * Get aggregate name.
    * @return name.
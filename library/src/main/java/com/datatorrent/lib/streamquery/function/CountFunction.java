@@ -22,6 +22,8 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 /**
  * An implementation of function index that implements sql count function semantic. <br>
  * <p>
@@ -62,6 +64,22 @@ public class CountFunction extends FunctionIndex
     return count;
   }
 
+  /**
+   * Count number of values of given column in the selected rows of a batch.
+   */
+  @Override
+  public Object compute(ColumnBatch batch, int[] selection, int offset, int length) throws Exception
+  {
+    if (column.equals("*")) return length;
+    ColumnBatch.Column values = batch.getColumn(column);
+    if (values.getNullCount() == 0) return (long)length;
+    long count = 0;
+    for (int i = offset; i < offset + length; i++) {
+      if (!values.isNull(selection[i])) count++;
+    }
+    return count;
+  }
+
   /**
    * Aggregate output name.
    * @return name string.
@@ -22,6 +22,8 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 /**
  * An implementation of function index that implements sql first,last function semantic. <br>
  * <p>
@@ -73,6 +75,25 @@ public class FirstLastFunction extends FunctionIndex
     return null;
   }
 
+  /**
+   * Get first/last non null value for column in the selected rows of a batch.
+   */
+  @Override
+  public Object compute(@NotNull ColumnBatch batch, @NotNull int[] selection, int offset, int length) throws Exception
+  {
+    ColumnBatch.Column values = batch.getColumn(column);
+    if (isFirst) {
+      for (int i = offset; i < offset + length; i++) {
+        if (!values.isNull(selection[i])) return batch.getRow(selection[i]).get(column);
+      }
+    } else {
+      for (int i = offset + length - 1; i >= offset; i--) {
+        if (!values.isNull(selection[i])) return batch.getRow(selection[i]).get(column);
+      }
+    }
+    return null;
+  }
+
   /**
    * Aggregate output name.
    * @return name string.
@@ -20,6 +20,8 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 /**
  * A base class for select aggregate function implementation.&nbsp; Subclasses should provide the 
    implementation for aggregate compute functions. 
@@ -76,9 +78,38 @@ abstract public class FunctionIndex
   public void filter(ArrayList<Map<String, Object>> rows, Map<String, Object> collect) throws Exception
   {
     if (rows == null) return;
+    collect.put(outputName(), compute(rows));
+  }
+
+  /**
+   * Aggregate compute function over the selected rows of a batch, used by the operators in vectorized mode. Default
+   * implementation computes over the list of the selected rows, subclasses override it to aggregate the column of the
+   * batch.
+   * @param batch buffered rows.
+   * @param selection indexes of the rows in the batch.
+   * @param offset index of the first selected row in the selection.
+   * @param length number of selected rows.
+   * @return aggregate result object.
+   */
+  public Object compute(@NotNull ColumnBatch batch, @NotNull int[] selection, int offset, int length) throws Exception
+  {
+    return compute(batch.getRows(selection, offset, length));
+  }
+
+  /**
+   * Apply compute function to the selected rows of a batch and store result in collect by output value name.
+   */
+  public void filter(@NotNull ColumnBatch batch, @NotNull int[] selection, int offset, int length,
+      Map<String, Object> collect) throws Exception
+  {
+    collect.put(outputName(), compute(batch, selection, offset, length));
+  }
+
+  private String outputName()
+  {
     String name = column;
     if (alias != null) name = alias;
     if (name == null) name = aggregateName();
-    collect.put(name, compute(rows));
+    return name;
   }
 }
@@ -22,6 +22,8 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 /**
  * An implementation of function index that implements sql max and sql min function semantic. <br>
  * <p>
@@ -69,6 +71,33 @@ public class MaxMinFunction extends FunctionIndex
     return minMax;
   }
 
+  /**
+   * Compute max/min of the values of a numeric column in place.
+   */
+  @Override
+  public Object compute(ColumnBatch batch, int[] selection, int offset, int length) throws Exception
+  {
+    ColumnBatch.Column values = batch.getColumn(column);
+    if (values.getNullCount() > 0) return super.compute(batch, selection, offset, length);
+    double minMax = 0.0;
+    if (values.getType() == ColumnBatch.ColumnType.LONG) {
+      long[] longs = values.getLongs();
+      for (int i = offset; i < offset + length; i++) {
+        double value = longs[selection[i]];
+        if ((isMax && (minMax < value))||(!isMax && (minMax > value))) minMax = value;
+      }
+    } else if (values.getType() == ColumnBatch.ColumnType.DOUBLE) {
+      double[] doubles = values.getDoubles();
+      for (int i = offset; i < offset + length; i++) {
+        double value = doubles[selection[i]];
+        if ((isMax && (minMax < value))||(!isMax && (minMax > value))) minMax = value;
+      }
+    } else {
+      return super.compute(batch, selection, offset, length);
+    }
+    return minMax;
+  }
+
   /**
    * Aggregate output name.
    * @return name string.
@@ -5,6 +5,8 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.ColumnBatch;
+
 
 
 /**
@@ -33,6 +35,41 @@ public class SumFunction extends FunctionIndex
     return result;
   }
 
+  /**
+   * Sum the values of a numeric column in place, rows without the column are skipped.
+   */
+  @Override
+  public Object compute(@NotNull ColumnBatch batch, @NotNull int[] selection, int offset, int length) throws Exception
+  {
+    ColumnBatch.Column values = batch.getColumn(column);
+    boolean hasNulls = values.getNullCount() > 0;
+    double result = 0.0;
+    if (values.getType() == ColumnBatch.ColumnType.LONG) {
+      long[] longs = values.getLongs();
+      for (int i = offset; i < offset + length; i++) {
+        int row = selection[i];
+        if (hasNulls && values.isNull(row)) {
+          if (values.isMissing(row)) continue;
+          return super.compute(batch, selection, offset, length);
+        }
+        result += longs[row];
+      }
+    } else if (values.getType() == ColumnBatch.ColumnType.DOUBLE) {
+      double[] doubles = values.getDoubles();
+      for (int i = offset; i < offset + length; i++) {
+        int row = selection[i];
+        if (hasNulls && values.isNull(row)) {
+          if (values.isMissing(row)) continue;
+          return super.compute(batch, selection, offset, length);
+        }
+        result += doubles[row];
+      }
+    } else {
+      return super.compute(batch, selection, offset, length);
+    }
+    return result;
+  }
+
   @Override
   protected String aggregateName()
   {
@@ -17,6 +17,10 @@
 package com.datatorrent.lib.util;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
 
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.CompilerFactoryFactory;
@@ -26,8 +30,15 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -44,6 +55,12 @@ public class PojoUtils
 
   private static final String OBJECT = "object";
   private static final String VAL = "val";
+  private static final String VALUES = "values";
+  private static final String COLUMNS = "columns";
+  private static final String ROW = "row";
+  private static final String STATEMENT = "statement";
+  private static final String KRYO = "kryo";
+  private static final String OUTPUT = "output";
 
   private static final String GET = "get";
   private static final String IS = "is";
@@ -378,6 +395,141 @@ public class PojoUtils
     return (Setter<T, V>) createSetter(pojoClass, setterExpr, exprObjectPlaceholder, exprValuePlaceholder, exprClass, Setter.class);
   }
 
+  /**
+   * Bulk getter interface which copies the values of all the expressions to an array
+   * @param <T> class of objects that the getter applies to
+   */
+  public interface BulkGetterObjectArray<T>
+  {
+    void get(T obj, Object[] values);
+  }
+
+  /**
+   * Bulk getter interface which copies the values of all the expressions to a row of column arrays, the array of a
+   * primitive expression is an array of the primitive type and the array of any other expression is an
+   * <tt>Object[]</tt> or a sub type of it
+   * @param <T> class of objects that the getter applies to
+   */
+  public interface BulkGetterColumns<T>
+  {
+    void get(T obj, Object[] columns, int row);
+  }
+
+  /**
+   * Bulk getter interface which sets the values of all the expressions as the parameters of a statement, the value of
+   * the first expression is the first parameter
+   * @param <T> class of objects that the getter applies to
+   */
+  public interface BulkGetterPreparedStatement<T>
+  {
+    void get(T obj, PreparedStatement statement) throws SQLException;
+  }
+
+  /**
+   * Bulk getter interface which writes the values of all the expressions to a Kryo output, primitives and strings are
+   * written with the methods of the output and other objects with their class
+   * @param <T> class of objects that the getter applies to
+   */
+  public interface BulkGetterOutput<T>
+  {
+    void get(T obj, Kryo kryo, Output output);
+  }
+
+  /**
+   * Bulk setter interface which assigns the values of an array with all the expressions
+   * @param <T> class of objects that the setter applies to
+   */
+  public interface BulkSetterObjectArray<T>
+  {
+    void set(T obj, Object[] values);
+  }
+
+  /**
+   * Bulk getters and setters by the interface, the pojo class, the expressions and the expression classes. The
+   * accessors are weakly referenced, an entry is dropped when its accessor is no longer used so that the cache does not
+   * keep the pojo classes and their class loaders.
+   */
+  private static final ConcurrentMap<List<Object>, Object> bulkAccessors = CacheBuilder.newBuilder().weakValues().<List<Object>, Object>build().asMap();
+
+  /**
+   * Returns a getter, compiled into a single class, which copies the values of the getter expressions to an array.
+   *
+   * @param pojoClass Class object that the getter applies to
+   * @param getterExprs expressions to use for the getter, as in {@link #createGetter(Class, String, Class)}
+   * @param exprClasses Classes of the expressions
+   * @return instance of a class that implements {@link BulkGetterObjectArray}, shared by the callers with the same
+   * arguments
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> BulkGetterObjectArray<T> createBulkGetterObjectArray(Class<? extends T> pojoClass, List<String> getterExprs, List<Class<?>> exprClasses)
+  {
+    return (BulkGetterObjectArray<T>) getBulkAccessor(pojoClass, getterExprs, exprClasses, BulkGetterObjectArray.class);
+  }
+
+  /**
+   * Returns a getter, compiled into a single class, which copies the values of the getter expressions to a row of
+   * column arrays.
+   *
+   * @param pojoClass Class object that the getter applies to
+   * @param getterExprs expressions to use for the getter, as in {@link #createGetter(Class, String, Class)}
+   * @param exprClasses Classes of the expressions
+   * @return instance of a class that implements {@link BulkGetterColumns}, shared by the callers with the same
+   * arguments
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> BulkGetterColumns<T> createBulkGetterColumns(Class<? extends T> pojoClass, List<String> getterExprs, List<Class<?>> exprClasses)
+  {
+    return (BulkGetterColumns<T>) getBulkAccessor(pojoClass, getterExprs, exprClasses, BulkGetterColumns.class);
+  }
+
+  /**
+   * Returns a getter, compiled into a single class, which sets the values of the getter expressions as the parameters
+   * of a statement with the setter of the expression class.
+   *
+   * @param pojoClass Class object that the getter applies to
+   * @param getterExprs expressions to use for the getter, as in {@link #createGetter(Class, String, Class)}
+   * @param exprClasses Classes of the expressions
+   * @return instance of a class that implements {@link BulkGetterPreparedStatement}, shared by the callers with the
+   * same arguments
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> BulkGetterPreparedStatement<T> createBulkGetterPreparedStatement(Class<? extends T> pojoClass, List<String> getterExprs, List<Class<?>> exprClasses)
+  {
+    return (BulkGetterPreparedStatement<T>) getBulkAccessor(pojoClass, getterExprs, exprClasses, BulkGetterPreparedStatement.class);
+  }
+
+  /**
+   * Returns a getter, compiled into a single class, which writes the values of the getter expressions to a Kryo
+   * output.
+   *
+   * @param pojoClass Class object that the getter applies to
+   * @param getterExprs expressions to use for the getter, as in {@link #createGetter(Class, String, Class)}
+   * @param exprClasses Classes of the expressions
+   * @return instance of a class that implements {@link BulkGetterOutput}, shared by the callers with the same
+   * arguments
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> BulkGetterOutput<T> createBulkGetterOutput(Class<? extends T> pojoClass, List<String> getterExprs, List<Class<?>> exprClasses)
+  {
+    return (BulkGetterOutput<T>) getBulkAccessor(pojoClass, getterExprs, exprClasses, BulkGetterOutput.class);
+  }
+
+  /**
+   * Returns a setter, compiled into a single class, which assigns the values of an array with the setter expressions.
+   * The values of primitive expressions are unboxed.
+   *
+   * @param pojoClass Class object that the setter applies to
+   * @param setterExprs expressions to use for the setter, as in {@link #createSetter(Class, String, Class)}
+   * @param exprClasses Classes of the values
+   * @return instance of a class that implements {@link BulkSetterObjectArray}, shared by the callers with the same
+   * arguments
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> BulkSetterObjectArray<T> createBulkSetterObjectArray(Class<? extends T> pojoClass, List<String> setterExprs, List<Class<?>> exprClasses)
+  {
+    return (BulkSetterObjectArray<T>) getBulkAccessor(pojoClass, setterExprs, exprClasses, BulkSetterObjectArray.class);
+  }
+
   private static class JavaStatement {
     private final StringBuilder javaStatement;
     private final int capacity;
@@ -451,12 +603,24 @@ public class PojoUtils
    */
   private static String getSingleFieldGetterExpression(final Class<?> pojoClass, final String fieldExpression, final Class<?> castClass)
   {
-    JavaStatement code = new JavaReturnStatement(pojoClass.getName().length() + fieldExpression.length() + castClass.getName().length() + 32, castClass);
+    return new JavaReturnStatement(pojoClass.getName().length() + fieldExpression.length() + castClass.getName().length() + 32, castClass)
+            .append(getSingleFieldAccessor(pojoClass, fieldExpression, castClass)).getStatement();
+  }
+
+  /**
+   * Return the expression which reads the given field of the object.
+   * <p>
+   * If the field is a public member, the field name is used else the getter function. If no matching field or getter
+   * method is found, the expression is used unmodified.
+   */
+  private static String getSingleFieldAccessor(final Class<?> pojoClass, final String fieldExpression, final Class<?> castClass)
+  {
+    JavaStatement code = new JavaStatement(pojoClass.getName().length() + fieldExpression.length() + 16);
     code.appendCastToTypeExpr(pojoClass, OBJECT).append(".");
     try {
       final Field field = pojoClass.getField(fieldExpression);
       if (ClassUtils.isAssignable(field.getType(), castClass)) {
-        return code.append(field.getName()).getStatement();
+        return code.append(field.getName()).toString();
       }
       logger.debug("Field {} can not be assigned to an {}. Proceeding to locate a getter method.", field, castClass);
     } catch (NoSuchFieldException ex) {
@@ -469,7 +633,7 @@ public class PojoUtils
     try {
       Method method = pojoClass.getMethod(methodName);
       if (ClassUtils.isAssignable(method.getReturnType(), castClass)) {
-        return code.append(methodName).append("()").getStatement();
+        return code.append(methodName).append("()").toString();
       }
       logger.debug("method {} of the {} returns {} that can not be assigned to an {}. Proceeding to locate another getter method.",
               pojoClass, methodName, method.getReturnType(), castClass);
@@ -485,7 +649,7 @@ public class PojoUtils
     try {
       Method method = pojoClass.getMethod(methodName);
       if (ClassUtils.isAssignable(method.getReturnType(), castClass)) {
-        return code.append(methodName).append("()").getStatement();
+        return code.append(methodName).append("()").toString();
       }
       logger.debug("method {} of the {} returns {} that can not be assigned to an {}. Proceeding with the original expression {}.",
               pojoClass, methodName, method.getReturnType(), castClass, fieldExpression);
@@ -497,7 +661,7 @@ public class PojoUtils
               pojoClass, methodName, fieldExpression);
     }
 
-    return code.append(fieldExpression).getStatement();
+    return code.append(fieldExpression).toString();
   }
 
   @SuppressWarnings("StringEquality")
@@ -541,6 +705,11 @@ public class PojoUtils
   }
 
   private static String getSingleFieldSetterExpression(final Class<?> pojoClass, final String fieldExpression, final Class<?> exprClass)
+  {
+    return getSingleFieldSetterExpression(pojoClass, fieldExpression, exprClass, VAL);
+  }
+
+  private static String getSingleFieldSetterExpression(final Class<?> pojoClass, final String fieldExpression, final Class<?> exprClass, final String valueExpression)
   {
     JavaStatement code = new JavaStatement(pojoClass.getName().length() + fieldExpression.length() + exprClass.getName().length() + 16);
     /* Construct ((<pojo class name>)pojo). */
@@ -550,7 +719,7 @@ public class PojoUtils
       if (ClassUtils.isAssignable(exprClass, field.getType())) {
         /* there is public field on the class, use direct assignment. */
         /* append <field name> = (<field type>)val; */
-        return code.append(field.getName()).append(" = ").appendCastToTypeExpr(exprClass, VAL).getStatement();
+        return code.append(field.getName()).append(" = ").appendCastToTypeExpr(exprClass, valueExpression).getStatement();
       }
       logger.debug("{} can not be assigned to {}. Proceeding to locate a setter method.", exprClass, field);
     } catch (NoSuchFieldException ex) {
@@ -583,7 +752,7 @@ public class PojoUtils
                 pojoClass, setMethodName, fieldExpression);
         /* We did not find any match at all, use original expression */
         /* append = (<expr type>)val;*/
-        return code.append(fieldExpression).append(" = ").appendCastToTypeExpr(exprClass, VAL).getStatement();
+        return code.append(fieldExpression).append(" = ").appendCastToTypeExpr(exprClass, valueExpression).getStatement();
       } else {
         // TODO: see if we can find a better match
         bestMatchMethod = candidates.get(0);
@@ -592,7 +761,7 @@ public class PojoUtils
 
     /* We found a method that we may use for setter */
     /* append <method name>((<expr class)val); */
-    return code.append(bestMatchMethod.getName()).append("(").appendCastToTypeExpr(exprClass, VAL).append(")").getStatement();
+    return code.append(bestMatchMethod.getName()).append("(").appendCastToTypeExpr(exprClass, valueExpression).append(")").getStatement();
   }
 
   /**
@@ -645,5 +814,177 @@ public class PojoUtils
     }
   }
 
-}
+  private static Object getBulkAccessor(Class<?> pojoClass, List<String> exprs, List<Class<?>> exprClasses, Class<?> bulkClass)
+  {
+    List<Object> key = Arrays.<Object>asList(bulkClass, pojoClass, new ArrayList<String>(exprs), new ArrayList<Class<?>>(exprClasses));
+    Object bulkAccessor = bulkAccessors.get(key);
+    if (bulkAccessor == null) {
+      bulkAccessor = createBulkAccessor(pojoClass, exprs, exprClasses, bulkClass);
+      Object existing = bulkAccessors.putIfAbsent(key, bulkAccessor);
+      if (existing != null) {
+        bulkAccessor = existing;
+      }
+    }
+    return bulkAccessor;
+  }
+
+  /**
+   * Compiles a class which implements the bulk interface with a statement per expression.
+   */
+  private static Object createBulkAccessor(Class<?> pojoClass, List<String> exprs, List<Class<?>> exprClasses, Class<?> bulkClass)
+  {
+    logger.debug("{} {} {} {}", pojoClass, exprs, exprClasses, bulkClass);
+    Preconditions.checkArgument(exprs.size() == exprClasses.size(), "expressions %s and classes %s", exprs, exprClasses);
+
+    String[] parameterNames;
+    if (bulkClass == BulkGetterObjectArray.class) {
+      parameterNames = new String[] {OBJECT, VALUES};
+    }
+    else if (bulkClass == BulkGetterColumns.class) {
+      parameterNames = new String[] {OBJECT, COLUMNS, ROW};
+    }
+    else if (bulkClass == BulkGetterPreparedStatement.class) {
+      parameterNames = new String[] {OBJECT, STATEMENT};
+    }
+    else if (bulkClass == BulkGetterOutput.class) {
+      parameterNames = new String[] {OBJECT, KRYO, OUTPUT};
+    }
+    else {
+      parameterNames = new String[] {OBJECT, VALUES};
+    }
+
+    StringBuilder code = new StringBuilder();
+    for (int i = 0; i < exprs.size(); i++) {
+      Class<?> exprClass = exprClasses.get(i);
+      if (bulkClass == BulkSetterObjectArray.class) {
+        code.append(getBulkSetterStatement(pojoClass, exprs.get(i), exprClass, i)).append("\n");
+        continue;
+      }
+
+      String expr = getGetterExpression(pojoClass, exprs.get(i), exprClass);
+      JavaStatement statement = new JavaStatement();
+      if (bulkClass == BulkGetterObjectArray.class) {
+        statement.append(VALUES).append("[").append(String.valueOf(i)).append("] = ");
+        if (exprClass.isPrimitive()) {
+          statement.append(ClassUtils.primitiveToWrapper(exprClass).getName()).append(".valueOf(").append(expr).append(")");
+        }
+        else {
+          statement.append(expr);
+        }
+      }
+      else if (bulkClass == BulkGetterColumns.class) {
+        String arrayClass = exprClass.isPrimitive() ? exprClass.getName() + "[]" : Object.class.getName() + "[]";
+        statement.append("((").append(arrayClass).append(")").append(COLUMNS).append("[").append(String.valueOf(i))
+                .append("])[").append(ROW).append("] = ").append(expr);
+      }
+      else if (bulkClass == BulkGetterPreparedStatement.class) {
+        String index = String.valueOf(i + 1);
+        if (exprClass == char.class) {
+          statement.append(STATEMENT).append(".setString(").append(index).append(", String.valueOf(").append(expr).append("))");
+        }
+        else {
+          statement.append(STATEMENT).append(".").append(getStatementSetter(exprClass)).append("(").append(index).append(", ").append(expr).append(")");
+        }
+      }
+      else {
+        if (exprClass.isPrimitive()) {
+          statement.append(OUTPUT).append(".write").append(upperCaseWord(exprClass.getName())).append("(").append(expr).append(")");
+        }
+        else if (exprClass == String.class) {
+          statement.append(OUTPUT).append(".writeString(").append(expr).append(")");
+        }
+        else {
+          statement.append(KRYO).append(".writeClassAndObject(").append(OUTPUT).append(", ").append(expr).append(")");
+        }
+      }
+      code.append(statement.getStatement()).append("\n");
+    }
+
+    logger.debug("code: {}", code);
+
+    try {
+      IScriptEvaluator se = CompilerFactoryFactory.getDefaultCompilerFactory().newScriptEvaluator();
+      return se.createFastEvaluator(code.toString(), bulkClass, parameterNames);
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+  }
 
+  /**
+   * Returns the getter expression cast to the expression class.
+   */
+  @SuppressWarnings("StringEquality")
+  private static String getGetterExpression(Class<?> pojoClass, String getterExpr, Class<?> castClass)
+  {
+    if (getterExpr.startsWith(".")) {
+      getterExpr = getterExpr.substring(1);
+    }
+
+    if (getterExpr.isEmpty()) {
+      throw new IllegalArgumentException("The getter expression: \"" + getterExpr + "\" is invalid.");
+    }
+
+    String code = StringUtils.replaceEach(getterExpr, new String[]{DEFAULT_EXP_OBJECT_PLACEHOLDER},
+            new String[]{new JavaStatement().appendCastToTypeExpr(pojoClass, OBJECT).toString()});
+    if (code == getterExpr) {
+      code = getSingleFieldAccessor(pojoClass, getterExpr, castClass);
+    }
+    return new JavaStatement().appendCastToTypeExpr(castClass, code).toString();
+  }
+
+  /**
+   * Returns the statement which assigns the value at the index of the values with the setter expression.
+   */
+  @SuppressWarnings("StringEquality")
+  private static String getBulkSetterStatement(Class<?> pojoClass, String setterExpr, Class<?> exprClass, int index)
+  {
+    if (setterExpr.startsWith(".")) {
+      setterExpr = setterExpr.substring(1);
+    }
+
+    if (setterExpr.isEmpty()) {
+      throw new IllegalArgumentException("The setter string: " + setterExpr + "\nis invalid.");
+    }
+
+    String value = VALUES + "[" + index + "]";
+    if (exprClass.isPrimitive()) {
+      /* unbox ((<wrapper class>)values[index]).<primitive>Value() */
+      value = new JavaStatement().appendCastToTypeExpr(ClassUtils.primitiveToWrapper(exprClass), value).append(".")
+              .append(exprClass.getName()).append("Value()").toString();
+    }
+
+    String code = StringUtils.replaceEach(setterExpr, new String[]{DEFAULT_EXP_OBJECT_PLACEHOLDER, DEFAULT_EXP_VAL_PLACEHOLDER},
+            new String[]{new JavaStatement().appendCastToTypeExpr(pojoClass, OBJECT).toString(), new JavaStatement().appendCastToTypeExpr(exprClass, value).toString()});
+    if (code != setterExpr) {
+      return new JavaStatement().append(code).getStatement();
+    }
+    return getSingleFieldSetterExpression(pojoClass, setterExpr, exprClass, value);
+  }
+
+  private static String getStatementSetter(Class<?> exprClass)
+  {
+    if (exprClass.isPrimitive()) {
+      return SET + upperCaseWord(exprClass.getName());
+    }
+    else if (exprClass == String.class) {
+      return "setString";
+    }
+    else if (exprClass == BigDecimal.class) {
+      return "setBigDecimal";
+    }
+    else if (exprClass == java.sql.Date.class) {
+      return "setDate";
+    }
+    else if (exprClass == Time.class) {
+      return "setTime";
+    }
+    else if (exprClass == Timestamp.class) {
+      return "setTimestamp";
+    }
+    else if (exprClass == byte[].class) {
+      return "setBytes";
+    }
+    return "setObject";
+  }
+
+}
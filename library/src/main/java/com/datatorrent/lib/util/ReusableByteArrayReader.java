@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A reader of the characters encoded in a range of a byte array, which is reopened for every range without creating
+ * a string or copying the bytes. Like {@link ReusableStringReader} it is meant to be wrapped once by a parser and
+ * opened for every record.
+ */
+public class ReusableByteArrayReader extends Reader
+{
+  private final CharsetDecoder decoder;
+  private ByteBuffer bytes;
+  private CharBuffer chars;
+  //a character which is decoded into two chars when only one fits, the second char is returned by the next read
+  private final CharBuffer pair = CharBuffer.allocate(2);
+  private boolean flushed;
+
+  public ReusableByteArrayReader(Charset charset)
+  {
+    decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    pair.limit(0);
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException
+  {
+    ensureOpen();
+    if ((off < 0) || (off > cbuf.length) || (len < 0) || ((off + len) > cbuf.length) || ((off + len) < 0)) {
+      throw new IndexOutOfBoundsException();
+    }
+    else if (len == 0) {
+      return 0;
+    }
+    int n = 0;
+    if (pair.hasRemaining()) {
+      cbuf[off] = pair.get();
+      n++;
+    }
+    if (n < len && !flushed) {
+      if (chars == null || chars.array() != cbuf) {
+        chars = CharBuffer.wrap(cbuf);
+      }
+      chars.clear();
+      chars.limit(off + len);
+      chars.position(off + n);
+      decode(chars);
+      n = chars.position() - off;
+      if (n == 0 && !flushed) {
+        //the next character doesn't fit in len chars, it is decoded into the pair and returned one char at a time
+        pair.clear();
+        decode(pair);
+        pair.flip();
+        if (pair.hasRemaining()) {
+          cbuf[off] = pair.get();
+          n++;
+        }
+      }
+    }
+    return n == 0 ? -1 : n;
+  }
+
+  /**
+   * Decodes the remaining bytes into the buffer and flushes the decoder when all the bytes are decoded.
+   */
+  private void decode(CharBuffer out)
+  {
+    decoder.decode(bytes, out, true);
+    if (!bytes.hasRemaining()) {
+      flushed = decoder.flush(out).isUnderflow();
+    }
+  }
+
+  @Override
+  public boolean ready() throws IOException
+  {
+    ensureOpen();
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    bytes = null;
+  }
+
+  /**
+   * Check to make sure that the stream has not been closed
+   */
+  private void ensureOpen() throws IOException
+  {
+    if (bytes == null) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  /**
+   * Opens the reader on a range of a byte array, the bytes must not be changed till they are read.
+   *
+   * @param buffer The byte array.
+   * @param offset The offset of the range.
+   * @param length The length of the range.
+   */
+  public void open(byte[] buffer, int offset, int length)
+  {
+    if (bytes == null || bytes.array() != buffer) {
+      bytes = ByteBuffer.wrap(buffer);
+    }
+    bytes.clear();
+    bytes.limit(offset + length);
+    bytes.position(offset);
+    decoder.reset();
+    pair.clear();
+    pair.limit(0);
+    flushed = false;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class OffHeapEventMapTest
+{
+  /**
+   * Event which counts how often it is deserialized.
+   */
+  static class ReadCountingEvent
+  {
+    static int reads;
+    int id;
+
+    @SuppressWarnings("unused")
+    private ReadCountingEvent()
+    {
+      reads++;
+    }
+
+    ReadCountingEvent(int id)
+    {
+      this.id = id;
+    }
+  }
+
+  @Test
+  public void testPutAndGet()
+  {
+    OffHeapEventMap<DummyEvent> events = new OffHeapEventMap<DummyEvent>();
+    Map<Object, DummyEvent> expected = Maps.newHashMap();
+    for (int i = 0; i < 10000; i++) {
+      DummyEvent event = new DummyEvent(i, i * 10L);
+      events.put(event.getEventKey(), event);
+      expected.put(event.getEventKey(), event);
+    }
+    Assert.assertEquals("size", expected.size(), events.size());
+    for (int i = 0; i < 10000; i++) {
+      Assert.assertTrue("contains " + i, events.containsKey(i));
+      Assert.assertEquals("event " + i, expected.get(i), events.get(i));
+    }
+    Assert.assertFalse("missing key", events.containsKey(10000));
+    Assert.assertNull("missing key", events.get(10000));
+    Assert.assertEquals("entries", expected, Maps.newHashMap(events));
+  }
+
+  @Test
+  public void testOverwrite()
+  {
+    OffHeapEventMap<DummyEvent> events = new OffHeapEventMap<DummyEvent>();
+    for (int round = 0; round < 100; round++) {
+      for (int i = 0; i < 100; i++) {
+        events.put(i, new DummyEvent(i, round));
+      }
+    }
+    Assert.assertEquals("size", 100, events.size());
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals("latest event", new DummyEvent(i, 99), events.get(i));
+    }
+    Assert.assertTrue("replaced entries reclaimed", events.sizeInBytes() < 64 * 1024);
+  }
+
+  @Test
+  public void testKeysOnly()
+  {
+    Map<Object, DummyEvent> keys = Maps.newHashMap();
+    for (int i = 0; i < 100; i++) {
+      keys.put(i, null);
+    }
+    OffHeapEventMap<DummyEvent> events = new OffHeapEventMap<DummyEvent>(keys);
+    Assert.assertEquals("size", 100, events.size());
+    Assert.assertTrue("contains key", events.containsKey(50));
+    Assert.assertNull("no event", events.get(50));
+    Assert.assertEquals("entries", keys, Maps.newHashMap(events));
+  }
+
+  @Test
+  public void testKeySet()
+  {
+    OffHeapEventMap<ReadCountingEvent> events = new OffHeapEventMap<ReadCountingEvent>();
+    Set<Object> expected = Sets.newHashSet();
+    for (int i = 0; i < 100; i++) {
+      events.put(i, new ReadCountingEvent(i));
+      expected.add(i);
+    }
+    ReadCountingEvent.reads = 0;
+    Assert.assertEquals("keys", expected, Sets.newHashSet(events.keySet()));
+    Assert.assertTrue("contains key", events.keySet().contains(50));
+    Assert.assertFalse("missing key", events.keySet().contains(100));
+    Assert.assertEquals("events read", 0, ReadCountingEvent.reads);
+    Assert.assertEquals("event", 50, events.get(50).id);
+    Assert.assertEquals("events read", 1, ReadCountingEvent.reads);
+  }
+}
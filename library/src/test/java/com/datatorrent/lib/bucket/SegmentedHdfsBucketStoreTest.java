@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.Map;
+
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class SegmentedHdfsBucketStoreTest
+{
+  public static class TestMeta extends HdfsBucketStoreTest.TestMeta
+  {
+    @Override
+    protected HdfsBucketStore<DummyEvent> getBucketStore()
+    {
+      SegmentedHdfsBucketStore<DummyEvent> lBucketStore = new SegmentedHdfsBucketStore<DummyEvent>();
+      lBucketStore.setNoOfBuckets(TOTAL_BUCKETS);
+      lBucketStore.setWriteEventKeysOnly(true);
+      lBucketStore.setConfiguration(7, applicationPath, Sets.newHashSet(0), 0);
+      return lBucketStore;
+    }
+
+    boolean segmentExists(long segmentId) throws Exception
+    {
+      return fs.exists(new Path(rootBucketPath, SegmentedHdfsBucketStore.SEGMENT_PREFIX + segmentId));
+    }
+  }
+
+  @Rule
+  public TestMeta testMeta = new TestMeta();
+
+  @Test
+  public void testStoreBucketData() throws Exception
+  {
+    testMeta.util.storeBucket(0);
+  }
+
+  @Test
+  public void testFetchBucket() throws Exception
+  {
+    testMeta.util.fetchBucket(0);
+  }
+
+  @Test
+  public void testDeleteBucket() throws Exception
+  {
+    testMeta.util.deleteBucket(0);
+  }
+
+  @Test
+  public void testValuePersistence() throws Exception
+  {
+    testMeta.bucketStore.setWriteEventKeysOnly(false);
+    testMeta.bucketStore.setup();
+    DummyEvent newEvent = new DummyEvent(0, System.currentTimeMillis());
+    //store data for window 0
+    testMeta.util.storeBucket(0);
+
+    //populate data for window 1
+    testMeta.data = Maps.newHashMap();
+    Map<Object, DummyEvent> bucketData = Maps.newHashMap();
+    bucketData.put(newEvent.getEventKey(), newEvent);
+    testMeta.data.put(0, bucketData);
+    //store data for window 1
+    testMeta.util.storeBucket(1);
+
+    Map<Object, DummyEvent> fetchBucket = testMeta.bucketStore.fetchBucket(0);
+    DummyEvent retrievedEvent = fetchBucket.get(newEvent.getEventKey());
+
+    Assert.assertTrue("latest value", retrievedEvent.equals(newEvent));
+  }
+
+  @Test
+  public void testSegmentRollingAndExpiry() throws Exception
+  {
+    SegmentedHdfsBucketStore<DummyEvent> store = (SegmentedHdfsBucketStore<DummyEvent>) testMeta.bucketStore;
+    store.setMaxSegmentSize(1); // one window per segment
+
+    for (long window = 0; window < 4; window++) {
+      store.storeBucketData(window, window, testMeta.data);
+    }
+    for (long segment = 0; segment < 4; segment++) {
+      Assert.assertTrue("segment " + segment, testMeta.segmentExists(segment));
+    }
+    Assert.assertEquals("events in bucket", testMeta.data.get(0).size(), store.fetchBucket(0).size());
+
+    store.deleteExpiredBuckets(2);
+    Assert.assertFalse("expired segment", testMeta.segmentExists(0));
+    Assert.assertFalse("expired segment", testMeta.segmentExists(1));
+    Assert.assertTrue("segment", testMeta.segmentExists(2));
+    Assert.assertEquals("events in bucket", testMeta.data.get(0).size(), store.fetchBucket(0).size());
+
+    store.deleteBucket(0);
+    Assert.assertTrue("segment with other bucket", testMeta.segmentExists(2));
+    store.deleteBucket(1);
+    Assert.assertFalse("segment without buckets", testMeta.segmentExists(2));
+    Assert.assertTrue("empty bucket", store.fetchBucket(1).isEmpty());
+  }
+}
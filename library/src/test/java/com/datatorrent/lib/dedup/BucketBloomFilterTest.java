@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.dedup;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+
+import com.datatorrent.lib.util.TestUtils;
+
+public class BucketBloomFilterTest
+{
+  @Test
+  public void testMightContain()
+  {
+    long[] keyHashes = new long[20001];
+    Random random = new Random(1);
+    for (int i = 0; i < keyHashes.length; i++) {
+      keyHashes[i] = random.nextLong();
+    }
+    BucketBloomFilter filter = new BucketBloomFilter(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.add(keyHashes[i]);
+    }
+    for (int i = 0; i < 10000; i++) {
+      Assert.assertTrue("added key " + i, filter.mightContain(keyHashes[i]));
+    }
+    int falsePositives = 0;
+    for (int i = 10000; i < 20000; i++) {
+      if (filter.mightContain(keyHashes[i])) {
+        falsePositives++;
+      }
+    }
+    Assert.assertTrue("false positives " + falsePositives, falsePositives < 300);
+    Assert.assertFalse("saturated", filter.isSaturated());
+    filter.add(keyHashes[20000]);
+    Assert.assertTrue("saturated", filter.isSaturated());
+  }
+
+  @Test
+  public void testCheckpoint() throws Exception
+  {
+    BucketBloomFilter filter = new BucketBloomFilter(100, 0.01);
+    filter.add(42L);
+    BucketBloomFilter restored = TestUtils.clone(new Kryo(), filter);
+    Assert.assertTrue("restored key", restored.mightContain(42L));
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.dedup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.collect.Maps;
+
+import com.datatorrent.api.DAG;
+
+import com.datatorrent.lib.bucket.BucketManagerImpl;
+import com.datatorrent.lib.bucket.DummyEvent;
+import com.datatorrent.lib.bucket.NonOperationalBucketStore;
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.TestUtils;
+
+/**
+ * Tests the bloom filter fast path of {@link AbstractDeduper}.
+ */
+public class DeduperBloomFilterTest
+{
+  /**
+   * Keeps the stored events in memory and counts the fetches of the buckets. The stored events are not check-pointed,
+   * a restored deduper is given the store of the original one.
+   */
+  private static class CountingBucketStore extends NonOperationalBucketStore<DummyEvent>
+  {
+    final transient Map<Integer, Map<Object, DummyEvent>> buckets = Maps.newConcurrentMap();
+    final transient AtomicInteger fetches = new AtomicInteger();
+
+    @Override
+    public void storeBucketData(long window, long timestamp, Map<Integer, Map<Object, DummyEvent>> data) throws IOException
+    {
+      for (Map.Entry<Integer, Map<Object, DummyEvent>> entry : data.entrySet()) {
+        Map<Object, DummyEvent> bucket = buckets.get(entry.getKey());
+        if (bucket == null) {
+          bucket = Maps.newConcurrentMap();
+          buckets.put(entry.getKey(), bucket);
+        }
+        bucket.putAll(entry.getValue());
+      }
+    }
+
+    @Override
+    public Map<Object, DummyEvent> fetchBucket(int bucketIdx) throws Exception
+    {
+      fetches.incrementAndGet();
+      Map<Object, DummyEvent> bucket = buckets.get(bucketIdx);
+      return bucket == null ? Maps.<Object, DummyEvent>newHashMap() : Maps.newHashMap(bucket);
+    }
+  }
+
+  /**
+   * Even ids are in bucket 0 and odd ids in bucket 1.
+   */
+  private static class EvenOddBucketManager extends BucketManagerImpl<DummyEvent>
+  {
+    @Override
+    public long getBucketKeyFor(DummyEvent event)
+    {
+      return (Integer)event.getEventKey() % 2;
+    }
+  }
+
+  private static class BloomFilterDeduper extends AbstractDeduper<DummyEvent, DummyEvent>
+  {
+    @Override
+    protected DummyEvent convert(DummyEvent event)
+    {
+      return event;
+    }
+
+    @Override
+    protected Object getEventKey(DummyEvent event)
+    {
+      return event.getEventKey();
+    }
+
+    @Override
+    protected long getEventKeyHash(Object eventKey)
+    {
+      // 1002 is a false positive of the filter of bucket 0 which holds 2
+      return super.getEventKeyHash(Integer.valueOf(1002).equals(eventKey) ? 2 : eventKey);
+    }
+
+    long getCounter(CounterKeys key)
+    {
+      return counters.getCounter(key).longValue();
+    }
+  }
+
+  private static void processWindow(BloomFilterDeduper deduper, long window, int... ids)
+  {
+    deduper.beginWindow(window);
+    for (int id : ids) {
+      deduper.input.process(new DummyEvent(id, 0));
+    }
+    deduper.endWindow();
+  }
+
+  private static BloomFilterDeduper createDeduper(CountingBucketStore bucketStore)
+  {
+    EvenOddBucketManager bucketManager = new EvenOddBucketManager();
+    bucketManager.setNoOfBuckets(2);
+    bucketManager.setNoOfBucketsInMemory(1);
+    bucketManager.setMaxNoOfBucketsInMemory(1);
+    bucketManager.setMillisPreventingBucketEviction(0);
+    bucketManager.setBucketStore(bucketStore);
+
+    BloomFilterDeduper deduper = new BloomFilterDeduper();
+    deduper.setBucketManager(bucketManager);
+    deduper.setUseBloomFilter(true);
+    return deduper;
+  }
+
+  private static void setup(BloomFilterDeduper deduper, CollectorTestSink<DummyEvent> output,
+                            CollectorTestSink<DummyEvent> duplicates)
+  {
+    TestUtils.setSink(deduper.output, output);
+    TestUtils.setSink(deduper.duplicates, duplicates);
+
+    com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap attributes = new com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(DAG.APPLICATION_ID, "DeduperBloomFilterTest");
+    deduper.setup(new OperatorContextTestHelper.TestIdOperatorContext(0, attributes));
+  }
+
+  @Test
+  public void testFastPath()
+  {
+    CountingBucketStore bucketStore = new CountingBucketStore();
+    BloomFilterDeduper deduper = createDeduper(bucketStore);
+    CollectorTestSink<DummyEvent> output = new CollectorTestSink<DummyEvent>();
+    CollectorTestSink<DummyEvent> duplicates = new CollectorTestSink<DummyEvent>();
+    setup(deduper, output, duplicates);
+
+    // the filter of bucket 0 is created when the bucket is loaded
+    processWindow(deduper, 0, 0, 2, 4, 6, 8);
+    Assert.assertEquals("output", 5, output.collectedTuples.size());
+    Assert.assertEquals("fetches", 1, bucketStore.fetches.get());
+
+    // loading bucket 1 off-loads bucket 0, the filter of bucket 0 is kept
+    processWindow(deduper, 1, 1);
+    Assert.assertEquals("output", 6, output.collectedTuples.size());
+    Assert.assertEquals("fetches", 2, bucketStore.fetches.get());
+    Assert.assertNull("bucket 0 off-loaded", deduper.getBucketManager().getBucket(0));
+
+    // new keys of bucket 0 are emitted right away without fetching the bucket
+    deduper.beginWindow(2);
+    for (int id = 100; id < 200; id += 2) {
+      deduper.input.process(new DummyEvent(id, 0));
+    }
+    Assert.assertEquals("output", 56, output.collectedTuples.size());
+    Assert.assertEquals("fast path", 50, deduper.getCounter(AbstractDeduper.CounterKeys.FAST_PATH_EVENTS));
+    deduper.endWindow();
+    Assert.assertEquals("fetches", 2, bucketStore.fetches.get());
+
+    // a false positive and a duplicate are checked against the bucket in the store
+    processWindow(deduper, 3, 1002, 2);
+    Assert.assertEquals("fetches", 3, bucketStore.fetches.get());
+    Assert.assertEquals("fast path", 50, deduper.getCounter(AbstractDeduper.CounterKeys.FAST_PATH_EVENTS));
+    Assert.assertEquals("output", 57, output.collectedTuples.size());
+    Assert.assertEquals("false positive", 1002, output.collectedTuples.get(56).getEventKey());
+    Assert.assertEquals("duplicates", 1, duplicates.collectedTuples.size());
+    Assert.assertEquals("duplicate", 2, duplicates.collectedTuples.get(0).getEventKey());
+
+    deduper.teardown();
+  }
+
+  @Test
+  public void testFastPathAfterRecovery() throws Exception
+  {
+    CountingBucketStore bucketStore = new CountingBucketStore();
+    BloomFilterDeduper deduper = createDeduper(bucketStore);
+    setup(deduper, new CollectorTestSink<DummyEvent>(), new CollectorTestSink<DummyEvent>());
+
+    // the filters of both buckets are created when the buckets are loaded
+    processWindow(deduper, 0, 0, 2, 4, 6, 8);
+    processWindow(deduper, 1, 1, 3, 5, 7, 9);
+
+    BloomFilterDeduper restored = TestUtils.clone(new Kryo(), deduper);
+    deduper.teardown();
+    restored.getBucketManager().setBucketStore(bucketStore);
+
+    int fetches = bucketStore.fetches.get();
+    CollectorTestSink<DummyEvent> output = new CollectorTestSink<DummyEvent>();
+    CollectorTestSink<DummyEvent> duplicates = new CollectorTestSink<DummyEvent>();
+    setup(restored, output, duplicates);
+    Assert.assertNull("bucket 0 not loaded", restored.getBucketManager().getBucket(0));
+    Assert.assertNull("bucket 1 not loaded", restored.getBucketManager().getBucket(1));
+
+    // new keys of both buckets are emitted right away with the restored filters
+    restored.beginWindow(2);
+    for (int id = 100; id < 200; id++) {
+      restored.input.process(new DummyEvent(id, 0));
+    }
+    Assert.assertEquals("output", 100, output.collectedTuples.size());
+    restored.endWindow();
+    Assert.assertEquals("fast path", 100, restored.getCounter(AbstractDeduper.CounterKeys.FAST_PATH_EVENTS));
+    Assert.assertEquals("fast path percent", 100, restored.getCounter(AbstractDeduper.CounterKeys.FAST_PATH_PERCENT));
+    Assert.assertEquals("fetches", fetches, bucketStore.fetches.get());
+
+    // a duplicate is still checked against the bucket in the store
+    processWindow(restored, 3, 4);
+    Assert.assertEquals("fetches", fetches + 1, bucketStore.fetches.get());
+    Assert.assertEquals("duplicates", 1, duplicates.collectedTuples.size());
+    Assert.assertEquals("duplicate", 4, duplicates.collectedTuples.get(0).getEventKey());
+
+    restored.teardown();
+  }
+}
@@ -175,6 +175,48 @@ public class FSLineReaderTest
     }
   }
 
+  @Test
+  public void testReadAhead()
+  {
+    testReadAhead(true);
+  }
+
+  @Test
+  public void testReadAheadNonConsecutiveBlocks()
+  {
+    testReadAhead(false);
+  }
+
+  private void testReadAhead(boolean consecutive)
+  {
+    AbstractFSBlockReader<String> blockReader = getBlockReader();
+    blockReader.setReadAheadBlocks(2);
+    blockReader.setReadAheadBufferSize(300);
+    blockReader.setup(testMeta.readerContext);
+    CollectorTestSink<Object> messageSink = new CollectorTestSink<Object>();
+    blockReader.messages.setSink(messageSink);
+
+    long blockSize = 1000;
+    int noOfBlocks = (int) ((testMeta.dataFile.length() / blockSize) + (((testMeta.dataFile.length() % blockSize) == 0) ? 0 : 1));
+
+    blockReader.beginWindow(1);
+    for (int i = 0; i < noOfBlocks; i++) {
+      BlockMetadata.FileBlockMetadata blockMetadata = new BlockMetadata.FileBlockMetadata(testMeta.dataFile.getAbsolutePath(), i, i * blockSize,
+        i == noOfBlocks - 1 ? testMeta.dataFile.length() : (i + 1) * blockSize, i == noOfBlocks - 1, consecutive ? i - 1 : -1);
+      blockReader.blocksMetadataInput.process(blockMetadata);
+    }
+    blockReader.endWindow();
+    blockReader.teardown();
+
+    List<Object> messages = messageSink.collectedTuples;
+    Assert.assertEquals("No of records", testMeta.messages.size(), messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      @SuppressWarnings("unchecked")
+      AbstractBlockReader.ReaderRecord<String> msg = (AbstractBlockReader.ReaderRecord<String>) messages.get(i);
+      Assert.assertTrue("line " + i, Arrays.equals(msg.getRecord().split(","), testMeta.messages.get(i)));
+    }
+  }
+
   public static final class BlockReader extends AbstractFSBlockReader.AbstractFSLineReader<String>
   {
     private final Pattern datePattern = Pattern.compile("\\d{2}?/\\d{2}?/\\d{4}?");
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.block;
+
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+public class LineSliceReaderTest extends FSLineReaderTest
+{
+  @Override
+  AbstractFSBlockReader<String> getBlockReader()
+  {
+    return new SliceBlockReader();
+  }
+
+  /**
+   * Reads the lines with a {@link ReaderContext.LineSliceReaderContext} and converts them with the default
+   * convertSliceToRecord, which copies the slice for {@link #convertToRecord(byte[])}.
+   */
+  public static final class SliceBlockReader extends AbstractFSBlockReader<String>
+  {
+    private final Pattern datePattern = Pattern.compile("\\d{2}?/\\d{2}?/\\d{4}?");
+
+    public SliceBlockReader()
+    {
+      ReaderContext.LineSliceReaderContext<FSDataInputStream> context = new ReaderContext.LineSliceReaderContext<FSDataInputStream>();
+      //a small buffer which has to be grown for the longer lines
+      context.setBufferSize(16);
+      readerContext = context;
+    }
+
+    @Override
+    protected String convertToRecord(byte[] bytes)
+    {
+      String record = new String(bytes);
+      String[] parts = record.split(",");
+      return parts.length > 0 && datePattern.matcher(parts[0]).find() ? record : null;
+    }
+  }
+}
@@ -15,6 +15,15 @@
  */
 package com.datatorrent.lib.io.block;
 
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
 public class ReadAheadLineReaderTest extends FSLineReaderTest
 {
   @Override
@@ -31,4 +40,50 @@ public class ReadAheadLineReaderTest extends FSLineReaderTest
       return new String(bytes);
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testReadAheadStreamReuse()
+  {
+    final AtomicInteger openedStreams = new AtomicInteger();
+    AbstractFSBlockReader<String> blockReader = new AbstractFSBlockReader.AbstractFSReadAheadLineReader<String>()
+    {
+      @Override
+      protected FSDataInputStream setupStream(BlockMetadata.FileBlockMetadata block) throws IOException
+      {
+        openedStreams.incrementAndGet();
+        return super.setupStream(block);
+      }
+
+      @Override
+      protected String convertToRecord(byte[] bytes)
+      {
+        return new String(bytes);
+      }
+    };
+    blockReader.setReadAheadBlocks(2);
+    blockReader.setReadAheadBufferSize(300);
+    blockReader.setup(testMeta.readerContext);
+    CollectorTestSink<Object> messageSink = new CollectorTestSink<Object>();
+    blockReader.messages.setSink(messageSink);
+
+    long blockSize = 1000;
+    long fileLength = testMeta.dataFile.length();
+    int noOfBlocks = (int) ((fileLength / blockSize) + (((fileLength % blockSize) == 0) ? 0 : 1));
+    Assert.assertTrue("blocks", noOfBlocks > 4);
+    int firstBlockOfSecondRun = noOfBlocks / 2;
+
+    blockReader.beginWindow(1);
+    for (int i = 0; i < noOfBlocks; i++) {
+      //two runs of adjacent blocks
+      long previousBlockId = i == 0 || i == firstBlockOfSecondRun ? -1 : i - 1;
+      BlockMetadata.FileBlockMetadata blockMetadata = new BlockMetadata.FileBlockMetadata(testMeta.dataFile.getAbsolutePath(), i,
+        i * blockSize, i == noOfBlocks - 1 ? fileLength : (i + 1) * blockSize, i == noOfBlocks - 1, previousBlockId);
+      blockReader.blocksMetadataInput.process(blockMetadata);
+    }
+    blockReader.endWindow();
+    blockReader.teardown();
+
+    Assert.assertEquals("opened streams", 2, openedStreams.get());
+    Assert.assertEquals("No of records", testMeta.messages.size(), messageSink.collectedTuples.size());
+  }
+}
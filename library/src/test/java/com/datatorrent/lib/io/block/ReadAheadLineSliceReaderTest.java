@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2015 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.block;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import com.datatorrent.common.util.Slice;
+
+public class ReadAheadLineSliceReaderTest extends FSLineReaderTest
+{
+  @Override
+  AbstractFSBlockReader<String> getBlockReader()
+  {
+    return new ReadAheadSliceBlockReader();
+  }
+
+  public static final class ReadAheadSliceBlockReader extends AbstractFSBlockReader.AbstractFSReadAheadLineSliceReader<String>
+  {
+    public ReadAheadSliceBlockReader()
+    {
+      //a small buffer which has to be grown for the longer lines
+      ((ReaderContext.LineSliceReaderContext<FSDataInputStream>) readerContext).setBufferSize(16);
+    }
+
+    @Override
+    protected String convertSliceToRecord(Slice slice)
+    {
+      return new String(slice.buffer, slice.offset, slice.length);
+    }
+
+    @Override
+    protected String convertToRecord(byte[] bytes)
+    {
+      throw new UnsupportedOperationException("records are converted from slices");
+    }
+  }
+}
@@ -142,6 +142,173 @@ public class AbstractFileInputOperatorTest
 
   }
 
+  @Test
+  public void testProcessedFilesRetention() throws Exception
+  {
+    FileContext.getLocalFSFileContext().delete(new Path(new File(testMeta.dir).getAbsolutePath()), true);
+    long now = System.currentTimeMillis();
+    File oldFile = new File(testMeta.dir, "file0");
+    FileUtils.write(oldFile, "f0l0");
+    Assert.assertTrue(oldFile.setLastModified(now - 60000));
+    FileUtils.write(new File(testMeta.dir, "file1"), "f1l0");
+
+    TestFileInputOperator oper = new TestFileInputOperator();
+    CollectorTestSink<String> queryResults = new CollectorTestSink<String>();
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    CollectorTestSink<Object> sink = (CollectorTestSink) queryResults;
+    oper.output.setSink(sink);
+    oper.setDirectory(testMeta.dir);
+    oper.setScanIntervalMillis(0);
+    oper.setProcessedFilesRetentionMillis(10000);
+
+    oper.setup(testMeta.context);
+    for (long wid = 0; wid < 3; wid++) {
+      oper.beginWindow(wid);
+      oper.emitTuples();
+      oper.endWindow();
+    }
+    Assert.assertEquals("lines", Sets.newHashSet("f0l0", "f1l0"), new HashSet<String>(queryResults.collectedTuples));
+    Assert.assertEquals("tracked files", 1, oper.processedFiles.size());
+    Assert.assertEquals("expired files", 1, oper.expiredProcessedFileCount);
+
+    //a file modified before the watermark is considered processed
+    File lateFile = new File(testMeta.dir, "file2");
+    FileUtils.write(lateFile, "f2l0");
+    Assert.assertTrue(lateFile.setLastModified(now - 60000));
+    FileUtils.write(new File(testMeta.dir, "file3"), "f3l0");
+    queryResults.clear();
+    for (long wid = 3; wid < 6; wid++) {
+      oper.beginWindow(wid);
+      oper.emitTuples();
+      oper.endWindow();
+    }
+    oper.teardown();
+    Assert.assertEquals("lines", Lists.newArrayList("f3l0"), queryResults.collectedTuples);
+  }
+
+  @Test
+  public void testScannerSkipsUnchangedDirectories() throws Exception
+  {
+    Path path = new Path(new File(testMeta.dir).getAbsolutePath());
+    FileContext.getLocalFSFileContext().delete(path, true);
+    File subDirectory = new File(testMeta.dir, "sub");
+    FileUtils.write(new File(subDirectory, "file0"), "");
+    long modificationTime = System.currentTimeMillis() - 60000;
+    Assert.assertTrue(subDirectory.setLastModified(modificationTime));
+
+    DirectoryScanner scanner = new DirectoryScanner();
+    scanner.setRecursive(true);
+    scanner.setSkipUnchangedDirectories(true);
+    FileSystem fs = FileSystem.getLocal(new Configuration()).getRaw();
+    Set<String> consumed = Sets.newHashSet();
+    for (Path file : scanner.scan(fs, path, consumed)) {
+      consumed.add(file.toString());
+    }
+    Assert.assertEquals("files", 1, consumed.size());
+
+    //the new file is not found while the modification time of its directory is unchanged
+    FileUtils.write(new File(subDirectory, "file1"), "");
+    Assert.assertTrue(subDirectory.setLastModified(modificationTime));
+    Assert.assertTrue("unchanged directory", scanner.scan(fs, path, consumed).isEmpty());
+
+    Assert.assertTrue(subDirectory.setLastModified(modificationTime + 1000));
+    Set<Path> files = scanner.scan(fs, path, consumed);
+    Assert.assertEquals("files " + files, 1, files.size());
+    Assert.assertEquals("new file", "file1", files.iterator().next().getName());
+  }
+
+  @Test
+  public void testScanInBackground() throws Exception
+  {
+    FileContext.getLocalFSFileContext().delete(new Path(new File(testMeta.dir).getAbsolutePath()), true);
+    HashSet<String> allLines = Sets.newHashSet();
+    for (int file = 0; file < 3; file++) {
+      HashSet<String> lines = Sets.newHashSet();
+      for (int line = 0; line < 2; line++) {
+        lines.add("f" + file + "l" + line);
+      }
+      allLines.addAll(lines);
+      FileUtils.write(new File(testMeta.dir, "file" + file), StringUtils.join(lines, '\n'));
+    }
+
+    TestFileInputOperator oper = new TestFileInputOperator();
+    CollectorTestSink<String> queryResults = new CollectorTestSink<String>();
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    CollectorTestSink<Object> sink = (CollectorTestSink) queryResults;
+    oper.output.setSink(sink);
+    oper.setDirectory(testMeta.dir);
+    oper.setScanIntervalMillis(10);
+    oper.setScanInBackground(true);
+    oper.setDiscoveredFilesQueueCapacity(1);
+
+    oper.setup(testMeta.context);
+    long timeout = System.currentTimeMillis() + 30000;
+    for (long wid = 0; queryResults.collectedTuples.size() < allLines.size() && System.currentTimeMillis() < timeout; wid++) {
+      oper.beginWindow(wid);
+      oper.emitTuples();
+      oper.endWindow();
+      Thread.sleep(10);
+    }
+    oper.teardown();
+
+    Assert.assertEquals("lines", allLines, new HashSet<String>(queryResults.collectedTuples));
+    Assert.assertEquals("tuples", allLines.size(), queryResults.collectedTuples.size());
+  }
+
+  /**
+   * Skips the files whose names start with skip.
+   */
+  private static class SkippingScanner extends DirectoryScanner
+  {
+    private static final long serialVersionUID = 201505201200L;
+
+    @Override
+    public LinkedHashMap<Path, Long> scan(FileSystem fs, Path filePath, Set<String> consumedFiles, long minModificationTime)
+    {
+      LinkedHashMap<Path, Long> pathMap = super.scan(fs, filePath, consumedFiles, minModificationTime);
+      Iterator<Path> iterator = pathMap.keySet().iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().getName().startsWith("skip")) {
+          iterator.remove();
+        }
+      }
+      return pathMap;
+    }
+  }
+
+  @Test
+  public void testScannerOverride() throws Exception
+  {
+    FileContext.getLocalFSFileContext().delete(new Path(new File(testMeta.dir).getAbsolutePath()), true);
+    FileUtils.write(new File(testMeta.dir, "file0"), "f0l0");
+    FileUtils.write(new File(testMeta.dir, "skip0"), "s0l0");
+
+    //the scan in the operator thread, with processed file retention and in the background
+    for (int mode = 0; mode < 3; mode++) {
+      TestFileInputOperator oper = new TestFileInputOperator();
+      CollectorTestSink<String> queryResults = new CollectorTestSink<String>();
+      @SuppressWarnings({ "unchecked", "rawtypes" })
+      CollectorTestSink<Object> sink = (CollectorTestSink) queryResults;
+      oper.output.setSink(sink);
+      oper.setDirectory(testMeta.dir);
+      oper.setScanner(new SkippingScanner());
+      oper.setScanIntervalMillis(10);
+      oper.setProcessedFilesRetentionMillis(mode == 1 ? 10000 : 0);
+      oper.setScanInBackground(mode == 2);
+
+      oper.setup(testMeta.context);
+      long timeout = System.currentTimeMillis() + 30000;
+      for (long wid = 0; queryResults.collectedTuples.isEmpty() && System.currentTimeMillis() < timeout; wid++) {
+        oper.beginWindow(wid);
+        oper.emitTuples();
+        oper.endWindow();
+        Thread.sleep(10);
+      }
+      oper.teardown();
+      Assert.assertEquals("lines, mode " + mode, Lists.newArrayList("f0l0"), queryResults.collectedTuples);
+    }
+  }
+
   @Test
   public void testScannerPartitioning() throws Exception
   {
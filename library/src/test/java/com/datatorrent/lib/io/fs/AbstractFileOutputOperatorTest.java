@@ -26,6 +26,9 @@ import javax.crypto.*;
 import javax.crypto.spec.IvParameterSpec;
 import javax.validation.ConstraintViolationException;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.io.LimitInputStream;
 
@@ -41,6 +44,7 @@ import org.apache.commons.lang.mutable.MutableLong;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 
 import com.datatorrent.lib.helper.OperatorContextTestHelper;
 import com.datatorrent.lib.testbench.RandomWordGenerator;
@@ -386,6 +390,27 @@ public class AbstractFileOutputOperatorTest
                 correctContents);
   }
 
+  @Test
+  public void testSingleFileCompletedWriteAsync()
+  {
+    SingleHDFSExactlyOnceWriter writer = new SingleHDFSExactlyOnceWriter();
+    writer.setAsyncWriteThreads(2);
+    writer.setAsyncBufferSize(3);
+
+    testSingleFileCompletedWriteHelper(writer);
+
+    String singleFileName = testMeta.getDir() + File.separator + SINGLE_FILE;
+
+    String correctContents = "0\n" +
+                             "1\n" +
+                             "2\n" +
+                             "3\n";
+
+    checkOutput(-1,
+                singleFileName,
+                correctContents);
+  }
+
   private void testSingleFileCompletedWriteHelper(SingleHDFSExactlyOnceWriter writer)
   {
     writer.setFilePath(testMeta.getDir());
@@ -450,6 +475,29 @@ public class AbstractFileOutputOperatorTest
                 correctContents);
   }
 
+  @Test
+  public void testSingleFileFailedWriteAsync()
+  {
+    SingleHDFSExactlyOnceWriter writer = new SingleHDFSExactlyOnceWriter();
+    writer.setAsyncWriteThreads(2);
+    writer.setAsyncBufferSize(3);
+
+    testSingleFileFailedWriteHelper(writer);
+
+    String singleFileName = testMeta.getDir() + File.separator + SINGLE_FILE;
+
+    String correctContents = "0\n" +
+                             "1\n" +
+                             "4\n" +
+                             "5\n" +
+                             "6\n" +
+                             "7\n";
+
+    checkOutput(-1,
+                singleFileName,
+                correctContents);
+  }
+
   private void testSingleFileFailedWriteHelper(SingleHDFSExactlyOnceWriter writer)
   {
     File meta = new File(testMeta.getDir());
@@ -1945,4 +1993,197 @@ public class AbstractFileOutputOperatorTest
     }
   }
   
+  @Test
+  public void testLineWriter() throws IOException
+  {
+    AbstractLineFileOutputOperator<String> writer = new AbstractLineFileOutputOperator<String>()
+    {
+      @Override
+      protected String getFileName(String tuple)
+      {
+        return SINGLE_FILE;
+      }
+    };
+    writer.setFilePath(testMeta.getDir());
+    writer.setup(testOperatorContext);
+
+    writer.beginWindow(0);
+    writer.input.put("a");
+    writer.input.put("\u00e9\u20ac\ud83d\ude00");
+    writer.endWindow();
+    writer.teardown();
+
+    String expected = "a\n\u00e9\u20ac\ud83d\ude00\n";
+    File file = new File(testMeta.getDir() + File.separator + SINGLE_FILE);
+    Assert.assertEquals("file contents", expected, FileUtils.readFileToString(file, "UTF-8"));
+    Assert.assertEquals("end offset", expected.getBytes("UTF-8").length, writer.endOffsets.get(SINGLE_FILE).longValue());
+  }
+
+  @Test
+  public void testLineWriterAppendLine() throws IOException
+  {
+    AbstractLineFileOutputOperator<Long> writer = new AbstractLineFileOutputOperator<Long>()
+    {
+      @Override
+      protected String getFileName(Long tuple)
+      {
+        return SINGLE_FILE;
+      }
+
+      @Override
+      protected void appendLine(Long tuple, StringBuilder line)
+      {
+        line.append("id=").append(tuple.longValue());
+      }
+    };
+    writer.setFilePath(testMeta.getDir());
+    writer.setLineSeparator("\r\n");
+    writer.setup(testOperatorContext);
+
+    writer.beginWindow(0);
+    for (long i = 0; i < 3; i++) {
+      writer.input.put(i);
+    }
+    writer.endWindow();
+    writer.teardown();
+
+    File file = new File(testMeta.getDir() + File.separator + SINGLE_FILE);
+    Assert.assertEquals("file contents", "id=0\r\nid=1\r\nid=2\r\n", FileUtils.readFileToString(file, "UTF-8"));
+  }
+
+  @Test
+  public void testKryoWriter() throws IOException
+  {
+    AbstractKryoFileOutputOperator<Integer> writer = new AbstractKryoFileOutputOperator<Integer>()
+    {
+      @Override
+      protected String getFileName(Integer tuple)
+      {
+        return SINGLE_FILE;
+      }
+    };
+    writer.setFilePath(testMeta.getDir());
+    writer.setup(testOperatorContext);
+
+    writer.beginWindow(0);
+    for (int i = 0; i < 10; i++) {
+      writer.input.put(i);
+    }
+    writer.endWindow();
+    writer.teardown();
+
+    File file = new File(testMeta.getDir() + File.separator + SINGLE_FILE);
+    Assert.assertEquals("end offset", file.length(), writer.endOffsets.get(SINGLE_FILE).longValue());
+    Input input = new Input(FileUtils.readFileToByteArray(file));
+    Kryo kryo = new Kryo();
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals("tuple", i, kryo.readClassAndObject(input));
+    }
+    Assert.assertTrue("end of file", input.eof());
+  }
+
+  public static class ColumnarPojo
+  {
+    public int id;
+    public String category;
+
+    public ColumnarPojo(int id, String category)
+    {
+      this.id = id;
+      this.category = category;
+    }
+  }
+
+  private AbstractColumnarFileOutputOperator<ColumnarPojo> writeColumnarFile(int rowGroupSize, int rotationWindows,
+                                                                              int numWindows)
+  {
+    AbstractColumnarFileOutputOperator<ColumnarPojo> writer = new AbstractColumnarFileOutputOperator<ColumnarPojo>()
+    {
+      @Override
+      protected String getFileName(ColumnarPojo tuple)
+      {
+        return SINGLE_FILE;
+      }
+    };
+    writer.setFilePath(testMeta.getDir());
+    writer.setColumns(Lists.newArrayList("id", "category"));
+    writer.setExpressions(Lists.newArrayList("id", "category"));
+    writer.setRowGroupSize(rowGroupSize);
+    writer.setRotationWindows(rotationWindows);
+    writer.setup(testOperatorContext);
+
+    int id = 0;
+    for (int window = 0; window < numWindows; window++) {
+      writer.beginWindow(window);
+      for (int i = 0; i < 25; i++, id++) {
+        writer.input.put(new ColumnarPojo(id, "category" + (id / 10)));
+      }
+      writer.endWindow();
+    }
+    writer.teardown();
+    return writer;
+  }
+
+  @Test
+  public void testColumnarWriter() throws IOException
+  {
+    AbstractColumnarFileOutputOperator<ColumnarPojo> writer = writeColumnarFile(10, 4, 4);
+    Assert.assertTrue("rows written", writer.pendingRowGroups.isEmpty());
+
+    FileSystem fs = FileSystem.getLocal(new Configuration()).getRaw();
+    Path path = new Path(testMeta.getDir(), SINGLE_FILE + ".0");
+    Assert.assertEquals("rotated", 0L, writer.endOffsets.get(SINGLE_FILE).longValue());
+
+    ColumnarFileReader reader = new ColumnarFileReader(fs, path, "category", "missing", "id");
+    for (int id = 0; id < 100; id++) {
+      Object[] row = reader.nextRow();
+      Assert.assertArrayEquals("row", new Object[] {"category" + (id / 10), null, id}, row);
+    }
+    Assert.assertNull("end of file", reader.nextRow());
+    reader.close();
+  }
+
+  @Test
+  public void testColumnarReaderBlocks() throws IOException
+  {
+    writeColumnarFile(7, 4, 4);
+
+    FileSystem fs = FileSystem.getLocal(new Configuration()).getRaw();
+    Path path = new Path(testMeta.getDir(), SINGLE_FILE + ".0");
+    long length = fs.getFileStatus(path).getLen();
+    List<Object> ids = Lists.newArrayList();
+    for (long start = 0; start < length; start += length / 5) {
+      ColumnarFileReader reader = new ColumnarFileReader(fs, path, start, start + length / 5, "id");
+      Object[] row;
+      while ((row = reader.nextRow()) != null) {
+        ids.add(row[0]);
+      }
+      reader.close();
+    }
+
+    Assert.assertEquals("rows", 100, ids.size());
+    for (int id = 0; id < 100; id++) {
+      Assert.assertEquals("id", id, ids.get(id));
+    }
+  }
+
+  @Test
+  public void testColumnarWriterPartialRowGroup() throws IOException
+  {
+    AbstractColumnarFileOutputOperator<ColumnarPojo> writer = writeColumnarFile(1000, 0, 2);
+    Assert.assertTrue("rows written", writer.pendingRowGroups.isEmpty());
+    Assert.assertEquals("count", 50, writer.counts.get(SINGLE_FILE).longValue());
+
+    FileSystem fs = FileSystem.getLocal(new Configuration()).getRaw();
+    Path path = new Path(testMeta.getDir(), SINGLE_FILE);
+    Assert.assertEquals("length", writer.endOffsets.get(SINGLE_FILE).longValue(), fs.getFileStatus(path).getLen());
+
+    ColumnarFileReader reader = new ColumnarFileReader(fs, path, "id");
+    for (int id = 0; id < 50; id++) {
+      Assert.assertArrayEquals("row", new Object[] {id}, reader.nextRow());
+    }
+    Assert.assertNull("end of file", reader.nextRow());
+    reader.close();
+  }
+
 }
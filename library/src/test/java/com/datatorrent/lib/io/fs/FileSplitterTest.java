@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.Exchanger;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.io.FileUtils;
@@ -437,6 +438,93 @@ public class FileSplitterTest
       testMeta.fileMetadataSink.collectedTuples.get(0).getFilePath());
   }
 
+  private FileSplitter createBoundedSplitter(int queueCapacity)
+  {
+    FileSplitter.TimeBasedDirectoryScanner scanner = new FileSplitter.TimeBasedDirectoryScanner();
+    scanner.setScanIntervalMillis(60 * 1000);
+    scanner.setFilePatternRegularExp(".*[.]txt");
+    scanner.setFiles(testMeta.dataDirectory);
+    scanner.setDiscoveredFilesQueueCapacity(queueCapacity);
+
+    FileSplitter fileSplitter = new FileSplitter();
+    fileSplitter.setScanner(scanner);
+    //one file per window
+    fileSplitter.setBlocksThreshold(1);
+    fileSplitter.setIdempotentStorageManager(new IdempotentStorageManager.NoopIdempotentStorageManager());
+    fileSplitter.setup(testMeta.context);
+    TestUtils.setSink(fileSplitter.filesMetadataOutput, testMeta.fileMetadataSink);
+    TestUtils.setSink(fileSplitter.blocksMetadataOutput, testMeta.blockMetadataSink);
+    return fileSplitter;
+  }
+
+  private static void waitForQueueSize(FileSplitter.TimeBasedDirectoryScanner scanner, int size) throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + 30000;
+    while (scanner.discoveredFiles.size() < size && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals("queued files", size, scanner.discoveredFiles.size());
+  }
+
+  private static long getCounter(FileSplitter fileSplitter, FileSplitter.Counters counter)
+  {
+    return fileSplitter.fileCounters.getCounter(counter).longValue();
+  }
+
+  @Test
+  public void testBackPressure() throws InterruptedException
+  {
+    FileSplitter fileSplitter = createBoundedSplitter(2);
+    FileSplitter.TimeBasedDirectoryScanner scanner = fileSplitter.getScanner();
+    try {
+      //the scan waits for the operator when the queue is full
+      waitForQueueSize(scanner, 2);
+      Thread.sleep(200);
+      Assert.assertEquals("queued files", 2, scanner.discoveredFiles.size());
+      Assert.assertEquals("scan not complete", 0, scanner.lastScanDiscoveredFiles);
+
+      long window = 1;
+      long deadline = System.currentTimeMillis() + 30000;
+      while (testMeta.fileMetadataSink.collectedTuples.size() < 12 && System.currentTimeMillis() < deadline) {
+        fileSplitter.beginWindow(window++);
+        fileSplitter.emitTuples();
+        fileSplitter.endWindow();
+        Assert.assertTrue("queue size", getCounter(fileSplitter, FileSplitter.Counters.DISCOVERED_FILES_QUEUE_SIZE) <= 2);
+      }
+      Assert.assertEquals("files", 12, testMeta.fileMetadataSink.collectedTuples.size());
+      Assert.assertEquals("blocks", 12, testMeta.blockMetadataSink.collectedTuples.size());
+      Assert.assertTrue("one file per window", window > 12);
+
+      deadline = System.currentTimeMillis() + 30000;
+      while (scanner.lastScanDiscoveredFiles < 12 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      fileSplitter.beginWindow(window);
+      fileSplitter.emitTuples();
+      fileSplitter.endWindow();
+      Assert.assertEquals("processed files", 12, getCounter(fileSplitter, FileSplitter.Counters.PROCESSED_FILES));
+      Assert.assertEquals("last scan files", 12, getCounter(fileSplitter, FileSplitter.Counters.LAST_SCAN_DISCOVERED_FILES));
+      Assert.assertEquals("queue size", 0, getCounter(fileSplitter, FileSplitter.Counters.DISCOVERED_FILES_QUEUE_SIZE));
+    }
+    finally {
+      fileSplitter.teardown();
+    }
+  }
+
+  @Test
+  public void testTeardownWithFullQueue() throws InterruptedException
+  {
+    FileSplitter fileSplitter = createBoundedSplitter(1);
+    FileSplitter.TimeBasedDirectoryScanner scanner = fileSplitter.getScanner();
+    waitForQueueSize(scanner, 1);
+    Thread.sleep(200);
+
+    //the scan is interrupted while it waits for space in the queue
+    fileSplitter.teardown();
+    Assert.assertTrue("scan stopped", scanner.scanService.awaitTermination(30, TimeUnit.SECONDS));
+    Assert.assertNull("no error", scanner.atomicThrowable.get());
+  }
+
   private static class MockScanner extends FileSplitter.TimeBasedDirectoryScanner
   {
     TestMeta testMeta;
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.multiwindow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Functional test for {@link SlidingWindowSum} and {@link SlidingWindowRange}, the aggregates are compared with the
+ * aggregates computed over all the values of the sliding window.
+ */
+public class SlidingWindowStoreTest
+{
+  private static final int WINDOW_SIZE = 7;
+
+  @Test
+  public void testAggregates()
+  {
+    Random random = new Random(5);
+    SlidingWindowSum<String> sums = new SlidingWindowSum<String>(WINDOW_SIZE);
+    SlidingWindowRange<String> ranges = new SlidingWindowRange<String>(WINDOW_SIZE);
+    LinkedList<Map<String, List<Double>>> windows = new LinkedList<Map<String, List<Double>>>();
+
+    for (int window = 0; window < 200; window++) {
+      sums.advance();
+      ranges.advance();
+      windows.add(new HashMap<String, List<Double>>());
+      if (windows.size() > WINDOW_SIZE) {
+        windows.removeFirst();
+      }
+      // the number of keys changes so that keys expire and slots are reused
+      int keys = window % 50 < 25 ? 40 : 3;
+      for (int i = random.nextInt(100); i-- > 0;) {
+        String key = i % 7 == 0 ? null : "k" + random.nextInt(keys);
+        double value = random.nextInt(1000) - 500;
+        sums.add(key, value);
+        ranges.add(key, value);
+        List<Double> values = windows.getLast().get(key);
+        if (values == null) {
+          values = new ArrayList<Double>();
+          windows.getLast().put(key, values);
+        }
+        values.add(value);
+      }
+
+      Map<String, List<Double>> expected = new HashMap<String, List<Double>>();
+      for (Map<String, List<Double>> values : windows) {
+        for (Map.Entry<String, List<Double>> entry : values.entrySet()) {
+          if (!expected.containsKey(entry.getKey())) {
+            expected.put(entry.getKey(), new ArrayList<Double>());
+          }
+          expected.get(entry.getKey()).addAll(entry.getValue());
+        }
+      }
+      Assert.assertEquals("keys", expected.size(), sums.size());
+      Assert.assertEquals("keys", expected.size(), ranges.size());
+      for (Map.Entry<String, List<Double>> entry : expected.entrySet()) {
+        double sum = 0;
+        double low = Double.MAX_VALUE;
+        double high = -Double.MAX_VALUE;
+        for (double value : entry.getValue()) {
+          sum += value;
+          low = Math.min(low, value);
+          high = Math.max(high, value);
+        }
+        int slot = sums.getSlot(entry.getKey());
+        Assert.assertEquals("key", entry.getKey(), sums.getKey(slot));
+        Assert.assertEquals("sum", sum, sums.getSum(slot), 0);
+        Assert.assertEquals("count", entry.getValue().size(), sums.getCount(slot));
+        slot = ranges.getSlot(entry.getKey());
+        Assert.assertEquals("low", low, ranges.getLow(slot), 0);
+        Assert.assertEquals("high", high, ranges.getHigh(slot), 0);
+      }
+    }
+  }
+}
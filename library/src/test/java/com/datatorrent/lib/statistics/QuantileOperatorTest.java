@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.LocalMode;
+import com.datatorrent.api.StreamingApplication;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+
+import com.datatorrent.lib.partitioner.StatelessPartitioner;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.testbench.RandomEventGenerator;
+
+/**
+ * Functional test for {@link QuantileSketch}, {@link QuantileOperator} and {@link QuantileSketchUnifier}.
+ */
+public class QuantileOperatorTest
+{
+  private static final int COUNT = 100000;
+  /**
+   * Rank error allowed for the default k.
+   */
+  private static final double EPSILON = 0.01;
+
+  /**
+   * Returns the values 0 to COUNT - 1 in random order, the rank of a value is the value.
+   */
+  private static int[] shuffledValues(long seed)
+  {
+    Random random = new Random(seed);
+    int[] values = new int[COUNT];
+    for (int i = 0; i < COUNT; i++) {
+      values[i] = i;
+    }
+    for (int i = COUNT - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int value = values[i];
+      values[i] = values[j];
+      values[j] = value;
+    }
+    return values;
+  }
+
+  private static void assertQuantile(String message, double q, double value, double epsilon)
+  {
+    Assert.assertTrue(message + " " + q + ": " + value, Math.abs(value - q * COUNT) <= epsilon * COUNT);
+  }
+
+  @Test
+  public void testSketch()
+  {
+    QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_K, 1);
+    QuantileSketch first = new QuantileSketch(QuantileSketch.DEFAULT_K, 2);
+    QuantileSketch second = new QuantileSketch(QuantileSketch.DEFAULT_K, 3);
+    int[] values = shuffledValues(1);
+    for (int i = 0; i < COUNT; i++) {
+      sketch.update(values[i]);
+      (i % 3 == 0 ? first : second).update(values[i]);
+    }
+    first.merge(second);
+
+    Assert.assertEquals("count", COUNT, sketch.getCount());
+    Assert.assertEquals("count", COUNT, first.getCount());
+    Assert.assertTrue("retained " + sketch.getRetained(), sketch.getRetained() < 5 * QuantileSketch.DEFAULT_K);
+    Assert.assertEquals("min", 0, sketch.getQuantile(0), 0);
+    Assert.assertEquals("max", COUNT - 1, first.getQuantile(1), 0);
+    for (double q : new double[] {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999}) {
+      assertQuantile("quantile", q, sketch.getQuantile(q), EPSILON);
+      assertQuantile("merged quantile", q, first.getQuantile(q), EPSILON);
+    }
+  }
+
+  @Test
+  public void testSeeds()
+  {
+    double[] qs = new double[99];
+    for (int i = 0; i < qs.length; i++) {
+      qs[i] = (i + 1) / 100.0;
+    }
+    QuantileSketch[] sketches = {new QuantileSketch(QuantileSketch.DEFAULT_K, 1), new QuantileSketch(QuantileSketch.DEFAULT_K, 1),
+      new QuantileSketch(), new QuantileSketch()};
+    int[] values = shuffledValues(3);
+    for (QuantileSketch sketch : sketches) {
+      for (int value : values) {
+        sketch.update(value);
+      }
+    }
+    Assert.assertArrayEquals("same seed", sketches[0].getQuantiles(qs), sketches[1].getQuantiles(qs), 0);
+    // the offsets of the compactions of the sketches are independent
+    Assert.assertFalse("independent seeds", Arrays.equals(sketches[2].getQuantiles(qs), sketches[3].getQuantiles(qs)));
+  }
+
+  @Test
+  public void testSmallWindow()
+  {
+    QuantileSketch sketch = new QuantileSketch();
+    for (double value : new double[] {9, 1, 7, 3}) {
+      sketch.update(value);
+    }
+    // small streams are kept exactly
+    Assert.assertEquals("median", 3, sketch.getQuantile(0.5), 0);
+    Assert.assertEquals("p75", 7, sketch.getQuantile(0.75), 0);
+    Assert.assertTrue("empty", Double.isNaN(new QuantileSketch().getQuantile(0.5)));
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void testPartitions()
+  {
+    QuantileOperator[] partitions = {new QuantileOperator(), new QuantileOperator()};
+    partitions[0].setSeed(1);
+    partitions[1].setSeed(2);
+    QuantileSketchUnifier unifier = (QuantileSketchUnifier)partitions[0].sketch.getUnifier();
+    Assert.assertEquals("unifier seed", 1, unifier.getSeed());
+    unifier.setSeed(4);
+    QuantileOperator oper = new QuantileOperator();
+    oper.setSeed(3);
+    oper.setPercentiles(new double[] {50, 99, 99.9});
+
+    CollectorTestSink sketchSink = new CollectorTestSink();
+    for (QuantileOperator partition : partitions) {
+      partition.sketch.setSink(sketchSink);
+    }
+    CollectorTestSink mergedSink = new CollectorTestSink();
+    unifier.mergedport.setSink(mergedSink);
+    CollectorTestSink quantileSink = new CollectorTestSink();
+    oper.quantiles.setSink(quantileSink);
+    CollectorTestSink medianSink = new CollectorTestSink();
+    oper.median.setSink(medianSink);
+
+    int[] values = shuffledValues(2);
+    for (QuantileOperator partition : partitions) {
+      partition.setup(null);
+      partition.beginWindow(0);
+    }
+    for (int i = 0; i < COUNT; i++) {
+      partitions[i % 2].data.process(values[i]);
+    }
+    unifier.beginWindow(0);
+    for (QuantileOperator partition : partitions) {
+      partition.endWindow();
+    }
+    Assert.assertEquals("partition sketches", 2, sketchSink.collectedTuples.size());
+    for (Object tuple : sketchSink.collectedTuples) {
+      unifier.process((QuantileSketch)tuple);
+    }
+    unifier.endWindow();
+    Assert.assertEquals("merged sketches", 1, mergedSink.collectedTuples.size());
+
+    oper.setup(null);
+    oper.beginWindow(0);
+    oper.sketches.process((QuantileSketch)mergedSink.collectedTuples.get(0));
+    oper.endWindow();
+
+    Assert.assertEquals("quantiles", 1, quantileSink.collectedTuples.size());
+    Map<Double, Double> quantiles = (Map<Double, Double>)quantileSink.collectedTuples.get(0);
+    Assert.assertEquals("percentiles", 3, quantiles.size());
+    assertQuantile("p50", 0.5, quantiles.get(50.0), EPSILON);
+    assertQuantile("p99", 0.99, quantiles.get(99.0), EPSILON);
+    assertQuantile("p99.9", 0.999, quantiles.get(99.9), EPSILON);
+    assertQuantile("median", 0.5, (Double)medianSink.collectedTuples.get(0), EPSILON);
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void testMultipleWindows()
+  {
+    QuantileOperator oper = new QuantileOperator();
+    oper.setWindowSize(3);
+    CollectorTestSink medianSink = new CollectorTestSink();
+    oper.median.setSink(medianSink);
+    CollectorTestSink sketchSink = new CollectorTestSink();
+    oper.sketch.setSink(sketchSink);
+
+    oper.setup(null);
+    for (int window = 0; window < 5; window++) {
+      oper.beginWindow(window);
+      for (int i = 0; i < 10; i++) {
+        oper.data.process(window * 10 + i);
+      }
+      oper.endWindow();
+    }
+    Assert.assertEquals("medians", 5, medianSink.collectedTuples.size());
+    // windows 0, 0 to 1 and then the last 3 windows
+    Assert.assertEquals("median", 4.0, medianSink.collectedTuples.get(0));
+    Assert.assertEquals("median", 9.0, medianSink.collectedTuples.get(1));
+    Assert.assertEquals("median", 14.0, medianSink.collectedTuples.get(2));
+    Assert.assertEquals("median", 34.0, medianSink.collectedTuples.get(4));
+    // the sketches of the single windows
+    Assert.assertEquals("sketches", 5, sketchSink.collectedTuples.size());
+    for (int window = 0; window < 5; window++) {
+      QuantileSketch windowSketch = (QuantileSketch)sketchSink.collectedTuples.get(window);
+      Assert.assertEquals("count", 10, windowSketch.getCount());
+      Assert.assertEquals("min", window * 10, windowSketch.getMin(), 0);
+    }
+  }
+
+  public static class MedianCollector extends BaseOperator
+  {
+    static final List<Double> medians = Collections.synchronizedList(new ArrayList<Double>());
+
+    public final transient DefaultInputPort<Double> input = new DefaultInputPort<Double>()
+    {
+      @Override
+      public void process(Double tuple)
+      {
+        medians.add(tuple);
+      }
+    };
+  }
+
+  /**
+   * The sketches of partitions merged by a downstream operator whose data port is not connected.
+   */
+  public static class SketchesApplication implements StreamingApplication
+  {
+    @Override
+    public void populateDAG(DAG dag, Configuration conf)
+    {
+      RandomEventGenerator generator = dag.addOperator("generator", new RandomEventGenerator());
+      generator.setMinvalue(0);
+      generator.setMaxvalue(1000);
+      QuantileOperator partitioned = dag.addOperator("partitioned", new QuantileOperator());
+      partitioned.setSeed(1);
+      dag.setAttribute(partitioned, OperatorContext.PARTITIONER, new StatelessPartitioner<QuantileOperator>(2));
+      QuantileOperator merger = dag.addOperator("merger", new QuantileOperator());
+      merger.setSeed(2);
+      MedianCollector collector = dag.addOperator("collector", new MedianCollector());
+
+      dag.addStream("values", generator.integer_data, partitioned.data);
+      dag.addStream("sketches", partitioned.sketch, merger.sketches);
+      dag.addStream("medians", merger.median, collector.input);
+    }
+  }
+
+  @Test
+  public void testSketchesOnly() throws Exception
+  {
+    Assert.assertTrue("optional data port",
+        QuantileOperator.class.getField("data").getAnnotation(InputPortFieldAnnotation.class).optional());
+
+    MedianCollector.medians.clear();
+    LocalMode lma = LocalMode.newInstance();
+    lma.prepareDAG(new SketchesApplication(), new Configuration(false));
+    LocalMode.Controller lc = lma.getController();
+    lc.setHeartbeatMonitoringEnabled(false);
+    lc.runAsync();
+    long end = System.currentTimeMillis() + 30000;
+    while (MedianCollector.medians.size() < 3 && System.currentTimeMillis() < end) {
+      Thread.sleep(100);
+    }
+    lc.shutdown();
+
+    Assert.assertTrue("medians " + MedianCollector.medians, MedianCollector.medians.size() >= 3);
+    // the values are uniform between 0 and 1000
+    double median = MedianCollector.medians.get(MedianCollector.medians.size() - 1);
+    Assert.assertTrue("median " + median, median > 250 && median < 750);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Functional test for {@link DerbySqlStreamOperator}, the statements executed in memory yield the results of Derby.
+ */
+public class DerbySqlStreamOperatorTest
+{
+  private static final String[] SYMBOLS = {"AAPL", "GOOG", "IBM", "YHOO"};
+
+  private static final String SELECT = "SELECT SESSION.t1.s0 AS symbol, SESSION.t1.l1 AS last_trade FROM SESSION.t1"
+      + " WHERE SESSION.t1.s0 = 'AAPL' AND SESSION.t1.l1 < 450";
+  private static final String GROUP_BY = "SELECT s0, COUNT(*) AS trades, SUM(v) AS volume, AVG(v), MAX(l1) AS high,"
+      + " MIN(l1 * 2) low FROM SESSION.t1 t WHERE t.v BETWEEN 2 AND 8 OR t.s0 <> 'IBM' GROUP BY s0";
+  private static final String COUNT = "SELECT COUNT(*) AS cnt, SUM(l1) AS total FROM SESSION.t1 WHERE v > 100";
+  private static final String JOIN = "SELECT SESSION.t1.s0 AS symbol, SESSION.t1.l1 / SESSION.t2.e0 AS pe_ratio"
+      + " FROM SESSION.t1, SESSION.t2 WHERE SESSION.t1.s0 = SESSION.t2.s0";
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static List<Object> run(boolean nativeExecution, String... statements)
+  {
+    DerbySqlStreamOperator oper = new DerbySqlStreamOperator();
+    AbstractSqlStreamOperator.InputSchema inputSchema1 = new AbstractSqlStreamOperator.InputSchema("t1");
+    inputSchema1.setColumnInfo("s0", "varchar(100)", true);
+    inputSchema1.setColumnInfo("l1", "float", false);
+    inputSchema1.setColumnInfo("v", "integer", false);
+    AbstractSqlStreamOperator.InputSchema inputSchema2 = new AbstractSqlStreamOperator.InputSchema("t2");
+    inputSchema2.setColumnInfo("s0", "varchar(100)", true);
+    inputSchema2.setColumnInfo("e0", "float", false);
+    oper.setInputSchema(0, inputSchema1);
+    oper.setInputSchema(1, inputSchema2);
+    for (String statement : statements) {
+      oper.addExecStatementString(statement);
+    }
+    oper.setNativeExecution(nativeExecution);
+
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.result.setSink(sink);
+    oper.setup(null);
+    for (int window = 0; window < 3; window++) {
+      oper.beginWindow(window);
+      for (int i = 0; i < 100; i++) {
+        HashMap<String, Object> tuple = new HashMap<String, Object>();
+        tuple.put("s0", SYMBOLS[(i + window) % SYMBOLS.length]);
+        tuple.put("l1", 400 + (i * 7 % 100) / 2.0);
+        tuple.put("v", i % 10);
+        oper.in1.process(tuple);
+      }
+      for (String symbol : SYMBOLS) {
+        HashMap<String, Object> tuple = new HashMap<String, Object>();
+        tuple.put("s0", symbol);
+        tuple.put("e0", 4.0);
+        oper.in2.process(tuple);
+      }
+      oper.endWindow();
+    }
+    oper.teardown();
+    return sink.collectedTuples;
+  }
+
+  @Test
+  public void testSelect()
+  {
+    List<Object> results = run(true, SELECT);
+    Assert.assertEquals("results", 3 * 25, results.size());
+    for (Object result : results) {
+      Map<?, ?> row = (Map<?, ?>)result;
+      Assert.assertEquals("symbol", "AAPL", row.get("SYMBOL"));
+      Assert.assertTrue("last trade", (Double)row.get("LAST_TRADE") < 450);
+    }
+    Assert.assertEquals("results", run(false, SELECT), results);
+  }
+
+  @Test
+  public void testGroupBy()
+  {
+    List<Object> results = run(true, GROUP_BY, COUNT);
+    // 4 groups and a count per window
+    Assert.assertEquals("results", 3 * 5, results.size());
+    Map<?, ?> group = (Map<?, ?>)results.get(0);
+    Assert.assertEquals("group", "AAPL", group.get("S0"));
+    Assert.assertEquals("trades", 25, group.get("TRADES"));
+    Assert.assertEquals("volume", 100, group.get("VOLUME"));
+    Assert.assertEquals("average", 4, group.get("4"));
+    Map<?, ?> count = (Map<?, ?>)results.get(4);
+    Assert.assertEquals("count", 0, count.get("CNT"));
+    Assert.assertNull("sum", count.get("TOTAL"));
+    Assert.assertEquals("results", new HashSet<Object>(run(false, GROUP_BY, COUNT)), new HashSet<Object>(results));
+  }
+
+  @Test
+  public void testDerbyFallback()
+  {
+    List<Object> results = run(true, SELECT, JOIN);
+    Assert.assertEquals("results", 3 * (25 + 100), results.size());
+    Assert.assertEquals("results", run(false, SELECT, JOIN), results);
+  }
+}
@@ -16,7 +16,10 @@
 package com.datatorrent.lib.streamquery;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.datatorrent.lib.streamquery.condition.Condition;
@@ -80,4 +83,74 @@ public class InnerJoinOperatorTest
   	
   	System.out.println(sink.collectedTuples.toString());
   }
+
+  @Test
+  public void testHashJoin()
+  {
+    // the same equal join evaluated for every pair of rows
+    Condition nestedLoopCondition = new Condition()
+    {
+      @Override
+      public boolean isValidRow(Map<String, Object> row)
+      {
+        return true;
+      }
+
+      @Override
+      public boolean isValidJoin(Map<String, Object> row1, Map<String, Object> row2)
+      {
+        return row1.containsKey("a") && row2.containsKey("d") && row1.get("a").equals(row2.get("d"));
+      }
+    };
+
+    List<Object> hashJoined = join(new JoinColumnEqualCondition("a", "d"));
+    List<Object> nestedLoopJoined = join(nestedLoopCondition);
+    // 100 rows of table 1 join with 10 rows of table 2 for each of the values 0, 2, 4, 6 and 8
+    Assert.assertEquals("joined rows", 5 * 100 * 10, hashJoined.size());
+    Assert.assertEquals("same rows", nestedLoopJoined, hashJoined);
+  }
+
+  @Test
+  public void testJoinColumnStreamCodec()
+  {
+    InnerJoinOperator oper = new InnerJoinOperator();
+    oper.setJoinCondition(new JoinColumnEqualCondition("a", "d"));
+
+    HashMap<String, Object> row1 = new HashMap<String, Object>();
+    row1.put("a", 7);
+    row1.put("b", 1);
+    HashMap<String, Object> row2 = new HashMap<String, Object>();
+    row2.put("d", 7);
+    row2.put("e", 2);
+    Assert.assertEquals("partition", oper.inport1.getStreamCodec().getPartition(row1), oper.inport2.getStreamCodec().getPartition(row2));
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private List<Object> join(Condition condition)
+  {
+    InnerJoinOperator oper = new InnerJoinOperator();
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setJoinCondition(condition);
+    oper.selectTable1Column(new ColumnIndex("b", null));
+    oper.selectTable2Column(new ColumnIndex("e", null));
+
+    oper.setup(null);
+    oper.beginWindow(1);
+    for (int i = 0; i < 1000; i++) {
+      HashMap<String, Object> tuple = new HashMap<String, Object>();
+      tuple.put("a", i % 10);
+      tuple.put("b", i);
+      oper.inport1.process(tuple);
+      if (i % 2 == 0) {
+        tuple = new HashMap<String, Object>();
+        tuple.put("d", i % 100);
+        tuple.put("e", i);
+        oper.inport2.process(tuple);
+      }
+    }
+    oper.endWindow();
+    oper.teardown();
+    return sink.collectedTuples;
+  }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Partitioner.Partition;
+import com.datatorrent.api.Partitioner.PartitionKeys;
+import com.datatorrent.lib.partitioner.StatelessPartitionerTest.PartitioningContextImpl;
+import com.datatorrent.lib.streamquery.condition.Condition;
+import com.datatorrent.lib.streamquery.condition.JoinColumnEqualCondition;
+import com.datatorrent.lib.streamquery.index.ColumnIndex;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Functional test for the partitioning of {@link InnerJoinOperator} and {@link OuterJoinOperator}, the partitioned
+ * joins emit the rows of the join in one partition, each exactly once.
+ */
+public class PartitionedJoinOperatorTest
+{
+  private static final int PARTITION_COUNT = 2;
+
+  private enum JoinType
+  {
+    INNER, LEFT, RIGHT, FULL
+  }
+
+  private static InnerJoinOperator createOperator(JoinType type, Condition condition)
+  {
+    InnerJoinOperator oper;
+    if (type == JoinType.INNER) {
+      oper = new InnerJoinOperator();
+    }
+    else {
+      OuterJoinOperator outer = new OuterJoinOperator();
+      if (type == JoinType.RIGHT) {
+        outer.setRighttJoin();
+      }
+      outer.setFullJoin(type == JoinType.FULL);
+      oper = outer;
+    }
+    oper.setJoinCondition(condition);
+    oper.selectTable1Column(new ColumnIndex("b", null));
+    oper.selectTable2Column(new ColumnIndex("e", null));
+    oper.setPartitionCount(PARTITION_COUNT);
+    return oper;
+  }
+
+  private static List<Map<String, Object>> createRows(String keyColumn, String valueColumn, int offset)
+  {
+    List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+    for (int i = 0; i < 200; i++) {
+      Map<String, Object> row = new HashMap<String, Object>();
+      // every 17th row has no join value
+      row.put(keyColumn, i % 17 == 0 ? null : offset + i % 30);
+      row.put(valueColumn, valueColumn + i);
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static List<Object> join(JoinType type, boolean partitioned)
+  {
+    List<Map<String, Object>> rows1 = createRows("a", "b", 0);
+    List<Map<String, Object>> rows2 = createRows("d", "e", 20);
+    CollectorTestSink sink = new CollectorTestSink();
+
+    if (!partitioned) {
+      InnerJoinOperator oper = createOperator(type, new JoinColumnEqualCondition("a", "d"));
+      oper.outport.setSink(sink);
+      oper.setup(null);
+      oper.beginWindow(1);
+      for (int i = 0; i < rows1.size(); i++) {
+        oper.inport1.process(rows1.get(i));
+        oper.inport2.process(rows2.get(i));
+      }
+      oper.endWindow();
+      return sink.collectedTuples;
+    }
+
+    InnerJoinOperator template = createOperator(type, new JoinColumnEqualCondition("a", "d"));
+    List<Partition<InnerJoinOperator>> partitions = Lists.newArrayList();
+    partitions.add(new DefaultPartition<InnerJoinOperator>(template));
+    Collection<Partition<InnerJoinOperator>> newPartitions = template.definePartitions(partitions, new PartitioningContextImpl(null, 0));
+    Assert.assertEquals("partitions", PARTITION_COUNT, newPartitions.size());
+
+    // each partition is a separate instance, the rows are routed like the platform does with the keys and codecs
+    List<PartitionKeys> keys1 = new ArrayList<PartitionKeys>();
+    List<PartitionKeys> keys2 = new ArrayList<PartitionKeys>();
+    List<InnerJoinOperator> opers = new ArrayList<InnerJoinOperator>();
+    for (Partition<InnerJoinOperator> partition : newPartitions) {
+      keys1.add(partition.getPartitionKeys().get(template.inport1));
+      keys2.add(partition.getPartitionKeys().get(template.inport2));
+      InnerJoinOperator oper = createOperator(type, new JoinColumnEqualCondition("a", "d"));
+      oper.outport.setSink(sink);
+      oper.setup(null);
+      oper.beginWindow(1);
+      opers.add(oper);
+    }
+    for (int i = 0; i < rows1.size(); i++) {
+      int partition1 = template.inport1.getStreamCodec().getPartition(rows1.get(i));
+      int partition2 = template.inport2.getStreamCodec().getPartition(rows2.get(i));
+      int routed = 0;
+      for (int p = 0; p < opers.size(); p++) {
+        if (keys1.get(p).partitions.contains(partition1 & keys1.get(p).mask)) {
+          opers.get(p).inport1.process(rows1.get(i));
+          routed++;
+        }
+        if (keys2.get(p).partitions.contains(partition2 & keys2.get(p).mask)) {
+          opers.get(p).inport2.process(rows2.get(i));
+          routed++;
+        }
+      }
+      Assert.assertEquals("each row goes to one partition", 2, routed);
+    }
+    for (InnerJoinOperator oper : opers) {
+      oper.endWindow();
+    }
+    return sink.collectedTuples;
+  }
+
+  private static Map<Object, Integer> count(List<Object> rows)
+  {
+    Map<Object, Integer> counts = new HashMap<Object, Integer>();
+    for (Object row : rows) {
+      Integer count = counts.get(row);
+      counts.put(row, count == null ? 1 : count + 1);
+    }
+    return counts;
+  }
+
+  @Test
+  public void testPartitionedJoins()
+  {
+    for (JoinType type : JoinType.values()) {
+      List<Object> expected = join(type, false);
+      List<Object> actual = join(type, true);
+      Assert.assertFalse(type + " rows", expected.isEmpty());
+      Assert.assertEquals(type + " rows", expected.size(), actual.size());
+      Assert.assertEquals(type + " rows", count(expected), count(actual));
+    }
+  }
+
+  @Test
+  public void testNotPartitionedWithoutEqualCondition()
+  {
+    InnerJoinOperator oper = createOperator(JoinType.INNER, null);
+    List<Partition<InnerJoinOperator>> partitions = Lists.newArrayList();
+    partitions.add(new DefaultPartition<InnerJoinOperator>(oper));
+    Assert.assertEquals("partitions", 1, oper.definePartitions(partitions, new PartitioningContextImpl(null, 0)).size());
+  }
+}
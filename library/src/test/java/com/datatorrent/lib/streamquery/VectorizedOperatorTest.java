@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.streamquery.condition.BetweenCondition;
+import com.datatorrent.lib.streamquery.condition.CompoundCondition;
+import com.datatorrent.lib.streamquery.condition.EqualValueCondition;
+import com.datatorrent.lib.streamquery.condition.HavingCompareValue;
+import com.datatorrent.lib.streamquery.condition.InCondition;
+import com.datatorrent.lib.streamquery.function.AverageFunction;
+import com.datatorrent.lib.streamquery.function.CountFunction;
+import com.datatorrent.lib.streamquery.function.FirstLastFunction;
+import com.datatorrent.lib.streamquery.function.MaxMinFunction;
+import com.datatorrent.lib.streamquery.function.SumFunction;
+import com.datatorrent.lib.streamquery.index.ColumnIndex;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Functional test comparing the output of the streamquery operators in vectorized mode with the output in row mode.
+ */
+public class VectorizedOperatorTest
+{
+  private static List<Map<String, Object>> createRows()
+  {
+    Random random = new Random(7);
+    List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+    for (int i = 0; i < 5000; i++) {
+      Map<String, Object> row = new HashMap<String, Object>();
+      row.put("a", random.nextInt(10));
+      row.put("b", "b" + random.nextInt(5));
+      row.put("c", random.nextInt(1000) / 10.0);
+      row.put("d", (long)random.nextInt(100));
+      if (random.nextInt(10) > 0) {
+        row.put("e", "e" + random.nextInt(3));
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static List<Object> runSelect(boolean vectorized, List<Map<String, Object>> rows)
+  {
+    SelectOperator oper = new SelectOperator();
+    InCondition in = new InCondition("e");
+    in.addInValue("e1");
+    in.addInValue("e2");
+    oper.setCondition(new CompoundCondition(new BetweenCondition("c", 10.0, 50.0), in, true));
+    oper.addIndex(new ColumnIndex("b", null));
+    oper.addIndex(new ColumnIndex("d", null));
+    oper.setVectorized(vectorized);
+    oper.setBatchSize(1000);
+
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setup(null);
+    oper.beginWindow(1);
+    for (Map<String, Object> row : rows) {
+      oper.inport.process(row);
+    }
+    oper.endWindow();
+    oper.teardown();
+    return sink.collectedTuples;
+  }
+
+  @Test
+  public void testSelect()
+  {
+    List<Map<String, Object>> rows = createRows();
+    List<Object> expected = runSelect(false, rows);
+    Assert.assertFalse("selected rows", expected.isEmpty());
+    Assert.assertEquals("selected rows", expected, runSelect(true, rows));
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static List<Object> runGroupBy(boolean vectorized, List<Map<String, Object>> rows) throws Exception
+  {
+    GroupByHavingOperator oper = new GroupByHavingOperator();
+    oper.addColumnGroupByIndex(new ColumnIndex("a", null));
+    oper.addColumnGroupByIndex(new ColumnIndex("b", null));
+    oper.addAggregateIndex(new SumFunction("c", "sum"));
+    oper.addAggregateIndex(new CountFunction("e", "count"));
+    oper.addAggregateIndex(new AverageFunction("d", "avg"));
+    oper.addAggregateIndex(new MaxMinFunction("c", "max", false));
+    oper.addAggregateIndex(new FirstLastFunction("e", "last", true));
+    oper.addHavingCondition(new HavingCompareValue<Double>(new SumFunction("c", null), 2000.0, -1));
+    EqualValueCondition condition = new EqualValueCondition();
+    condition.addEqualValue("d", 42L);
+    oper.setCondition(new CompoundCondition(condition, new BetweenCondition("a", 2, 7)));
+    oper.setVectorized(vectorized);
+
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setup(null);
+    oper.beginWindow(1);
+    for (Map<String, Object> row : rows) {
+      oper.inport.process(row);
+    }
+    oper.endWindow();
+    oper.teardown();
+    return sink.collectedTuples;
+  }
+
+  @Test
+  public void testGroupByHaving() throws Exception
+  {
+    List<Map<String, Object>> rows = createRows();
+    List<Object> expected = runGroupBy(false, rows);
+    List<Object> actual = runGroupBy(true, rows);
+    Assert.assertFalse("groups", expected.isEmpty());
+    // groups are emitted in hash order in row mode
+    Assert.assertEquals("groups", expected.size(), actual.size());
+    Assert.assertEquals("groups", new HashSet<Object>(expected), new HashSet<Object>(actual));
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static List<Object> runSelectFunction(boolean vectorized, List<Map<String, Object>> rows) throws Exception
+  {
+    SelectFunctionOperator oper = new SelectFunctionOperator();
+    oper.addSqlFunction(new SumFunction("d", "sum"));
+    oper.addSqlFunction(new CountFunction("*", "count"));
+    oper.addSqlFunction(new AverageFunction("c", "avg"));
+    oper.addSqlFunction(new MaxMinFunction("a", "min", true));
+    oper.addSqlFunction(new FirstLastFunction("e", "first", false));
+    oper.setVectorized(vectorized);
+
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setup(null);
+    oper.beginWindow(1);
+    for (Map<String, Object> row : rows) {
+      oper.inport.process(row);
+    }
+    oper.endWindow();
+    oper.teardown();
+    return sink.collectedTuples;
+  }
+
+  @Test
+  public void testSelectFunction() throws Exception
+  {
+    List<Map<String, Object>> rows = createRows();
+    Assert.assertEquals("functions", runSelectFunction(false, rows), runSelectFunction(true, rows));
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static List<Object> runOrderBy(boolean vectorized, List<Map<String, Object>> rows)
+  {
+    OrderByOperator oper = new OrderByOperator();
+    oper.addOrderByRule(new OrderByRule<String>("e"));
+    oper.addOrderByRule(new OrderByRule<Double>("c"));
+    oper.setDescending(true);
+    oper.setVectorized(vectorized);
+
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setup(null);
+    oper.beginWindow(1);
+    for (Map<String, Object> row : rows) {
+      oper.inport.process(row);
+    }
+    oper.endWindow();
+    oper.teardown();
+    return sink.collectedTuples;
+  }
+
+  @Test
+  public void testOrderBy()
+  {
+    List<Map<String, Object>> rows = createRows();
+    List<Object> expected = runOrderBy(false, rows);
+    Assert.assertFalse("sorted rows", expected.isEmpty());
+    Assert.assertEquals("sorted rows", expected, runOrderBy(true, rows));
+  }
+
+  @Test
+  public void testRetain()
+  {
+    List<Map<String, Object>> rows = createRows();
+    ColumnBatch batch = new ColumnBatch();
+    ColumnBatch expected = new ColumnBatch();
+    for (Map<String, Object> row : rows) {
+      batch.add(row);
+    }
+    batch.getColumn("c");
+    batch.getColumn("d");
+    batch.getColumn("e");
+    batch.getDictionaryColumn("a");
+
+    int[] selection = batch.selectAll();
+    int length = new BetweenCondition("c", 10.0, 50.0).filter(batch, selection, selection.length);
+    batch.retain(selection, length);
+    for (int i = 0; i < length; i++) {
+      expected.add(rows.get(selection[i]));
+    }
+    Assert.assertEquals("rows", expected.size(), batch.size());
+
+    for (int i = 0; i < length; i++) {
+      Assert.assertSame("row " + i, expected.getRow(i), batch.getRow(i));
+      Assert.assertEquals("c " + i, expected.getColumn("c").getDoubles()[i], batch.getColumn("c").getDoubles()[i], 0);
+      Assert.assertEquals("d " + i, expected.getColumn("d").getLongs()[i], batch.getColumn("d").getLongs()[i]);
+      Assert.assertEquals("e " + i, expected.getColumn("e").isMissing(i), batch.getColumn("e").isMissing(i));
+      Assert.assertEquals("e " + i, expected.getRow(i).get("e"),
+          batch.getColumn("e").isNull(i) ? null : batch.getColumn("e").getDictionary().get(batch.getColumn("e").getCodes()[i]));
+      Assert.assertEquals("a " + i, expected.getRow(i).get("a"),
+          batch.getDictionaryColumn("a").getDictionary().get(batch.getDictionaryColumn("a").getCodes()[i]));
+      // column built after the rows are retained
+      Assert.assertEquals("b " + i, expected.getRow(i).get("b"),
+          batch.getColumn("b").getDictionary().get(batch.getColumn("b").getCodes()[i]));
+    }
+    Assert.assertEquals("e nulls", expected.getColumn("e").getNullCount(), batch.getColumn("e").getNullCount());
+  }
+}
@@ -16,6 +16,11 @@
 
 package com.datatorrent.lib.util;
 
+import static com.datatorrent.lib.util.PojoUtils.createBulkGetterColumns;
+import static com.datatorrent.lib.util.PojoUtils.createBulkGetterObjectArray;
+import static com.datatorrent.lib.util.PojoUtils.createBulkGetterOutput;
+import static com.datatorrent.lib.util.PojoUtils.createBulkGetterPreparedStatement;
+import static com.datatorrent.lib.util.PojoUtils.createBulkSetterObjectArray;
 import static com.datatorrent.lib.util.PojoUtils.createGetter;
 import static com.datatorrent.lib.util.PojoUtils.createGetterBoolean;
 import static com.datatorrent.lib.util.PojoUtils.createGetterByte;
@@ -34,12 +39,27 @@ import static com.datatorrent.lib.util.PojoUtils.createSetterFloat;
 import static com.datatorrent.lib.util.PojoUtils.createSetterInt;
 import static com.datatorrent.lib.util.PojoUtils.createSetterLong;
 import static com.datatorrent.lib.util.PojoUtils.createSetterShort;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.datatorrent.lib.util.PojoUtils.BulkGetterColumns;
+import com.datatorrent.lib.util.PojoUtils.BulkGetterObjectArray;
+import com.datatorrent.lib.util.PojoUtils.BulkSetterObjectArray;
 import com.datatorrent.lib.util.PojoUtils.GetterBoolean;
 import com.datatorrent.lib.util.PojoUtils.GetterByte;
 import com.datatorrent.lib.util.PojoUtils.GetterChar;
@@ -57,6 +77,8 @@ import com.datatorrent.lib.util.PojoUtils.SetterLong;
 import com.datatorrent.lib.util.PojoUtils.SetterShort;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 
 
 public class PojoUtilsTest
@@ -401,4 +423,77 @@ public class PojoUtilsTest
     @SuppressWarnings("unused")
     SetterInt<Object> setterInt = createSetterInt(testPojoClass, "privateInt");
   }
+
+  @Test
+  public void testBulkGetters() throws Exception
+  {
+    List<String> exprs = Arrays.asList("innerObj.boolVal", "innerObj.charVal", "innerObj.intVal", "innerObj.longVal",
+                                       "innerObj.doubleVal", "innerObj.stringVal", "{$}.innerObj.getIntVal() + 1");
+    List<Class<?>> exprClasses = Arrays.<Class<?>>asList(boolean.class, char.class, int.class, long.class, double.class,
+                                                         String.class, int.class);
+
+    BulkGetterObjectArray<Object> getValues = createBulkGetterObjectArray(fqcn, exprs, exprClasses);
+    Object[] values = new Object[exprs.size()];
+    getValues.get(testObj, values);
+    assertArrayEquals(new Object[] {innerObj.boolVal, innerObj.charVal, innerObj.intVal, innerObj.longVal,
+                                    innerObj.doubleVal, innerObj.stringVal, innerObj.intVal + 1}, values);
+
+    BulkGetterColumns<Object> getColumns = createBulkGetterColumns(fqcn, exprs, exprClasses);
+    Object[] columns = new Object[] {new boolean[2], new char[2], new int[2], new long[2], new double[2], new String[2], new int[2]};
+    getColumns.get(testObj, columns, 1);
+    assertEquals(innerObj.boolVal, ((boolean[]) columns[0])[1]);
+    assertEquals(innerObj.charVal, ((char[]) columns[1])[1]);
+    assertEquals(innerObj.intVal, ((int[]) columns[2])[1]);
+    assertEquals(innerObj.longVal, ((long[]) columns[3])[1]);
+    assertEquals(innerObj.doubleVal, ((double[]) columns[4])[1], 0);
+    assertEquals(innerObj.stringVal, ((String[]) columns[5])[1]);
+    assertEquals(innerObj.intVal + 1, ((int[]) columns[6])[1]);
+
+    Kryo kryo = new Kryo();
+    Output output = new Output(64);
+    createBulkGetterOutput(fqcn, exprs, exprClasses).get(testObj, kryo, output);
+    Input input = new Input(output.toBytes());
+    assertEquals(innerObj.boolVal, input.readBoolean());
+    assertEquals(innerObj.charVal, input.readChar());
+    assertEquals(innerObj.intVal, input.readInt());
+    assertEquals(innerObj.longVal, input.readLong());
+    assertEquals(innerObj.doubleVal, input.readDouble(), 0);
+    assertEquals(innerObj.stringVal, input.readString());
+    assertEquals(innerObj.intVal + 1, input.readInt());
+
+    final Map<Integer, Object> parameters = Maps.newHashMap();
+    PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+      new Class<?>[] {PreparedStatement.class}, new InvocationHandler()
+      {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+          parameters.put((Integer) args[0], args[1]);
+          return null;
+        }
+      });
+    createBulkGetterPreparedStatement(fqcn, exprs, exprClasses).get(testObj, statement);
+    assertEquals(innerObj.boolVal, parameters.get(1));
+    assertEquals(String.valueOf(innerObj.charVal), parameters.get(2));
+    assertEquals(innerObj.intVal, parameters.get(3));
+    assertEquals(innerObj.stringVal, parameters.get(6));
+    assertEquals(innerObj.intVal + 1, parameters.get(7));
+
+    assertSame(getValues, createBulkGetterObjectArray(fqcn, Lists.newArrayList(exprs), Lists.newArrayList(exprClasses)));
+  }
+
+  @Test
+  public void testBulkSetter() throws Exception
+  {
+    List<String> exprs = Arrays.asList("innerObj.boolVal", "innerObj.intVal", "innerObj.stringVal", "{$}.innerObj.longVal = {#}");
+    List<Class<?>> exprClasses = Arrays.<Class<?>>asList(boolean.class, int.class, String.class, long.class);
+
+    BulkSetterObjectArray<Object> setValues = createBulkSetterObjectArray(fqcn, exprs, exprClasses);
+    setValues.set(testObj, new Object[] {!innerObj.boolVal, innerObj.intVal + 1, "world", innerObj.longVal + 1});
+    TestObjAllTypes expected = new TestObjAllTypes();
+    assertEquals(!expected.innerObj.boolVal, innerObj.boolVal);
+    assertEquals(expected.innerObj.intVal + 1, innerObj.intVal);
+    assertEquals("world", innerObj.stringVal);
+    assertEquals(expected.innerObj.longVal + 1, innerObj.longVal);
+  }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.util;
+
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReusableByteArrayReaderTest
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  //multi-byte characters and a surrogate pair
+  private static final String TEXT = "a\u00e9\u20ac\ud83d\ude00b\ud83d\ude00";
+
+  private static String read(ReusableByteArrayReader reader, int bufferSize) throws Exception
+  {
+    StringBuilder builder = new StringBuilder();
+    char[] buffer = new char[bufferSize + 1];
+    int n;
+    while ((n = reader.read(buffer, 1, bufferSize)) != -1) {
+      Assert.assertTrue("read chars " + n, n > 0 && n <= bufferSize);
+      builder.append(buffer, 1, n);
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void testRead() throws Exception
+  {
+    byte[] bytes = ("xx" + TEXT + "yy").getBytes(UTF8);
+    int length = TEXT.getBytes(UTF8).length;
+    ReusableByteArrayReader reader = new ReusableByteArrayReader(UTF8);
+    for (int bufferSize = 1; bufferSize <= 8; bufferSize++) {
+      reader.open(bytes, 2, length);
+      Assert.assertEquals("buffer size " + bufferSize, TEXT, read(reader, bufferSize));
+      Assert.assertEquals("end of range", -1, reader.read(new char[1], 0, 1));
+    }
+    reader.close();
+  }
+
+  @Test
+  public void testReadCharAfterReopen() throws Exception
+  {
+    byte[] bytes = TEXT.getBytes(UTF8);
+    ReusableByteArrayReader reader = new ReusableByteArrayReader(UTF8);
+    reader.open(bytes, 0, bytes.length);
+    for (int i = 0; i < 4; i++) {
+      Assert.assertEquals("char " + i, TEXT.charAt(i), reader.read());
+    }
+    //the reader is reopened after the high surrogate of the pair
+    reader.open(bytes, 0, 1);
+    Assert.assertEquals("reopened", 'a', reader.read());
+    Assert.assertEquals("end of range", -1, reader.read());
+    reader.close();
+  }
+}